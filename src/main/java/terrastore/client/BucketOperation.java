@@ -129,4 +129,29 @@ public class BucketOperation extends AbstractOperation {
     public BulkOperation bulk() {
         return new BulkOperation(connection, bucket);
     }
+
+    /**
+     * Sets up a {@link NearCacheSession} for the {@link Versioned} documents of this bucket,
+     * whose version is mapped to the "version" JSON property.
+     *
+     * @param type The type of the documents.
+     * @param capacity The maximum number of cached documents.
+     * @return A new {@link NearCacheSession} with an empty cache.
+     */
+    public <T extends Versioned> NearCacheSession<T> session(Class<T> type, int capacity) {
+        return new NearCacheSession<T>(connection, bucket, type, capacity, "version");
+    }
+
+    /**
+     * Sets up a {@link NearCacheSession} for the {@link Versioned} documents of this bucket,
+     * whose version is mapped to the JSON property at the given dotted path.
+     *
+     * @param type The type of the documents.
+     * @param capacity The maximum number of cached documents.
+     * @param versionPath The path of the version property, such as "version" or "metadata.version".
+     * @return A new {@link NearCacheSession} with an empty cache.
+     */
+    public <T extends Versioned> NearCacheSession<T> session(Class<T> type, int capacity, String versionPath) {
+        return new NearCacheSession<T>(connection, bucket, type, capacity, versionPath);
+    }
 }
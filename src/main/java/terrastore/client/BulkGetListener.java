@@ -0,0 +1,32 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client;
+
+/**
+ * Callback interface receiving the results of a chunked {@link BulkOperation} get as each chunk completes.<br>
+ * Callbacks are invoked by the thread which started the get, one at a time, in completion order.
+ *
+ * @author Sergio Bossa
+ */
+public interface BulkGetListener<T> {
+
+    /**
+     * Called when a chunk of keys has been retrieved.
+     *
+     * @param values The values retrieved for the chunk keys.
+     */
+    public void chunkCompleted(Values<T> values);
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client;
+
+import java.util.Set;
+
+/**
+ * Callback interface notified by {@link BulkLoadOperation} as each batch completes.<br>
+ * Callbacks are invoked by the thread which started the load, one at a time, so implementations
+ * don't need to be thread safe.
+ *
+ * @author Sergio Bossa
+ */
+public interface BulkLoadListener {
+
+    /**
+     * Called when a batch has been successfully sent.
+     *
+     * @param batch The progressive number of the batch, starting from 0.
+     * @param inserted The keys actually inserted by the server.
+     * @param rejected The keys sent within the batch but not inserted by the server.
+     * @param progress The load progress so far, including this batch.
+     */
+    public void batchCompleted(int batch, Set<String> inserted, Set<String> rejected, BulkLoadReport progress);
+
+    /**
+     * Called when a batch has failed.
+     *
+     * @param batch The progressive number of the batch, starting from 0.
+     * @param keys The keys sent within the failed batch.
+     * @param failure The failure cause.
+     * @param progress The load progress so far, including this batch.
+     */
+    public void batchFailed(int batch, Set<String> keys, TerrastoreClientException failure, BulkLoadReport progress);
+}
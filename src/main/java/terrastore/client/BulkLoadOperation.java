@@ -0,0 +1,373 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.codehaus.jackson.map.ObjectMapper;
+import terrastore.client.connection.Connection;
+
+/**
+ * Loads a possibly huge, lazily produced, sequence of key/value pairs into a bucket.<br>
+ * Input entries are consumed one batch at a time and sent as bulk puts, keeping up to a configurable
+ * number of batches in flight, so that memory usage is bounded by batch size and concurrency rather than by input size.<br>
+ * Batches are sent through the client {@link Connection}, so use a {@link terrastore.client.connection.RoundRobinHostManager}
+ * to spread in-flight batches over all hosts.
+ *
+ * @author Sergio Bossa
+ */
+public class BulkLoadOperation extends AbstractOperation {
+
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final int DEFAULT_CONCURRENCY = 4;
+    //
+    private final String bucket;
+    //
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+    private volatile long batchBytes;
+    private volatile Sizer sizer = new JsonSizer();
+    private volatile int concurrency = DEFAULT_CONCURRENCY;
+    private volatile BulkLoadListener listener;
+    private volatile ExecutorService executor;
+
+    BulkLoadOperation(Connection connection, String bucket) {
+        super(connection);
+        this.bucket = bucket;
+    }
+
+    BulkLoadOperation(BulkLoadOperation other) {
+        super(other.connection);
+        this.bucket = other.bucket;
+        this.batchSize = other.batchSize;
+        this.batchBytes = other.batchBytes;
+        this.sizer = other.sizer;
+        this.concurrency = other.concurrency;
+        this.listener = other.listener;
+        this.executor = other.executor;
+    }
+
+    /**
+     * Specifies the max number of documents per batch.
+     *
+     * @param batchSize The max number of documents per batch (defaults to 1000).
+     */
+    public BulkLoadOperation batchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be greater than zero.");
+        }
+        BulkLoadOperation newInstance = new BulkLoadOperation(this);
+        newInstance.batchSize = batchSize;
+        return newInstance;
+    }
+
+    /**
+     * Specifies the max number of serialized bytes per batch, estimated as the size of the plain Json
+     * representation of each key and document.<br>
+     * Please note this requires each document to be serialized twice: if documents need custom descriptors,
+     * or their size can be computed in a cheaper way, use {@link #batchBytes(long, Sizer)}.
+     *
+     * @param batchBytes The max number of bytes per batch: a single document larger than that makes a batch of its own.
+     */
+    public BulkLoadOperation batchBytes(long batchBytes) {
+        return batchBytes(batchBytes, new JsonSizer());
+    }
+
+    /**
+     * Specifies the max number of serialized bytes per batch, as computed by the given {@link Sizer}.
+     *
+     * @param batchBytes The max number of bytes per batch: a single document larger than that makes a batch of its own.
+     * @param sizer The sizer used to compute the size of each document.
+     */
+    public BulkLoadOperation batchBytes(long batchBytes, Sizer sizer) {
+        BulkLoadOperation newInstance = new BulkLoadOperation(this);
+        newInstance.batchBytes = batchBytes;
+        newInstance.sizer = sizer;
+        return newInstance;
+    }
+
+    /**
+     * Specifies the max number of batches concurrently in flight.
+     *
+     * @param concurrency The max number of concurrent batches (defaults to 4).
+     */
+    public BulkLoadOperation concurrency(int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("Concurrency must be greater than zero.");
+        }
+        BulkLoadOperation newInstance = new BulkLoadOperation(this);
+        newInstance.concurrency = concurrency;
+        return newInstance;
+    }
+
+    /**
+     * Specifies a {@link BulkLoadListener} to notify about each completed batch.
+     */
+    public BulkLoadOperation listener(BulkLoadListener listener) {
+        BulkLoadOperation newInstance = new BulkLoadOperation(this);
+        newInstance.listener = listener;
+        return newInstance;
+    }
+
+    /**
+     * Specifies the executor sending batches, which is owned by the caller and can be shared by many loads:
+     * by default, batches are sent by a pool of daemon threads shared by all clients.
+     */
+    public BulkLoadOperation executor(ExecutorService executor) {
+        BulkLoadOperation newInstance = new BulkLoadOperation(this);
+        newInstance.executor = executor;
+        return newInstance;
+    }
+
+    /**
+     * Loads all entries of the given map.
+     *
+     * @see #load(Iterator)
+     */
+    public <T> BulkLoadReport load(Map<String, ? extends T> entries) throws TerrastoreClientException {
+        return load(entries.entrySet().iterator());
+    }
+
+    /**
+     * Loads all entries provided by the given iterable.
+     *
+     * @see #load(Iterator)
+     */
+    public <T> BulkLoadReport load(Iterable<? extends Map.Entry<String, ? extends T>> entries) throws TerrastoreClientException {
+        return load(entries.iterator());
+    }
+
+    /**
+     * Loads all entries provided by the given iterator, which is lazily consumed by the calling thread one batch at a time,
+     * only when there's room for one more batch in flight.<br>
+     * Failed batches don't stop the load: their keys and failures are collected in the returned report.<br>
+     * If the load is interrupted, or the listener throws, batches still in flight are cancelled.
+     *
+     * @param <T> The Java type of the loaded documents.
+     * @param entries The key/document pairs to load.
+     * @return A {@link BulkLoadReport} describing the whole load.
+     * @throws TerrastoreClientException If the calling thread is interrupted while waiting for batches to complete.
+     */
+    public <T> BulkLoadReport load(Iterator<? extends Map.Entry<String, ? extends T>> entries) throws TerrastoreClientException {
+        CompletionService<BatchResult> completionService = new ExecutorCompletionService<BatchResult>(executor != null ? executor : SharedExecutor.get());
+        Batcher<T> batcher = new Batcher<T>(entries);
+        Progress progress = new Progress();
+        Set<Future<BatchResult>> inFlight = new HashSet<Future<BatchResult>>();
+        try {
+            int batchNumber = 0;
+            while (batcher.hasNext()) {
+                if (inFlight.size() == concurrency) {
+                    progress.update(take(completionService, inFlight));
+                }
+                inFlight.add(completionService.submit(new BatchPut(batchNumber++, batcher.next())));
+            }
+            while (!inFlight.isEmpty()) {
+                progress.update(take(completionService, inFlight));
+            }
+            return progress.snapshot();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new TerrastoreClientException("Interrupted while loading bucket: " + bucket, ex);
+        } finally {
+            // Stop batches still in flight after a failure:
+            for (Future<BatchResult> future : inFlight) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private Future<BatchResult> take(CompletionService<BatchResult> completionService, Set<Future<BatchResult>> inFlight) throws InterruptedException {
+        Future<BatchResult> completed = completionService.take();
+        inFlight.remove(completed);
+        return completed;
+    }
+
+    /**
+     * Computes the size of documents, used to cut batches by number of bytes.
+     */
+    public static interface Sizer {
+
+        /**
+         * Get the serialized size in bytes of the given key/value pair.
+         */
+        public long sizeOf(String key, Object value);
+    }
+
+    private static class JsonSizer implements Sizer {
+
+        private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+        @Override
+        public long sizeOf(String key, Object value) {
+            try {
+                CountingOutputStream counter = new CountingOutputStream();
+                JSON_MAPPER.writeValue(counter, value);
+                return counter.count + key.length() + 4;
+            } catch (IOException ex) {
+                throw new TerrastoreClientException("Unable to compute document size for key: " + key, ex);
+            }
+        }
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    /**
+     * Cuts input entries into batches: an entry which would make a non empty batch exceed the max number
+     * of bytes is held back to start the next batch.
+     */
+    private class Batcher<T> {
+
+        private final Iterator<? extends Map.Entry<String, ? extends T>> entries;
+        private Map.Entry<String, ? extends T> pending;
+        private long pendingBytes;
+
+        public Batcher(Iterator<? extends Map.Entry<String, ? extends T>> entries) {
+            this.entries = entries;
+        }
+
+        public boolean hasNext() {
+            return pending != null || entries.hasNext();
+        }
+
+        public Map<String, Object> next() {
+            Map<String, Object> batch = new LinkedHashMap<String, Object>();
+            long bytes = 0;
+            while (batch.size() < batchSize && hasNext()) {
+                Map.Entry<String, ? extends T> entry = pending;
+                long entryBytes = pendingBytes;
+                if (entry != null) {
+                    pending = null;
+                } else {
+                    entry = entries.next();
+                    entryBytes = batchBytes > 0 ? sizer.sizeOf(entry.getKey(), entry.getValue()) : 0;
+                }
+                if (batchBytes > 0 && !batch.isEmpty() && bytes + entryBytes > batchBytes) {
+                    pending = entry;
+                    pendingBytes = entryBytes;
+                    break;
+                }
+                batch.put(entry.getKey(), entry.getValue());
+                bytes += entryBytes;
+            }
+            return batch;
+        }
+    }
+
+    private class BatchPut implements Callable<BatchResult> {
+
+        private final int number;
+        private final Map<String, Object> batch;
+
+        public BatchPut(int number, Map<String, Object> batch) {
+            this.number = number;
+            this.batch = batch;
+        }
+
+        @Override
+        public BatchResult call() throws Exception {
+            try {
+                BulkOperation bulk = new BulkOperation(connection, bucket);
+                Set<String> inserted = connection.bulkPut(bulk.new Context(new Values<Object>(batch)));
+                return new BatchResult(number, batch.keySet(), inserted, null);
+            } catch (TerrastoreClientException ex) {
+                return new BatchResult(number, batch.keySet(), null, ex);
+            }
+        }
+    }
+
+    private static class BatchResult {
+
+        private final int number;
+        private final Set<String> keys;
+        private final Set<String> inserted;
+        private final TerrastoreClientException failure;
+
+        public BatchResult(int number, Set<String> keys, Set<String> inserted, TerrastoreClientException failure) {
+            this.number = number;
+            this.keys = keys;
+            this.inserted = inserted;
+            this.failure = failure;
+        }
+    }
+
+    private class Progress {
+
+        private final long start = System.currentTimeMillis();
+        private final Set<String> rejectedKeys = new HashSet<String>();
+        private final Set<String> failedKeys = new HashSet<String>();
+        private final List<TerrastoreClientException> failures = new LinkedList<TerrastoreClientException>();
+        private int batches;
+        private int failedBatches;
+        private long submitted;
+        private long inserted;
+
+        public void update(Future<BatchResult> completed) throws InterruptedException {
+            BatchResult result = null;
+            try {
+                result = completed.get();
+            } catch (ExecutionException ex) {
+                throw new TerrastoreClientException("Unexpected failure while loading bucket: " + bucket, ex.getCause());
+            }
+            batches++;
+            submitted += result.keys.size();
+            if (result.failure == null) {
+                Set<String> rejected = new HashSet<String>(result.keys);
+                rejected.removeAll(result.inserted);
+                inserted += result.inserted.size();
+                rejectedKeys.addAll(rejected);
+                if (listener != null) {
+                    listener.batchCompleted(result.number, result.inserted, rejected, snapshot());
+                }
+            } else {
+                failedBatches++;
+                failedKeys.addAll(result.keys);
+                failures.add(result.failure);
+                if (listener != null) {
+                    listener.batchFailed(result.number, result.keys, result.failure, snapshot());
+                }
+            }
+        }
+
+        public BulkLoadReport snapshot() {
+            return new BulkLoadReport(batches, failedBatches, submitted, inserted, rejectedKeys, failedKeys, failures, System.currentTimeMillis() - start);
+        }
+    }
+}
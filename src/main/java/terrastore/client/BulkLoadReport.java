@@ -0,0 +1,119 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Snapshot of a {@link BulkLoadOperation} progress.<br>
+ * Counters are fixed at snapshot time, while key sets and failures are read-only views: so reports handed to a
+ * {@link BulkLoadListener} see them growing as the load goes on, without paying for a copy at each batch.
+ *
+ * @author Sergio Bossa
+ */
+public class BulkLoadReport {
+
+    private final int batches;
+    private final int failedBatches;
+    private final long submitted;
+    private final long inserted;
+    private final Set<String> rejectedKeys;
+    private final Set<String> failedKeys;
+    private final List<TerrastoreClientException> failures;
+    private final long elapsedMillis;
+
+    BulkLoadReport(int batches, int failedBatches, long submitted, long inserted, Set<String> rejectedKeys, Set<String> failedKeys, List<TerrastoreClientException> failures, long elapsedMillis) {
+        this.batches = batches;
+        this.failedBatches = failedBatches;
+        this.submitted = submitted;
+        this.inserted = inserted;
+        this.rejectedKeys = Collections.unmodifiableSet(rejectedKeys);
+        this.failedKeys = Collections.unmodifiableSet(failedKeys);
+        this.failures = Collections.unmodifiableList(failures);
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Get the number of completed batches, either successful or failed.
+     */
+    public int getBatches() {
+        return batches;
+    }
+
+    /**
+     * Get the number of failed batches.
+     */
+    public int getFailedBatches() {
+        return failedBatches;
+    }
+
+    /**
+     * Get the number of documents sent to the server.
+     */
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    /**
+     * Get the number of documents actually inserted by the server.
+     */
+    public long getInserted() {
+        return inserted;
+    }
+
+    /**
+     * Get the keys sent within successful batches but not inserted by the server.
+     */
+    public Set<String> getRejectedKeys() {
+        return rejectedKeys;
+    }
+
+    /**
+     * Get the keys sent within failed batches.
+     */
+    public Set<String> getFailedKeys() {
+        return failedKeys;
+    }
+
+    /**
+     * Get the failures of all failed batches, in completion order.
+     */
+    public List<TerrastoreClientException> getFailures() {
+        return failures;
+    }
+
+    /**
+     * Get the number of milliseconds elapsed since the load started.
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Get the number of inserted documents per second.
+     */
+    public double getThroughput() {
+        return elapsedMillis > 0 ? inserted * 1000d / elapsedMillis : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkLoadReport{batches=" + batches + ", failedBatches=" + failedBatches + ", submitted=" + submitted + ", inserted=" + inserted
+                + ", rejected=" + rejectedKeys.size() + ", failed=" + failedKeys.size() + ", elapsedMillis=" + elapsedMillis + ", throughput=" + getThroughput() + "}";
+    }
+}
@@ -15,9 +15,20 @@
  */
 package terrastore.client;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import terrastore.client.connection.Connection;
+import terrastore.client.mapping.JsonProjection;
 
 /**
  * @author Sergio Bossa
@@ -25,21 +36,224 @@ import terrastore.client.connection.Connection;
  */
 public class BulkOperation extends AbstractOperation {
 
+    private static final int DEFAULT_CHUNK_SIZE = 1000;
+    private static final int DEFAULT_PARALLELISM = 4;
+    //
     private final String bucket;
+    //
+    private volatile int chunkSize = DEFAULT_CHUNK_SIZE;
+    private volatile int parallelism = DEFAULT_PARALLELISM;
+    private volatile JsonProjection projection;
+    private volatile ExecutorService executor;
 
     BulkOperation(Connection connection, String bucket) {
         super(connection);
         this.bucket = bucket;
     }
 
+    BulkOperation(BulkOperation other) {
+        super(other.connection);
+        this.bucket = other.bucket;
+        this.chunkSize = other.chunkSize;
+        this.parallelism = other.parallelism;
+        this.projection = other.projection;
+        this.executor = other.executor;
+    }
+
+    /**
+     * Specifies the max number of keys sent by a single bulk get request: larger key sets are split into
+     * chunks of the given size, retrieved in parallel.
+     *
+     * @param chunkSize The max number of keys per request (defaults to 1000).
+     */
+    public BulkOperation chunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be greater than zero.");
+        }
+        BulkOperation newInstance = new BulkOperation(this);
+        newInstance.chunkSize = chunkSize;
+        return newInstance;
+    }
+
+    /**
+     * Specifies the max number of chunks concurrently retrieved.
+     *
+     * @param parallelism The max number of concurrent bulk get requests (defaults to 4).
+     */
+    public BulkOperation parallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be greater than zero.");
+        }
+        BulkOperation newInstance = new BulkOperation(this);
+        newInstance.parallelism = parallelism;
+        return newInstance;
+    }
+
+    /**
+     * Specifies the executor retrieving chunks, which is owned by the caller and can be shared by many operations:
+     * by default, chunks are retrieved by a pool of daemon threads shared by all clients.
+     */
+    public BulkOperation executor(ExecutorService executor) {
+        BulkOperation newInstance = new BulkOperation(this);
+        newInstance.executor = executor;
+        return newInstance;
+    }
+
+    /**
+     * Specifies the fields to retrieve for each value, as dotted JSON paths, applied to all chunks:
+     * see {@link RangeOperation#project(String...)}.
+     *
+     * @param paths The JSON paths of the fields to retrieve.
+     */
+    public BulkOperation project(String... paths) {
+        BulkOperation newInstance = new BulkOperation(this);
+        newInstance.projection = new JsonProjection(paths);
+        return newInstance;
+    }
+
+    /**
+     * Retrieves the values corresponding to the given keys.<br>
+     * If keys are more than the configured chunk size, they're split into chunks retrieved in parallel,
+     * and merged back in chunk order into a single {@link Values} instance.
+     *
+     * @param <T> The Java type of the values.
+     * @param keys The keys whose values must be retrieved.
+     * @param type The Java class of the values.
+     * @return The retrieved values.
+     * @throws TerrastoreClientException If any chunk fails to be retrieved.
+     */
     public <T> Values<T> get(Set<String> keys, Class<T> type) throws TerrastoreClientException {
-        return connection.bulkGet(new Context(keys), type);
+        if (keys.size() <= chunkSize) {
+            return connection.bulkGet(new Context(keys), type);
+        } else {
+            List<Set<String>> chunks = split(keys);
+            final List<Values<T>> results = new ArrayList<Values<T>>(chunks.size());
+            for (int i = 0; i < chunks.size(); i++) {
+                results.add(null);
+            }
+            fanOut(chunks, type, new ChunkCallback<T>() {
+
+                @Override
+                public void completed(int chunk, Values<T> values) {
+                    results.set(chunk, values);
+                }
+            });
+            Map<String, T> merged = new LinkedHashMap<String, T>();
+            for (Values<T> result : results) {
+                merged.putAll(result);
+            }
+            return new Values<T>(merged);
+        }
+    }
+
+    /**
+     * Retrieves the values corresponding to the given keys, handing them to the given listener as each chunk
+     * of keys is retrieved, rather than merging them: this way, callers can process results while the remaining
+     * chunks are still in flight, and never hold all values in memory.
+     *
+     * @param <T> The Java type of the values.
+     * @param keys The keys whose values must be retrieved.
+     * @param type The Java class of the values.
+     * @param listener The {@link BulkGetListener} receiving values of each chunk.
+     * @throws TerrastoreClientException If any chunk fails to be retrieved.
+     */
+    public <T> void get(Set<String> keys, Class<T> type, final BulkGetListener<T> listener) throws TerrastoreClientException {
+        if (keys.size() <= chunkSize) {
+            listener.chunkCompleted(connection.bulkGet(new Context(keys), type));
+        } else {
+            fanOut(split(keys), type, new ChunkCallback<T>() {
+
+                @Override
+                public void completed(int chunk, Values<T> values) {
+                    listener.chunkCompleted(values);
+                }
+            });
+        }
     }
 
     public <T> Set<String> put(Values<T> values) throws TerrastoreClientException {
         return connection.bulkPut(new Context(values));
     }
 
+    /**
+     * Sets up a {@link BulkLoadOperation} for streaming a possibly huge sequence of documents
+     * into this bucket, through several bulk puts.
+     *
+     * @return A {@link BulkLoadOperation} for this bucket.
+     */
+    public BulkLoadOperation loader() {
+        return new BulkLoadOperation(connection, bucket);
+    }
+
+    private List<Set<String>> split(Set<String> keys) {
+        List<Set<String>> chunks = new ArrayList<Set<String>>(keys.size() / chunkSize + 1);
+        Set<String> current = null;
+        for (String key : keys) {
+            if (current == null || current.size() == chunkSize) {
+                current = new LinkedHashSet<String>();
+                chunks.add(current);
+            }
+            current.add(key);
+        }
+        return chunks;
+    }
+
+    private <T> void fanOut(List<Set<String>> chunks, final Class<T> type, ChunkCallback<T> callback) throws TerrastoreClientException {
+        CompletionService<ChunkResult<T>> completionService = new ExecutorCompletionService<ChunkResult<T>>(executor != null ? executor : SharedExecutor.get());
+        List<Future<ChunkResult<T>>> futures = new ArrayList<Future<ChunkResult<T>>>(chunks.size());
+        try {
+            int inFlight = 0;
+            while (futures.size() < chunks.size() || inFlight > 0) {
+                if (futures.size() < chunks.size() && inFlight < parallelism) {
+                    final int chunk = futures.size();
+                    final Context context = new Context(chunks.get(chunk));
+                    futures.add(completionService.submit(new Callable<ChunkResult<T>>() {
+
+                        @Override
+                        public ChunkResult<T> call() throws Exception {
+                            return new ChunkResult<T>(chunk, connection.bulkGet(context, type));
+                        }
+                    }));
+                    inFlight++;
+                } else {
+                    ChunkResult<T> result = completionService.take().get();
+                    inFlight--;
+                    callback.completed(result.chunk, result.values);
+                }
+            }
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof TerrastoreClientException) {
+                throw (TerrastoreClientException) ex.getCause();
+            } else {
+                throw new TerrastoreClientException("Unexpected failure while getting values from bucket: " + bucket, ex.getCause());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new TerrastoreClientException("Interrupted while getting values from bucket: " + bucket, ex);
+        } finally {
+            // Stop chunks still in flight after a failure:
+            for (Future<ChunkResult<T>> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static interface ChunkCallback<T> {
+
+        public void completed(int chunk, Values<T> values);
+    }
+
+    private static class ChunkResult<T> {
+
+        private final int chunk;
+        private final Values<T> values;
+
+        public ChunkResult(int chunk, Values<T> values) {
+            this.chunk = chunk;
+            this.values = values;
+        }
+    }
+
     public class Context {
 
         private final Set keys;
@@ -67,5 +281,9 @@ public class BulkOperation extends AbstractOperation {
             return values;
         }
 
+        public JsonProjection getProjection() {
+            return projection;
+        }
+
     }
 }
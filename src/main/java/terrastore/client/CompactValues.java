@@ -0,0 +1,333 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client;
+
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read-only, memory efficient {@link Values} implementation, meant for very large results.<br>
+ * Keys are kept lexically sorted and front coded: each key only stores the suffix not shared with the previous one,
+ * with a full key every {@link #RESTART_INTERVAL} keys, and all suffixes are packed in a single char array.
+ * Values are kept in a plain array aligned with sorted keys, so there are no per-entry objects at all.<br>
+ * Lookups by key are made through binary search on full keys, followed by a short linear scan; iteration
+ * follows the original insertion order, as with the default {@link Values} implementation, building
+ * entries on the fly.
+ *
+ * @author Sergio Bossa
+ */
+public class CompactValues<T> extends Values<T> {
+
+    static final int RESTART_INTERVAL = 16;
+    //
+    private final int size;
+    private final char[] keyChars;
+    private final int[] keyOffsets;
+    private final int[] prefixLengths;
+    private final int maxKeyLength;
+    private final Object[] values;
+    private final int[] order;
+
+    private CompactValues(int size, char[] keyChars, int[] keyOffsets, int[] prefixLengths, int maxKeyLength, Object[] values, int[] order) {
+        super(Collections.<String, T>emptyMap());
+        this.size = size;
+        this.keyChars = keyChars;
+        this.keyOffsets = keyOffsets;
+        this.prefixLengths = prefixLengths;
+        this.maxKeyLength = maxKeyLength;
+        this.values = values;
+        this.order = order;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(Object key) {
+        int index = indexOf(key);
+        return index >= 0 ? (T) values[index] : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Entry<String, T>> entrySet() {
+        return new AbstractSet<Entry<String, T>>() {
+
+            @Override
+            public Iterator<Entry<String, T>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private int indexOf(Object candidate) {
+        if (!(candidate instanceof String) || size == 0) {
+            return -1;
+        }
+        String key = (String) candidate;
+        // Binary search the last restart point whose (full) key is less than or equal to the searched one:
+        int low = 0;
+        int high = (size - 1) / RESTART_INTERVAL;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (compareToFullKey(key, middle * RESTART_INTERVAL) >= 0) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        // Then linearly scan its block:
+        char[] buffer = new char[maxKeyLength];
+        int start = low * RESTART_INTERVAL;
+        int end = Math.min(start + RESTART_INTERVAL, size);
+        for (int i = start; i < end; i++) {
+            int length = decodeNext(i, buffer);
+            int comparison = compare(key, buffer, length);
+            if (comparison == 0) {
+                return i;
+            } else if (comparison < 0) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private int compareToFullKey(String key, int index) {
+        int offset = keyOffsets[index];
+        int length = keyOffsets[index + 1] - offset;
+        int limit = Math.min(key.length(), length);
+        for (int i = 0; i < limit; i++) {
+            int difference = key.charAt(i) - keyChars[offset + i];
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return key.length() - length;
+    }
+
+    private int compare(String key, char[] buffer, int length) {
+        int limit = Math.min(key.length(), length);
+        for (int i = 0; i < limit; i++) {
+            int difference = key.charAt(i) - buffer[i];
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return key.length() - length;
+    }
+
+    /**
+     * Decodes the key at the given index into the given buffer, which must already contain the previous key
+     * (unless the index is a restart point), and returns its length.
+     */
+    private int decodeNext(int index, char[] buffer) {
+        int prefix = prefixLengths[index];
+        int offset = keyOffsets[index];
+        int suffix = keyOffsets[index + 1] - offset;
+        System.arraycopy(keyChars, offset, buffer, prefix, suffix);
+        return prefix + suffix;
+    }
+
+    private String decode(int index, char[] buffer) {
+        int restart = index - index % RESTART_INTERVAL;
+        int length = 0;
+        for (int i = restart; i <= index; i++) {
+            length = decodeNext(i, buffer);
+        }
+        return new String(buffer, 0, length);
+    }
+
+    private class EntryIterator implements Iterator<Entry<String, T>> {
+
+        private final char[] buffer = new char[maxKeyLength];
+        private int position;
+
+        @Override
+        public boolean hasNext() {
+            return position < size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Entry<String, T> next() {
+            if (position == size) {
+                throw new NoSuchElementException();
+            }
+            int index = order[position++];
+            return new SimpleImmutableEntry<String, T>(decode(index, buffer), (T) values[index]);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Builder collecting key/value pairs to put into a {@link CompactValues} instance.<br>
+     * If a key is added more than once, its last value wins, while its position is the one of its first insertion.
+     */
+    public static class Builder<T> {
+
+        private static final int DEFAULT_CAPACITY = 16;
+        //
+        private String[] keys;
+        private Object[] values;
+        private int count;
+
+        public Builder() {
+            this(DEFAULT_CAPACITY);
+        }
+
+        /**
+         * @param expectedSize The expected number of entries, used to pre-size internal buffers: zero if unknown.
+         */
+        public Builder(int expectedSize) {
+            int capacity = expectedSize > 0 ? expectedSize : DEFAULT_CAPACITY;
+            this.keys = new String[capacity];
+            this.values = new Object[capacity];
+        }
+
+        public Builder<T> add(String key, T value) {
+            if (key == null) {
+                throw new IllegalArgumentException("Key cannot be null.");
+            }
+            if (count == keys.length) {
+                int capacity = count * 2;
+                String[] newKeys = new String[capacity];
+                Object[] newValues = new Object[capacity];
+                System.arraycopy(keys, 0, newKeys, 0, count);
+                System.arraycopy(values, 0, newValues, 0, count);
+                keys = newKeys;
+                values = newValues;
+            }
+            keys[count] = key;
+            values[count] = value;
+            count++;
+            return this;
+        }
+
+        public CompactValues<T> build() {
+            int[] sorted = new int[count];
+            for (int i = 0; i < count; i++) {
+                sorted[i] = i;
+            }
+            sort(sorted);
+            // Drop duplicates, keeping the first insertion and the last value:
+            int[] sortedPositions = new int[count];
+            int unique = 0;
+            for (int i = 0; i < count; i++) {
+                if (unique > 0 && keys[sorted[i]].equals(keys[sorted[unique - 1]])) {
+                    values[sorted[unique - 1]] = values[sorted[i]];
+                    sortedPositions[sorted[i]] = -1;
+                } else {
+                    sorted[unique] = sorted[i];
+                    sortedPositions[sorted[i]] = unique;
+                    unique++;
+                }
+            }
+            // Front code sorted keys:
+            int totalChars = 0;
+            for (int i = 0; i < unique; i++) {
+                totalChars += keys[sorted[i]].length();
+            }
+            char[] keyChars = new char[totalChars];
+            int[] keyOffsets = new int[unique + 1];
+            int[] prefixLengths = new int[unique];
+            Object[] sortedValues = new Object[unique];
+            int maxKeyLength = 0;
+            int offset = 0;
+            String previous = null;
+            for (int i = 0; i < unique; i++) {
+                String key = keys[sorted[i]];
+                int prefix = i % RESTART_INTERVAL == 0 ? 0 : sharedPrefix(previous, key);
+                key.getChars(prefix, key.length(), keyChars, offset);
+                keyOffsets[i] = offset;
+                prefixLengths[i] = prefix;
+                sortedValues[i] = values[sorted[i]];
+                offset += key.length() - prefix;
+                maxKeyLength = Math.max(maxKeyLength, key.length());
+                previous = key;
+            }
+            keyOffsets[unique] = offset;
+            if (offset < totalChars) {
+                char[] trimmed = new char[offset];
+                System.arraycopy(keyChars, 0, trimmed, 0, offset);
+                keyChars = trimmed;
+            }
+            // Keep insertion order:
+            int[] order = new int[unique];
+            for (int i = 0, position = 0; i < count; i++) {
+                if (sortedPositions[i] >= 0) {
+                    order[position++] = sortedPositions[i];
+                }
+            }
+            return new CompactValues<T>(unique, keyChars, keyOffsets, prefixLengths, maxKeyLength, sortedValues, order);
+        }
+
+        private int sharedPrefix(String first, String second) {
+            int limit = Math.min(first.length(), second.length());
+            int i = 0;
+            while (i < limit && first.charAt(i) == second.charAt(i)) {
+                i++;
+            }
+            return i;
+        }
+
+        /**
+         * Stable merge sort of key indexes by key.
+         */
+        private void sort(int[] indexes) {
+            int[] buffer = new int[indexes.length];
+            for (int width = 1; width < indexes.length; width *= 2) {
+                for (int low = 0; low < indexes.length - width; low += width * 2) {
+                    int middle = low + width;
+                    int high = Math.min(low + width * 2, indexes.length);
+                    int left = low, right = middle, target = low;
+                    while (left < middle && right < high) {
+                        if (keys[indexes[left]].compareTo(keys[indexes[right]]) <= 0) {
+                            buffer[target++] = indexes[left++];
+                        } else {
+                            buffer[target++] = indexes[right++];
+                        }
+                    }
+                    while (left < middle) {
+                        buffer[target++] = indexes[left++];
+                    }
+                    while (right < high) {
+                        buffer[target++] = indexes[right++];
+                    }
+                    System.arraycopy(buffer, low, indexes, low, high - low);
+                }
+            }
+        }
+    }
+}
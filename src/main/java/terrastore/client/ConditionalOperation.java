@@ -16,6 +16,7 @@
 package terrastore.client;
 
 import terrastore.client.connection.Connection;
+import terrastore.client.connection.UnsatisfiedConditionException;
 
 /**
  * @author Sven Johansson
@@ -47,6 +48,25 @@ public class ConditionalOperation extends AbstractOperation {
         connection.putValue(new Context(), value);
     }
 
+    /**
+     * Puts a value under the current key if, and only if the predicate
+     * condition is satisfied, telling if it was: this is meant for optimistic writes,
+     * whose failures are expected.
+     *
+     * @param <T> The Java type of the object to put.
+     * @param value The value to put
+     * @return True if the value has been put, false if the condition was not satisfied.
+     * @throws TerrastoreClientException if the operation fails, ie due to an invalid predicate.
+     */
+    public <T> boolean tryPut(T value) throws TerrastoreClientException {
+        try {
+            connection.putValue(new Context(), value);
+            return true;
+        } catch (UnsatisfiedConditionException ex) {
+            return false;
+        }
+    }
+
     /**
      * Retrieves the value of the current key if, and only if the predicate
      * condition is satisfied.
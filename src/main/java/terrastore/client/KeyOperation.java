@@ -16,6 +16,7 @@
 package terrastore.client;
 
 import terrastore.client.connection.Connection;
+import terrastore.client.connection.NoSuchKeyException;
 import terrastore.client.merge.MergeDescriptor;
 import terrastore.client.merge.MergeOperation;
 
@@ -80,6 +81,25 @@ public class KeyOperation extends AbstractOperation {
         return connection.getValue(new Context(), type);
     }
 
+    /**
+     * Retrieves the stored value for this key, as an instance of the specified
+     * Java type, or null if the key does not exist within the current bucket.<br>
+     * Missing keys are best made cheap by enabling lightweight exceptions on the connection factory,
+     * see {@link terrastore.client.connection.resteasy.HTTPConnectionFactory#lightweightExceptions()}.
+     *
+     * @param <T> The Java type for this value.
+     * @param type The Java type for this value.
+     * @return The value for the current key, or null.
+     * @throws TerrastoreClientException if server communication fails.
+     */
+    public <T> T getIfPresent(Class<T> type) throws TerrastoreClientException {
+        try {
+            return connection.getValue(new Context(), type);
+        } catch (NoSuchKeyException ex) {
+            return null;
+        }
+    }
+
     /**
      * Sets up an {@link UpdateOperation} for the value of the current key.
      *
@@ -0,0 +1,201 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import terrastore.client.connection.Connection;
+import terrastore.client.connection.NoSuchKeyException;
+import terrastore.client.connection.UnsatisfiedConditionException;
+
+/**
+ * Read-your-writes session over the {@link Versioned} documents of a bucket, caching up to a given number of them
+ * in least recently used order.<br>
+ * Cached documents are revalidated at every read by a conditional get whose predicate only holds if the stored
+ * version differs from the cached one: so an unchanged document costs a small error response rather than its
+ * whole payload.<br>
+ * Documents written through the session are sent as copies with a bumped version, conditionally on the cached
+ * version being still the stored one, and cached right away, so they're immediately visible to reads:
+ * in order for changes to be detected, other writers must bump versions too.<br>
+ * Documents removed by other writers are not detected by revalidation, because Terrastore answers the same to
+ * unsatisfied conditions and missing keys, but only when read after being evicted or invalidated.<br>
+ * Cached documents are shared by all readers, so they must not be modified.
+ *
+ * @author Sergio Bossa
+ */
+public class NearCacheSession<T extends Versioned> extends AbstractOperation {
+
+    private final String bucket;
+    private final Class<T> type;
+    private final String versionPath;
+    private final Map<String, T> cache;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    NearCacheSession(Connection connection, String bucket, Class<T> type, final int capacity, String versionPath) {
+        super(connection);
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Near cache capacity must be positive: " + capacity);
+        }
+        if (versionPath == null || versionPath.length() == 0) {
+            throw new IllegalArgumentException("Version path cannot be empty.");
+        }
+        this.bucket = bucket;
+        this.type = type;
+        this.versionPath = "/" + versionPath.replace('.', '/');
+        this.cache = new LinkedHashMap<String, T>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, T> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Get the document with the given key, either from the cache if still fresh, or from the server.
+     *
+     * @throws NoSuchKeyException If there's no document with the given key.
+     * @throws TerrastoreClientException If the request fails.
+     */
+    public T get(String key) throws TerrastoreClientException {
+        T cached = lookup(key);
+        if (cached != null) {
+            try {
+                T changed = new KeyOperation(connection, bucket, key).conditional(changedPredicate(cached.getVersion())).get(type);
+                misses.incrementAndGet();
+                store(key, changed);
+                return changed;
+            } catch (UnsatisfiedConditionException ex) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        } else {
+            try {
+                T value = new KeyOperation(connection, bucket, key).get(type);
+                misses.incrementAndGet();
+                store(key, value);
+                return value;
+            } catch (NoSuchKeyException ex) {
+                invalidate(key);
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Put a copy of the given document, whose version is bumped past the one of both the cached and the given document;
+     * if the document is cached, the put only succeeds if its stored version is still the cached one.<br>
+     * The given document is left unchanged: read it back to get the written copy.
+     *
+     * @throws UnsatisfiedConditionException If the document has been changed by another writer since cached,
+     * in which case the document is no more cached.
+     * @throws TerrastoreClientException If the request fails, in which case the document is no more cached.
+     */
+    public void put(String key, T value) throws TerrastoreClientException {
+        T cached = lookup(key);
+        T written = type.cast(value.withVersion(Math.max(cached != null ? cached.getVersion() : 0, value.getVersion()) + 1));
+        try {
+            if (cached != null) {
+                new KeyOperation(connection, bucket, key).conditional(unchangedPredicate(cached.getVersion())).put(written);
+            } else {
+                new KeyOperation(connection, bucket, key).put(written);
+            }
+            store(key, written);
+        } catch (TerrastoreClientException ex) {
+            invalidate(key);
+            throw ex;
+        }
+    }
+
+    /**
+     * Remove the document with the given key from both the server and the cache.
+     *
+     * @throws TerrastoreClientException If the request fails.
+     */
+    public void remove(String key) throws TerrastoreClientException {
+        try {
+            new KeyOperation(connection, bucket, key).remove();
+        } finally {
+            invalidate(key);
+        }
+    }
+
+    /**
+     * Discard the cached document with the given key, if any.
+     */
+    public void invalidate(String key) {
+        synchronized (cache) {
+            cache.remove(key);
+        }
+    }
+
+    /**
+     * Discard all cached documents.
+     */
+    public void invalidateAll() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Get the number of reads served by cached documents found unchanged.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of reads which fetched the whole document.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private T lookup(String key) {
+        synchronized (cache) {
+            return cache.get(key);
+        }
+    }
+
+    /**
+     * Cache the given document unless a concurrent write or read already cached a more recent version of it.
+     */
+    private void store(String key, T value) {
+        synchronized (cache) {
+            T cached = cache.get(key);
+            if (cached == null || cached.getVersion() <= value.getVersion()) {
+                cache.put(key, value);
+            }
+        }
+    }
+
+    private String changedPredicate(long version) {
+        return "jxpath:" + versionPath + "[. != " + version + "]";
+    }
+
+    private String unchangedPredicate(long version) {
+        return "jxpath:" + versionPath + "[. = " + version + "]";
+    }
+}
@@ -15,8 +15,8 @@
  */
 package terrastore.client;
 
-
 import terrastore.client.connection.Connection;
+import terrastore.client.mapping.JsonProjection;
 
 /**
  * @author Sven Johansson
@@ -27,6 +27,8 @@ public class PredicateOperation extends AbstractOperation {
 
     private final String bucket;
     private final String predicate;
+    private volatile JsonProjection projection;
+    private volatile long timeToLive;
 
     PredicateOperation(Connection connection, String bucket, String predicate) {
         super(connection);
@@ -40,6 +42,39 @@ public class PredicateOperation extends AbstractOperation {
         this.predicate = predicate;
     }
 
+    PredicateOperation(PredicateOperation other) {
+        super(other.connection);
+        this.bucket = other.bucket;
+        this.predicate = other.predicate;
+        this.projection = other.projection;
+        this.timeToLive = other.timeToLive;
+    }
+
+    /**
+     * Specifies the fields to retrieve for each matching value, as dotted JSON paths:
+     * see {@link RangeOperation#project(String...)}.
+     *
+     * @param paths The JSON paths of the fields to retrieve.
+     */
+    public PredicateOperation project(String... paths) {
+        PredicateOperation newInstance = new PredicateOperation(this);
+        newInstance.projection = new JsonProjection(paths);
+        return newInstance;
+    }
+
+    /**
+     * Specifies the number of milliseconds determining how fresh the retrieved data has to be:
+     * the server always computes predicate queries on current data, but connections with a query cache
+     * can answer identical queries with results up to this old.
+     *
+     * @param timeToLive Time to live in milliseconds
+     */
+    public PredicateOperation timeToLive(long timeToLive) {
+        PredicateOperation newInstance = new PredicateOperation(this);
+        newInstance.timeToLive = timeToLive;
+        return newInstance;
+    }
+
     /**
      * Retrieves a Map of all keys/values matching the specified predicate.
      * 
@@ -61,5 +96,13 @@ public class PredicateOperation extends AbstractOperation {
         public String getPredicate() {
             return predicate;
         }
+
+        public JsonProjection getProjection() {
+            return projection;
+        }
+
+        public long getTimeToLive() {
+            return timeToLive;
+        }
     }
 }
@@ -18,6 +18,7 @@ package terrastore.client;
 import java.util.Set;
 
 import terrastore.client.connection.Connection;
+import terrastore.client.mapping.JsonProjection;
 
 /**
  * @author Sven Johansson
@@ -33,6 +34,8 @@ public class RangeOperation extends AbstractOperation {
     private volatile String predicate;
     private volatile int limit;
     private volatile long timeToLive;
+    private volatile boolean compact;
+    private volatile JsonProjection projection;
 
     RangeOperation(Connection connection, String bucket) {
         this(connection, bucket, null);
@@ -53,6 +56,8 @@ public class RangeOperation extends AbstractOperation {
         this.limit = other.limit;
         this.predicate = other.predicate;
         this.timeToLive = other.timeToLive;
+        this.compact = other.compact;
+        this.projection = other.projection;
     }
 
     /**
@@ -112,6 +117,30 @@ public class RangeOperation extends AbstractOperation {
         return newInstance;
     }
 
+    /**
+     * Specifies that results must be returned as {@link CompactValues}, which take far less
+     * memory than default {@link Values} for large ranges, and are pre-sized from the limit (if any).
+     */
+    public RangeOperation compact() {
+        RangeOperation newInstance = new RangeOperation(this);
+        newInstance.compact = true;
+        return newInstance;
+    }
+
+    /**
+     * Specifies the fields to retrieve, as dotted JSON paths such as "name" or "address.city":
+     * all other fields are skipped while reading results, without being materialized.<br>
+     * Projected values can be read either into a generic Map, or into a class declaring
+     * (at least) the projected fields.
+     *
+     * @param paths The JSON paths of the fields to retrieve.
+     */
+    public RangeOperation project(String... paths) {
+        RangeOperation newInstance = new RangeOperation(this);
+        newInstance.projection = new JsonProjection(paths);
+        return newInstance;
+    }
+
     /**
      * Executes this RangeOperation and returns values from the specified range
      * selection.
@@ -158,5 +187,13 @@ public class RangeOperation extends AbstractOperation {
         public String getPredicate() {
             return predicate;
         }
+
+        public boolean isCompact() {
+            return compact;
+        }
+
+        public JsonProjection getProjection() {
+            return projection;
+        }
     }
 }
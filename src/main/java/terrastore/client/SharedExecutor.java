@@ -0,0 +1,38 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executor of client-side parallel operations, such as bulk loads, used when callers don't provide their own:
+ * it's a cached pool of daemon threads, shared by all clients and never shut down, whose threads expire
+ * after a minute of inactivity.
+ *
+ * @author Sergio Bossa
+ */
+class SharedExecutor {
+
+    private static final ExecutorService INSTANCE = Executors.newCachedThreadPool(new DaemonThreadFactory("terrastore-client"));
+
+    private SharedExecutor() {
+    }
+
+    static ExecutorService get() {
+        return INSTANCE;
+    }
+}
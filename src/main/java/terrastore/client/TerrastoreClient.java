@@ -15,8 +15,15 @@
  */
 package terrastore.client;
 
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.WeakHashMap;
 
 import terrastore.client.connection.Connection;
 import terrastore.client.connection.ConnectionFactory;
@@ -42,6 +49,9 @@ import terrastore.client.mapping.JsonObjectDescriptor;
  */
 public class TerrastoreClient {
 
+    // Generated descriptors hold their classes, so they're softly referenced in order not to pin class loaders:
+    private static final Map<ClassLoader, Reference<List<JsonObjectDescriptor<?>>>> GENERATED_DESCRIPTORS = new WeakHashMap<ClassLoader, Reference<List<JsonObjectDescriptor<?>>>>();
+    //
     private final Connection connection;
 
     /**
@@ -75,7 +85,7 @@ public class TerrastoreClient {
             throw new IllegalArgumentException(
                     "Cannot establish connection to null server URL");
         }
-        this.connection = connectionFactory.makeConnection(new SingleHostManager(serverHost), descriptors);
+        this.connection = connectionFactory.makeConnection(new SingleHostManager(serverHost), withGeneratedDescriptors(descriptors));
     }
     
     /**
@@ -103,7 +113,7 @@ public class TerrastoreClient {
      * @throws TerrastoreClientException If the provided arguments are invalid.
      */
     public TerrastoreClient(HostManager hostManager, ConnectionFactory connectionFactory, List<JsonObjectDescriptor<?>> descriptors) throws TerrastoreClientException {
-        this.connection = connectionFactory.makeConnection(hostManager, descriptors);
+        this.connection = connectionFactory.makeConnection(hostManager, withGeneratedDescriptors(descriptors));
     }
 
     /**
@@ -135,4 +145,37 @@ public class TerrastoreClient {
     public StatsOperation stats() {
         return new StatsOperation(connection);
     }
+
+    /**
+     * Prepend descriptors generated for {@link terrastore.client.mapping.JsonDocument} classes, and found
+     * in the context class loader, to the given ones, which so take precedence.
+     */
+    private static List<JsonObjectDescriptor<?>> withGeneratedDescriptors(List<JsonObjectDescriptor<?>> descriptors) throws TerrastoreClientException {
+        List<JsonObjectDescriptor<?>> result = new ArrayList<JsonObjectDescriptor<?>>(generatedDescriptors(Thread.currentThread().getContextClassLoader()));
+        result.addAll(descriptors);
+        return result;
+    }
+
+    /**
+     * Look up descriptors generated for the given class loader only once, rather than scanning it for every client.
+     */
+    private static List<JsonObjectDescriptor<?>> generatedDescriptors(ClassLoader classLoader) throws TerrastoreClientException {
+        synchronized (GENERATED_DESCRIPTORS) {
+            Reference<List<JsonObjectDescriptor<?>>> cached = GENERATED_DESCRIPTORS.get(classLoader);
+            List<JsonObjectDescriptor<?>> generated = cached != null ? cached.get() : null;
+            if (generated == null) {
+                try {
+                    generated = new ArrayList<JsonObjectDescriptor<?>>();
+                    for (JsonObjectDescriptor<?> descriptor : ServiceLoader.load(JsonObjectDescriptor.class, classLoader)) {
+                        generated.add(descriptor);
+                    }
+                    generated = Collections.unmodifiableList(generated);
+                    GENERATED_DESCRIPTORS.put(classLoader, new SoftReference<List<JsonObjectDescriptor<?>>>(generated));
+                } catch (ServiceConfigurationError error) {
+                    throw new TerrastoreClientException("Cannot load generated JSON descriptors: " + error.getMessage(), error);
+                }
+            }
+            return generated;
+        }
+    }
 }
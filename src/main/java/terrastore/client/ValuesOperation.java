@@ -27,6 +27,7 @@ public class ValuesOperation extends AbstractOperation {
     private final String bucket;
 
     private volatile int limit;
+    private volatile boolean compact;
 
     ValuesOperation(Connection connection, String bucket) {
         super(connection);
@@ -40,6 +41,7 @@ public class ValuesOperation extends AbstractOperation {
         super(other.connection);
         this.bucket = other.bucket;
         this.limit = other.limit;
+        this.compact = other.compact;
     }
 
     /**
@@ -54,6 +56,16 @@ public class ValuesOperation extends AbstractOperation {
         return newInstance;
     }
 
+    /**
+     * Specifies that results must be returned as {@link CompactValues}, which take far less
+     * memory than default {@link Values} for large buckets, and are pre-sized from the limit (if any).
+     */
+    public ValuesOperation compact() {
+        ValuesOperation newInstance = new ValuesOperation(this);
+        newInstance.compact = true;
+        return newInstance;
+    }
+
     /**
      * Retrieves all values contained in the current bucket, or as many
      * as permitted by the limit-method.
@@ -76,5 +88,9 @@ public class ValuesOperation extends AbstractOperation {
         public int getLimit() {
             return limit;
         }
+
+        public boolean isCompact() {
+            return compact;
+        }
     }
 }
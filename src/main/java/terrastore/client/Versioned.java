@@ -0,0 +1,32 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client;
+
+/**
+ * Document carrying a version number, to be cached and revalidated by a {@link NearCacheSession}.<br>
+ * The version must be mapped to a JSON number, by default through the "version" property implied by its accessors.
+ *
+ * @author Sergio Bossa
+ */
+public interface Versioned {
+
+    public long getVersion();
+
+    /**
+     * Get a copy of this document with the given version, leaving this one unchanged.
+     */
+    public Versioned withVersion(long version);
+}
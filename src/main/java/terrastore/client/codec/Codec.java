@@ -0,0 +1,42 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.codec;
+
+import javax.ws.rs.core.MediaType;
+import org.codehaus.jackson.JsonFactory;
+
+/**
+ * Wire encoding of documents exchanged with Terrastore servers.<br>
+ * Codecs are just differently encoded JSON, so all {@link terrastore.client.mapping.JsonObjectDescriptor}s
+ * work regardless of the codec in use: the codec is advertised through the Content-Type of requests,
+ * while responses are decoded with the codec matching their own Content-Type.<br>
+ * Connection readers and writers currently handle the application/json and application/x-jackson-smile media types.
+ *
+ * @author Sergio Bossa
+ */
+public interface Codec {
+
+    /**
+     * Get the media type identifying this codec.
+     */
+    public MediaType getMediaType();
+
+    /**
+     * Create a new JSON factory producing parsers and generators for this codec:
+     * it will be owned by the caller, so a new one must be created at every call.
+     */
+    public JsonFactory createJsonFactory();
+}
@@ -0,0 +1,37 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.codec;
+
+import javax.ws.rs.core.MediaType;
+import org.codehaus.jackson.JsonFactory;
+
+/**
+ * Plain text JSON codec: this is the default one, supported by all Terrastore servers.
+ *
+ * @author Sergio Bossa
+ */
+public class JsonCodec implements Codec {
+
+    @Override
+    public MediaType getMediaType() {
+        return MediaType.APPLICATION_JSON_TYPE;
+    }
+
+    @Override
+    public JsonFactory createJsonFactory() {
+        return new JsonFactory();
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection;
+
+import terrastore.client.TerrastoreClientException;
+
+/**
+ * Intercepts {@link Connection} operations, to observe, decorate or short-circuit them.<br>
+ * Interceptors are chained in order: each one gets the {@link Invocation} of the operation, and usually calls
+ * {@link Invocation#proceed()} to go on with the next interceptor and finally with the actual operation;
+ * returning without proceeding short-circuits the operation with the returned value instead.
+ *
+ * @author Sergio Bossa
+ */
+public interface ConnectionInterceptor {
+
+    /**
+     * Intercept the given operation.
+     *
+     * @param invocation The operation invocation.
+     * @return The operation result, or null for operations returning nothing.
+     * @throws TerrastoreClientException The operation failure.
+     */
+    public Object intercept(Invocation invocation) throws TerrastoreClientException;
+}
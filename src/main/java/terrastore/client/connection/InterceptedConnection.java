@@ -0,0 +1,276 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection;
+
+import java.util.List;
+import java.util.Set;
+import terrastore.client.BackupOperation;
+import terrastore.client.BulkOperation;
+import terrastore.client.ClusterStats;
+import terrastore.client.ConditionalOperation;
+import terrastore.client.KeyOperation;
+import terrastore.client.PredicateOperation;
+import terrastore.client.RangeOperation;
+import terrastore.client.TerrastoreClientException;
+import terrastore.client.UpdateOperation;
+import terrastore.client.Values;
+import terrastore.client.ValuesOperation;
+import terrastore.client.mapreduce.MapReduceOperation;
+import terrastore.client.merge.MergeOperation;
+
+/**
+ * {@link Connection} decorator passing each operation through an ordered chain of {@link ConnectionInterceptor}s,
+ * the first one being the outermost.
+ *
+ * @author Sergio Bossa
+ */
+public class InterceptedConnection implements Connection {
+
+    private final Connection delegate;
+    private final ConnectionInterceptor[] interceptors;
+
+    public InterceptedConnection(Connection delegate, List<ConnectionInterceptor> interceptors) {
+        this.delegate = delegate;
+        this.interceptors = interceptors.toArray(new ConnectionInterceptor[interceptors.size()]);
+    }
+
+    public Connection getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public ClusterStats getClusterStats() throws TerrastoreClientException {
+        return result(new Invocation(interceptors, delegate, "getClusterStats", null, null, null, null) {
+
+            @Override
+            Object execute(Connection connection) {
+                return connection.getClusterStats();
+            }
+        });
+    }
+
+    @Override
+    public void clearBucket(final String bucket) throws TerrastoreClientException {
+        new Invocation(interceptors, delegate, "clearBucket", bucket, bucket, null, null) {
+
+            @Override
+            Object execute(Connection connection) {
+                connection.clearBucket(bucket);
+                return null;
+            }
+        }.proceed();
+    }
+
+    @Override
+    public Set<String> getBuckets() throws TerrastoreClientException {
+        return result(new Invocation(interceptors, delegate, "getBuckets", null, null, null, null) {
+
+            @Override
+            Object execute(Connection connection) {
+                return connection.getBuckets();
+            }
+        });
+    }
+
+    @Override
+    public <T> void putValue(final KeyOperation.Context context, final T value) throws TerrastoreClientException {
+        new Invocation(interceptors, delegate, "putValue", context.getBucket(), context, value, null) {
+
+            @Override
+            Object execute(Connection connection) {
+                connection.putValue(context, value);
+                return null;
+            }
+        }.proceed();
+    }
+
+    @Override
+    public <T> void putValue(final ConditionalOperation.Context context, final T value) throws TerrastoreClientException {
+        new Invocation(interceptors, delegate, "conditionalPutValue", context.getBucket(), context, value, null) {
+
+            @Override
+            Object execute(Connection connection) {
+                connection.putValue(context, value);
+                return null;
+            }
+        }.proceed();
+    }
+
+    @Override
+    public void removeValue(final KeyOperation.Context context) throws TerrastoreClientException {
+        new Invocation(interceptors, delegate, "removeValue", context.getBucket(), context, null, null) {
+
+            @Override
+            Object execute(Connection connection) {
+                connection.removeValue(context);
+                return null;
+            }
+        }.proceed();
+    }
+
+    @Override
+    public <T> T getValue(final KeyOperation.Context context, final Class<T> type) throws TerrastoreClientException {
+        return result(new Invocation(interceptors, delegate, "getValue", context.getBucket(), context, null, type) {
+
+            @Override
+            Object execute(Connection connection) {
+                return connection.getValue(context, type);
+            }
+        });
+    }
+
+    @Override
+    public <T> T getValue(final ConditionalOperation.Context context, final Class<T> type) throws TerrastoreClientException {
+        return result(new Invocation(interceptors, delegate, "conditionalGetValue", context.getBucket(), context, null, type) {
+
+            @Override
+            Object execute(Connection connection) {
+                return connection.getValue(context, type);
+            }
+        });
+    }
+
+    @Override
+    public <T> Values<T> getAllValues(final ValuesOperation.Context context, final Class<T> type) throws TerrastoreClientException {
+        return result(new Invocation(interceptors, delegate, "getAllValues", context.getBucket(), context, null, type) {
+
+            @Override
+            Object execute(Connection connection) {
+                return connection.getAllValues(context, type);
+            }
+        });
+    }
+
+    @Override
+    public <T> Values<T> queryByRange(final RangeOperation.Context context, final Class<T> type) throws TerrastoreClientException {
+        return result(new Invocation(interceptors, delegate, "queryByRange", context.getBucket(), context, null, type) {
+
+            @Override
+            Object execute(Connection connection) {
+                return connection.queryByRange(context, type);
+            }
+        });
+    }
+
+    @Override
+    public Set<String> removeByRange(final RangeOperation.Context context) throws TerrastoreClientException {
+        return result(new Invocation(interceptors, delegate, "removeByRange", context.getBucket(), context, null, null) {
+
+            @Override
+            Object execute(Connection connection) {
+                return connection.removeByRange(context);
+            }
+        });
+    }
+
+    @Override
+    public <T> Values<T> queryByPredicate(final PredicateOperation.Context context, final Class<T> type) throws TerrastoreClientException {
+        return result(new Invocation(interceptors, delegate, "queryByPredicate", context.getBucket(), context, null, type) {
+
+            @Override
+            Object execute(Connection connection) {
+                return connection.queryByPredicate(context, type);
+            }
+        });
+    }
+
+    @Override
+    public <T> T queryByMapReduce(final MapReduceOperation.Context context, final Class<T> returnType) throws TerrastoreClientException {
+        return result(new Invocation(interceptors, delegate, "queryByMapReduce", context.getBucket(), context, null, returnType) {
+
+            @Override
+            Object execute(Connection connection) {
+                return connection.queryByMapReduce(context, returnType);
+            }
+        });
+    }
+
+    @Override
+    public void exportBackup(final BackupOperation.Context context) throws TerrastoreClientException {
+        new Invocation(interceptors, delegate, "exportBackup", context.getBucket(), context, null, null) {
+
+            @Override
+            Object execute(Connection connection) {
+                connection.exportBackup(context);
+                return null;
+            }
+        }.proceed();
+    }
+
+    @Override
+    public void importBackup(final BackupOperation.Context context) throws TerrastoreClientException {
+        new Invocation(interceptors, delegate, "importBackup", context.getBucket(), context, null, null) {
+
+            @Override
+            Object execute(Connection connection) {
+                connection.importBackup(context);
+                return null;
+            }
+        }.proceed();
+    }
+
+    @Override
+    public <T> T executeUpdate(final UpdateOperation.Context context, final Class<T> type) throws TerrastoreClientException {
+        return result(new Invocation(interceptors, delegate, "executeUpdate", context.getBucket(), context, null, type) {
+
+            @Override
+            Object execute(Connection connection) {
+                return connection.executeUpdate(context, type);
+            }
+        });
+    }
+
+    @Override
+    public <T> T executeMerge(final MergeOperation.Context context, final Class<T> type) throws TerrastoreClientException {
+        return result(new Invocation(interceptors, delegate, "executeMerge", context.getBucket(), context, null, type) {
+
+            @Override
+            Object execute(Connection connection) {
+                return connection.executeMerge(context, type);
+            }
+        });
+    }
+
+    @Override
+    public Set<String> bulkPut(final BulkOperation.Context context) throws TerrastoreClientException {
+        return result(new Invocation(interceptors, delegate, "bulkPut", context.getBucket(), context, null, null) {
+
+            @Override
+            Object execute(Connection connection) {
+                return connection.bulkPut(context);
+            }
+        });
+    }
+
+    @Override
+    public <T> Values<T> bulkGet(final BulkOperation.Context context, final Class<T> type) throws TerrastoreClientException {
+        return result(new Invocation(interceptors, delegate, "bulkGet", context.getBucket(), context, null, type) {
+
+            @Override
+            Object execute(Connection connection) {
+                return connection.bulkGet(context, type);
+            }
+        });
+    }
+
+    /**
+     * Proceed with the given invocation, casting its result to the type returned by the intercepted operation.
+     */
+    @SuppressWarnings("unchecked")
+    private static <R> R result(Invocation invocation) {
+        return (R) invocation.proceed();
+    }
+}
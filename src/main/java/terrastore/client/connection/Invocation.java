@@ -0,0 +1,187 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import terrastore.client.TerrastoreClientException;
+
+/**
+ * Invocation of a {@link Connection} operation going through a chain of {@link ConnectionInterceptor}s.<br>
+ * Operations are named after the connection method executing them, as in {@link terrastore.client.metrics.MeteredConnection},
+ * and come with their context object: that is, the operation specific <code>Context</code>, or the bucket name
+ * for "clearBucket", or nothing for "getBuckets" and "getClusterStats".<br>
+ * Transports fill in the last host the operation has been sent to and its response status, the number of bytes sent and
+ * received over the wire, and the time spent serializing requests, waiting for pooled connections and deserializing responses,
+ * so those are available after proceeding; they also send any additional headers set before proceeding.
+ * Invocations can be proceeded more than once, i.e. to retry, in which case counts and times add up.
+ *
+ * @author Sergio Bossa
+ */
+public abstract class Invocation {
+
+    private static final ThreadLocal<Invocation> CURRENT = new ThreadLocal<Invocation>();
+    //
+    private final ConnectionInterceptor[] interceptors;
+    private final Connection connection;
+    private final String operation;
+    private final String bucket;
+    private final Object context;
+    private final Object value;
+    private final Class<?> type;
+    private final Map<String, String> headers = new LinkedHashMap<String, String>();
+    private int position;
+    private volatile String host;
+    private volatile int status;
+    private volatile long requestBytes;
+    private volatile long responseBytes;
+    private volatile long poolWaitNanos;
+    private volatile long serializationNanos;
+    private volatile long deserializationNanos;
+
+    Invocation(ConnectionInterceptor[] interceptors, Connection connection, String operation, String bucket, Object context, Object value, Class<?> type) {
+        this.interceptors = interceptors;
+        this.connection = connection;
+        this.operation = operation;
+        this.bucket = bucket;
+        this.context = context;
+        this.value = value;
+        this.type = type;
+    }
+
+    /**
+     * Get the invocation whose operation is being executed by the current thread, if any.
+     */
+    public static Invocation current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Proceed with the next interceptor, or execute the operation if there are no more.
+     *
+     * @return The operation result, or null for operations returning nothing.
+     * @throws TerrastoreClientException The operation failure.
+     */
+    public Object proceed() throws TerrastoreClientException {
+        int current = position;
+        try {
+            if (current < interceptors.length) {
+                position = current + 1;
+                return interceptors[current].intercept(this);
+            } else {
+                Invocation previous = CURRENT.get();
+                CURRENT.set(this);
+                try {
+                    return execute(connection);
+                } finally {
+                    CURRENT.set(previous);
+                }
+            }
+        } finally {
+            position = current;
+        }
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * Get the bucket name, or null for operations not related to any bucket.
+     */
+    public String getBucket() {
+        return bucket;
+    }
+
+    public Object getContext() {
+        return context;
+    }
+
+    /**
+     * Get the value to write, for put operations.
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    /**
+     * Get the Java type of the result, for operations reading values.
+     */
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * Set an additional request header to send with the operation.
+     */
+    public synchronized void setHeader(String name, String value) {
+        headers.put(name, value);
+    }
+
+    public synchronized Map<String, String> getHeaders() {
+        return Collections.unmodifiableMap(new LinkedHashMap<String, String>(headers));
+    }
+
+    /**
+     * Get the last host the operation has been sent to, or null if not sent yet.
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * Get the status of the last response, or 0 if there's no response.
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    public long getPoolWaitNanos() {
+        return poolWaitNanos;
+    }
+
+    public long getSerializationNanos() {
+        return serializationNanos;
+    }
+
+    public long getDeserializationNanos() {
+        return deserializationNanos;
+    }
+
+    /**
+     * Record a request executed by the transport on behalf of this invocation, with 0 status if failed without response.
+     */
+    public synchronized void requestExecuted(String host, int status, long sentBytes, long receivedBytes, long poolWaitNanos, long serializationNanos, long deserializationNanos) {
+        this.host = host;
+        this.status = status;
+        this.requestBytes += sentBytes;
+        this.responseBytes += receivedBytes;
+        this.poolWaitNanos += poolWaitNanos;
+        this.serializationNanos += serializationNanos;
+        this.deserializationNanos += deserializationNanos;
+    }
+
+    abstract Object execute(Connection connection) throws TerrastoreClientException;
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * {@link HostManager} whose state can be inspected and repaired at runtime, i.e. through JMX.
+ *
+ * @author Sergio Bossa
+ */
+public interface ManagedHostManager extends HostManager {
+
+    /**
+     * Get all managed Terrastore server hosts, in the order they're currently used.
+     *
+     * @return The list of managed hosts.
+     */
+    public List<String> getHosts();
+
+    /**
+     * Get the Terrastore server hosts currently marked as "suspected".
+     *
+     * @return The set of suspected hosts.
+     */
+    public Set<String> getSuspectedHosts();
+
+    /**
+     * Clear the "suspected" mark from the given Terrastore server host, making it eligible again as if it never failed.
+     *
+     * @param host The Terrastore server host to clear.
+     */
+    public void unsuspect(String host);
+}
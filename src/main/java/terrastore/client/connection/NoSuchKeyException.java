@@ -29,5 +29,27 @@ public class NoSuchKeyException extends TerrastoreRequestException {
         super(message);
     }
 
+    /**
+     * Make an exception without stack trace, cheap enough to signal an expected outcome.<br>
+     * Make a new one for each throw rather than sharing it: exceptions are mutable (causes, suppressed exceptions).
+     */
+    public static NoSuchKeyException stackless(ErrorMessage message) {
+        return new Stackless(message);
+    }
+
+    private static class Stackless extends NoSuchKeyException {
+
+        private static final long serialVersionUID = 6113478305961209842L;
+
+        public Stackless(ErrorMessage message) {
+            super(message);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
     
 }
@@ -15,22 +15,30 @@
  */
 package terrastore.client.connection;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * {@link HostManager} implementation managing an ordered list of Terrastore server hosts.<br/>
  * It always gets the first working connection in the list: in case of failure, the connection is moved at the end of the list and the
- * next one is used.
+ * next one is used.<br/>
+ * Un-suspecting a host moves it back to its original position, ahead of all hosts still suspected.
  *
  * @author Sergio Bossa
  */
-public class OrderedHostManager implements HostManager {
+public class OrderedHostManager implements ManagedHostManager {
 
+    private final List<String> order;
     private final List<String> hosts;
+    private final Set<String> suspected;
 
     public OrderedHostManager(List<String> hosts) {
+        this.order = new ArrayList<String>(hosts);
         this.hosts = new LinkedList<String>(hosts);
+        this.suspected = new LinkedHashSet<String>();
     }
 
     @Override
@@ -42,6 +50,32 @@ public class OrderedHostManager implements HostManager {
     public synchronized void suspect(String suspected) {
         if (hosts.contains(suspected)) {
             moveToEndOfList(suspected);
+            this.suspected.add(suspected);
+        }
+    }
+
+    @Override
+    public synchronized List<String> getHosts() {
+        return new ArrayList<String>(hosts);
+    }
+
+    @Override
+    public synchronized Set<String> getSuspectedHosts() {
+        return new LinkedHashSet<String>(suspected);
+    }
+
+    @Override
+    public synchronized void unsuspect(String host) {
+        if (suspected.remove(host)) {
+            List<String> stillSuspected = new ArrayList<String>(hosts);
+            stillSuspected.retainAll(suspected);
+            hosts.clear();
+            for (String candidate : order) {
+                if (!suspected.contains(candidate)) {
+                    hosts.add(candidate);
+                }
+            }
+            hosts.addAll(stillSuspected);
         }
     }
 
@@ -0,0 +1,109 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link HostManager} implementation spreading requests over a list of Terrastore server hosts in round-robin order.<br/>
+ * Suspected hosts are skipped until the configured suspicion time elapses, unless all hosts are suspected: in such a case,
+ * rotation goes on over the whole list.
+ *
+ * @author Sergio Bossa
+ */
+public class RoundRobinHostManager implements ManagedHostManager {
+
+    private static final long DEFAULT_SUSPICION_TIME = 5000;
+    //
+    private final List<String> hosts;
+    private final Map<String, Long> suspected;
+    private final long suspicionTime;
+    private int next;
+
+    public RoundRobinHostManager(List<String> hosts) {
+        this(hosts, DEFAULT_SUSPICION_TIME);
+    }
+
+    /**
+     * @param hosts The list of hosts to rotate over.
+     * @param suspicionTime The number of milliseconds a suspected host is kept out of rotation.
+     */
+    public RoundRobinHostManager(List<String> hosts, long suspicionTime) {
+        if (hosts.isEmpty()) {
+            throw new IllegalArgumentException("At least one host must be provided.");
+        }
+        this.hosts = new ArrayList<String>(hosts);
+        this.suspected = new HashMap<String, Long>();
+        this.suspicionTime = suspicionTime;
+    }
+
+    @Override
+    public synchronized String getHost() {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < hosts.size(); i++) {
+            String candidate = nextInRotation();
+            Long suspectedAt = suspected.get(candidate);
+            if (suspectedAt == null) {
+                return candidate;
+            } else if (now - suspectedAt >= suspicionTime) {
+                suspected.remove(candidate);
+                return candidate;
+            }
+        }
+        return nextInRotation();
+    }
+
+    @Override
+    public synchronized void suspect(String host) {
+        if (hosts.contains(host)) {
+            suspected.put(host, System.currentTimeMillis());
+        }
+    }
+
+    @Override
+    public synchronized List<String> getHosts() {
+        return new ArrayList<String>(hosts);
+    }
+
+    @Override
+    public synchronized Set<String> getSuspectedHosts() {
+        long now = System.currentTimeMillis();
+        Set<String> result = new LinkedHashSet<String>();
+        for (String host : hosts) {
+            Long suspectedAt = suspected.get(host);
+            if (suspectedAt != null && now - suspectedAt < suspicionTime) {
+                result.add(host);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void unsuspect(String host) {
+        suspected.remove(host);
+    }
+
+    private String nextInRotation() {
+        String host = hosts.get(next);
+        next = (next + 1) % hosts.size();
+        return host;
+    }
+}
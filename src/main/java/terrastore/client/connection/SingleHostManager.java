@@ -15,13 +15,17 @@
  */
 package terrastore.client.connection;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
 /**
  * {@link HostManager} implementation managing a single Terrastore server host, always used
  * whether if successful or unsuccessful.
  *
  * @author Sergio Bossa
  */
-public class SingleHostManager implements HostManager {
+public class SingleHostManager implements ManagedHostManager {
 
     private final String host;
 
@@ -37,4 +41,18 @@ public class SingleHostManager implements HostManager {
     @Override
     public void suspect(String host) {
     }
+
+    @Override
+    public List<String> getHosts() {
+        return Collections.singletonList(host);
+    }
+
+    @Override
+    public Set<String> getSuspectedHosts() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public void unsuspect(String host) {
+    }
 }
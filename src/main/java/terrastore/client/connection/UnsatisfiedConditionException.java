@@ -29,4 +29,25 @@ public class UnsatisfiedConditionException extends TerrastoreRequestException {
         super(message);
     }
 
+    /**
+     * Make an exception without stack trace: see {@link NoSuchKeyException#stackless(ErrorMessage)}.
+     */
+    public static UnsatisfiedConditionException stackless(ErrorMessage message) {
+        return new Stackless(message);
+    }
+
+    private static class Stackless extends UnsatisfiedConditionException {
+
+        private static final long serialVersionUID = -2405187962234971270L;
+
+        public Stackless(ErrorMessage message) {
+            super(message);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
 }
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection.memory;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.codehaus.jackson.JsonNode;
+import terrastore.client.TerrastoreRequestException;
+import terrastore.client.connection.ErrorMessage;
+
+/**
+ * Subset of jxpath conditions evaluated in memory: /path, to check that a value exists at the given path,
+ * and /path[. op literal], to compare it with a quoted string or number literal, where op is one of
+ * =, !=, &lt;, &lt;=, &gt;, &gt;=.<br>
+ * Other conditions are rejected with a {@link TerrastoreRequestException}, as bad requests.
+ *
+ * @author Sergio Bossa
+ */
+class Condition {
+
+    private static final Pattern JXPATH = Pattern.compile("jxpath:(/[^\\[]+)(?:\\[\\s*\\.\\s*(=|!=|<=|>=|<|>)\\s*(.+?)\\s*\\])?");
+    //
+    private final String[] path;
+    private final String operator;
+    private final String literal;
+    private final boolean quoted;
+
+    private Condition(String[] path, String operator, String literal) {
+        this.path = path;
+        this.operator = operator;
+        this.quoted = literal != null && literal.length() > 1 && (literal.charAt(0) == '\'' || literal.charAt(0) == '"');
+        this.literal = quoted ? literal.substring(1, literal.length() - 1) : literal;
+    }
+
+    public static Condition parse(String predicate) throws TerrastoreRequestException {
+        Matcher matcher = JXPATH.matcher(predicate);
+        if (matcher.matches()) {
+            Condition condition = new Condition(matcher.group(1).substring(1).split("/"), matcher.group(2), matcher.group(3));
+            if (condition.operator == null || condition.quoted || isNumber(condition.literal)) {
+                return condition;
+            }
+        }
+        throw new TerrastoreRequestException(new ErrorMessage("Unsupported predicate: " + predicate, 400));
+    }
+
+    public boolean isSatisfiedBy(JsonNode value) {
+        JsonNode node = value;
+        for (int i = 0; node != null && i < path.length; i++) {
+            node = node.get(path[i]);
+        }
+        if (node == null) {
+            return false;
+        } else if (operator == null) {
+            return true;
+        } else if (quoted) {
+            return node.isValueNode() && compares(node.getValueAsText().compareTo(literal));
+        } else {
+            return node.isNumber() && compares(Double.compare(node.getDoubleValue(), Double.parseDouble(literal)));
+        }
+    }
+
+    private boolean compares(int comparison) {
+        if (operator.equals("=")) {
+            return comparison == 0;
+        } else if (operator.equals("!=")) {
+            return comparison != 0;
+        } else if (operator.equals("<")) {
+            return comparison < 0;
+        } else if (operator.equals("<=")) {
+            return comparison <= 0;
+        } else if (operator.equals(">")) {
+            return comparison > 0;
+        } else {
+            return comparison >= 0;
+        }
+    }
+
+    private static boolean isNumber(String literal) {
+        try {
+            Double.parseDouble(literal);
+            return true;
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+}
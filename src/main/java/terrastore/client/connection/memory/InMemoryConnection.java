@@ -0,0 +1,495 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection.memory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.io.JsonStringEncoder;
+import org.codehaus.jackson.map.ObjectMapper;
+import terrastore.client.BackupOperation;
+import terrastore.client.BulkOperation;
+import terrastore.client.ClusterStats;
+import terrastore.client.ConditionalOperation;
+import terrastore.client.KeyOperation;
+import terrastore.client.PredicateOperation;
+import terrastore.client.RangeOperation;
+import terrastore.client.TerrastoreClientException;
+import terrastore.client.TerrastoreRequestException;
+import terrastore.client.UpdateOperation;
+import terrastore.client.Values;
+import terrastore.client.ValuesOperation;
+import terrastore.client.connection.Connection;
+import terrastore.client.connection.ErrorMessage;
+import terrastore.client.connection.MapReduceQueryException;
+import terrastore.client.connection.NoSuchKeyException;
+import terrastore.client.connection.UnsatisfiedConditionException;
+import terrastore.client.mapping.JsonMappingEngine;
+import terrastore.client.mapping.JsonObjectReader;
+import terrastore.client.mapping.JsonValuesReader;
+import terrastore.client.mapping.ValuesType;
+import terrastore.client.mapreduce.MapReduceOperation;
+import terrastore.client.merge.MergeDescriptor;
+import terrastore.client.merge.MergeOperation;
+
+/**
+ * {@link Connection} keeping buckets in concurrent sorted maps in memory, made by {@link InMemoryConnectionFactory}.<br>
+ * Documents are stored encoded as JSON and decoded by the same readers used for server responses, so the client
+ * pays mapping costs as usual, and failures are signalled by the same exceptions, with the same status codes,
+ * that the {@link terrastore.client.connection.resteasy.ExceptionTranslator} produces out of server errors.<br>
+ * Range queries support the "lexical-asc" (default), "lexical-desc", "numeric-asc" and "numeric-desc" comparators,
+ * and conditions are limited to jxpath existence checks and comparisons, such as "jxpath:/name[. = 'Sergio']",
+ * with conditional puts of missing keys always succeeding; update functions must be registered with the factory,
+ * and map-reduce queries are not supported at all.
+ *
+ * @author Sergio Bossa
+ */
+public class InMemoryConnection implements Connection {
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+    private static final Comparator<String> NUMERIC_ASC = new Comparator<String>() {
+
+        @Override
+        public int compare(String first, String second) {
+            Double firstNumber = toNumber(first);
+            Double secondNumber = toNumber(second);
+            if (firstNumber != null && secondNumber != null) {
+                int comparison = firstNumber.compareTo(secondNumber);
+                return comparison != 0 ? comparison : first.compareTo(second);
+            } else if (firstNumber != null) {
+                return -1;
+            } else if (secondNumber != null) {
+                return 1;
+            } else {
+                return first.compareTo(second);
+            }
+        }
+    };
+    private static final Comparator<String> NUMERIC_DESC = Collections.reverseOrder(NUMERIC_ASC);
+    //
+    private final ConcurrentMap<String, ConcurrentSkipListMap<String, byte[]>> buckets;
+    private final Map<String, UpdateFunction> functions;
+    private final JsonMappingEngine jsonEngine;
+    private final JsonObjectReader objectReader;
+    private final JsonValuesReader valuesReader;
+
+    InMemoryConnection(ConcurrentMap<String, ConcurrentSkipListMap<String, byte[]>> buckets, Map<String, UpdateFunction> functions, JsonMappingEngine jsonEngine) {
+        this.buckets = buckets;
+        this.functions = functions;
+        this.jsonEngine = jsonEngine;
+        this.objectReader = new JsonObjectReader(jsonEngine);
+        this.valuesReader = new JsonValuesReader(jsonEngine);
+    }
+
+    @Override
+    public ClusterStats getClusterStats() throws TerrastoreClientException {
+        ClusterStats.Node node = new ClusterStats.Node("memory", "localhost", 0);
+        return new ClusterStats(Collections.singleton(new ClusterStats.Cluster("memory", Collections.singleton(node))));
+    }
+
+    @Override
+    public void clearBucket(String bucket) throws TerrastoreClientException {
+        buckets.remove(bucket);
+    }
+
+    @Override
+    public Set<String> getBuckets() throws TerrastoreClientException {
+        return new HashSet<String>(buckets.keySet());
+    }
+
+    @Override
+    public <T> void putValue(KeyOperation.Context context, T value) throws TerrastoreClientException {
+        bucketForWrite(context.getBucket()).put(context.getKey(), encode(value));
+    }
+
+    @Override
+    public <T> void putValue(ConditionalOperation.Context context, T value) throws TerrastoreClientException {
+        Condition condition = Condition.parse(context.getPredicate());
+        byte[] encoded = encode(value);
+        ConcurrentSkipListMap<String, byte[]> bucket = bucketForWrite(context.getBucket());
+        while (true) {
+            byte[] current = bucket.get(context.getKey());
+            if (current == null) {
+                if (bucket.putIfAbsent(context.getKey(), encoded) == null) {
+                    return;
+                }
+            } else if (!condition.isSatisfiedBy(toTree(current))) {
+                throw new UnsatisfiedConditionException(new ErrorMessage("Unsatisfied condition: " + context.getPredicate(), 409));
+            } else if (bucket.replace(context.getKey(), current, encoded)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void removeValue(KeyOperation.Context context) throws TerrastoreClientException {
+        bucket(context.getBucket()).remove(context.getKey());
+    }
+
+    @Override
+    public <T> T getValue(KeyOperation.Context context, Class<T> type) throws TerrastoreClientException {
+        byte[] value = bucket(context.getBucket()).get(context.getKey());
+        if (value != null) {
+            return decode(value, type);
+        } else {
+            throw new NoSuchKeyException(new ErrorMessage("Key not found: " + context.getKey(), 404));
+        }
+    }
+
+    @Override
+    public <T> T getValue(ConditionalOperation.Context context, Class<T> type) throws TerrastoreClientException {
+        Condition condition = Condition.parse(context.getPredicate());
+        byte[] value = bucket(context.getBucket()).get(context.getKey());
+        if (value == null) {
+            throw new UnsatisfiedConditionException(new ErrorMessage("Key not found: " + context.getKey(), 404));
+        } else if (!condition.isSatisfiedBy(toTree(value))) {
+            throw new UnsatisfiedConditionException(new ErrorMessage("Unsatisfied condition: " + context.getPredicate(), 404));
+        } else {
+            return decode(value, type);
+        }
+    }
+
+    @Override
+    public <T> Values<T> getAllValues(ValuesOperation.Context context, Class<T> type) throws TerrastoreClientException {
+        Map<String, byte[]> selected = select(bucket(context.getBucket()), null, context.getLimit());
+        return decodeValues(selected, new ValuesType(type).expectedSize(context.getLimit()).compact(context.isCompact()));
+    }
+
+    @Override
+    public <T> Values<T> queryByRange(RangeOperation.Context context, Class<T> type) throws TerrastoreClientException {
+        Map<String, byte[]> selected = selectRange(context);
+        return decodeValues(selected, new ValuesType(type).expectedSize(context.getLimit()).compact(context.isCompact()).projection(context.getProjection()));
+    }
+
+    @Override
+    public Set<String> removeByRange(RangeOperation.Context context) throws TerrastoreClientException {
+        ConcurrentSkipListMap<String, byte[]> bucket = bucket(context.getBucket());
+        Set<String> removed = new LinkedHashSet<String>();
+        for (Map.Entry<String, byte[]> entry : selectRange(context).entrySet()) {
+            if (bucket.remove(entry.getKey(), entry.getValue())) {
+                removed.add(entry.getKey());
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public <T> Values<T> queryByPredicate(PredicateOperation.Context context, Class<T> type) throws TerrastoreClientException {
+        Map<String, byte[]> selected = select(bucket(context.getBucket()), Condition.parse(context.getPredicate()), 0);
+        return decodeValues(selected, new ValuesType(type).projection(context.getProjection()));
+    }
+
+    @Override
+    public <T> T queryByMapReduce(MapReduceOperation.Context context, Class<T> returnType) throws TerrastoreClientException {
+        throw new MapReduceQueryException(new ErrorMessage("Map-reduce queries are not supported in memory.", 400));
+    }
+
+    @Override
+    public void exportBackup(BackupOperation.Context context) throws TerrastoreClientException {
+        OutputStream output = null;
+        try {
+            output = new FileOutputStream(context.getFile());
+            writeObject(bucket(context.getBucket()), output);
+        } catch (IOException ex) {
+            throw new TerrastoreRequestException(new ErrorMessage("Cannot export to: " + context.getFile() + ", " + ex.getMessage(), 500));
+        } finally {
+            close(output);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void importBackup(BackupOperation.Context context) throws TerrastoreClientException {
+        InputStream input = null;
+        try {
+            input = new FileInputStream(context.getFile());
+            JsonNode values = JSON_MAPPER.readTree(input);
+            ConcurrentSkipListMap<String, byte[]> bucket = bucketForWrite(context.getBucket());
+            Iterator<String> keys = values.getFieldNames();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                bucket.put(key, JSON_MAPPER.writeValueAsString(values.get(key)).getBytes("UTF-8"));
+            }
+        } catch (IOException ex) {
+            throw new TerrastoreRequestException(new ErrorMessage("Cannot import from: " + context.getFile() + ", " + ex.getMessage(), 500));
+        } finally {
+            close(input);
+        }
+    }
+
+    @Override
+    public <T> T executeUpdate(UpdateOperation.Context context, Class<T> type) throws TerrastoreClientException {
+        UpdateFunction function = functions.get(context.getFunction());
+        if (function == null) {
+            throw new TerrastoreRequestException(new ErrorMessage("No function found: " + context.getFunction(), 400));
+        }
+        ConcurrentSkipListMap<String, byte[]> bucket = bucket(context.getBucket());
+        while (true) {
+            byte[] current = bucket.get(context.getKey());
+            if (current == null) {
+                throw new NoSuchKeyException(new ErrorMessage("Key not found: " + context.getKey(), 404));
+            }
+            byte[] updated = encode(function.apply(context.getKey(), toMap(current), context.getParameters()));
+            if (bucket.replace(context.getKey(), current, updated)) {
+                return decode(updated, type);
+            }
+        }
+    }
+
+    @Override
+    public <T> T executeMerge(MergeOperation.Context context, Class<T> type) throws TerrastoreClientException {
+        ConcurrentSkipListMap<String, byte[]> bucket = bucket(context.getBucket());
+        while (true) {
+            byte[] current = bucket.get(context.getKey());
+            if (current == null) {
+                throw new NoSuchKeyException(new ErrorMessage("Key not found: " + context.getKey(), 404));
+            }
+            Map<String, Object> merged = toMap(current);
+            merge(merged, context.getDescriptor().exportAsMap());
+            byte[] encoded = encode(merged);
+            if (bucket.replace(context.getKey(), current, encoded)) {
+                return decode(encoded, type);
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Set<String> bulkPut(BulkOperation.Context context) throws TerrastoreClientException {
+        ConcurrentSkipListMap<String, byte[]> bucket = bucketForWrite(context.getBucket());
+        Set<String> inserted = new LinkedHashSet<String>();
+        for (Map.Entry<String, Object> entry : ((Map<String, Object>) context.getValues()).entrySet()) {
+            bucket.put(entry.getKey(), encode(entry.getValue()));
+            inserted.add(entry.getKey());
+        }
+        return inserted;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Values<T> bulkGet(BulkOperation.Context context, Class<T> type) throws TerrastoreClientException {
+        ConcurrentSkipListMap<String, byte[]> bucket = bucket(context.getBucket());
+        Map<String, byte[]> selected = new LinkedHashMap<String, byte[]>();
+        for (String key : (Set<String>) context.getKeys()) {
+            byte[] value = bucket.get(key);
+            if (value != null) {
+                selected.put(key, value);
+            }
+        }
+        return decodeValues(selected, new ValuesType(type).projection(context.getProjection()));
+    }
+
+    private Map<String, byte[]> selectRange(RangeOperation.Context context) throws TerrastoreClientException {
+        ConcurrentSkipListMap<String, byte[]> bucket = bucket(context.getBucket());
+        Condition condition = context.getPredicate() != null ? Condition.parse(context.getPredicate()) : null;
+        String comparator = context.getComparator() != null ? context.getComparator() : "lexical-asc";
+        String start = context.getStartKey();
+        String end = context.getEndKey();
+        if (comparator.equals("lexical-asc") || comparator.equals("lexical-desc")) {
+            // Lexical ranges are views of the sorted bucket:
+            boolean ascending = comparator.equals("lexical-asc");
+            if (start != null && end != null && (ascending ? start.compareTo(end) : end.compareTo(start)) > 0) {
+                return Collections.emptyMap();
+            }
+            ConcurrentNavigableMap<String, byte[]> view = ascending ? bucket : bucket.descendingMap();
+            if (start != null) {
+                view = view.tailMap(start, true);
+            }
+            if (end != null) {
+                view = view.headMap(end, true);
+            }
+            return select(view, condition, context.getLimit());
+        } else if (comparator.equals("numeric-asc") || comparator.equals("numeric-desc")) {
+            // Numeric ranges need to sort keys on their own:
+            Comparator<String> order = comparator.equals("numeric-asc") ? NUMERIC_ASC : NUMERIC_DESC;
+            ConcurrentSkipListMap<String, byte[]> sorted = new ConcurrentSkipListMap<String, byte[]>(order);
+            for (Map.Entry<String, byte[]> entry : bucket.entrySet()) {
+                if ((start == null || order.compare(start, entry.getKey()) <= 0) && (end == null || order.compare(entry.getKey(), end) <= 0)) {
+                    sorted.put(entry.getKey(), entry.getValue());
+                }
+            }
+            return select(sorted, condition, context.getLimit());
+        } else {
+            throw new TerrastoreRequestException(new ErrorMessage("No comparator found: " + comparator, 400));
+        }
+    }
+
+    private Map<String, byte[]> select(Map<String, byte[]> entries, Condition condition, int limit) throws TerrastoreClientException {
+        Map<String, byte[]> selected = new LinkedHashMap<String, byte[]>();
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            if (limit > 0 && selected.size() == limit) {
+                break;
+            } else if (condition == null || condition.isSatisfiedBy(toTree(entry.getValue()))) {
+                selected.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return selected;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void merge(Map<String, Object> value, Map<String, Object> descriptor) {
+        for (Map.Entry<String, Object> entry : descriptor.entrySet()) {
+            String operation = entry.getKey();
+            if (operation.equals("+")) {
+                for (Map.Entry<String, Object> added : ((Map<String, Object>) entry.getValue()).entrySet()) {
+                    if (!value.containsKey(added.getKey())) {
+                        value.put(added.getKey(), added.getValue());
+                    }
+                }
+            } else if (operation.equals("*")) {
+                for (Map.Entry<String, Object> replaced : ((Map<String, Object>) entry.getValue()).entrySet()) {
+                    if (value.containsKey(replaced.getKey())) {
+                        value.put(replaced.getKey(), replaced.getValue());
+                    }
+                }
+            } else if (operation.equals("-")) {
+                for (Object removed : (Set<Object>) entry.getValue()) {
+                    value.remove(removed);
+                }
+            } else if (entry.getValue() instanceof MergeDescriptor && value.get(operation) instanceof Map) {
+                merge((Map<String, Object>) value.get(operation), ((MergeDescriptor) entry.getValue()).exportAsMap());
+            } else if (entry.getValue() instanceof List && value.get(operation) instanceof List) {
+                List<Object> changes = (List<Object>) entry.getValue();
+                List<Object> array = (List<Object>) value.get(operation);
+                if ("+".equals(changes.get(0))) {
+                    array.addAll(changes.subList(1, changes.size()));
+                } else if ("-".equals(changes.get(0))) {
+                    array.removeAll(changes.subList(1, changes.size()));
+                }
+            }
+        }
+    }
+
+    private ConcurrentSkipListMap<String, byte[]> bucket(String name) {
+        ConcurrentSkipListMap<String, byte[]> bucket = buckets.get(name);
+        return bucket != null ? bucket : new ConcurrentSkipListMap<String, byte[]>();
+    }
+
+    private ConcurrentSkipListMap<String, byte[]> bucketForWrite(String name) {
+        ConcurrentSkipListMap<String, byte[]> bucket = buckets.get(name);
+        if (bucket == null) {
+            bucket = new ConcurrentSkipListMap<String, byte[]>();
+            ConcurrentSkipListMap<String, byte[]> existing = buckets.putIfAbsent(name, bucket);
+            if (existing != null) {
+                bucket = existing;
+            }
+        }
+        return bucket;
+    }
+
+    private byte[] encode(Object value) throws TerrastoreClientException {
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            jsonEngine.write(output, value);
+            return output.toByteArray();
+        } catch (IOException ex) {
+            throw new TerrastoreClientException("Could not service your request: " + ex, ex);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T decode(byte[] value, Class<T> type) throws TerrastoreClientException {
+        try {
+            return (T) objectReader.readFrom(type, type, null, null, null, new ByteArrayInputStream(value));
+        } catch (IOException ex) {
+            throw new TerrastoreClientException("Could not service your request: " + ex, ex);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Values<T> decodeValues(Map<String, byte[]> values, ValuesType valuesType) throws TerrastoreClientException {
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            writeObject(values, output);
+            return valuesReader.readFrom(Values.class, valuesType, null, null, null, new ByteArrayInputStream(output.toByteArray()));
+        } catch (IOException ex) {
+            throw new TerrastoreClientException("Could not service your request: " + ex, ex);
+        }
+    }
+
+    /**
+     * Write the given encoded values as a single JSON object, as sent by servers.
+     */
+    private void writeObject(Map<String, byte[]> values, OutputStream output) throws IOException {
+        JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+        output.write('{');
+        boolean first = true;
+        for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+            if (!first) {
+                output.write(',');
+            }
+            output.write('"');
+            output.write(encoder.quoteAsUTF8(entry.getKey()));
+            output.write('"');
+            output.write(':');
+            output.write(entry.getValue());
+            first = false;
+        }
+        output.write('}');
+    }
+
+    private JsonNode toTree(byte[] value) throws TerrastoreClientException {
+        try {
+            return JSON_MAPPER.readTree(new ByteArrayInputStream(value));
+        } catch (IOException ex) {
+            throw new TerrastoreClientException("Could not service your request: " + ex, ex);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> toMap(byte[] value) throws TerrastoreClientException {
+        try {
+            return JSON_MAPPER.readValue(new ByteArrayInputStream(value), Map.class);
+        } catch (IOException ex) {
+            throw new TerrastoreClientException("Could not service your request: " + ex, ex);
+        }
+    }
+
+    private void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ex) {
+            }
+        }
+    }
+
+    private static Double toNumber(String key) {
+        try {
+            return Double.valueOf(key);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+}
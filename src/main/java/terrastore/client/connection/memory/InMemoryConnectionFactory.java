@@ -0,0 +1,73 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection.memory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import terrastore.client.connection.Connection;
+import terrastore.client.connection.ConnectionFactory;
+import terrastore.client.connection.HostManager;
+import terrastore.client.connection.TerrastoreConnectionException;
+import terrastore.client.mapping.JsonMappingEngine;
+import terrastore.client.mapping.JsonObjectDescriptor;
+
+/**
+ * Connection factory making {@link InMemoryConnection}s, which never touch the network: all connections made by
+ * the same factory, or by factories derived from it, share the same in-memory buckets, while hosts are ignored.<br>
+ * Meant for tests and benchmarks measuring client-side and application costs alone.
+ *
+ * @author Sergio Bossa
+ */
+public class InMemoryConnectionFactory implements ConnectionFactory {
+
+    private final ConcurrentMap<String, ConcurrentSkipListMap<String, byte[]>> buckets;
+    //
+    private volatile Map<String, UpdateFunction> functions = Collections.emptyMap();
+
+    public InMemoryConnectionFactory() {
+        this.buckets = new ConcurrentHashMap<String, ConcurrentSkipListMap<String, byte[]>>();
+    }
+
+    private InMemoryConnectionFactory(InMemoryConnectionFactory other) {
+        this.buckets = other.buckets;
+        this.functions = other.functions;
+    }
+
+    /**
+     * Registers the given function to execute updates naming it, in place of the server-side function.
+     *
+     * @param name The function name.
+     * @param function The function.
+     * @return A new connection factory with the given function, sharing buckets with this one.
+     */
+    public InMemoryConnectionFactory function(String name, UpdateFunction function) {
+        InMemoryConnectionFactory newInstance = new InMemoryConnectionFactory(this);
+        Map<String, UpdateFunction> newFunctions = new HashMap<String, UpdateFunction>(functions);
+        newFunctions.put(name, function);
+        newInstance.functions = Collections.unmodifiableMap(newFunctions);
+        return newInstance;
+    }
+
+    @Override
+    public Connection makeConnection(HostManager hostManager, List<JsonObjectDescriptor<?>> descriptors) throws TerrastoreConnectionException {
+        return new InMemoryConnection(buckets, functions, new JsonMappingEngine(descriptors));
+    }
+}
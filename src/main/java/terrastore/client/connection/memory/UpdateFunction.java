@@ -0,0 +1,37 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection.memory;
+
+import java.util.Map;
+
+/**
+ * Update function executed in memory by {@link InMemoryConnection}, in place of the server-side function
+ * of the same name.
+ *
+ * @author Sergio Bossa
+ */
+public interface UpdateFunction {
+
+    /**
+     * Compute the updated value.
+     *
+     * @param key The key of the value to update.
+     * @param value The current value, as a generic JSON object.
+     * @param parameters The update parameters.
+     * @return The updated value.
+     */
+    public Map<String, Object> apply(String key, Map<String, Object> value, Map<String, Object> parameters);
+}
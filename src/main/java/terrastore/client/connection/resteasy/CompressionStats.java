@@ -0,0 +1,106 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection.resteasy;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Running counters about gzip compression of HTTP request and response bodies.<br>
+ * Compression ratios are computed as compressed bytes divided by uncompressed bytes, so lower is better;
+ * times are the nanoseconds spent compressing or decompressing, excluding network I/O.
+ *
+ * @author Sergio Bossa
+ */
+public class CompressionStats {
+
+    private final AtomicLong compressedRequests = new AtomicLong();
+    private final AtomicLong requestBytes = new AtomicLong();
+    private final AtomicLong compressedRequestBytes = new AtomicLong();
+    private final AtomicLong compressionNanos = new AtomicLong();
+    private final AtomicLong compressedResponses = new AtomicLong();
+    private final AtomicLong responseBytes = new AtomicLong();
+    private final AtomicLong compressedResponseBytes = new AtomicLong();
+    private final AtomicLong decompressionNanos = new AtomicLong();
+
+    public long getCompressedRequests() {
+        return compressedRequests.get();
+    }
+
+    public long getRequestBytes() {
+        return requestBytes.get();
+    }
+
+    public long getCompressedRequestBytes() {
+        return compressedRequestBytes.get();
+    }
+
+    public double getRequestCompressionRatio() {
+        return ratio(compressedRequestBytes.get(), requestBytes.get());
+    }
+
+    public long getCompressionNanos() {
+        return compressionNanos.get();
+    }
+
+    public long getCompressedResponses() {
+        return compressedResponses.get();
+    }
+
+    public long getResponseBytes() {
+        return responseBytes.get();
+    }
+
+    public long getCompressedResponseBytes() {
+        return compressedResponseBytes.get();
+    }
+
+    public double getResponseCompressionRatio() {
+        return ratio(compressedResponseBytes.get(), responseBytes.get());
+    }
+
+    public long getDecompressionNanos() {
+        return decompressionNanos.get();
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionStats{"
+                + "compressedRequests=" + getCompressedRequests()
+                + ", requestCompressionRatio=" + getRequestCompressionRatio()
+                + ", compressionNanos=" + getCompressionNanos()
+                + ", compressedResponses=" + getCompressedResponses()
+                + ", responseCompressionRatio=" + getResponseCompressionRatio()
+                + ", decompressionNanos=" + getDecompressionNanos() + "}";
+    }
+
+    void requestCompressed(long uncompressed, long compressed, long nanos) {
+        compressedRequests.incrementAndGet();
+        requestBytes.addAndGet(uncompressed);
+        compressedRequestBytes.addAndGet(compressed);
+        compressionNanos.addAndGet(nanos);
+    }
+
+    void responseDecompressed(long uncompressed, long compressed, long nanos) {
+        compressedResponses.incrementAndGet();
+        responseBytes.addAndGet(uncompressed);
+        compressedResponseBytes.addAndGet(compressed);
+        decompressionNanos.addAndGet(nanos);
+    }
+
+    private double ratio(long compressed, long uncompressed) {
+        return uncompressed > 0 ? (double) compressed / uncompressed : 1.0;
+    }
+}
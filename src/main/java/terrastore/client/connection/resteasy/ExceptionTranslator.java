@@ -34,6 +34,20 @@ import terrastore.client.connection.UnsatisfiedConditionException;
  */
 public class ExceptionTranslator {
 
+    private final boolean lightweight;
+
+    public ExceptionTranslator() {
+        this(false);
+    }
+
+    /**
+     * @param lightweight True to translate expected outcomes, that is, missing keys and unsatisfied conditions,
+     * into stackless exceptions, without reading the error message sent by the server.
+     */
+    public ExceptionTranslator(boolean lightweight) {
+        this.lightweight = lightweight;
+    }
+
     public enum Operation {
         GET,
         CONDITIONAL,
@@ -63,8 +77,9 @@ public class ExceptionTranslator {
             case 400:
                 return new TerrastoreRequestException((ErrorMessage) response.getEntity(ErrorMessage.class));
             case 404:
+                return lightweight ? UnsatisfiedConditionException.stackless(new ErrorMessage("Unsatisfied condition or key not found.", 404)) : new UnsatisfiedConditionException((ErrorMessage) response.getEntity(ErrorMessage.class));
             case 409:
-                return new UnsatisfiedConditionException((ErrorMessage) response.getEntity(ErrorMessage.class));
+                return lightweight ? UnsatisfiedConditionException.stackless(new ErrorMessage("Unsatisfied condition.", 409)) : new UnsatisfiedConditionException((ErrorMessage) response.getEntity(ErrorMessage.class));
             default:
                 return generalException(response);
         }
@@ -74,7 +89,7 @@ public class ExceptionTranslator {
     private TerrastoreClientException getException(ClientResponse response) {
         switch (response.getStatus()) {
             case 404:
-                return new NoSuchKeyException((ErrorMessage) response.getEntity(ErrorMessage.class));
+                return lightweight ? NoSuchKeyException.stackless(new ErrorMessage("Key not found.", 404)) : new NoSuchKeyException((ErrorMessage) response.getEntity(ErrorMessage.class));
             default:
                 return generalException(response);
         }
@@ -110,6 +125,14 @@ public class ExceptionTranslator {
         }
     }
 
+    /**
+     * Get the exception signalling a key found missing by the client itself.
+     */
+    TerrastoreClientException keyNotFound(String key) {
+        ErrorMessage message = new ErrorMessage("Key not found: " + key, 404);
+        return lightweight ? NoSuchKeyException.stackless(message) : new NoSuchKeyException(message);
+    }
+
     @SuppressWarnings("unchecked")
     TerrastoreClientException generalException(ClientResponse response) {
         switch (response.getStatus()) {
@@ -0,0 +1,770 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection.resteasy;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethodBase;
+import org.apache.commons.httpclient.methods.DeleteMethod;
+import org.apache.commons.httpclient.methods.EntityEnclosingMethod;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.httpclient.methods.PutMethod;
+import org.apache.commons.httpclient.methods.RequestEntity;
+import org.jboss.resteasy.client.ClientRequest;
+import org.jboss.resteasy.client.ClientResponse;
+import org.jboss.resteasy.client.core.BaseClientResponse;
+import org.jboss.resteasy.client.core.BaseClientResponse.BaseClientResponseStreamFactory;
+import org.jboss.resteasy.client.core.executors.ApacheHttpClientExecutor;
+import org.jboss.resteasy.client.core.executors.HttpClientHeaderWrapper;
+import org.jboss.resteasy.util.CaseInsensitiveMap;
+import terrastore.client.connection.Invocation;
+import terrastore.client.metrics.ConnectionMetrics;
+
+/**
+ * {@link org.jboss.resteasy.client.ClientExecutor} implementation based on org.apache.commons.httpclient.HttpClient,
+ * optionally gzip-compressing request bodies and decompressing response bodies.<br>
+ * Request bodies are serialized into pooled buffers and sent with a known Content-Length; if a streaming threshold
+ * is configured, bodies larger than that are rather streamed through chunked transfer encoding, so that huge bodies
+ * are never held in memory.<br>
+ * When compression is enabled, request bodies larger than the compression threshold are gzip encoded, and responses are
+ * asked to be gzip encoded too.<br>
+ * Gzip encoded responses are always decoded while streamed, and compression figures are collected into {@link CompressionStats}.<br>
+ * If {@link ConnectionMetrics} are given, the latency of each request, up to the release of its connection, is recorded
+ * by host, along with request and response bytes as sent and received over the wire.<br>
+ * If intercepted, requests executed on behalf of a {@link terrastore.client.connection.Invocation} send its additional headers,
+ * and report their host and bytes to it.<br>
+ * If a {@link SlowRequestLog} is given, requests taking longer than its threshold are recorded with their timing breakdown.
+ *
+ * @author Sergio Bossa
+ */
+public class HTTPClientExecutor extends ApacheHttpClientExecutor {
+
+    public static final int NO_COMPRESSION = -1;
+    public static final int NO_STREAMING = -1;
+    //
+    private static final String GZIP = "gzip";
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final String CONTENT_LENGTH = "Content-Length";
+    private static final int REQUEST_SAMPLE_SIZE = 256;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    //
+    private final int compressionThreshold;
+    private final int streamingThreshold;
+    private final CompressionStats compressionStats;
+    private final ConnectionMetrics metrics;
+    private final boolean intercepted;
+    private final SlowRequestLog slowRequests;
+
+    public HTTPClientExecutor(HttpClient httpClient) {
+        this(httpClient, NO_COMPRESSION, NO_STREAMING, new CompressionStats());
+    }
+
+    /**
+     * @param httpClient The HttpClient used to execute requests.
+     * @param compressionThreshold The min size in bytes of request bodies to compress, or {@link #NO_COMPRESSION}.
+     * @param streamingThreshold The max size in bytes of request bodies to buffer before sending, or {@link #NO_STREAMING}.
+     * @param compressionStats The {@link CompressionStats} to update.
+     */
+    public HTTPClientExecutor(HttpClient httpClient, int compressionThreshold, int streamingThreshold, CompressionStats compressionStats) {
+        this(httpClient, compressionThreshold, streamingThreshold, compressionStats, null);
+    }
+
+    /**
+     * @param httpClient The HttpClient used to execute requests.
+     * @param compressionThreshold The min size in bytes of request bodies to compress, or {@link #NO_COMPRESSION}.
+     * @param streamingThreshold The max size in bytes of request bodies to buffer before sending, or {@link #NO_STREAMING}.
+     * @param compressionStats The {@link CompressionStats} to update.
+     * @param metrics The {@link ConnectionMetrics} to update, or null.
+     */
+    public HTTPClientExecutor(HttpClient httpClient, int compressionThreshold, int streamingThreshold, CompressionStats compressionStats, ConnectionMetrics metrics) {
+        this(httpClient, compressionThreshold, streamingThreshold, compressionStats, metrics, false);
+    }
+
+    /**
+     * @param httpClient The HttpClient used to execute requests.
+     * @param compressionThreshold The min size in bytes of request bodies to compress, or {@link #NO_COMPRESSION}.
+     * @param streamingThreshold The max size in bytes of request bodies to buffer before sending, or {@link #NO_STREAMING}.
+     * @param compressionStats The {@link CompressionStats} to update.
+     * @param metrics The {@link ConnectionMetrics} to update, or null.
+     * @param intercepted True to look for the {@link terrastore.client.connection.Invocation} of executed requests.
+     */
+    public HTTPClientExecutor(HttpClient httpClient, int compressionThreshold, int streamingThreshold, CompressionStats compressionStats, ConnectionMetrics metrics, boolean intercepted) {
+        this(httpClient, compressionThreshold, streamingThreshold, compressionStats, metrics, intercepted, null);
+    }
+
+    HTTPClientExecutor(HTTPConnectionFactory factory) {
+        this(factory.getHttpClient(),
+                factory.getCompressionThreshold(),
+                factory.getStreamingThreshold(),
+                factory.getCompressionStats(),
+                factory.getMetrics(),
+                factory.isIntercepted(),
+                factory.getSlowRequestLog());
+    }
+
+    private HTTPClientExecutor(HttpClient httpClient, int compressionThreshold, int streamingThreshold, CompressionStats compressionStats, ConnectionMetrics metrics, boolean intercepted, SlowRequestLog slowRequests) {
+        super(httpClient);
+        this.compressionThreshold = compressionThreshold;
+        this.streamingThreshold = streamingThreshold;
+        this.compressionStats = compressionStats;
+        this.metrics = metrics;
+        this.intercepted = intercepted;
+        this.slowRequests = slowRequests;
+    }
+
+    public boolean isCompressionEnabled() {
+        return compressionThreshold != NO_COMPRESSION;
+    }
+
+    public boolean isStreamingEnabled() {
+        return streamingThreshold != NO_STREAMING;
+    }
+
+    public CompressionStats getCompressionStats() {
+        return compressionStats;
+    }
+
+    public ConnectionMetrics getMetrics() {
+        return metrics;
+    }
+
+    public SlowRequestLog getSlowRequestLog() {
+        return slowRequests;
+    }
+
+    @Override
+    public ClientResponse execute(ClientRequest request) throws Exception {
+        Invocation invocation = intercepted ? Invocation.current() : null;
+        String uri = request.getUri();
+        Exchange exchange = metrics != null || slowRequests != null || invocation != null ? new Exchange(request.getHttpMethod(), uri, invocation) : null;
+        HttpMethodBase httpMethod = createHttpMethod(uri, request.getHttpMethod());
+        int status = 0;
+        boolean executed = false;
+        Exception failure = null;
+        try {
+            loadHttpMethod(request, httpMethod);
+            if (invocation != null) {
+                for (Map.Entry<String, String> header : invocation.getHeaders().entrySet()) {
+                    httpMethod.setRequestHeader(header.getKey(), header.getValue());
+                }
+            }
+            if (exchange != null) {
+                exchange.serialized();
+            }
+            status = httpClient.executeMethod(httpMethod);
+            executed = true;
+            if (exchange != null) {
+                exchange.responded(status);
+            }
+        } catch (Exception ex) {
+            failure = ex;
+            throw ex;
+        } finally {
+            if (httpMethod instanceof EntityEnclosingMethod) {
+                RequestEntity entity = ((EntityEnclosingMethod) httpMethod).getRequestEntity();
+                if (exchange != null) {
+                    exchange.sent(entity, httpMethod.getRequestHeader(CONTENT_ENCODING) == null);
+                }
+                if (entity instanceof BufferedEntity) {
+                    ((BufferedEntity) entity).release();
+                }
+            }
+            if (exchange != null && !executed) {
+                exchange.failed(failure);
+            }
+        }
+        // Decode here rather than through RESTEasy decoding interceptors, so to collect figures and
+        // avoid decoding twice when interceptors get registered more than once: hence, hide encoding headers from them.
+        Header encoding = httpMethod.getResponseHeader(CONTENT_ENCODING);
+        boolean gzipped = encoding != null && GZIP.equalsIgnoreCase(encoding.getValue().trim());
+        CaseInsensitiveMap<String> headers = extractHeaders(httpMethod);
+        if (gzipped) {
+            headers.remove(CONTENT_ENCODING);
+            headers.remove(CONTENT_LENGTH);
+        }
+        BaseClientResponse response = new BaseClientResponse(new ResponseStreamFactory(httpMethod, gzipped, exchange), this);
+        response.setStatus(status);
+        response.setHeaders(headers);
+        response.setProviderFactory(request.getProviderFactory());
+        return response;
+    }
+
+    @Override
+    public void loadHttpMethod(ClientRequest request, HttpMethodBase httpMethod) throws Exception {
+        httpMethod.setFollowRedirects(httpMethod instanceof GetMethod && request.followRedirects());
+        if (request.getHeaders() != null) {
+            for (Map.Entry<String, List<String>> header : request.getHeaders().entrySet()) {
+                for (String value : header.getValue()) {
+                    httpMethod.addRequestHeader(header.getKey(), value);
+                }
+            }
+        }
+        if (isCompressionEnabled()) {
+            httpMethod.setRequestHeader(ACCEPT_ENCODING, GZIP);
+        }
+        if (request.getBody() != null && !request.getFormParameters().isEmpty()) {
+            throw new RuntimeException("You cannot send both form parameters and an entity body");
+        }
+        if (!request.getFormParameters().isEmpty()) {
+            PostMethod postMethod = (PostMethod) httpMethod;
+            for (Map.Entry<String, List<String>> parameter : request.getFormParameters().entrySet()) {
+                for (String value : parameter.getValue()) {
+                    postMethod.addParameter(parameter.getKey(), value);
+                }
+            }
+        }
+        if (request.getBody() != null) {
+            if (!(httpMethod instanceof EntityEnclosingMethod)) {
+                throw new RuntimeException("A GET request cannot have a body.");
+            }
+            ((EntityEnclosingMethod) httpMethod).setRequestEntity(createRequestEntity(request, httpMethod));
+        }
+    }
+
+    private RequestEntity createRequestEntity(ClientRequest request, HttpMethodBase httpMethod) throws Exception {
+        String contentType = request.getBodyContentType().toString();
+        boolean compress = isCompressionEnabled() && httpMethod.getRequestHeader(CONTENT_ENCODING) == null;
+        RequestBuffer body = RequestBuffer.acquire(isStreamingEnabled() ? streamingThreshold : RequestBuffer.UNBOUNDED);
+        try {
+            request.writeRequestBody(new HttpClientHeaderWrapper(httpMethod, request.getProviderFactory()), body);
+        } catch (Exception ex) {
+            body.release();
+            if (body.isOverflowed()) {
+                // Too large to be buffered: it will be serialized again straight to the connection.
+                if (compress) {
+                    httpMethod.setRequestHeader(CONTENT_ENCODING, GZIP);
+                }
+                return new StreamingEntity(request, contentType, compress);
+            } else {
+                throw ex;
+            }
+        }
+        if (compress && body.size() > compressionThreshold) {
+            httpMethod.setRequestHeader(CONTENT_ENCODING, GZIP);
+            return new BufferedEntity(compress(body), contentType);
+        } else {
+            return new BufferedEntity(body, contentType);
+        }
+    }
+
+    private RequestBuffer compress(RequestBuffer body) throws IOException {
+        try {
+            long start = System.nanoTime();
+            RequestBuffer compressed = RequestBuffer.acquire(RequestBuffer.UNBOUNDED);
+            GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+            body.writeTo(gzip);
+            gzip.close();
+            compressionStats.requestCompressed(body.size(), compressed.size(), System.nanoTime() - start);
+            return compressed;
+        } finally {
+            body.release();
+        }
+    }
+
+    private HttpMethodBase createHttpMethod(String uri, final String method) {
+        if ("GET".equals(method)) {
+            return new GetMethod(uri);
+        } else if ("PUT".equals(method)) {
+            return new PutMethod(uri);
+        } else if ("POST".equals(method)) {
+            return new PostMethod(uri);
+        } else if ("DELETE".equals(method)) {
+            return new DeleteMethod(uri);
+        } else {
+            return new EntityEnclosingMethod(uri) {
+
+                @Override
+                public String getName() {
+                    return method;
+                }
+            };
+        }
+    }
+
+    private static class BufferedEntity implements RequestEntity {
+
+        private final RequestBuffer body;
+        private final String contentType;
+
+        public BufferedEntity(RequestBuffer body, String contentType) {
+            this.body = body;
+            this.contentType = contentType;
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return true;
+        }
+
+        @Override
+        public void writeRequest(OutputStream output) throws IOException {
+            body.writeTo(output);
+        }
+
+        @Override
+        public long getContentLength() {
+            return body.size();
+        }
+
+        @Override
+        public String getContentType() {
+            return contentType;
+        }
+
+        public void release() {
+            body.release();
+        }
+
+        public byte[] sample(int length) {
+            return body.copyHead(length);
+        }
+    }
+
+    private class StreamingEntity implements RequestEntity {
+
+        private final ClientRequest request;
+        private final String contentType;
+        private final boolean compress;
+        private volatile long written;
+
+        public StreamingEntity(ClientRequest request, String contentType, boolean compress) {
+            this.request = request;
+            this.contentType = contentType;
+            this.compress = compress;
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return true;
+        }
+
+        @Override
+        public void writeRequest(OutputStream output) throws IOException {
+            // Headers have been already set while trying to buffer the body, so discard them:
+            CaseInsensitiveMap<Object> headers = new CaseInsensitiveMap<Object>();
+            if (compress) {
+                // Time spent compressing is the one spent writing into the gzip stream, minus the one spent writing to the network:
+                CountingOutputStream raw = new CountingOutputStream(output);
+                GZIPOutputStream gzip = new GZIPOutputStream(raw);
+                CountingOutputStream plain = new CountingOutputStream(gzip);
+                request.writeRequestBody(headers, plain);
+                long start = System.nanoTime();
+                gzip.close();
+                long nanos = plain.nanos + System.nanoTime() - start - raw.nanos;
+                compressionStats.requestCompressed(plain.bytes, raw.bytes, Math.max(0, nanos));
+                written = raw.bytes;
+            } else {
+                CountingOutputStream raw = new CountingOutputStream(output);
+                request.writeRequestBody(headers, raw);
+                written = raw.bytes;
+            }
+        }
+
+        @Override
+        public long getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public String getContentType() {
+            return contentType;
+        }
+    }
+
+    private class ResponseStreamFactory implements BaseClientResponseStreamFactory {
+
+        private final HttpMethodBase httpMethod;
+        private final boolean gzipped;
+        private final Exchange exchange;
+        private GzipResponseStream gzipStream;
+        private CountingStream meteredStream;
+        private InputStream stream;
+
+        public ResponseStreamFactory(HttpMethodBase httpMethod, boolean gzipped, Exchange exchange) {
+            this.httpMethod = httpMethod;
+            this.gzipped = gzipped;
+            this.exchange = exchange;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            if (stream == null) {
+                InputStream body = httpMethod.getResponseBodyAsStream();
+                if (body == null) {
+                    body = new ByteArrayInputStream(new byte[0]);
+                } else {
+                    if (exchange != null) {
+                        meteredStream = new CountingStream(body);
+                        body = meteredStream;
+                    }
+                    if (gzipped) {
+                        gzipStream = new GzipResponseStream(body);
+                        body = gzipStream;
+                    }
+                }
+                // No need for further buffering, as the connection stream is already buffered
+                // and so are parsers: just avoid allocating a new buffer for every response.
+                stream = body;
+            }
+            return stream;
+        }
+
+        @Override
+        public void performReleaseConnection() {
+            if (gzipStream != null) {
+                gzipStream.finish();
+            }
+            httpMethod.releaseConnection();
+            if (exchange != null) {
+                exchange.released(meteredStream);
+            }
+        }
+    }
+
+    /**
+     * Get the name of the {@link terrastore.client.connection.Connection} operation sending requests with the given method
+     * and URI, as in {@link terrastore.client.connection.Invocation#getOperation()}, or null if unknown.
+     */
+    static String operationOf(String method, String uri) {
+        URI parsed = URI.create(uri);
+        String path = parsed.getRawPath() != null ? parsed.getRawPath() : "";
+        String query = parsed.getRawQuery() != null ? "&" + parsed.getRawQuery() : "";
+        String[] segments = path.replaceAll("^/+|/+$", "").split("/+");
+        int length = segments[0].length() > 0 ? segments.length : 0;
+        boolean get = method.equals("GET");
+        boolean post = method.equals("POST");
+        boolean delete = method.equals("DELETE");
+        if (length == 0) {
+            return get ? "getBuckets" : null;
+        } else if (length == 1) {
+            return get ? "getAllValues" : delete ? "clearBucket" : null;
+        } else if (segments[0].equals("_stats")) {
+            return get ? "getClusterStats" : null;
+        } else if (length == 2 && segments[1].equals("range") && query.contains("&startKey=")) {
+            return get ? "queryByRange" : delete ? "removeByRange" : null;
+        } else if (length == 2 && segments[1].equals("predicate") && get && query.contains("&predicate=")) {
+            return "queryByPredicate";
+        } else if (length == 2 && post) {
+            return segments[1].equals("mapReduce") ? "queryByMapReduce"
+                    : segments[1].equals("export") ? "exportBackup"
+                    : segments[1].equals("import") ? "importBackup" : null;
+        } else if (length == 2) {
+            boolean conditional = query.contains("&predicate=");
+            if (get) {
+                return conditional ? "conditionalGetValue" : "getValue";
+            } else if (method.equals("PUT")) {
+                return conditional ? "conditionalPutValue" : "putValue";
+            } else {
+                return delete ? "removeValue" : null;
+            }
+        } else if (length == 3 && post && segments[1].equals("bulk")) {
+            return segments[2].equals("get") ? "bulkGet" : segments[2].equals("put") ? "bulkPut" : null;
+        } else if (length == 3 && post) {
+            return segments[2].equals("update") ? "executeUpdate" : segments[2].equals("merge") ? "executeMerge" : null;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Figures about a single request, collected from writing the request up to releasing its response,
+     * and dispatched to metrics, invocation and slow requests log.
+     */
+    private class Exchange {
+
+        private final String method;
+        private final String uri;
+        private final String host;
+        private final Invocation invocation;
+        private final long timestamp;
+        private final long start;
+        private long serialized;
+        private long responded;
+        private long poolWaitNanos;
+        private long sentBytes;
+        private String sample;
+        private int status;
+        private boolean released;
+
+        public Exchange(String method, String uri, Invocation invocation) {
+            this.method = method;
+            this.uri = uri;
+            URI parsed = URI.create(uri);
+            this.host = parsed.getHost() + ":" + parsed.getPort();
+            this.invocation = invocation;
+            this.timestamp = slowRequests != null ? System.currentTimeMillis() : 0;
+            this.start = System.nanoTime();
+            if (metrics != null) {
+                metrics.requestStarted();
+            }
+        }
+
+        public void serialized() {
+            serialized = System.nanoTime();
+            takePoolWait();
+        }
+
+        public void responded(int status) {
+            this.responded = System.nanoTime();
+            this.status = status;
+            this.poolWaitNanos = takePoolWait();
+        }
+
+        public void sent(RequestEntity entity, boolean plain) {
+            if (entity instanceof BufferedEntity) {
+                sentBytes = entity.getContentLength();
+                if (plain && slowRequests != null && slowRequests.isSlow(System.nanoTime() - start)) {
+                    sample = new String(((BufferedEntity) entity).sample(REQUEST_SAMPLE_SIZE), UTF8);
+                }
+            } else if (entity instanceof StreamingEntity) {
+                sentBytes = ((StreamingEntity) entity).written;
+            }
+        }
+
+        public void failed(Exception failure) {
+            long end = System.nanoTime();
+            if (metrics != null) {
+                metrics.requestFailed();
+            }
+            long serializationNanos = serialized > 0 ? serialized - start : end - start;
+            long failedPoolWaitNanos = takePoolWait();
+            if (invocation != null) {
+                invocation.requestExecuted(host, 0, sentBytes, 0, failedPoolWaitNanos, serializationNanos, 0);
+            }
+            if (slowRequests != null && slowRequests.isSlow(end - start)) {
+                long firstByteNanos = serialized > 0 ? end - serialized : 0;
+                slowRequests.record(new SlowRequest(timestamp, operation(), method, uri, host, 0, failure != null ? failure.toString() : "Error",
+                        end - start, serializationNanos, failedPoolWaitNanos, firstByteNanos, 0, 0, sentBytes, 0, sample));
+            }
+        }
+
+        public void released(CountingStream received) {
+            if (!released) {
+                released = true;
+                long end = System.nanoTime();
+                long receivedBytes = received != null ? received.bytes : 0;
+                long transferNanos = received != null ? received.nanos : 0;
+                long deserializationNanos = Math.max(0, end - responded - transferNanos);
+                if (metrics != null) {
+                    metrics.requestExecuted(host, end - start, sentBytes, receivedBytes);
+                }
+                if (invocation != null) {
+                    invocation.requestExecuted(host, status, sentBytes, receivedBytes, poolWaitNanos, serialized - start, deserializationNanos);
+                }
+                if (slowRequests != null && slowRequests.isSlow(end - start)) {
+                    slowRequests.record(new SlowRequest(timestamp, operation(), method, uri, host, status, null,
+                            end - start, serialized - start, poolWaitNanos, responded - serialized, transferNanos, deserializationNanos,
+                            sentBytes, receivedBytes, sample));
+                }
+            }
+        }
+
+        private String operation() {
+            return invocation != null ? invocation.getOperation() : operationOf(method, uri);
+        }
+
+        private long takePoolWait() {
+            if (httpClient.getHttpConnectionManager() instanceof MeteredConnectionManager) {
+                return ((MeteredConnectionManager) httpClient.getHttpConnectionManager()).takeWait();
+            } else {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Gzip decoding stream, lazily reading the gzip header at first read and counting
+     * decoded bytes, compressed bytes and time spent decoding (excluding time spent reading from the network).
+     */
+    private class GzipResponseStream extends FilterInputStream {
+
+        private final CountingStream raw;
+        private long decodedBytes;
+        private long decodingNanos;
+        private boolean finished;
+
+        public GzipResponseStream(InputStream body) {
+            super(null);
+            this.raw = new CountingStream(body);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            try {
+                int read = decoder().read();
+                if (read >= 0) {
+                    decodedBytes++;
+                } else {
+                    finish();
+                }
+                return read;
+            } finally {
+                decodingNanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            long start = System.nanoTime();
+            try {
+                int read = decoder().read(buffer, offset, length);
+                if (read >= 0) {
+                    decodedBytes += read;
+                } else {
+                    finish();
+                }
+                return read;
+            } finally {
+                decodingNanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long start = System.nanoTime();
+            try {
+                long skipped = decoder().skip(n);
+                decodedBytes += skipped;
+                return skipped;
+            } finally {
+                decodingNanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public int available() throws IOException {
+            return in != null ? in.available() : 0;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+            raw.close();
+        }
+
+        public void finish() {
+            if (!finished) {
+                finished = true;
+                compressionStats.responseDecompressed(decodedBytes, raw.bytes, Math.max(0, decodingNanos - raw.nanos));
+            }
+        }
+
+        private InputStream decoder() throws IOException {
+            if (in == null) {
+                in = new GZIPInputStream(raw);
+            }
+            return in;
+        }
+    }
+
+    private static class CountingStream extends FilterInputStream {
+
+        private long bytes;
+        private long nanos;
+
+        public CountingStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            int read = in.read();
+            nanos += System.nanoTime() - start;
+            if (read >= 0) {
+                bytes++;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            long start = System.nanoTime();
+            int read = in.read(buffer, offset, length);
+            nanos += System.nanoTime() - start;
+            if (read > 0) {
+                bytes += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            bytes += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    /**
+     * Counts written bytes and time spent writing, and protects the wrapped stream from being closed.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long bytes;
+        private long nanos;
+
+        public CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            long start = System.nanoTime();
+            out.write(b);
+            nanos += System.nanoTime() - start;
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            long start = System.nanoTime();
+            out.write(buffer, offset, length);
+            nanos += System.nanoTime() - start;
+            bytes += length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -17,20 +17,27 @@ package terrastore.client.connection.resteasy;
 
 import static org.jboss.resteasy.plugins.providers.RegisterBuiltin.registerProviders;
 
+import java.lang.reflect.Type;
 import java.net.ConnectException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
+import javax.ws.rs.ext.MessageBodyReader;
 
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.jboss.resteasy.client.ClientExecutor;
 import org.jboss.resteasy.client.ClientRequest;
 import org.jboss.resteasy.client.ClientRequestFactory;
 import org.jboss.resteasy.client.ClientResponse;
-import org.jboss.resteasy.client.core.executors.ApacheHttpClientExecutor;
 import org.jboss.resteasy.spi.ResteasyProviderFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,15 +55,21 @@ import terrastore.client.Values;
 import terrastore.client.ValuesOperation;
 import terrastore.client.connection.Connection;
 import terrastore.client.connection.HostManager;
+import terrastore.client.connection.ManagedHostManager;
+import terrastore.client.connection.NoSuchKeyException;
 import terrastore.client.connection.TerrastoreConnectionException;
 import terrastore.client.connection.resteasy.ExceptionTranslator.Operation;
+import terrastore.client.mapping.BufferedEntity;
+import terrastore.client.mapping.BufferedEntityReader;
 import terrastore.client.mapping.JsonClusterStatsReader;
+import terrastore.client.mapping.JsonMappingEngine;
 import terrastore.client.mapping.JsonObjectDescriptor;
 import terrastore.client.mapping.JsonObjectReader;
 import terrastore.client.mapping.JsonObjectWriter;
 import terrastore.client.mapping.JsonParametersWriter;
 import terrastore.client.mapping.JsonValuesReader;
 import terrastore.client.mapping.JsonValuesWriter;
+import terrastore.client.mapping.ValuesType;
 import terrastore.client.mapreduce.MapReduceOperation;
 import terrastore.client.merge.MergeOperation;
 
@@ -75,25 +88,92 @@ public class HTTPConnection implements Connection {
     //
     private final HostManager hostManager;
     private final ClientRequestFactory requestFactory;
-    private final ExceptionTranslator exceptionTranslator = new ExceptionTranslator();
+    private final ExceptionTranslator exceptionTranslator;
+    private final String contentType;
+    private final String acceptedContentTypes;
+    private final JsonClusterStatsReader statsReader;
+    private final JsonValuesReader valuesReader;
+    private final JsonObjectReader objectReader;
+    private final Object cluster;
+    private final QueryCache queryCache;
+    private final ReadCoalescer readCoalescer;
+    private final MissingKeys missingKeys;
+    private final MissingKeys.KeyScanner keyScanner = new MissingKeys.KeyScanner() {
+
+        @Override
+        public Set<String> scan(String bucket) {
+            return scanKeys(bucket);
+        }
+    };
 
     public HTTPConnection(HostManager hostManager, List<JsonObjectDescriptor<?>> descriptors) {
         this(hostManager, descriptors, new HttpClient(new MultiThreadedHttpConnectionManager()));
     }
 
     public HTTPConnection(HostManager hostManager, List<JsonObjectDescriptor<?>> descriptors, HttpClient httpClient) {
-        ResteasyProviderFactory providerFactory = ResteasyProviderFactory.getInstance();
+        this(hostManager, descriptors, new HTTPClientExecutor(httpClient));
+    }
+
+    public HTTPConnection(HostManager hostManager, List<JsonObjectDescriptor<?>> descriptors, ClientExecutor clientExecutor) {
+        this(hostManager, new JsonMappingEngine(descriptors), clientExecutor);
+    }
+
+    public HTTPConnection(HostManager hostManager, JsonMappingEngine jsonEngine, ClientExecutor clientExecutor) {
+        this(hostManager, jsonEngine, clientExecutor, null, 0);
+    }
+
+    public HTTPConnection(HostManager hostManager, JsonMappingEngine jsonEngine, ClientExecutor clientExecutor, ExecutorService readExecutor, int parallelReadThreshold) {
+        this(hostManager, jsonEngine, clientExecutor, readExecutor, parallelReadThreshold, null);
+    }
+
+    /**
+     * Make a connection with the optional features configured by the given factory.
+     */
+    HTTPConnection(HostManager hostManager, JsonMappingEngine jsonEngine, ClientExecutor clientExecutor, HTTPConnectionFactory factory) {
+        this(hostManager, jsonEngine, clientExecutor, factory.getReadExecutor(), factory.getParallelReadThreshold(), factory);
+    }
+
+    private HTTPConnection(HostManager hostManager, JsonMappingEngine jsonEngine, ClientExecutor clientExecutor, ExecutorService readExecutor, int parallelReadThreshold, HTTPConnectionFactory factory) {
+        // Each connection gets its own provider factory, so that readers and writers of different connections
+        // (hence made with different descriptors) don't clash in the global one;
+        // the global one is still accessed first, as it initializes the JAX-RS runtime delegate:
+        ResteasyProviderFactory.getInstance();
+        ResteasyProviderFactory providerFactory = new ResteasyProviderFactory();
         this.hostManager = hostManager;
-        this.requestFactory = new ClientRequestFactory(new ApacheHttpClientExecutor(httpClient), providerFactory);
+        this.cluster = clusterOf(hostManager);
+        this.requestFactory = new ClientRequestFactory(clientExecutor, providerFactory);
+        this.statsReader = new JsonClusterStatsReader(jsonEngine);
+        this.valuesReader = new JsonValuesReader(jsonEngine, readExecutor, parallelReadThreshold);
+        this.objectReader = new JsonObjectReader(jsonEngine);
+        if (factory != null) {
+            this.exceptionTranslator = new ExceptionTranslator(factory.isLightweightExceptions());
+            this.queryCache = factory.getQueryCache();
+            this.readCoalescer = factory.getReadCoalescer();
+            this.missingKeys = factory.getMissingKeys();
+        } else {
+            this.exceptionTranslator = new ExceptionTranslator();
+            this.queryCache = null;
+            this.readCoalescer = null;
+            this.missingKeys = null;
+        }
+        // Documents are sent encoded with the configured codec, and responses are asked to be encoded with it too,
+        // but plain JSON responses are always accepted:
+        this.contentType = jsonEngine.getCodec().getMediaType().toString();
+        if (contentType.equals(JSON_CONTENT_TYPE)) {
+            this.acceptedContentTypes = JSON_CONTENT_TYPE;
+        } else {
+            this.acceptedContentTypes = contentType + ", " + JSON_CONTENT_TYPE + ";q=0.5";
+        }
         try {
             // Registration order matters: JsonObjectWriter must come last because writes all:
-            providerFactory.addMessageBodyWriter(new JsonParametersWriter());
-            providerFactory.addMessageBodyWriter(new JsonValuesWriter(descriptors));
-            providerFactory.addMessageBodyWriter(new JsonObjectWriter(descriptors));
+            providerFactory.addMessageBodyWriter(new JsonParametersWriter(jsonEngine));
+            providerFactory.addMessageBodyWriter(new JsonValuesWriter(jsonEngine));
+            providerFactory.addMessageBodyWriter(new JsonObjectWriter(jsonEngine));
             // Registration order matters: JsonObjectReader must come last because reads all:
-            providerFactory.addMessageBodyReader(new JsonClusterStatsReader());
-            providerFactory.addMessageBodyReader(new JsonValuesReader(descriptors));
-            providerFactory.addMessageBodyReader(new JsonObjectReader(descriptors));
+            providerFactory.addMessageBodyReader(new BufferedEntityReader());
+            providerFactory.addMessageBodyReader(statsReader);
+            providerFactory.addMessageBodyReader(valuesReader);
+            providerFactory.addMessageBodyReader(objectReader);
 
             registerProviders(providerFactory);
         } catch (Exception ex) {
@@ -104,6 +184,16 @@ public class HTTPConnection implements Connection {
     @SuppressWarnings("unchecked")
     @Override
     public ClusterStats getClusterStats() throws TerrastoreClientException {
+        if (readCoalescer != null) {
+            BufferedEntity entity = readCoalescer.read(Arrays.asList(cluster, "stats", "cluster"), new CoalescedRead() {
+
+                @Override
+                protected ClientResponse execute(String serverHost) throws Exception {
+                    return getStatsRequest(serverHost, "cluster").get();
+                }
+            });
+            return decode(entity, statsReader, ClusterStats.class, ClusterStats.class);
+        }
         String serverHost = hostManager.getHost();
         ClientRequest request = null;
         ClientResponse<ClusterStats> response = null;
@@ -156,8 +246,8 @@ public class HTTPConnection implements Connection {
         ClientRequest request = null;
         ClientResponse<Set<String>> response = null;
         try {
-            request = requestFactory.createRequest(serverHost);
-            response = request.accept(JSON_CONTENT_TYPE).get();
+            request = createRequest(serverHost);
+            response = request.get();
             if (response.getResponseStatus().getFamily().equals(Response.Status.Family.SUCCESSFUL)) {
                 return response.getEntity(Set.class);
             } else {
@@ -181,8 +271,11 @@ public class HTTPConnection implements Connection {
         ClientRequest request = null;
         ClientResponse response = null;
         try {
+            if (missingKeys != null) {
+                missingKeys.writing(cluster, context.getBucket(), Collections.singleton(context.getKey()));
+            }
             request = getKeyRequest(serverHost, context.getBucket(), context.getKey());
-            response = request.body(JSON_CONTENT_TYPE, value).put();
+            response = request.body(contentType, value).put();
             if (!response.getResponseStatus().getFamily().equals(Response.Status.Family.SUCCESSFUL)) {
                 throw exceptionTranslator.generalException(response);
             }
@@ -191,6 +284,10 @@ public class HTTPConnection implements Connection {
         } catch (Exception e) {
             throw getClientSideException(serverHost, e);
         } finally {
+            // Failed writes may have been applied anyway, so the key is never known as missing anymore:
+            if (missingKeys != null) {
+                missingKeys.written(cluster, context.getBucket(), Collections.singleton(context.getKey()));
+            }
             if (response != null) {
                 response.releaseConnection();
             }
@@ -206,8 +303,11 @@ public class HTTPConnection implements Connection {
         try {
             String requestUri = UriBuilder.fromUri(serverHost).path(context.getBucket()).path(context.getKey()).queryParam("predicate", context.getPredicate()).
                     build().toString();
-            request = requestFactory.createRequest(requestUri);
-            response = request.body(JSON_CONTENT_TYPE, value).put();
+            if (missingKeys != null) {
+                missingKeys.writing(cluster, context.getBucket(), Collections.singleton(context.getKey()));
+            }
+            request = createRequest(requestUri);
+            response = request.body(contentType, value).put();
             if (!response.getResponseStatus().getFamily().equals(Response.Status.Family.SUCCESSFUL)) {
                 throw exceptionTranslator.translate(Operation.CONDITIONAL, response);
             }
@@ -216,15 +316,50 @@ public class HTTPConnection implements Connection {
         } catch (Exception e) {
             throw getClientSideException(serverHost, e);
         } finally {
+            if (missingKeys != null) {
+                missingKeys.written(cluster, context.getBucket(), Collections.singleton(context.getKey()));
+            }
             if (response != null) {
                 response.releaseConnection();
             }
         }
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public <T> T getValue(KeyOperation.Context context, Class<T> type) throws TerrastoreClientException {
+        if (missingKeys != null) {
+            if (missingKeys.isMissing(cluster, context.getBucket(), context.getKey(), keyScanner)) {
+                throw exceptionTranslator.keyNotFound(context.getKey());
+            }
+            long stamp = missingKeys.stamp();
+            try {
+                return doGetValue(context, type);
+            } catch (NoSuchKeyException e) {
+                missingKeys.missing(cluster, context.getBucket(), context.getKey(), stamp);
+                throw e;
+            }
+        } else {
+            return doGetValue(context, type);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T doGetValue(final KeyOperation.Context context, Class<T> type) throws TerrastoreClientException {
+        if (readCoalescer != null) {
+            BufferedEntity entity = readCoalescer.read(Arrays.asList(cluster, "get", context.getBucket(), context.getKey()), new CoalescedRead() {
+
+                @Override
+                protected ClientResponse execute(String serverHost) throws Exception {
+                    return getKeyRequest(serverHost, context.getBucket(), context.getKey()).get();
+                }
+
+                @Override
+                protected TerrastoreClientException failure(ClientResponse response) {
+                    return exceptionTranslator.translate(Operation.GET, response);
+                }
+            });
+            return decode(entity, objectReader, type, type);
+        }
         String serverHost = hostManager.getHost();
         ClientRequest request = null;
         ClientResponse<T> response = null;
@@ -249,14 +384,28 @@ public class HTTPConnection implements Connection {
 
     @SuppressWarnings("unchecked")
     @Override
-    public <T> T getValue(ConditionalOperation.Context context, Class<T> type) throws TerrastoreClientException {
+    public <T> T getValue(final ConditionalOperation.Context context, Class<T> type) throws TerrastoreClientException {
+        if (readCoalescer != null) {
+            BufferedEntity entity = readCoalescer.read(Arrays.asList(cluster, "conditional", context.getBucket(), context.getKey(), context.getPredicate()), new CoalescedRead() {
+
+                @Override
+                protected ClientResponse execute(String serverHost) throws Exception {
+                    return createRequest(buildConditionalURI(context, serverHost)).get();
+                }
+
+                @Override
+                protected TerrastoreClientException failure(ClientResponse response) {
+                    return exceptionTranslator.translate(Operation.CONDITIONAL, response);
+                }
+            });
+            return decode(entity, objectReader, type, type);
+        }
         String serverHost = hostManager.getHost();
         ClientRequest request = null;
         ClientResponse<T> response = null;
         try {
-            String requestUri = UriBuilder.fromUri(serverHost).path(context.getBucket()).path(context.getKey()).queryParam("predicate", context.getPredicate()).
-                    build().toString();
-            request = requestFactory.createRequest(requestUri);
+            String requestUri = buildConditionalURI(context, serverHost);
+            request = createRequest(requestUri);
             response = request.get();
             if (response.getResponseStatus().getFamily().equals(Response.Status.Family.SUCCESSFUL)) {
                 return response.getEntity(type);
@@ -307,7 +456,7 @@ public class HTTPConnection implements Connection {
             request = getBucketRequest(serverHost, context.getBucket()).queryParameter("limit", context.getLimit());
             response = request.get();
             if (response.getResponseStatus().getFamily().equals(Response.Status.Family.SUCCESSFUL)) {
-                return response.getEntity(Values.class, type);
+                return response.getEntity(Values.class, new ValuesType(type).expectedSize(context.getLimit()).compact(context.isCompact()));
             } else {
                 throw exceptionTranslator.generalException(response);
             }
@@ -322,18 +471,36 @@ public class HTTPConnection implements Connection {
         }
     }
 
-    @SuppressWarnings("unchecked")
     @Override
-    public <T> Values<T> queryByRange(RangeOperation.Context context, Class<T> type) throws TerrastoreClientException {
+    public <T> Values<T> queryByRange(final RangeOperation.Context context, final Class<T> type) throws TerrastoreClientException {
+        if (queryCache != null && context.getTimeToLive() > 0) {
+            BufferedEntity entity = queryCache.get(QueryCache.rangeKey(cluster, context), context.getTimeToLive(), new Callable<BufferedEntity>() {
+
+                @Override
+                public BufferedEntity call() {
+                    return readRange(context);
+                }
+            });
+            return decode(entity, valuesReader, Values.class, new ValuesType(type).expectedSize(context.getLimit()).compact(context.isCompact()).projection(context.getProjection()));
+        } else {
+            return doQueryByRange(context, type);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Values<T> doQueryByRange(final RangeOperation.Context context, Class<T> type) throws TerrastoreClientException {
+        if (readCoalescer != null) {
+            return decode(readRange(context), valuesReader, Values.class, new ValuesType(type).expectedSize(context.getLimit()).compact(context.isCompact()).projection(context.getProjection()));
+        }
         String serverHost = hostManager.getHost();
         ClientRequest request = null;
         ClientResponse<Values<T>> response = null;
         try {
             String requestUri = buildRangeURI(context, serverHost);
-            request = requestFactory.createRequest(requestUri);
-            response = request.accept(JSON_CONTENT_TYPE).get();
+            request = createRequest(requestUri);
+            response = request.get();
             if (response.getResponseStatus().getFamily().equals(Response.Status.Family.SUCCESSFUL)) {
-                return response.getEntity(Values.class, type);
+                return response.getEntity(Values.class, new ValuesType(type).expectedSize(context.getLimit()).compact(context.isCompact()).projection(context.getProjection()));
             } else {
                 throw exceptionTranslator.generalException(response);
             }
@@ -348,6 +515,24 @@ public class HTTPConnection implements Connection {
         }
     }
 
+    /**
+     * Read the range response as raw bytes, going through the {@link ReadCoalescer} if configured.
+     */
+    private BufferedEntity readRange(final RangeOperation.Context context) throws TerrastoreClientException {
+        CoalescedRead read = new CoalescedRead() {
+
+            @Override
+            protected ClientResponse execute(String serverHost) throws Exception {
+                return createRequest(buildRangeURI(context, serverHost)).get();
+            }
+        };
+        if (readCoalescer != null) {
+            return readCoalescer.read(Arrays.asList(cluster, "range", context.getBucket(), context.getComparator(), context.getStartKey(), context.getEndKey(), context.getPredicate(), context.getLimit(), context.getTimeToLive()), read);
+        } else {
+            return read.call();
+        }
+    }
+
     @Override
     public Set<String> removeByRange(RangeOperation.Context context) throws TerrastoreClientException {
         String serverHost = hostManager.getHost();
@@ -355,8 +540,8 @@ public class HTTPConnection implements Connection {
         ClientResponse<String> response = null;
         try {
             String requestUri = buildRangeURI(context, serverHost);
-            request = requestFactory.createRequest(requestUri);
-            response = request.accept(JSON_CONTENT_TYPE).delete();
+            request = createRequest(requestUri);
+            response = request.delete();
             if (response.getResponseStatus().getFamily().equals(Response.Status.Family.SUCCESSFUL)) {
                 return response.getEntity(HashSet.class);
             } else {
@@ -373,20 +558,36 @@ public class HTTPConnection implements Connection {
         }
     }
 
-    @SuppressWarnings("unchecked")
     @Override
-    public <T> Values<T> queryByPredicate(PredicateOperation.Context context, Class<T> type) throws TerrastoreClientException {
+    public <T> Values<T> queryByPredicate(final PredicateOperation.Context context, final Class<T> type) throws TerrastoreClientException {
+        if (queryCache != null && context.getTimeToLive() > 0) {
+            BufferedEntity entity = queryCache.get(QueryCache.predicateKey(cluster, context), context.getTimeToLive(), new Callable<BufferedEntity>() {
+
+                @Override
+                public BufferedEntity call() {
+                    return readPredicate(context);
+                }
+            });
+            return decode(entity, valuesReader, Values.class, new ValuesType(type).projection(context.getProjection()));
+        } else {
+            return doQueryByPredicate(context, type);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Values<T> doQueryByPredicate(final PredicateOperation.Context context, Class<T> type) throws TerrastoreClientException {
+        if (readCoalescer != null) {
+            return decode(readPredicate(context), valuesReader, Values.class, new ValuesType(type).projection(context.getProjection()));
+        }
         String serverHost = hostManager.getHost();
         ClientRequest request = null;
         ClientResponse<Values<T>> response = null;
         try {
-            String requestUri = UriBuilder.fromUri(serverHost).path(context.getBucket()).path("predicate").queryParam("predicate", context.getPredicate()).build().
-                    toString();
-
-            request = requestFactory.createRequest(requestUri);
-            response = request.accept(JSON_CONTENT_TYPE).get();
+            String requestUri = buildPredicateURI(context, serverHost);
+            request = createRequest(requestUri);
+            response = request.get();
             if (response.getResponseStatus().getFamily().equals(Response.Status.Family.SUCCESSFUL)) {
-                return response.getEntity(Values.class, type);
+                return response.getEntity(Values.class, new ValuesType(type).projection(context.getProjection()));
             } else {
                 throw exceptionTranslator.generalException(response);
             }
@@ -401,6 +602,24 @@ public class HTTPConnection implements Connection {
         }
     }
 
+    /**
+     * Read the predicate response as raw bytes, going through the {@link ReadCoalescer} if configured.
+     */
+    private BufferedEntity readPredicate(final PredicateOperation.Context context) throws TerrastoreClientException {
+        CoalescedRead read = new CoalescedRead() {
+
+            @Override
+            protected ClientResponse execute(String serverHost) throws Exception {
+                return createRequest(buildPredicateURI(context, serverHost)).get();
+            }
+        };
+        if (readCoalescer != null) {
+            return readCoalescer.read(Arrays.asList(cluster, "predicate", context.getBucket(), context.getPredicate()), read);
+        } else {
+            return read.call();
+        }
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public <T> T queryByMapReduce(MapReduceOperation.Context context, Class<T> returnType) {
@@ -409,8 +628,8 @@ public class HTTPConnection implements Connection {
         ClientResponse<T> response = null;
         try {
             String requestUri = UriBuilder.fromUri(serverHost).path(context.getBucket()).path("mapReduce").build().toString();
-            request = requestFactory.createRequest(requestUri);
-            response = request.body(JSON_CONTENT_TYPE, context.getQuery()).post();
+            request = createRequest(requestUri);
+            response = request.body(contentType, context.getQuery()).post();
             if (!response.getResponseStatus().getFamily().equals(Response.Status.Family.SUCCESSFUL)) {
                 throw exceptionTranslator.translate(Operation.MAP_REDUCE, response);
             }
@@ -435,7 +654,7 @@ public class HTTPConnection implements Connection {
         try {
             String requestUri = UriBuilder.fromUri(serverHost).path(context.getBucket()).path("export").queryParam("destination", context.getFile()).
                     queryParam("secret", context.getSecretKey()).build().toString();
-            request = requestFactory.createRequest(requestUri);
+            request = createRequest(requestUri);
             response = request.body(JSON_CONTENT_TYPE, "").post();
             if (!response.getResponseStatus().getFamily().equals(Response.Status.Family.SUCCESSFUL)) {
                 throw exceptionTranslator.generalException(response);
@@ -460,11 +679,14 @@ public class HTTPConnection implements Connection {
         try {
             String requestUri = UriBuilder.fromUri(serverHost).path(context.getBucket()).path("import").queryParam("source", context.getFile()).queryParam("secret", context.
                     getSecretKey()).build().toString();
-            request = requestFactory.createRequest(requestUri);
+            request = createRequest(requestUri);
             response = request.body(JSON_CONTENT_TYPE, "").post();
             if (!response.getResponseStatus().getFamily().equals(Response.Status.Family.SUCCESSFUL)) {
                 throw exceptionTranslator.generalException(response);
             }
+            if (missingKeys != null) {
+                missingKeys.invalidate(context.getBucket());
+            }
         } catch (TerrastoreClientException e) {
             throw e;
         } catch (Exception e) {
@@ -486,8 +708,8 @@ public class HTTPConnection implements Connection {
             String requestUri = UriBuilder.fromUri(serverHost).path(context.getBucket()).path(context.getKey()).path("update").queryParam("function", context.
                     getFunction()).queryParam("timeout", context.getTimeOut()).build().toString();
 
-            request = requestFactory.createRequest(requestUri);
-            response = request.body(JSON_CONTENT_TYPE, context.getParameters()).post();
+            request = createRequest(requestUri);
+            response = request.body(contentType, context.getParameters()).post();
             if (response.getResponseStatus().getFamily().equals(Response.Status.Family.SUCCESSFUL)) {
                 return response.getEntity(type);
             } else {
@@ -512,8 +734,8 @@ public class HTTPConnection implements Connection {
         ClientResponse<T> response = null;
         try {
             String requestUri = UriBuilder.fromUri(serverHost).path(context.getBucket()).path(context.getKey()).path("merge").build().toString();
-            request = requestFactory.createRequest(requestUri);
-            response = request.body(JSON_CONTENT_TYPE, context.getDescriptor()).post();
+            request = createRequest(requestUri);
+            response = request.body(contentType, context.getDescriptor()).post();
             if (response.getResponseStatus().getFamily().equals(Response.Status.Family.SUCCESSFUL)) {
                 return response.getEntity(type);
             } else {
@@ -531,16 +753,26 @@ public class HTTPConnection implements Connection {
     }
 
     @Override
-    public <T> Values<T> bulkGet(Context context, Class<T> type) throws TerrastoreClientException {
+    public <T> Values<T> bulkGet(final Context context, Class<T> type) throws TerrastoreClientException {
+        if (readCoalescer != null) {
+            BufferedEntity entity = readCoalescer.read(Arrays.asList(cluster, "bulk", context.getBucket(), context.getKeys()), new CoalescedRead() {
+
+                @Override
+                protected ClientResponse execute(String serverHost) throws Exception {
+                    return createRequest(buildBulkGetURI(context, serverHost)).body(contentType, context.getKeys()).post();
+                }
+            });
+            return decode(entity, valuesReader, Values.class, new ValuesType(type).projection(context.getProjection()));
+        }
         String serverHost = hostManager.getHost();
         ClientRequest request = null;
         ClientResponse<Values<T>> response = null;
         try {
-            String requestUri = UriBuilder.fromUri(serverHost).path(context.getBucket()).path("bulk").path("get").build().toString();
-            request = requestFactory.createRequest(requestUri);
-            response = request.body(JSON_CONTENT_TYPE, context.getKeys()).post();
+            String requestUri = buildBulkGetURI(context, serverHost);
+            request = createRequest(requestUri);
+            response = request.body(contentType, context.getKeys()).post();
             if (response.getResponseStatus().getFamily().equals(Response.Status.Family.SUCCESSFUL)) {
-                return response.getEntity(Values.class, type);
+                return response.getEntity(Values.class, new ValuesType(type).projection(context.getProjection()));
             } else {
                 throw exceptionTranslator.generalException(response);
             }
@@ -555,15 +787,19 @@ public class HTTPConnection implements Connection {
         }
     }
 
+    @SuppressWarnings("unchecked")
     @Override
     public Set<String> bulkPut(Context context) throws TerrastoreClientException {
         String serverHost = hostManager.getHost();
         ClientRequest request = null;
         ClientResponse<Set<String>> response = null;
         try {
+            if (missingKeys != null) {
+                missingKeys.writing(cluster, context.getBucket(), context.getValues().keySet());
+            }
             String requestUri = UriBuilder.fromUri(serverHost).path(context.getBucket()).path("bulk").path("put").build().toString();
-            request = requestFactory.createRequest(requestUri);
-            response = request.body(JSON_CONTENT_TYPE, context.getValues()).post();
+            request = createRequest(requestUri);
+            response = request.body(contentType, context.getValues()).post();
             if (response.getResponseStatus().getFamily().equals(Response.Status.Family.SUCCESSFUL)) {
                 return response.getEntity(Set.class);
             } else {
@@ -574,6 +810,9 @@ public class HTTPConnection implements Connection {
         } catch (Exception e) {
             throw getClientSideException(serverHost, e);
         } finally {
+            if (missingKeys != null) {
+                missingKeys.written(cluster, context.getBucket(), context.getValues().keySet());
+            }
             if (response != null) {
                 response.releaseConnection();
             }
@@ -597,22 +836,80 @@ public class HTTPConnection implements Connection {
         return requestUri;
     }
 
+    /**
+     * Get all keys of the given bucket, streaming the response so that values are skipped rather than read.
+     */
+    @SuppressWarnings("unchecked")
+    private Set<String> scanKeys(String bucket) throws TerrastoreClientException {
+        String serverHost = hostManager.getHost();
+        ClientRequest request = null;
+        ClientResponse<Values<Void>> response = null;
+        try {
+            request = getBucketRequest(serverHost, bucket).queryParameter("limit", 0);
+            response = request.get();
+            if (response.getResponseStatus().getFamily().equals(Response.Status.Family.SUCCESSFUL)) {
+                Values<Void> keys = response.getEntity(Values.class, new ValuesType(Void.class));
+                return keys.keySet();
+            } else {
+                throw exceptionTranslator.generalException(response);
+            }
+        } catch (TerrastoreClientException e) {
+            throw e;
+        } catch (Exception e) {
+            throw getClientSideException(serverHost, e);
+        } finally {
+            if (response != null) {
+                response.releaseConnection();
+            }
+        }
+    }
+
+    private String buildConditionalURI(ConditionalOperation.Context context, String serverHost) {
+        return UriBuilder.fromUri(serverHost).path(context.getBucket()).path(context.getKey()).queryParam("predicate", context.getPredicate()).
+                build().toString();
+    }
+
+    private String buildPredicateURI(PredicateOperation.Context context, String serverHost) {
+        return UriBuilder.fromUri(serverHost).path(context.getBucket()).path("predicate").queryParam("predicate", context.getPredicate()).build().
+                toString();
+    }
+
+    private String buildBulkGetURI(Context context, String serverHost) {
+        return UriBuilder.fromUri(serverHost).path(context.getBucket()).path("bulk").path("get").build().toString();
+    }
+
+    private ClientRequest createRequest(String requestUri) {
+        return requestFactory.createRequest(requestUri).accept(acceptedContentTypes);
+    }
+
     private ClientRequest getStatsRequest(String serverHost, String stats) {
         String requestUri = UriBuilder.fromUri(serverHost).path("_stats").path(stats).build().toString();
-        ClientRequest request = requestFactory.createRequest(requestUri);
-        return request.accept(JSON_CONTENT_TYPE);
+        ClientRequest request = createRequest(requestUri);
+        return request;
     }
 
     private ClientRequest getKeyRequest(String serverHost, String bucket, String key) {
         String requestUri = UriBuilder.fromUri(serverHost).path(bucket).path(key).build().toString();
-        ClientRequest request = requestFactory.createRequest(requestUri);
-        return request.accept(JSON_CONTENT_TYPE);
+        ClientRequest request = createRequest(requestUri);
+        return request;
     }
 
     private ClientRequest getBucketRequest(String serverHost, String bucket) {
         String requestUri = UriBuilder.fromUri(serverHost).path(bucket).build().toString();
-        ClientRequest request = requestFactory.createRequest(requestUri);
-        return request.accept(JSON_CONTENT_TYPE);
+        ClientRequest request = createRequest(requestUri);
+        return request;
+    }
+
+    /**
+     * Get the identity of the cluster connected to through the given host manager, scoping caches shared with
+     * connections to other clusters: that is, its hosts, if known, or else the host manager itself.
+     */
+    private static Object clusterOf(HostManager hostManager) {
+        if (hostManager instanceof ManagedHostManager) {
+            return new TreeSet<String>(((ManagedHostManager) hostManager).getHosts());
+        } else {
+            return hostManager;
+        }
     }
 
     private TerrastoreClientException getClientSideException(String serverHost, Exception e) {
@@ -625,4 +922,50 @@ public class HTTPConnection implements Connection {
         return new TerrastoreClientException("Could not service your request: " + e, e);
     }
 
+    private <T> T decode(BufferedEntity entity, MessageBodyReader reader, Class<?> type, Type genericType) throws TerrastoreClientException {
+        try {
+            return entity.<T>read(reader, type, genericType);
+        } catch (TerrastoreClientException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new TerrastoreClientException("Could not service your request: " + e, e);
+        }
+    }
+
+    /**
+     * Idempotent read whose response is buffered, so that it can be shared with identical reads
+     * through the {@link ReadCoalescer}.
+     */
+    private abstract class CoalescedRead implements Callable<BufferedEntity> {
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public BufferedEntity call() throws TerrastoreClientException {
+            String serverHost = hostManager.getHost();
+            ClientResponse<BufferedEntity> response = null;
+            try {
+                response = execute(serverHost);
+                if (response.getResponseStatus().getFamily().equals(Response.Status.Family.SUCCESSFUL)) {
+                    return response.getEntity(BufferedEntity.class);
+                } else {
+                    throw failure(response);
+                }
+            } catch (TerrastoreClientException e) {
+                throw e;
+            } catch (Exception e) {
+                throw getClientSideException(serverHost, e);
+            } finally {
+                if (response != null) {
+                    response.releaseConnection();
+                }
+            }
+        }
+
+        protected abstract ClientResponse execute(String serverHost) throws Exception;
+
+        protected TerrastoreClientException failure(ClientResponse response) {
+            return exceptionTranslator.generalException(response);
+        }
+    }
+
 }
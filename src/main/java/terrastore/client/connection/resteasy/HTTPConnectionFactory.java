@@ -16,17 +16,34 @@
 package terrastore.client.connection.resteasy;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpConnectionManager;
 import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
 
+import terrastore.client.codec.Codec;
+import terrastore.client.codec.JsonCodec;
 import terrastore.client.connection.Connection;
 import terrastore.client.connection.ConnectionFactory;
+import terrastore.client.connection.ConnectionInterceptor;
 import terrastore.client.connection.HostManager;
+import terrastore.client.connection.InterceptedConnection;
+import terrastore.client.connection.ManagedHostManager;
 import terrastore.client.connection.TerrastoreConnectionException;
+import terrastore.client.events.ClientEventListener;
+import terrastore.client.events.EventInterceptor;
+import terrastore.client.events.ListenedHostManager;
+import terrastore.client.mapping.JsonMappingEngine;
+import terrastore.client.management.ClientMBeans;
 import terrastore.client.mapping.JsonObjectDescriptor;
+import terrastore.client.metrics.ConnectionMetrics;
+import terrastore.client.metrics.HotKeys;
+import terrastore.client.metrics.MeteredConnection;
 
 /**
  * HTTP connection factory based on org.apache.commons.httpclient.HttpClient.
@@ -37,11 +54,61 @@ import terrastore.client.mapping.JsonObjectDescriptor;
 public class HTTPConnectionFactory implements ConnectionFactory {
 
     private final HttpClient client;
+    private final CompressionStats compressionStats = new CompressionStats();
+    //
+    private volatile int compressionThreshold = HTTPClientExecutor.NO_COMPRESSION;
+    private volatile int streamingThreshold = HTTPClientExecutor.NO_STREAMING;
+    private volatile List<Class<?>> prewarmedTypes = Collections.emptyList();
+    private volatile Codec codec = new JsonCodec();
+    private volatile ExecutorService readExecutor;
+    private volatile int parallelReadThreshold;
+    private volatile QueryCache queryCache;
+    private volatile ReadCoalescer readCoalescer;
+    private volatile long negativeTimeToLive;
+    private volatile int negativeMaxEntries;
+    private volatile String[] bloomBuckets = new String[0];
+    private volatile int bloomExpectedKeys;
+    private volatile double bloomFalsePositiveRate;
+    private volatile long bloomMaxAge;
+    private volatile MissingKeys missingKeys;
+    private volatile boolean lightweightExceptions;
+    private volatile ConnectionMetrics metrics;
+    private volatile int hotKeys;
+    private volatile HttpClient meteredClient;
+    private volatile List<ConnectionInterceptor> interceptors = Collections.emptyList();
+    private volatile SlowRequestLog slowRequestLog;
+    private volatile ClientEventListener eventListener;
 
     public HTTPConnectionFactory(HttpClient client) {
         this.client = client;
     }
 
+    protected HTTPConnectionFactory(HTTPConnectionFactory other) {
+        this.client = other.client;
+        this.compressionThreshold = other.compressionThreshold;
+        this.streamingThreshold = other.streamingThreshold;
+        this.prewarmedTypes = other.prewarmedTypes;
+        this.codec = other.codec;
+        this.readExecutor = other.readExecutor;
+        this.parallelReadThreshold = other.parallelReadThreshold;
+        this.queryCache = other.queryCache;
+        this.readCoalescer = other.readCoalescer;
+        this.negativeTimeToLive = other.negativeTimeToLive;
+        this.negativeMaxEntries = other.negativeMaxEntries;
+        this.bloomBuckets = other.bloomBuckets;
+        this.bloomExpectedKeys = other.bloomExpectedKeys;
+        this.bloomFalsePositiveRate = other.bloomFalsePositiveRate;
+        this.bloomMaxAge = other.bloomMaxAge;
+        this.missingKeys = other.missingKeys;
+        this.lightweightExceptions = other.lightweightExceptions;
+        this.metrics = other.metrics;
+        this.hotKeys = other.hotKeys;
+        this.meteredClient = other.meteredClient;
+        this.interceptors = other.interceptors;
+        this.slowRequestLog = other.slowRequestLog;
+        this.eventListener = other.eventListener;
+    }
+
     public HTTPConnectionFactory() {
         HttpConnectionManagerParams httpParams = new HttpConnectionManagerParams();
         httpParams.setDefaultMaxConnectionsPerHost(Runtime.getRuntime().availableProcessors() * 10);
@@ -51,11 +118,399 @@ public class HTTPConnectionFactory implements ConnectionFactory {
         this.client = new HttpClient(httpManager);
     }
 
+    /**
+     * Enables gzip compression: request bodies larger than the given threshold will be compressed,
+     * and responses will be asked to be compressed too.<br>
+     * Compression trades CPU time for network bandwidth, so it mostly pays off with large documents or bulk operations;
+     * figures about achieved compression are available through {@link #getCompressionStats()}.
+     *
+     * @param threshold The min size in bytes of request bodies to compress.
+     * @return A new connection factory with compression enabled.
+     */
+    public HTTPConnectionFactory compression(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Compression threshold cannot be negative.");
+        }
+        HTTPConnectionFactory newInstance = new HTTPConnectionFactory(this);
+        newInstance.compressionThreshold = threshold;
+        return newInstance;
+    }
+
+    /**
+     * Enables streaming of large request bodies.<br>
+     * By default, request bodies are fully serialized into a pooled buffer, and then sent with a known Content-Length:
+     * this is the fastest way for small and medium bodies, but requires holding the whole body in memory.
+     * When streaming is enabled, bodies larger than the given threshold are rather serialized straight to the network
+     * with chunked transfer encoding.
+     *
+     * @param threshold The max size in bytes of request bodies to buffer before sending.
+     * @return A new connection factory with streaming enabled.
+     */
+    public HTTPConnectionFactory streaming(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Streaming threshold cannot be negative.");
+        }
+        HTTPConnectionFactory newInstance = new HTTPConnectionFactory(this);
+        newInstance.streamingThreshold = threshold;
+        return newInstance;
+    }
+
+    /**
+     * Sets the codec used to encode documents: by default, documents are encoded as plain JSON, the only encoding
+     * supported by all Terrastore servers.<br>
+     * Responses are always asked in the configured codec, but decoded depending on their actual content type,
+     * so servers can still answer with plain JSON.
+     *
+     * @param codec The codec to use, i.e. {@link terrastore.client.codec.SmileCodec}.
+     * @return A new connection factory using the given codec.
+     */
+    public HTTPConnectionFactory codec(Codec codec) {
+        HTTPConnectionFactory newInstance = new HTTPConnectionFactory(this);
+        newInstance.codec = codec;
+        return newInstance;
+    }
+
+    /**
+     * Enables parallel reading of large responses made of many values, such as ranges, predicate queries and bulk gets:
+     * plain JSON responses larger than the given threshold are fully buffered, split into chunks of values, and bound
+     * in parallel by the given executor (and the calling thread), while preserving the order of values.<br>
+     * The executor is owned by the caller, and can be shared by many connection factories.<br>
+     * Keys of such responses are decoded by the client itself rather than by the JSON parser, whose field names table
+     * degrades with hundreds of thousands of distinct names: so this pays off for huge responses even with few processors.
+     *
+     * @param executor The executor binding values in parallel.
+     * @param threshold The min size in bytes of responses to read in parallel.
+     * @return A new connection factory with parallel reading enabled.
+     */
+    public HTTPConnectionFactory parallelReads(ExecutorService executor, int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Parallel reads threshold cannot be negative.");
+        }
+        HTTPConnectionFactory newInstance = new HTTPConnectionFactory(this);
+        newInstance.readExecutor = executor;
+        newInstance.parallelReadThreshold = threshold;
+        return newInstance;
+    }
+
+    /**
+     * Enables caching of range and predicate query results: queries with a time to live are answered by
+     * the results of a previous identical query, as long as they are not older than that, and concurrent
+     * identical queries share one request; queries without a time to live always hit the server.<br>
+     * The cache is shared by all connections made by this factory, and its figures are available through
+     * {@link #getQueryCache()}.
+     *
+     * @param maxEntries The max number of query results to keep, least recently used ones being evicted first.
+     * @return A new connection factory with query caching enabled.
+     */
+    public HTTPConnectionFactory queryCache(int maxEntries) {
+        HTTPConnectionFactory newInstance = new HTTPConnectionFactory(this);
+        newInstance.queryCache = new QueryCache(maxEntries);
+        return newInstance;
+    }
+
+    /**
+     * Enables coalescing of identical concurrent reads: key gets (conditional or not), ranges, predicate queries,
+     * bulk gets and cluster stats issued while an identical one is in flight wait for it rather than going to the server,
+     * so that a burst of reads for the same hot key costs a single request.<br>
+     * Each caller still gets its own copy of the returned values, decoded from the shared response; failures are rather
+     * shared as they are. Coalesced responses are fully buffered before being decoded.<br>
+     * Coalescing is shared by all connections made by this factory, and its figures are available through
+     * {@link #getReadCoalescer()}.
+     *
+     * @return A new connection factory with read coalescing enabled.
+     */
+    public HTTPConnectionFactory coalesceReads() {
+        HTTPConnectionFactory newInstance = new HTTPConnectionFactory(this);
+        newInstance.readCoalescer = new ReadCoalescer();
+        return newInstance;
+    }
+
+    /**
+     * Enables negative caching of key gets: keys found missing are answered as missing by the client itself
+     * for the given time to live, unless written by this client meanwhile.<br>
+     * Keys written by other clients may hence look missing for up to the time to live, which should be kept short.
+     *
+     * @param timeToLive The time to live of missing keys, in milliseconds.
+     * @param maxEntries The max number of missing keys to remember, oldest ones being evicted first.
+     * @return A new connection factory with negative caching enabled.
+     * @see MissingKeys
+     */
+    public HTTPConnectionFactory negativeCaching(long timeToLive, int maxEntries) {
+        if (timeToLive <= 0) {
+            throw new IllegalArgumentException("Negative caching time to live must be positive.");
+        }
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Negative caching size must be positive.");
+        }
+        HTTPConnectionFactory newInstance = new HTTPConnectionFactory(this);
+        newInstance.negativeTimeToLive = timeToLive;
+        newInstance.negativeMaxEntries = maxEntries;
+        newInstance.missingKeys = newInstance.makeMissingKeys();
+        return newInstance;
+    }
+
+    /**
+     * Enables Bloom filters of keys for the given buckets: each filter is seeded in background by scanning all keys
+     * of its bucket the first time one of them is read, and then updated with keys written by this client, so that gets
+     * of keys not in the filter are answered as missing by the client itself; gets go to the server while seeding.<br>
+     * Keys written by other clients are not in the filter until it's seeded again, after the given max age
+     * or when dropped through {@link MissingKeys#invalidate(String)}, so filters are only suited to buckets
+     * mostly written by this client.
+     *
+     * @param expectedKeys The expected number of keys per bucket, sizing the filters.
+     * @param falsePositiveRate The expected rate of missing keys the filters fail to reject.
+     * @param maxAge The max age of each filter in milliseconds, bounding how long keys written by other clients may be reported missing.
+     * @param buckets The buckets to filter.
+     * @return A new connection factory with Bloom filters enabled.
+     * @see MissingKeys
+     */
+    public HTTPConnectionFactory bloomFilters(int expectedKeys, double falsePositiveRate, long maxAge, String... buckets) {
+        if (expectedKeys <= 0) {
+            throw new IllegalArgumentException("Expected keys must be positive.");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1.");
+        }
+        if (maxAge <= 0) {
+            throw new IllegalArgumentException("Max age must be positive.");
+        }
+        HTTPConnectionFactory newInstance = new HTTPConnectionFactory(this);
+        newInstance.bloomBuckets = buckets.clone();
+        newInstance.bloomExpectedKeys = expectedKeys;
+        newInstance.bloomFalsePositiveRate = falsePositiveRate;
+        newInstance.bloomMaxAge = maxAge;
+        newInstance.missingKeys = newInstance.makeMissingKeys();
+        return newInstance;
+    }
+
+    /**
+     * Makes expected outcomes of key gets and conditional operations lightweight: {@link terrastore.client.connection.NoSuchKeyException}
+     * and {@link terrastore.client.connection.UnsatisfiedConditionException} are thrown
+     * without stack traces, and without reading the error message sent by the server.<br>
+     * This makes missing keys and failed conditions as cheap as regular results, at the price of less informative
+     * exceptions: pair it with {@link terrastore.client.KeyOperation#getIfPresent(Class)} and
+     * {@link terrastore.client.ConditionalOperation#tryPut(Object)} to not deal with exceptions at all.
+     *
+     * @return A new connection factory with lightweight exceptions enabled.
+     */
+    public HTTPConnectionFactory lightweightExceptions() {
+        HTTPConnectionFactory newInstance = new HTTPConnectionFactory(this);
+        newInstance.lightweightExceptions = true;
+        return newInstance;
+    }
+
+    /**
+     * Enables metrics: latencies of operations by operation and bucket, latencies of requests by host, request and
+     * response bytes, failures by exception type, and time spent waiting for pooled connections.<br>
+     * Metrics are shared by all connections made by the returned factory, and available through {@link #getMetrics()};
+     * when not enabled, connections pay no measuring costs at all.
+     *
+     * @return A new connection factory with metrics enabled.
+     */
+    public HTTPConnectionFactory metrics() {
+        HTTPConnectionFactory newInstance = new HTTPConnectionFactory(this);
+        newInstance.metrics = new ConnectionMetrics(hotKeys > 0 ? new HotKeys(hotKeys) : null);
+        newInstance.meteredClient = newInstance.makeMeteredClient();
+        return newInstance;
+    }
+
+    /**
+     * Detects the given number of hot keys per bucket, that is, the keys most frequently accessed by key, update and merge
+     * operations, available through {@link ConnectionMetrics#getHotKeys()}: see {@link HotKeys}.<br>
+     * Metrics are enabled too, if not already.
+     *
+     * @param top The number of hot keys to detect per bucket.
+     * @return A new connection factory with hot keys detection enabled.
+     */
+    public HTTPConnectionFactory hotKeys(int top) {
+        if (top <= 0) {
+            throw new IllegalArgumentException("The number of hot keys must be positive!");
+        }
+        HTTPConnectionFactory newInstance = new HTTPConnectionFactory(this);
+        newInstance.hotKeys = top;
+        return newInstance.metrics();
+    }
+
+    /**
+     * Records requests taking longer than the given threshold, keeping the most recent ones in a {@link SlowRequestLog}
+     * shared by all connections made by the returned factory, and available through {@link #getSlowRequestLog()}.<br>
+     * Each slow request is recorded with its URI, host, status, request and response sizes, and the breakdown
+     * of its time: see {@link SlowRequest}.
+     *
+     * @param threshold The min duration of requests to record.
+     * @param unit The time unit of the threshold.
+     * @param capacity The max number of slow requests to keep.
+     * @return A new connection factory with slow requests recording enabled.
+     */
+    public HTTPConnectionFactory slowRequests(long threshold, TimeUnit unit, int capacity) {
+        HTTPConnectionFactory newInstance = new HTTPConnectionFactory(this);
+        newInstance.slowRequestLog = new SlowRequestLog(threshold, unit, capacity);
+        newInstance.meteredClient = newInstance.makeMeteredClient();
+        return newInstance;
+    }
+
+    /**
+     * Registers JMX MBeans for connections made by this factory, exposing the given host manager state, connection pool usage,
+     * and in flight requests, rate and latency of operations; they also provide operations to un-suspect hosts and
+     * resize the connection pool at runtime.<br>
+     * MBeans are only ever registered by explicitly calling this method, never by making connections; they're named
+     * after the given client name, see {@link terrastore.client.management.ClientMBeans}: registering again under
+     * the same name replaces them, while {@link terrastore.client.management.ClientMBeans#unregister(String)} removes them.
+     *
+     * @param clientName The client name, a valid JMX object name value.
+     * @param hostManager The host manager of connections, whose state is exposed only if it's a {@link ManagedHostManager}.
+     * @throws IllegalStateException If metrics are not enabled.
+     */
+    public void registerMBeans(String clientName, HostManager hostManager) {
+        if (metrics == null) {
+            throw new IllegalStateException("Metrics must be enabled to register MBeans.");
+        }
+        HostManager managedHostManager = eventListener != null && hostManager instanceof ManagedHostManager ? new ListenedHostManager(hostManager, eventListener) : hostManager;
+        ClientMBeans.register(clientName, managedHostManager, client.getHttpConnectionManager(), metrics);
+    }
+
+    /**
+     * Passes all operations of connections made by this factory through the given interceptors, in order:
+     * see {@link terrastore.client.connection.ConnectionInterceptor}.<br>
+     * Without interceptors, connections are not intercepted at all.
+     *
+     * @param interceptors The interceptors, the first one being the outermost.
+     * @return A new connection factory with the given interceptors.
+     */
+    public HTTPConnectionFactory interceptors(ConnectionInterceptor... interceptors) {
+        HTTPConnectionFactory newInstance = new HTTPConnectionFactory(this);
+        newInstance.interceptors = new ArrayList<ConnectionInterceptor>(Arrays.asList(interceptors));
+        return newInstance;
+    }
+
+    /**
+     * Publishes low level events of connections made by this factory to the given listener: an event for every
+     * operation, with its host, status, sizes and time breakdown, an event for every connection checked out of the pool,
+     * and an event for every host suspected or unsuspected.<br>
+     * Operations are measured by an interceptor outermost to any other, and events are built only while
+     * the listener is enabled: see {@link terrastore.client.events.JfrEventListener} to publish them to the JDK Flight Recorder.
+     *
+     * @param listener The event listener.
+     * @return A new connection factory publishing events to the given listener.
+     */
+    public HTTPConnectionFactory events(ClientEventListener listener) {
+        HTTPConnectionFactory newInstance = new HTTPConnectionFactory(this);
+        newInstance.eventListener = listener;
+        newInstance.meteredClient = newInstance.makeMeteredClient();
+        return newInstance;
+    }
+
+    /**
+     * Prepares JSON mapping of the given document types as soon as connections are made, rather than
+     * on first requests: this avoids latency spikes caused by classes introspection when the client is first used.
+     *
+     * @param types The document types to prepare.
+     * @return A new connection factory with the given types prewarmed.
+     */
+    public HTTPConnectionFactory prewarm(Class<?>... types) {
+        HTTPConnectionFactory newInstance = new HTTPConnectionFactory(this);
+        newInstance.prewarmedTypes = new ArrayList<Class<?>>(Arrays.asList(types));
+        return newInstance;
+    }
+
+    /**
+     * Get compression figures for all connections made by this factory.
+     */
+    public CompressionStats getCompressionStats() {
+        return compressionStats;
+    }
+
+    /**
+     * Get the query cache shared by all connections made by this factory, or null if not enabled.
+     */
+    public QueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    /**
+     * Get the read coalescer shared by all connections made by this factory, or null if not enabled.
+     */
+    public ReadCoalescer getReadCoalescer() {
+        return readCoalescer;
+    }
+
+    /**
+     * Get figures and invalidation of missing keys known to all connections made by this factory, or null if neither
+     * negative caching nor Bloom filters are enabled.
+     */
+    public MissingKeys getMissingKeys() {
+        return missingKeys;
+    }
+
+    /**
+     * Get metrics of all connections made by this factory, or null if not enabled.
+     */
+    public ConnectionMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Get the slow requests recorded by all connections made by this factory, or null if not enabled.
+     */
+    public SlowRequestLog getSlowRequestLog() {
+        return slowRequestLog;
+    }
+
     @Override
     public Connection makeConnection(HostManager hostManager, List<JsonObjectDescriptor<?>> descriptors) throws TerrastoreConnectionException {
         List<JsonObjectDescriptor<?>> jsonDescriptors = new ArrayList<JsonObjectDescriptor<?>>();
         jsonDescriptors.addAll(descriptors);
         jsonDescriptors.add(new ErrorMessageDescriptor());
-        return new HTTPConnection(hostManager, jsonDescriptors);
+        JsonMappingEngine jsonEngine = new JsonMappingEngine(jsonDescriptors, codec);
+        jsonEngine.prewarm(prewarmedTypes);
+        HostManager connectionHostManager = eventListener != null ? new ListenedHostManager(hostManager, eventListener) : hostManager;
+        Connection connection = new HTTPConnection(connectionHostManager, jsonEngine, new HTTPClientExecutor(this), this);
+        if (metrics != null) {
+            connection = new MeteredConnection(connection, metrics);
+        }
+        if (eventListener != null) {
+            List<ConnectionInterceptor> chain = new ArrayList<ConnectionInterceptor>(interceptors.size() + 1);
+            chain.add(new EventInterceptor(eventListener));
+            chain.addAll(interceptors);
+            return new InterceptedConnection(connection, chain);
+        } else {
+            return isIntercepted() ? new InterceptedConnection(connection, interceptors) : connection;
+        }
+    }
+
+    ExecutorService getReadExecutor() {
+        return readExecutor;
+    }
+
+    int getParallelReadThreshold() {
+        return parallelReadThreshold;
+    }
+
+    boolean isLightweightExceptions() {
+        return lightweightExceptions;
+    }
+
+    boolean isIntercepted() {
+        return !interceptors.isEmpty() || eventListener != null;
+    }
+
+    HttpClient getHttpClient() {
+        return meteredClient != null ? meteredClient : client;
+    }
+
+    int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    int getStreamingThreshold() {
+        return streamingThreshold;
+    }
+
+    private HttpClient makeMeteredClient() {
+        return new HttpClient(client.getParams(), new MeteredConnectionManager(client.getHttpConnectionManager(), metrics, eventListener));
+    }
+
+    private MissingKeys makeMissingKeys() {
+        return new MissingKeys(negativeTimeToLive, negativeMaxEntries, bloomBuckets, bloomExpectedKeys, bloomFalsePositiveRate, bloomMaxAge);
     }
 }
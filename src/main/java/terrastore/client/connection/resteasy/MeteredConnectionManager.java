@@ -0,0 +1,143 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection.resteasy;
+
+import org.apache.commons.httpclient.ConnectionPoolTimeoutException;
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpConnection;
+import org.apache.commons.httpclient.HttpConnectionManager;
+import org.apache.commons.httpclient.HttpException;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import terrastore.client.events.ClientEventListener;
+import terrastore.client.metrics.ConnectionMetrics;
+
+/**
+ * HttpConnectionManager decorator measuring the time spent waiting for a connection: waits are recorded into
+ * {@link ConnectionMetrics}, if any, along with the number of threads currently waiting, published as checkouts
+ * to the {@link ClientEventListener}, if any and enabled, and are accumulated per thread until taken by {@link #takeWait()}.
+ *
+ * @author Sergio Bossa
+ */
+class MeteredConnectionManager implements HttpConnectionManager {
+
+    private final ThreadLocal<long[]> waits = new ThreadLocal<long[]>() {
+
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+    private final HttpConnectionManager delegate;
+    private final ConnectionMetrics metrics;
+    private final ClientEventListener listener;
+
+    public MeteredConnectionManager(HttpConnectionManager delegate, ConnectionMetrics metrics, ClientEventListener listener) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.listener = listener;
+    }
+
+    /**
+     * Get the nanoseconds the current thread spent waiting for connections since last taken, and reset them.
+     */
+    public long takeWait() {
+        long[] wait = waits.get();
+        long nanos = wait[0];
+        wait[0] = 0;
+        return nanos;
+    }
+
+    @Override
+    public HttpConnection getConnection(HostConfiguration hostConfiguration) {
+        long start = requested();
+        boolean acquired = false;
+        try {
+            HttpConnection connection = delegate.getConnection(hostConfiguration);
+            acquired = true;
+            return connection;
+        } finally {
+            done(hostConfiguration, start, acquired);
+        }
+    }
+
+    /**
+     * @deprecated Use {@link #getConnectionWithTimeout(HostConfiguration, long)}, which this delegates to.
+     */
+    @Deprecated
+    @Override
+    public HttpConnection getConnection(HostConfiguration hostConfiguration, long timeout) throws HttpException {
+        try {
+            return getConnectionWithTimeout(hostConfiguration, timeout);
+        } catch (ConnectionPoolTimeoutException ex) {
+            throw new HttpException(ex.getMessage());
+        }
+    }
+
+    @Override
+    public HttpConnection getConnectionWithTimeout(HostConfiguration hostConfiguration, long timeout) throws ConnectionPoolTimeoutException {
+        long start = requested();
+        boolean acquired = false;
+        try {
+            HttpConnection connection = delegate.getConnectionWithTimeout(hostConfiguration, timeout);
+            acquired = true;
+            return connection;
+        } finally {
+            done(hostConfiguration, start, acquired);
+        }
+    }
+
+    @Override
+    public void releaseConnection(HttpConnection connection) {
+        delegate.releaseConnection(connection);
+    }
+
+    @Override
+    public void closeIdleConnections(long idleTimeout) {
+        delegate.closeIdleConnections(idleTimeout);
+    }
+
+    @Override
+    public HttpConnectionManagerParams getParams() {
+        return delegate.getParams();
+    }
+
+    @Override
+    public void setParams(HttpConnectionManagerParams params) {
+        delegate.setParams(params);
+    }
+
+    private long requested() {
+        if (metrics != null) {
+            metrics.connectionRequested();
+        }
+        return System.nanoTime();
+    }
+
+    private void done(HostConfiguration hostConfiguration, long start, boolean acquired) {
+        long nanos = System.nanoTime() - start;
+        waits.get()[0] += nanos;
+        if (metrics != null) {
+            if (acquired) {
+                metrics.connectionAcquired(nanos);
+            } else {
+                metrics.connectionRefused();
+            }
+        }
+        if (acquired && listener != null && listener.isEnabled()) {
+            listener.connectionAcquired(hostConfiguration.getHost() + ":" + hostConfiguration.getPort(), nanos);
+        }
+    }
+}
@@ -0,0 +1,301 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection.resteasy;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client-side knowledge about missing keys, answering key gets for them without going to the server.<br>
+ * Keys can be known to be missing in two ways, each one optional:
+ * <ul>
+ * <li>Negative caching: keys found missing by a previous get are considered missing for a short time to live,
+ * or until written by this client.</li>
+ * <li>Bloom filters: for the configured buckets, a Bloom filter of all keys is seeded in background by scanning
+ * the bucket the first time one of its keys is read, and then kept up to date with keys written by this client,
+ * so that keys not in the filter are definitely missing: reads go to the server until seeding completes.</li>
+ * </ul>
+ * Both only know about writes made by this client: negative caching may hide keys written by others for up to its
+ * time to live, while Bloom filters may hide them for up to their max age, after which they're seeded again,
+ * so they're best suited to buckets mostly written by this client.<br>
+ * Missing keys are known per cluster, so that they can be shared by connections to different clusters.
+ *
+ * @author Sergio Bossa
+ */
+public class MissingKeys {
+
+    private final long timeToLive;
+    private final Map<List<Object>, Long> negatives;
+    private final Set<String> bloomBuckets;
+    private final int expectedKeys;
+    private final double falsePositiveRate;
+    private final long maxAge;
+    private final ConcurrentMap<List<Object>, Filter> filters = new ConcurrentHashMap<List<Object>, Filter>();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong negativeHits = new AtomicLong();
+    private final AtomicLong bloomRejections = new AtomicLong();
+    private final AtomicLong bloomFalsePositives = new AtomicLong();
+    private final AtomicLong bloomSeedings = new AtomicLong();
+    private volatile ExecutorService seeder;
+
+    MissingKeys(long timeToLive, final int maxEntries, String[] bloomBuckets, int expectedKeys, double falsePositiveRate, long maxAge) {
+        this.timeToLive = timeToLive * 1000000;
+        this.negatives = new LinkedHashMap<List<Object>, Long>(16, 0.75f, false) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, Long> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.bloomBuckets = new HashSet<String>(Arrays.asList(bloomBuckets));
+        this.expectedKeys = expectedKeys;
+        this.falsePositiveRate = falsePositiveRate;
+        this.maxAge = maxAge * 1000000;
+    }
+
+    /**
+     * Get the number of gets answered by negative caching.
+     */
+    public long getNegativeHits() {
+        return negativeHits.get();
+    }
+
+    /**
+     * Get the number of gets answered by Bloom filters.
+     */
+    public long getBloomRejections() {
+        return bloomRejections.get();
+    }
+
+    /**
+     * Get the number of gets for missing keys which Bloom filters failed to reject.
+     */
+    public long getBloomFalsePositives() {
+        return bloomFalsePositives.get();
+    }
+
+    /**
+     * Get the number of Bloom filters seeded so far, including filters seeded again after their max age.
+     */
+    public long getBloomSeedings() {
+        return bloomSeedings.get();
+    }
+
+    /**
+     * Get the observed false positive rate of Bloom filters: the fraction of gets for missing keys
+     * which Bloom filters failed to reject.
+     */
+    public double getFalsePositiveRate() {
+        long falsePositives = bloomFalsePositives.get();
+        long missing = falsePositives + bloomRejections.get();
+        return missing > 0 ? (double) falsePositives / missing : 0;
+    }
+
+    /**
+     * Forget all known missing keys of the given bucket, and drop its Bloom filters (if any),
+     * which will be seeded again starting from next read, in all clusters.
+     */
+    public void invalidate(String bucket) {
+        writes.incrementAndGet();
+        synchronized (negatives) {
+            for (Iterator<List<Object>> keys = negatives.keySet().iterator(); keys.hasNext();) {
+                if (keys.next().get(1).equals(bucket)) {
+                    keys.remove();
+                }
+            }
+        }
+        for (Iterator<List<Object>> buckets = filters.keySet().iterator(); buckets.hasNext();) {
+            if (buckets.next().get(1).equals(bucket)) {
+                buckets.remove();
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        writes.incrementAndGet();
+        synchronized (negatives) {
+            negatives.clear();
+        }
+        filters.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "MissingKeys{"
+                + "negativeHits=" + getNegativeHits()
+                + ", bloomRejections=" + getBloomRejections()
+                + ", bloomFalsePositives=" + getBloomFalsePositives()
+                + ", falsePositiveRate=" + getFalsePositiveRate() + "}";
+    }
+
+    /**
+     * Get a stamp to pass to {@link #missing(String, String, long)} when the read started.
+     */
+    long stamp() {
+        return writes.get();
+    }
+
+    boolean isMissing(Object cluster, String bucket, String key, KeyScanner scanner) {
+        if (timeToLive > 0) {
+            Long expiration = null;
+            synchronized (negatives) {
+                expiration = negatives.get(Arrays.asList(cluster, bucket, key));
+            }
+            if (expiration != null && expiration - System.nanoTime() > 0) {
+                negativeHits.incrementAndGet();
+                return true;
+            }
+        }
+        BloomFilter filter = filter(cluster, bucket, scanner);
+        if (filter != null && !filter.mightContain(key)) {
+            bloomRejections.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Record the given key as missing, unless any write happened since the read finding it missing started:
+     * its response may be older than the write.
+     */
+    void missing(Object cluster, String bucket, String key, long stamp) {
+        Filter filter = filters.get(Arrays.<Object>asList(cluster, bucket));
+        if (filter != null && filter.seeded) {
+            bloomFalsePositives.incrementAndGet();
+        }
+        if (timeToLive > 0) {
+            synchronized (negatives) {
+                if (writes.get() == stamp) {
+                    negatives.put(Arrays.asList(cluster, bucket, key), System.nanoTime() + timeToLive);
+                }
+            }
+        }
+    }
+
+    /**
+     * Record the given keys as about to be written: they're added to the Bloom filter (if any) before being
+     * actually written, so that the filter never rejects keys already written.
+     */
+    void writing(Object cluster, String bucket, Set<String> keys) {
+        Filter filter = filters.get(Arrays.<Object>asList(cluster, bucket));
+        if (filter != null) {
+            for (String key : keys) {
+                filter.bloom.add(key);
+            }
+        }
+    }
+
+    /**
+     * Record the given keys as written, so no longer missing.
+     */
+    void written(Object cluster, String bucket, Set<String> keys) {
+        if (timeToLive > 0) {
+            synchronized (negatives) {
+                writes.incrementAndGet();
+                for (String key : keys) {
+                    negatives.remove(Arrays.asList(cluster, bucket, key));
+                }
+            }
+        }
+    }
+
+    private BloomFilter filter(Object cluster, final String bucket, final KeyScanner scanner) {
+        if (bloomBuckets.contains(bucket)) {
+            final List<Object> scope = Arrays.asList(cluster, bucket);
+            Filter filter = filters.get(scope);
+            if (filter == null || (filter.seeded && System.nanoTime() - filter.started >= maxAge)) {
+                // The filter is published before seeding, so that keys written meanwhile are not lost:
+                final Filter seeding = new Filter(new BloomFilter(expectedKeys, falsePositiveRate), System.nanoTime());
+                boolean published = filter == null ? filters.putIfAbsent(scope, seeding) == null : filters.replace(scope, filter, seeding);
+                if (published) {
+                    seeder().execute(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            try {
+                                for (String key : scanner.scan(bucket)) {
+                                    seeding.bloom.add(key);
+                                }
+                                seeding.seeded = true;
+                                bloomSeedings.incrementAndGet();
+                            } catch (Exception ex) {
+                                filters.remove(scope, seeding);
+                            }
+                        }
+                    });
+                }
+                return null;
+            } else if (filter.seeded) {
+                return filter.bloom;
+            } else {
+                return null;
+            }
+        } else {
+            return null;
+        }
+    }
+
+    private ExecutorService seeder() {
+        if (seeder == null) {
+            synchronized (this) {
+                if (seeder == null) {
+                    ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "terrastore-bloom-seeder");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                    executor.allowCoreThreadTimeOut(true);
+                    seeder = executor;
+                }
+            }
+        }
+        return seeder;
+    }
+
+    interface KeyScanner {
+
+        Set<String> scan(String bucket) throws Exception;
+    }
+
+    private static class Filter {
+
+        private final BloomFilter bloom;
+        private final long started;
+        private volatile boolean seeded;
+
+        public Filter(BloomFilter bloom, long started) {
+            this.bloom = bloom;
+            this.started = started;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection.resteasy;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import terrastore.client.PredicateOperation;
+import terrastore.client.RangeOperation;
+import terrastore.client.TerrastoreClientException;
+
+/**
+ * Client-side cache of range and predicate query results, keyed by the cluster they're sent to and the normalized query
+ * (bucket, comparator, start and end keys, predicate and limit), so that it can be shared by connections to different
+ * clusters.<br>
+ * Only queries with a time to live are cached, and for no longer than that: so results are never staler than
+ * what the query itself allows; concurrent identical queries share a single in-flight request, and failed
+ * queries are never cached.<br>
+ * Results are cached as raw response bytes, which every caller then decodes on its own, with its own type,
+ * projection and compactness: so no two callers ever get the same objects.
+ *
+ * @author Sergio Bossa
+ */
+public class QueryCache {
+
+    private final Map<Key, CachedQuery> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public QueryCache(final int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Query cache size must be positive.");
+        }
+        this.entries = new LinkedHashMap<Key, CachedQuery>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedQuery> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get the number of queries answered by a cached result.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of queries actually sent to the server.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Get the number of queries which waited for an identical in-flight query rather than sending their own.
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "QueryCache{"
+                + "hits=" + getHits()
+                + ", misses=" + getMisses()
+                + ", coalesced=" + getCoalesced()
+                + ", size=" + size() + "}";
+    }
+
+    static Key rangeKey(Object cluster, RangeOperation.Context context) {
+        return new Key("range",
+                cluster,
+                context.getBucket(),
+                context.getComparator(),
+                context.getStartKey(),
+                context.getEndKey(),
+                context.getPredicate(),
+                context.getLimit() > 0 ? context.getLimit() : 0);
+    }
+
+    static Key predicateKey(Object cluster, PredicateOperation.Context context) {
+        return new Key("predicate",
+                cluster,
+                context.getBucket(),
+                context.getPredicate());
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> T get(Key key, long timeToLive, Callable<T> query) throws TerrastoreClientException {
+        long now = System.nanoTime();
+        long maxAge = timeToLive * 1000000;
+        CachedQuery entry = null;
+        boolean owner = false;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry == null || entry.isStale(now, maxAge)) {
+                entry = new CachedQuery(new FutureTask<Object>((Callable<Object>) query), now);
+                entries.put(key, entry);
+                owner = true;
+            }
+        }
+        if (owner) {
+            misses.incrementAndGet();
+            entry.task.run();
+        } else if (entry.task.isDone()) {
+            hits.incrementAndGet();
+        } else {
+            coalesced.incrementAndGet();
+        }
+        try {
+            return (T) ReadCoalescer.await(entry.task);
+        } catch (RuntimeException ex) {
+            synchronized (entries) {
+                if (entry.task.isDone() && entries.get(key) == entry) {
+                    entries.remove(key);
+                }
+            }
+            throw ex;
+        }
+    }
+
+    static class Key {
+
+        private final Object[] parts;
+
+        public Key(Object... parts) {
+            this.parts = parts;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && Arrays.equals(parts, ((Key) obj).parts);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(parts);
+        }
+    }
+
+    private static class CachedQuery {
+
+        private final FutureTask<Object> task;
+        private final long started;
+
+        public CachedQuery(FutureTask<Object> task, long started) {
+            this.task = task;
+            this.started = started;
+        }
+
+        /**
+         * Results are too stale for a query whose time to live, given as max age, has elapsed since the cached query
+         * was sent, as they may have been computed by the server as early as that: the time to live is the one of
+         * the query looking the results up, not of the one caching them.
+         */
+        public boolean isStale(long now, long maxAge) {
+            return now - started >= maxAge;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection.resteasy;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import terrastore.client.TerrastoreClientException;
+import terrastore.client.mapping.BufferedEntity;
+
+/**
+ * Single-flight execution of idempotent reads: a read issued while an identical one is in flight doesn't go
+ * to the server, but waits for the in-flight one and shares its outcome.<br>
+ * Responses are shared as raw bytes, which every caller then decodes on its own, so no two callers ever get
+ * the same objects; failures are rather shared as they are.<br>
+ * Reads are identical if sent to the same cluster with the same parameters, whatever the host they're sent to.<br>
+ * Nothing is kept once reads complete: that's the job of the {@link QueryCache}.
+ *
+ * @author Sergio Bossa
+ */
+public class ReadCoalescer {
+
+    private final ConcurrentMap<Object, FutureTask<BufferedEntity>> inFlight = new ConcurrentHashMap<Object, FutureTask<BufferedEntity>>();
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Get the number of reads actually sent to the server.
+     */
+    public long getReads() {
+        return reads.get();
+    }
+
+    /**
+     * Get the number of reads which shared the response of an identical in-flight read.
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ReadCoalescer{"
+                + "reads=" + getReads()
+                + ", coalesced=" + getCoalesced() + "}";
+    }
+
+    BufferedEntity read(Object key, Callable<BufferedEntity> read) throws TerrastoreClientException {
+        FutureTask<BufferedEntity> task = new FutureTask<BufferedEntity>(read);
+        FutureTask<BufferedEntity> existing = inFlight.putIfAbsent(key, task);
+        if (existing == null) {
+            reads.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                inFlight.remove(key, task);
+            }
+            return await(task);
+        } else {
+            coalesced.incrementAndGet();
+            return await(existing);
+        }
+    }
+
+    /**
+     * Wait for the given read, rethrowing its failure (if any) as it is when unchecked.
+     */
+    static <T> T await(Future<T> read) throws TerrastoreClientException {
+        try {
+            return read.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new TerrastoreClientException("Could not service your request: " + cause, cause);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new TerrastoreClientException("Interrupted while waiting for an in-flight request.", ex);
+        }
+    }
+}
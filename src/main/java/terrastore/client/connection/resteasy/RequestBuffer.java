@@ -0,0 +1,131 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection.resteasy;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedList;
+
+/**
+ * Growable byte buffer holding serialized request bodies, pooled per thread so that steady state requests
+ * reuse the same backing arrays.<br>
+ * Buffers can be bounded: writing past the limit marks the buffer as overflowed and fails with an IOException.
+ * Closing a buffer has no effect, so writers closing their target stream don't hurt.
+ *
+ * @author Sergio Bossa
+ */
+final class RequestBuffer extends OutputStream {
+
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+    //
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_POOLED_CAPACITY = 256 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 2;
+    private static final ThreadLocal<LinkedList<RequestBuffer>> POOL = new ThreadLocal<LinkedList<RequestBuffer>>() {
+
+        @Override
+        protected LinkedList<RequestBuffer> initialValue() {
+            return new LinkedList<RequestBuffer>();
+        }
+    };
+    //
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int count;
+    private int limit;
+    private boolean overflowed;
+    private boolean pooled;
+
+    private RequestBuffer() {
+    }
+
+    /**
+     * Acquire an empty buffer from the pool of the calling thread.
+     *
+     * @param limit The max number of bytes the buffer can hold, or {@link #UNBOUNDED}.
+     */
+    public static RequestBuffer acquire(int limit) {
+        RequestBuffer requestBuffer = POOL.get().poll();
+        if (requestBuffer == null) {
+            requestBuffer = new RequestBuffer();
+        }
+        requestBuffer.count = 0;
+        requestBuffer.limit = limit;
+        requestBuffer.overflowed = false;
+        requestBuffer.pooled = false;
+        return requestBuffer;
+    }
+
+    /**
+     * Give this buffer back to the pool of the calling thread: it must not be used anymore.<br>
+     * Buffers grown too much are left to the garbage collector.
+     */
+    public void release() {
+        LinkedList<RequestBuffer> pool = POOL.get();
+        if (!pooled && buffer.length <= MAX_POOLED_CAPACITY && pool.size() < MAX_POOLED_BUFFERS) {
+            pooled = true;
+            pool.add(this);
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureCapacity(count + 1);
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        ensureCapacity(count + length);
+        System.arraycopy(bytes, offset, buffer, count, length);
+        count += length;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    public void writeTo(OutputStream output) throws IOException {
+        output.write(buffer, 0, count);
+    }
+
+    /**
+     * Copy at most the given number of bytes from the beginning of this buffer.
+     */
+    public byte[] copyHead(int length) {
+        return Arrays.copyOf(buffer, Math.min(count, length));
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public boolean isOverflowed() {
+        return overflowed;
+    }
+
+    private void ensureCapacity(int capacity) throws IOException {
+        if (capacity > limit || capacity < 0) {
+            overflowed = true;
+            throw new IOException("Request buffer limit exceeded: " + limit);
+        } else if (capacity > buffer.length) {
+            int newCapacity = (int) Math.min(Math.max((long) buffer.length * 2, capacity), limit);
+            byte[] newBuffer = new byte[newCapacity];
+            System.arraycopy(buffer, 0, newBuffer, 0, count);
+            buffer = newBuffer;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection.resteasy;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A request which took longer than the threshold configured for the {@link SlowRequestLog}, with the breakdown
+ * of where its time went: serializing the request body, waiting for a pooled connection, waiting for the response
+ * to start (which includes the pool wait), transferring and deserializing the response body.<br>
+ * The bucket, key or range of the request are found in its URI.
+ *
+ * @author Sergio Bossa
+ */
+public class SlowRequest {
+
+    private final long timestamp;
+    private final String operation;
+    private final String method;
+    private final String uri;
+    private final String host;
+    private final int status;
+    private final String failure;
+    private final long totalNanos;
+    private final long serializationNanos;
+    private final long poolWaitNanos;
+    private final long firstByteNanos;
+    private final long transferNanos;
+    private final long deserializationNanos;
+    private final long requestBytes;
+    private final long responseBytes;
+    private final String requestSample;
+
+    SlowRequest(long timestamp, String operation, String method, String uri, String host, int status, String failure,
+            long totalNanos, long serializationNanos, long poolWaitNanos, long firstByteNanos, long transferNanos, long deserializationNanos,
+            long requestBytes, long responseBytes, String requestSample) {
+        this.timestamp = timestamp;
+        this.operation = operation;
+        this.method = method;
+        this.uri = uri;
+        this.host = host;
+        this.status = status;
+        this.failure = failure;
+        this.totalNanos = totalNanos;
+        this.serializationNanos = serializationNanos;
+        this.poolWaitNanos = poolWaitNanos;
+        this.firstByteNanos = firstByteNanos;
+        this.transferNanos = transferNanos;
+        this.deserializationNanos = deserializationNanos;
+        this.requestBytes = requestBytes;
+        this.responseBytes = responseBytes;
+        this.requestSample = requestSample;
+    }
+
+    /**
+     * Get the time the request started at, in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Get the name of the connection operation which sent the request, if known: taken from the
+     * {@link terrastore.client.connection.Invocation}, if intercepted, or else told by the request method and URI.
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * Get the response status, or 0 if the request failed without a response.
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Get the description of the failure preventing a response, if any.
+     */
+    public String getFailure() {
+        return failure;
+    }
+
+    public long getTotal(TimeUnit unit) {
+        return unit.convert(totalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getSerialization(TimeUnit unit) {
+        return unit.convert(serializationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getPoolWait(TimeUnit unit) {
+        return unit.convert(poolWaitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getFirstByte(TimeUnit unit) {
+        return unit.convert(firstByteNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getTransfer(TimeUnit unit) {
+        return unit.convert(transferNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getDeserialization(TimeUnit unit) {
+        return unit.convert(deserializationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the number of request body bytes, as sent over the wire.
+     */
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    /**
+     * Get the number of response body bytes, as received over the wire.
+     */
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    /**
+     * Get the beginning of the request body, if the request was already slow when its response started and
+     * the body was neither streamed nor compressed.
+     */
+    public String getRequestSample() {
+        return requestSample;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%tFT%<tT.%<tL %s %s %s %s -> %s: total=%dus serialization=%dus poolWait=%dus firstByte=%dus transfer=%dus deserialization=%dus requestBytes=%d responseBytes=%d%s",
+                new Date(timestamp),
+                operation != null ? operation : "-",
+                method,
+                uri,
+                host,
+                failure != null ? failure : String.valueOf(status),
+                getTotal(TimeUnit.MICROSECONDS),
+                getSerialization(TimeUnit.MICROSECONDS),
+                getPoolWait(TimeUnit.MICROSECONDS),
+                getFirstByte(TimeUnit.MICROSECONDS),
+                getTransfer(TimeUnit.MICROSECONDS),
+                getDeserialization(TimeUnit.MICROSECONDS),
+                requestBytes,
+                responseBytes,
+                requestSample != null ? " requestSample=" + requestSample : "");
+    }
+}
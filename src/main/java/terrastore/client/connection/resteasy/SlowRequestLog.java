@@ -0,0 +1,136 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection.resteasy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps the most recent {@link SlowRequest}s into a bounded ring buffer, overwriting the oldest ones when full.<br>
+ * Recording is lock-free, just claiming a slot through an atomic counter, so it never blocks requests; dumping
+ * takes a snapshot of the buffer, which may miss requests being recorded meanwhile.
+ *
+ * @author Sergio Bossa
+ */
+public class SlowRequestLog {
+
+    private final long thresholdNanos;
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * @param threshold The min duration of requests to record.
+     * @param unit The time unit of the threshold.
+     * @param capacity The max number of requests to keep, rounded up to the next power of two.
+     */
+    public SlowRequestLog(long threshold, TimeUnit unit, int capacity) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Slow requests threshold cannot be negative.");
+        }
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Slow requests capacity must be positive and at most 2^30.");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.thresholdNanos = unit.toNanos(threshold);
+        this.slots = new AtomicReferenceArray<Entry>(size);
+        this.mask = size - 1;
+    }
+
+    public long getThreshold(TimeUnit unit) {
+        return unit.convert(thresholdNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public int getCapacity() {
+        return slots.length();
+    }
+
+    /**
+     * Get the number of slow requests recorded so far, including those overwritten.
+     */
+    public long getRecorded() {
+        return sequence.get();
+    }
+
+    /**
+     * Get the slow requests currently kept, from the oldest to the most recent.
+     */
+    public List<SlowRequest> dump() {
+        List<Entry> entries = new ArrayList<Entry>(slots.length());
+        long oldest = sequence.get() - slots.length();
+        for (int i = 0; i < slots.length(); i++) {
+            Entry entry = slots.get(i);
+            if (entry != null && entry.sequence >= oldest) {
+                entries.add(entry);
+            }
+        }
+        Collections.sort(entries, new Comparator<Entry>() {
+
+            @Override
+            public int compare(Entry first, Entry second) {
+                return first.sequence < second.sequence ? -1 : (first.sequence == second.sequence ? 0 : 1);
+            }
+        });
+        List<SlowRequest> requests = new ArrayList<SlowRequest>(entries.size());
+        for (Entry entry : entries) {
+            requests.add(entry.request);
+        }
+        return requests;
+    }
+
+    public void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, null);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (SlowRequest request : dump()) {
+            result.append(request).append('\n');
+        }
+        return result.toString();
+    }
+
+    boolean isSlow(long nanos) {
+        return nanos >= thresholdNanos;
+    }
+
+    void record(SlowRequest request) {
+        long current = sequence.getAndIncrement();
+        slots.set((int) (current & mask), new Entry(current, request));
+    }
+
+    private static class Entry {
+
+        private final long sequence;
+        private final SlowRequest request;
+
+        public Entry(long sequence, SlowRequest request) {
+            this.sequence = sequence;
+            this.request = request;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.events;
+
+/**
+ * Listener of low level client events: executed operations, connections checked out of the pool and changes
+ * in host suspicion.<br>
+ * Events are built only if the listener is enabled at the time the operation starts, so disabled listeners
+ * cost a single call to {@link #isEnabled()} per operation; listeners are called on the calling thread,
+ * and must be fast and never throw exceptions.
+ *
+ * @author Sergio Bossa
+ */
+public interface ClientEventListener {
+
+    /**
+     * Check if this listener currently wants events.
+     */
+    public boolean isEnabled();
+
+    /**
+     * Called after an operation has been executed, successfully or not.
+     *
+     * @param event The operation event.
+     */
+    public void operationExecuted(OperationEvent event);
+
+    /**
+     * Called after a connection has been checked out of the pool.
+     *
+     * @param host The host the connection is for, as "host:port".
+     * @param waitNanos The time spent waiting for the connection, in nanoseconds.
+     */
+    public void connectionAcquired(String host, long waitNanos);
+
+    /**
+     * Called after a host has been marked as "suspected".
+     *
+     * @param host The suspected host.
+     */
+    public void hostSuspected(String host);
+
+    /**
+     * Called after the "suspected" mark has been explicitly cleared from a host.
+     *
+     * @param host The host.
+     */
+    public void hostUnsuspected(String host);
+}
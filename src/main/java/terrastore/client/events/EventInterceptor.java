@@ -0,0 +1,55 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.events;
+
+import terrastore.client.TerrastoreClientException;
+import terrastore.client.connection.ConnectionInterceptor;
+import terrastore.client.connection.Invocation;
+
+/**
+ * {@link ConnectionInterceptor} publishing an {@link OperationEvent} to the given {@link ClientEventListener}
+ * for every operation, if enabled: to be the outermost interceptor, in order to measure the whole operation.
+ *
+ * @author Sergio Bossa
+ */
+public class EventInterceptor implements ConnectionInterceptor {
+
+    private final ClientEventListener listener;
+
+    public EventInterceptor(ClientEventListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws TerrastoreClientException {
+        if (!listener.isEnabled()) {
+            return invocation.proceed();
+        }
+        long start = System.nanoTime();
+        String failure = null;
+        try {
+            return invocation.proceed();
+        } catch (RuntimeException ex) {
+            failure = ex.getClass().getName();
+            throw ex;
+        } finally {
+            listener.operationExecuted(new OperationEvent(invocation.getOperation(), invocation.getBucket(),
+                    invocation.getHost(), invocation.getStatus(), failure,
+                    System.nanoTime() - start, invocation.getRequestBytes(), invocation.getResponseBytes(),
+                    invocation.getPoolWaitNanos(), invocation.getSerializationNanos(), invocation.getDeserializationNanos()));
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.events;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ClientEventListener} committing events to the JDK Flight Recorder, where available (JDK 8u262 and later):
+ * <ul>
+ * <li>"terrastore.client.Operation", for every operation, with bucket, operation name, host, status, failure,
+ * elapsed time, request and response bytes, pool wait, serialization and deserialization times.</li>
+ * <li>"terrastore.client.ConnectionCheckout", for every connection checked out of the pool, with host and wait time.</li>
+ * <li>"terrastore.client.HostSuspicion", for every host being suspected or unsuspected.</li>
+ * </ul>
+ * Event types are defined at runtime through the jdk.jfr.EventFactory, so this listener works on JDKs without
+ * the Flight Recorder too, where it's just never enabled; event types are enabled by default, without stack traces,
+ * so this listener is enabled whenever some recording is running and doesn't disable them.<br>
+ * Events are committed on completion, so their own JFR duration is zero and the actual time is in the "elapsed" field.
+ *
+ * @author Sergio Bossa
+ */
+public class JfrEventListener implements ClientEventListener {
+
+    public static final String OPERATION_EVENT = "terrastore.client.Operation";
+    public static final String CHECKOUT_EVENT = "terrastore.client.ConnectionCheckout";
+    public static final String SUSPICION_EVENT = "terrastore.client.HostSuspicion";
+    //
+    private static final Jfr JFR = Jfr.load();
+    //
+    private final EventType operation;
+    private final EventType checkout;
+    private final EventType suspicion;
+
+    /**
+     * Create a listener committing to the Flight Recorder: event types are defined once, and shared by all listeners.
+     *
+     * @throws IllegalStateException If the Flight Recorder is not available.
+     */
+    public JfrEventListener() {
+        if (JFR == null) {
+            throw new IllegalStateException("The JDK Flight Recorder is not available.");
+        }
+        this.operation = JFR.operation;
+        this.checkout = JFR.checkout;
+        this.suspicion = JFR.suspicion;
+    }
+
+    /**
+     * Check if the Flight Recorder is available in the running JDK.
+     */
+    public static boolean isAvailable() {
+        return JFR != null;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return operation.isEnabled() || checkout.isEnabled() || suspicion.isEnabled();
+    }
+
+    @Override
+    public void operationExecuted(OperationEvent event) {
+        if (operation.isEnabled()) {
+            operation.commit(event.getOperation(), event.getBucket(), event.getHost(), event.getStatus(), event.getFailure(),
+                    event.getDuration(TimeUnit.NANOSECONDS), event.getRequestBytes(), event.getResponseBytes(),
+                    event.getPoolWait(TimeUnit.NANOSECONDS), event.getSerialization(TimeUnit.NANOSECONDS), event.getDeserialization(TimeUnit.NANOSECONDS));
+        }
+    }
+
+    @Override
+    public void connectionAcquired(String host, long waitNanos) {
+        if (checkout.isEnabled()) {
+            checkout.commit(host, waitNanos);
+        }
+    }
+
+    @Override
+    public void hostSuspected(String host) {
+        if (suspicion.isEnabled()) {
+            suspicion.commit(host, true);
+        }
+    }
+
+    @Override
+    public void hostUnsuspected(String host) {
+        if (suspicion.isEnabled()) {
+            suspicion.commit(host, false);
+        }
+    }
+
+    private static class EventType {
+
+        private final Jfr jfr;
+        private final Object factory;
+        private final Object type;
+
+        public EventType(Jfr jfr, Object factory) throws Exception {
+            this.jfr = jfr;
+            this.factory = factory;
+            this.type = jfr.getEventType.invoke(factory);
+        }
+
+        public boolean isEnabled() {
+            try {
+                return (Boolean) jfr.isEnabled.invoke(type);
+            } catch (Exception ex) {
+                return false;
+            }
+        }
+
+        public void commit(Object... values) {
+            try {
+                Object event = jfr.newEvent.invoke(factory);
+                for (int i = 0; i < values.length; i++) {
+                    jfr.set.invoke(event, i, values[i]);
+                }
+                jfr.commit.invoke(event);
+            } catch (Exception ex) {
+                // Never fail operations because of events.
+            }
+        }
+    }
+
+    /**
+     * Reflective access to the jdk.jfr API, not available at compile time on older JDKs.
+     */
+    private static class Jfr {
+
+        private Class<?> name;
+        private Class<?> label;
+        private Class<?> category;
+        private Class<?> stackTrace;
+        private Class<?> timespan;
+        private Class<?> dataAmount;
+        private Constructor<?> annotation;
+        private Constructor<?> value;
+        private Method create;
+        private Method newEvent;
+        private Method getEventType;
+        private Method isEnabled;
+        private Method set;
+        private Method commit;
+        private EventType operation;
+        private EventType checkout;
+        private EventType suspicion;
+
+        public static Jfr load() {
+            try {
+                Jfr jfr = new Jfr();
+                Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+                Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+                Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory");
+                Class<?> event = Class.forName("jdk.jfr.Event");
+                jfr.name = Class.forName("jdk.jfr.Name");
+                jfr.label = Class.forName("jdk.jfr.Label");
+                jfr.category = Class.forName("jdk.jfr.Category");
+                jfr.stackTrace = Class.forName("jdk.jfr.StackTrace");
+                jfr.timespan = Class.forName("jdk.jfr.Timespan");
+                jfr.dataAmount = Class.forName("jdk.jfr.DataAmount");
+                jfr.annotation = annotationElement.getConstructor(Class.class, Object.class);
+                jfr.value = valueDescriptor.getConstructor(Class.class, String.class, List.class);
+                jfr.create = eventFactory.getMethod("create", List.class, List.class);
+                jfr.newEvent = eventFactory.getMethod("newEvent");
+                jfr.getEventType = eventFactory.getMethod("getEventType");
+                jfr.isEnabled = Class.forName("jdk.jfr.EventType").getMethod("isEnabled");
+                jfr.set = event.getMethod("set", int.class, Object.class);
+                jfr.commit = event.getMethod("commit");
+                jfr.operation = jfr.define(OPERATION_EVENT, "Terrastore Operation",
+                        jfr.field(String.class, "operation", "Operation"),
+                        jfr.field(String.class, "bucket", "Bucket"),
+                        jfr.field(String.class, "host", "Host"),
+                        jfr.field(int.class, "status", "Status"),
+                        jfr.field(String.class, "failure", "Failure"),
+                        jfr.timespan("elapsed", "Elapsed"),
+                        jfr.bytes("requestBytes", "Request Bytes"),
+                        jfr.bytes("responseBytes", "Response Bytes"),
+                        jfr.timespan("poolWait", "Pool Wait"),
+                        jfr.timespan("serialization", "Serialization"),
+                        jfr.timespan("deserialization", "Deserialization"));
+                jfr.checkout = jfr.define(CHECKOUT_EVENT, "Terrastore Connection Checkout",
+                        jfr.field(String.class, "host", "Host"),
+                        jfr.timespan("poolWait", "Pool Wait"));
+                jfr.suspicion = jfr.define(SUSPICION_EVENT, "Terrastore Host Suspicion",
+                        jfr.field(String.class, "host", "Host"),
+                        jfr.field(boolean.class, "suspected", "Suspected"));
+                return jfr;
+            } catch (Throwable ex) {
+                return null;
+            }
+        }
+
+        public EventType define(String eventName, String eventLabel, Object... fields) {
+            try {
+                List<Object> annotations = new ArrayList<Object>(4);
+                annotations.add(annotation.newInstance(name, eventName));
+                annotations.add(annotation.newInstance(label, eventLabel));
+                annotations.add(annotation.newInstance(category, new String[]{"Terrastore Client"}));
+                annotations.add(annotation.newInstance(stackTrace, false));
+                return new EventType(this, create.invoke(null, annotations, Arrays.asList(fields)));
+            } catch (Exception ex) {
+                throw new IllegalStateException("Cannot define event: " + eventName, ex);
+            }
+        }
+
+        public Object field(Class<?> type, String fieldName, String fieldLabel) {
+            return field(type, fieldName, fieldLabel, null, null);
+        }
+
+        public Object timespan(String fieldName, String fieldLabel) {
+            return field(long.class, fieldName, fieldLabel, timespan, "NANOSECONDS");
+        }
+
+        public Object bytes(String fieldName, String fieldLabel) {
+            return field(long.class, fieldName, fieldLabel, dataAmount, "BYTES");
+        }
+
+        private Object field(Class<?> type, String fieldName, String fieldLabel, Class<?> unit, String unitValue) {
+            try {
+                List<Object> annotations = new ArrayList<Object>(2);
+                annotations.add(annotation.newInstance(label, fieldLabel));
+                if (unit != null) {
+                    annotations.add(annotation.newInstance(unit, unitValue));
+                }
+                return value.newInstance(type, fieldName, annotations);
+            } catch (Exception ex) {
+                throw new IllegalStateException("Cannot define event field: " + fieldName, ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.events;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import terrastore.client.connection.HostManager;
+import terrastore.client.connection.ManagedHostManager;
+
+/**
+ * {@link HostManager} decorator notifying a {@link ClientEventListener} of hosts being suspected and unsuspected.<br>
+ * Decorated host managers not being {@link ManagedHostManager}s have no hosts to inspect nor unsuspect.
+ *
+ * @author Sergio Bossa
+ */
+public class ListenedHostManager implements ManagedHostManager {
+
+    private final HostManager delegate;
+    private final ClientEventListener listener;
+
+    public ListenedHostManager(HostManager delegate, ClientEventListener listener) {
+        this.delegate = delegate;
+        this.listener = listener;
+    }
+
+    @Override
+    public String getHost() {
+        return delegate.getHost();
+    }
+
+    @Override
+    public void suspect(String host) {
+        delegate.suspect(host);
+        if (listener.isEnabled()) {
+            listener.hostSuspected(host);
+        }
+    }
+
+    @Override
+    public List<String> getHosts() {
+        return delegate instanceof ManagedHostManager ? ((ManagedHostManager) delegate).getHosts() : Collections.<String>emptyList();
+    }
+
+    @Override
+    public Set<String> getSuspectedHosts() {
+        return delegate instanceof ManagedHostManager ? ((ManagedHostManager) delegate).getSuspectedHosts() : Collections.<String>emptySet();
+    }
+
+    @Override
+    public void unsuspect(String host) {
+        if (delegate instanceof ManagedHostManager) {
+            boolean suspected = ((ManagedHostManager) delegate).getSuspectedHosts().contains(host);
+            ((ManagedHostManager) delegate).unsuspect(host);
+            if (suspected && listener.isEnabled()) {
+                listener.hostUnsuspected(host);
+            }
+        }
+    }
+
+    public HostManager getDelegate() {
+        return delegate;
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.events;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client operation event, as executed by a {@link terrastore.client.connection.Connection}.<br>
+ * Host, status, byte counts and times other than the total duration are only known for operations actually sent
+ * over the wire, and are respectively null or 0 otherwise, i.e. for operations short-circuited by interceptors.
+ *
+ * @author Sergio Bossa
+ */
+public class OperationEvent {
+
+    private final String operation;
+    private final String bucket;
+    private final String host;
+    private final int status;
+    private final String failure;
+    private final long durationNanos;
+    private final long requestBytes;
+    private final long responseBytes;
+    private final long poolWaitNanos;
+    private final long serializationNanos;
+    private final long deserializationNanos;
+
+    OperationEvent(String operation, String bucket, String host, int status, String failure,
+            long durationNanos, long requestBytes, long responseBytes,
+            long poolWaitNanos, long serializationNanos, long deserializationNanos) {
+        this.operation = operation;
+        this.bucket = bucket;
+        this.host = host;
+        this.status = status;
+        this.failure = failure;
+        this.durationNanos = durationNanos;
+        this.requestBytes = requestBytes;
+        this.responseBytes = responseBytes;
+        this.poolWaitNanos = poolWaitNanos;
+        this.serializationNanos = serializationNanos;
+        this.deserializationNanos = deserializationNanos;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * Get the bucket name, or null for operations not involving a bucket.
+     */
+    public String getBucket() {
+        return bucket;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * Get the status of the last response, or 0 if there's no response.
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Get the class name of the failure, or null if succeeded.
+     */
+    public String getFailure() {
+        return failure;
+    }
+
+    public long getDuration(TimeUnit unit) {
+        return unit.convert(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    public long getPoolWait(TimeUnit unit) {
+        return unit.convert(poolWaitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getSerialization(TimeUnit unit) {
+        return unit.convert(serializationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getDeserialization(TimeUnit unit) {
+        return unit.convert(deserializationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return operation + (bucket != null ? " " + bucket : "") + " -> " + (host != null ? host : "-") + " " + status
+                + (failure != null ? " " + failure : "") + " in " + durationNanos + "ns";
+    }
+}
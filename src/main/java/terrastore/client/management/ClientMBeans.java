@@ -0,0 +1,100 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.management;
+
+import java.lang.management.ManagementFactory;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import org.apache.commons.httpclient.HttpConnectionManager;
+import terrastore.client.TerrastoreClientException;
+import terrastore.client.connection.HostManager;
+import terrastore.client.connection.ManagedHostManager;
+import terrastore.client.metrics.ConnectionMetrics;
+
+/**
+ * Registers and unregisters client MBeans into the platform MBean server, under the {@link #DOMAIN} domain
+ * and named after the client they belong to, i.e.: "terrastore.client:type=Hosts,client=orders".<br>
+ * Registering MBeans for an already registered client name replaces the old ones.
+ *
+ * @author Sergio Bossa
+ */
+public class ClientMBeans {
+
+    public static final String DOMAIN = "terrastore.client";
+    public static final String HOSTS = "Hosts";
+    public static final String CONNECTION_POOL = "ConnectionPool";
+    public static final String OPERATIONS = "Operations";
+
+    /**
+     * Register MBeans for the given client: host state is registered only if the host manager
+     * is a {@link terrastore.client.connection.ManagedHostManager}.
+     */
+    public static void register(String client, HostManager hostManager, HttpConnectionManager connectionManager, ConnectionMetrics metrics) {
+        if (hostManager instanceof ManagedHostManager) {
+            register(objectName(client, HOSTS), new Hosts((ManagedHostManager) hostManager));
+        }
+        register(objectName(client, CONNECTION_POOL), new ConnectionPool(connectionManager, metrics));
+        register(objectName(client, OPERATIONS), new Operations(metrics));
+    }
+
+    /**
+     * Unregister all MBeans of the given client.
+     */
+    public static void unregister(String client) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : server.queryNames(objectName(client, "*"), null)) {
+            try {
+                server.unregisterMBean(name);
+            } catch (InstanceNotFoundException ex) {
+                // Concurrently unregistered.
+            } catch (JMException ex) {
+                throw new TerrastoreClientException("Cannot unregister MBean: " + name, ex);
+            }
+        }
+    }
+
+    /**
+     * Get the name of the MBean of the given type for the given client, with "*" matching any type.
+     *
+     * @throws IllegalArgumentException If the client name is not a valid object name value.
+     */
+    public static ObjectName objectName(String client, String type) {
+        try {
+            if ("*".equals(type)) {
+                return new ObjectName(DOMAIN + ":client=" + client + ",*");
+            } else {
+                return new ObjectName(DOMAIN + ":type=" + type + ",client=" + client);
+            }
+        } catch (MalformedObjectNameException ex) {
+            throw new IllegalArgumentException("Invalid client name: " + client, ex);
+        }
+    }
+
+    private static void register(ObjectName name, Object mbean) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(mbean, name);
+        } catch (JMException ex) {
+            throw new TerrastoreClientException("Cannot register MBean: " + name, ex);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.management;
+
+import org.apache.commons.httpclient.HttpConnectionManager;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import terrastore.client.metrics.ConnectionMetrics;
+
+/**
+ * {@link ConnectionPoolMXBean} implementation backed by an org.apache.commons.httpclient.HttpConnectionManager,
+ * and by the {@link terrastore.client.metrics.ConnectionMetrics} of the connections using it.<br>
+ * HttpClient doesn't tell apart leased and idle connections, so leased connections are computed as the number
+ * of requests in progress and not waiting for a connection: that is, leased connections also comprise those
+ * about to be acquired by requests still being written.
+ *
+ * @author Sergio Bossa
+ */
+public class ConnectionPool implements ConnectionPoolMXBean {
+
+    private final HttpConnectionManager connectionManager;
+    private final ConnectionMetrics metrics;
+
+    public ConnectionPool(HttpConnectionManager connectionManager, ConnectionMetrics metrics) {
+        this.connectionManager = connectionManager;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public int getMaxTotalConnections() {
+        return connectionManager.getParams().getMaxTotalConnections();
+    }
+
+    @Override
+    public int getMaxConnectionsPerHost() {
+        return connectionManager.getParams().getDefaultMaxConnectionsPerHost();
+    }
+
+    @Override
+    public int getLeasedConnections() {
+        int leased = Math.max(0, metrics.getInFlightRequests() - metrics.getPendingRequests());
+        int total = getTotalConnections();
+        return total >= 0 ? Math.min(leased, total) : leased;
+    }
+
+    @Override
+    public int getIdleConnections() {
+        int total = getTotalConnections();
+        return total >= 0 ? total - getLeasedConnections() : -1;
+    }
+
+    @Override
+    public int getPendingRequests() {
+        return metrics.getPendingRequests();
+    }
+
+    @Override
+    public void resize(int maxTotalConnections, int maxConnectionsPerHost) {
+        if (maxTotalConnections <= 0 || maxConnectionsPerHost <= 0) {
+            throw new IllegalArgumentException("Max number of connections must be positive.");
+        }
+        HttpConnectionManagerParams params = connectionManager.getParams();
+        params.setMaxTotalConnections(maxTotalConnections);
+        params.setDefaultMaxConnectionsPerHost(maxConnectionsPerHost);
+    }
+
+    private int getTotalConnections() {
+        if (connectionManager instanceof MultiThreadedHttpConnectionManager) {
+            return ((MultiThreadedHttpConnectionManager) connectionManager).getConnectionsInPool();
+        } else {
+            return -1;
+        }
+    }
+}
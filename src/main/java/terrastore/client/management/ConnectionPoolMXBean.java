@@ -0,0 +1,49 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.management;
+
+/**
+ * Management interface of the HTTP connection pool used by a client.
+ *
+ * @author Sergio Bossa
+ */
+public interface ConnectionPoolMXBean {
+
+    public int getMaxTotalConnections();
+
+    public int getMaxConnectionsPerHost();
+
+    /**
+     * Get the number of pooled connections currently used by requests.
+     */
+    public int getLeasedConnections();
+
+    /**
+     * Get the number of pooled connections currently not used, or -1 if the pool size is unknown.
+     */
+    public int getIdleConnections();
+
+    /**
+     * Get the number of requests currently waiting for a connection.
+     */
+    public int getPendingRequests();
+
+    /**
+     * Change the max number of pooled connections: shrinking the pool doesn't close connections in use,
+     * which are rather discarded as soon as released.
+     */
+    public void resize(int maxTotalConnections, int maxConnectionsPerHost);
+}
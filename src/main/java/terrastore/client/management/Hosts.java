@@ -0,0 +1,49 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.management;
+
+import java.util.List;
+import java.util.Set;
+import terrastore.client.connection.ManagedHostManager;
+
+/**
+ * {@link HostsMXBean} implementation backed by a {@link terrastore.client.connection.ManagedHostManager}.
+ *
+ * @author Sergio Bossa
+ */
+public class Hosts implements HostsMXBean {
+
+    private final ManagedHostManager hostManager;
+
+    public Hosts(ManagedHostManager hostManager) {
+        this.hostManager = hostManager;
+    }
+
+    @Override
+    public List<String> getHosts() {
+        return hostManager.getHosts();
+    }
+
+    @Override
+    public Set<String> getSuspectedHosts() {
+        return hostManager.getSuspectedHosts();
+    }
+
+    @Override
+    public void unsuspect(String host) {
+        hostManager.unsuspect(host);
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.management;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Management interface of the Terrastore server hosts used by a client.
+ *
+ * @author Sergio Bossa
+ */
+public interface HostsMXBean {
+
+    /**
+     * Get all hosts, in the order they're currently used.
+     */
+    public List<String> getHosts();
+
+    /**
+     * Get the hosts currently suspected due to previous connection errors.
+     */
+    public Set<String> getSuspectedHosts();
+
+    /**
+     * Make the given host eligible again, as if it never failed.
+     */
+    public void unsuspect(String host);
+}
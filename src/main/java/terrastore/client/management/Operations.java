@@ -0,0 +1,116 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.management;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.List;
+import terrastore.client.metrics.ConnectionMetrics;
+import terrastore.client.metrics.HotKey;
+import terrastore.client.metrics.HotKeys;
+import terrastore.client.metrics.LatencyHistogram;
+
+/**
+ * {@link OperationsMXBean} implementation backed by {@link terrastore.client.metrics.ConnectionMetrics}.
+ *
+ * @author Sergio Bossa
+ */
+public class Operations implements OperationsMXBean {
+
+    private final ConnectionMetrics metrics;
+
+    public Operations(ConnectionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public int getInFlightRequests() {
+        return metrics.getInFlightRequests();
+    }
+
+    @Override
+    public double getOperationRate() {
+        return metrics.getRate();
+    }
+
+    @Override
+    public Map<String, Double> getOperationRates() {
+        Map<String, Double> rates = new HashMap<String, Double>();
+        for (String operation : metrics.getLatencies().keySet()) {
+            rates.put(operation, metrics.getRate(operation));
+        }
+        return rates;
+    }
+
+    @Override
+    public Map<String, Long> getOperationCounts() {
+        Map<String, Long> counts = new HashMap<String, Long>();
+        for (String operation : metrics.getLatencies().keySet()) {
+            counts.put(operation, metrics.getLatency(operation).getCount());
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getP50Latencies() {
+        return getLatencies(50);
+    }
+
+    @Override
+    public Map<String, Long> getP99Latencies() {
+        return getLatencies(99);
+    }
+
+    @Override
+    public Map<String, Long> getP999Latencies() {
+        return getLatencies(99.9);
+    }
+
+    @Override
+    public Map<String, Long> getErrors() {
+        Map<String, Long> errors = new HashMap<String, Long>();
+        for (Map.Entry<Class<?>, Long> error : metrics.getErrors().entrySet()) {
+            errors.put(error.getKey().getName(), error.getValue());
+        }
+        return errors;
+    }
+
+    @Override
+    public Map<String, String> getHotKeys() {
+        Map<String, String> hotKeys = new HashMap<String, String>();
+        HotKeys detected = metrics.getHotKeys();
+        if (detected != null) {
+            for (Map.Entry<String, List<HotKey>> bucket : detected.getHotKeys().entrySet()) {
+                StringBuilder keys = new StringBuilder();
+                for (HotKey key : bucket.getValue()) {
+                    keys.append(keys.length() > 0 ? ", " : "").append(key);
+                }
+                hotKeys.put(bucket.getKey(), keys.toString());
+            }
+        }
+        return hotKeys;
+    }
+
+    private Map<String, Long> getLatencies(double percentile) {
+        Map<String, Long> latencies = new HashMap<String, Long>();
+        for (String operation : metrics.getLatencies().keySet()) {
+            LatencyHistogram histogram = metrics.getLatency(operation);
+            latencies.put(operation, histogram.getPercentile(percentile, TimeUnit.MICROSECONDS));
+        }
+        return latencies;
+    }
+}
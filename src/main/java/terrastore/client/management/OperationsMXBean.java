@@ -0,0 +1,55 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.management;
+
+import java.util.Map;
+
+/**
+ * Management interface of the operations executed by a client.<br>
+ * Operations are named as by {@link terrastore.client.metrics.MeteredConnection}, and latencies are in microseconds.
+ *
+ * @author Sergio Bossa
+ */
+public interface OperationsMXBean {
+
+    public int getInFlightRequests();
+
+    /**
+     * Get the number of operations executed per second over the last minute.
+     */
+    public double getOperationRate();
+
+    public Map<String, Double> getOperationRates();
+
+    public Map<String, Long> getOperationCounts();
+
+    public Map<String, Long> getP50Latencies();
+
+    public Map<String, Long> getP99Latencies();
+
+    public Map<String, Long> getP999Latencies();
+
+    /**
+     * Get the number of failed operations, by exception class name.
+     */
+    public Map<String, Long> getErrors();
+
+    /**
+     * Get the hot keys of each bucket, as comma separated "key=count" pairs from the hottest one,
+     * if hot keys detection is enabled.
+     */
+    public Map<String, String> getHotKeys();
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.mapping;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+
+/**
+ * Response body fully read into memory, together with its media type and headers, so that it can be
+ * decoded many times, each time into brand new objects, by any of the other message body readers.
+ *
+ * @author Sergio Bossa
+ */
+public class BufferedEntity {
+
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+    //
+    private final byte[] bytes;
+    private final MediaType mediaType;
+    private final MultivaluedMap<String, String> headers;
+
+    public BufferedEntity(byte[] bytes, MediaType mediaType, MultivaluedMap<String, String> headers) {
+        this.bytes = bytes;
+        this.mediaType = mediaType;
+        this.headers = headers;
+    }
+
+    /**
+     * Decode this entity with the given reader.
+     *
+     * @param reader The reader to decode with.
+     * @param type The type to read, as passed to {@link MessageBodyReader#readFrom}.
+     * @param genericType The generic type to read, as passed to {@link MessageBodyReader#readFrom}.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T read(MessageBodyReader reader, Class<?> type, Type genericType) throws IOException {
+        return (T) reader.readFrom(type, genericType, NO_ANNOTATIONS, mediaType, headers, new ByteArrayInputStream(bytes));
+    }
+
+    public int getLength() {
+        return bytes.length;
+    }
+}
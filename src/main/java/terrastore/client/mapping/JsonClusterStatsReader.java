@@ -19,13 +19,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
+import java.util.Collections;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.MessageBodyReader;
 import javax.ws.rs.ext.Provider;
-import org.codehaus.jackson.map.ObjectMapper;
 import terrastore.client.ClusterStats;
 
 
@@ -33,13 +33,17 @@ import terrastore.client.ClusterStats;
  * @author Sergio Bossa
  */
 @Provider
-@Consumes("application/json")
+@Consumes({"application/json", "application/x-jackson-smile"})
 public class JsonClusterStatsReader implements MessageBodyReader<ClusterStats> {
 
-    private final ObjectMapper jsonMapper;
+    private final JsonMappingEngine jsonEngine;
 
     public JsonClusterStatsReader() {
-        this.jsonMapper = new ObjectMapper();
+        this(new JsonMappingEngine(Collections.<JsonObjectDescriptor>emptyList()));
+    }
+
+    public JsonClusterStatsReader(JsonMappingEngine jsonEngine) {
+        this.jsonEngine = jsonEngine;
     }
 
     public boolean isReadable(Class type, Type genericType, Annotation[] annotations, MediaType mediaType) {
@@ -47,6 +51,6 @@ public class JsonClusterStatsReader implements MessageBodyReader<ClusterStats> {
     }
 
     public ClusterStats readFrom(Class type, Type genericType, Annotation[] annotations, MediaType mediaType, MultivaluedMap httpHeaders, InputStream entityStream) throws IOException, WebApplicationException {
-        return jsonMapper.readValue(entityStream, ClusterStats.class);
+        return jsonEngine.read(entityStream, ClusterStats.class, mediaType);
     }
 }
@@ -0,0 +1,43 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.mapping;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a Java bean class whose streaming serializer and deserializer will be generated at compile time by
+ * {@link terrastore.client.mapping.processor.JsonDocumentProcessor}, which must be explicitly enabled when compiling
+ * annotated classes, through <code>-processor terrastore.client.mapping.processor.JsonDocumentProcessor</code>
+ * or the equivalent option of the build tool.<br>
+ * A {@link JsonObjectDescriptor} named after the annotated class plus the "JsonDescriptor" suffix is generated
+ * in the same package, and registered as a service so that {@link terrastore.client.TerrastoreClient} picks it up
+ * without further configuration: explicitly configured descriptors still take precedence.<br>
+ * Mapped properties are the same Jackson would map by default: public getters, setters and fields, with the
+ * {@link org.codehaus.jackson.annotate.JsonIgnore} and {@link org.codehaus.jackson.annotate.JsonProperty} annotations
+ * honored, and other Jackson annotations ignored.<br>
+ * Annotated classes must be non generic, non abstract and top level or static, with a non private no-args constructor.
+ *
+ * @author Sergio Bossa
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface JsonDocument {
+}
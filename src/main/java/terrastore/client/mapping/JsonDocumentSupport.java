@@ -0,0 +1,231 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.mapping;
+
+import java.io.IOException;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.DeserializationConfig;
+import org.codehaus.jackson.map.DeserializationContext;
+import org.codehaus.jackson.map.JsonDeserializer;
+import org.codehaus.jackson.map.JsonMappingException;
+import org.codehaus.jackson.type.JavaType;
+
+/**
+ * Static helpers called by the descriptors generated for {@link JsonDocument} classes, reading values
+ * the same way Jackson bean deserializers do: not meant to be called by hand.
+ *
+ * @author Sergio Bossa
+ */
+public final class JsonDocumentSupport {
+
+    private JsonDocumentSupport() {
+    }
+
+    /**
+     * Get the token of the first field of the object the parser is positioned at.
+     */
+    public static JsonToken startObject(JsonParser parser, DeserializationContext context, Class<?> type) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.START_OBJECT) {
+            return parser.nextToken();
+        } else if (token == JsonToken.FIELD_NAME || token == JsonToken.END_OBJECT) {
+            return token;
+        } else {
+            throw context.mappingException(type);
+        }
+    }
+
+    /**
+     * Get the token of the first element of the array the parser is positioned at.
+     */
+    public static JsonToken startArray(JsonParser parser, DeserializationContext context, Class<?> type) throws IOException {
+        if (parser.getCurrentToken() == JsonToken.START_ARRAY) {
+            return parser.nextToken();
+        } else {
+            throw context.mappingException(type);
+        }
+    }
+
+    /**
+     * Handle an unknown property by either failing or skipping it, depending on the deserialization configuration.
+     */
+    public static void unknownProperty(JsonParser parser, DeserializationContext context, JsonDeserializer<?> deserializer, Object bean, String name) throws IOException {
+        if (!context.handleUnknownProperty(parser, deserializer, bean, name)) {
+            if (context.isEnabled(DeserializationConfig.Feature.FAIL_ON_UNKNOWN_PROPERTIES)) {
+                throw context.unknownFieldException(bean, name);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    public static JsonDeserializer<Object> deserializer(DeserializationContext context, JavaType type) throws IOException {
+        return context.getDeserializerProvider().findValueDeserializer(context.getConfig(), type, null);
+    }
+
+    /**
+     * Read a value with the given deserializer, if already resolved, or else with the one configured for the given type.
+     */
+    public static Object readValue(JsonParser parser, DeserializationContext context, JsonDeserializer<Object> deserializer, JavaType type) throws IOException {
+        if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        } else if (deserializer != null) {
+            return deserializer.deserialize(parser, context);
+        } else {
+            return deserializer(context, type).deserialize(parser, context);
+        }
+    }
+
+    public static String readString(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        } else if (token.isScalarValue()) {
+            return parser.getText();
+        } else {
+            throw mismatch(parser, "String");
+        }
+    }
+
+    public static boolean readBoolean(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.VALUE_TRUE) {
+            return true;
+        } else if (token == JsonToken.VALUE_FALSE || token == JsonToken.VALUE_NULL) {
+            return false;
+        } else if (token == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getIntValue() != 0;
+        } else if (token == JsonToken.VALUE_STRING) {
+            String text = parser.getText().trim();
+            if (text.equals("true")) {
+                return true;
+            } else if (text.equals("false") || text.length() == 0) {
+                return false;
+            }
+        }
+        throw mismatch(parser, "boolean");
+    }
+
+    public static int readInt(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+            return parser.getIntValue();
+        } else if (token == JsonToken.VALUE_NULL) {
+            return 0;
+        } else if (token == JsonToken.VALUE_STRING) {
+            try {
+                String text = parser.getText().trim();
+                return text.length() > 0 ? Integer.parseInt(text) : 0;
+            } catch (NumberFormatException ex) {
+                throw mismatch(parser, "int");
+            }
+        } else {
+            throw mismatch(parser, "int");
+        }
+    }
+
+    public static long readLong(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+            return parser.getLongValue();
+        } else if (token == JsonToken.VALUE_NULL) {
+            return 0L;
+        } else if (token == JsonToken.VALUE_STRING) {
+            try {
+                String text = parser.getText().trim();
+                return text.length() > 0 ? Long.parseLong(text) : 0L;
+            } catch (NumberFormatException ex) {
+                throw mismatch(parser, "long");
+            }
+        } else {
+            throw mismatch(parser, "long");
+        }
+    }
+
+    public static float readFloat(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+            return parser.getFloatValue();
+        } else if (token == JsonToken.VALUE_NULL) {
+            return 0F;
+        } else if (token == JsonToken.VALUE_STRING) {
+            try {
+                String text = parser.getText().trim();
+                return text.length() > 0 ? Float.parseFloat(text) : 0F;
+            } catch (NumberFormatException ex) {
+                throw mismatch(parser, "float");
+            }
+        } else {
+            throw mismatch(parser, "float");
+        }
+    }
+
+    public static double readDouble(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+            return parser.getDoubleValue();
+        } else if (token == JsonToken.VALUE_NULL) {
+            return 0D;
+        } else if (token == JsonToken.VALUE_STRING) {
+            try {
+                String text = parser.getText().trim();
+                return text.length() > 0 ? Double.parseDouble(text) : 0D;
+            } catch (NumberFormatException ex) {
+                throw mismatch(parser, "double");
+            }
+        } else {
+            throw mismatch(parser, "double");
+        }
+    }
+
+    public static char readChar(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.VALUE_STRING && parser.getTextLength() == 1) {
+            return parser.getText().charAt(0);
+        } else if (token == JsonToken.VALUE_NUMBER_INT) {
+            return (char) parser.getIntValue();
+        } else if (token == JsonToken.VALUE_NULL) {
+            return '\0';
+        } else {
+            throw mismatch(parser, "char");
+        }
+    }
+
+    public static Boolean readNullableBoolean(JsonParser parser) throws IOException {
+        return parser.getCurrentToken() != JsonToken.VALUE_NULL ? Boolean.valueOf(readBoolean(parser)) : null;
+    }
+
+    public static Integer readNullableInt(JsonParser parser) throws IOException {
+        return parser.getCurrentToken() != JsonToken.VALUE_NULL ? Integer.valueOf(readInt(parser)) : null;
+    }
+
+    public static Long readNullableLong(JsonParser parser) throws IOException {
+        return parser.getCurrentToken() != JsonToken.VALUE_NULL ? Long.valueOf(readLong(parser)) : null;
+    }
+
+    public static Float readNullableFloat(JsonParser parser) throws IOException {
+        return parser.getCurrentToken() != JsonToken.VALUE_NULL ? Float.valueOf(readFloat(parser)) : null;
+    }
+
+    public static Double readNullableDouble(JsonParser parser) throws IOException {
+        return parser.getCurrentToken() != JsonToken.VALUE_NULL ? Double.valueOf(readDouble(parser)) : null;
+    }
+
+    private static JsonMappingException mismatch(JsonParser parser, String type) {
+        return new JsonMappingException("Can not read a " + type + " value out of " + parser.getCurrentToken(), parser.getCurrentLocation());
+    }
+}
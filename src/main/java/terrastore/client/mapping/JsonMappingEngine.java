@@ -0,0 +1,266 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.mapping;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.ws.rs.core.MediaType;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.map.DeserializationContext;
+import org.codehaus.jackson.map.JsonDeserializer;
+import org.codehaus.jackson.map.JsonSerializer;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.ObjectReader;
+import org.codehaus.jackson.map.ObjectWriter;
+import org.codehaus.jackson.map.SerializerProvider;
+import org.codehaus.jackson.map.deser.CustomDeserializerFactory;
+import org.codehaus.jackson.map.deser.StdDeserializerProvider;
+import org.codehaus.jackson.map.ser.CustomSerializerFactory;
+import org.codehaus.jackson.map.type.TypeFactory;
+import terrastore.client.codec.Codec;
+import terrastore.client.codec.JsonCodec;
+
+/**
+ * Single JSON mapping engine, configured with the given {@link JsonObjectDescriptor}s and shared by all
+ * readers and writers of a connection, so that serializers and deserializers are built and cached only once.<br>
+ * Readers and writers are cached per class too, and can be built ahead of time through {@link #prewarm(List)},
+ * in order to not pay the introspection cost on first requests: up to a bounded number of classes, least recently
+ * used first out, so that caches don't pin the class loaders of any class ever mapped.<br>
+ * Auto closing of entity streams is disabled, because they're owned by the connection layer.<br>
+ * Documents can be encoded with a {@link Codec} other than plain JSON: in such a case, the engine maps
+ * with the given codec all contents of its media type, and with plain JSON all other contents.<br>
+ * {@link LazyDocument}s are always mapped, regardless of configured descriptors.
+ *
+ * @author Sergio Bossa
+ */
+public class JsonMappingEngine {
+
+    private static final int DEFAULT_MAX_CACHED_TYPES = 1000;
+    //
+    private final Codec codec;
+    private final Mapping codecMapping;
+    private final Mapping jsonMapping;
+
+    public JsonMappingEngine(List<? extends JsonObjectDescriptor> descriptors) {
+        this(descriptors, new JsonCodec());
+    }
+
+    public JsonMappingEngine(List<? extends JsonObjectDescriptor> descriptors, Codec codec) {
+        this(descriptors, codec, DEFAULT_MAX_CACHED_TYPES);
+    }
+
+    JsonMappingEngine(List<? extends JsonObjectDescriptor> descriptors, Codec codec, int maxCachedTypes) {
+        this.codec = codec;
+        this.codecMapping = new Mapping(descriptors, codec, maxCachedTypes);
+        if (codecMapping.accepts(MediaType.APPLICATION_JSON_TYPE)) {
+            this.jsonMapping = codecMapping;
+        } else {
+            this.jsonMapping = new Mapping(descriptors, new JsonCodec(), maxCachedTypes);
+        }
+    }
+
+    /**
+     * Get the codec used for encoding documents.
+     */
+    public Codec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Build and cache readers, writers, serializers and deserializers for the given document types.
+     */
+    public void prewarm(List<Class<?>> types) {
+        codecMapping.prewarm(types);
+        if (jsonMapping != codecMapping) {
+            jsonMapping.prewarm(types);
+        }
+    }
+
+    public ObjectReader getReader(Class<?> type) {
+        return jsonMapping.getReader(type);
+    }
+
+    public ObjectReader getReader(Class<?> type, MediaType mediaType) {
+        return mappingFor(mediaType).getReader(type);
+    }
+
+    public ObjectWriter getWriter(Class<?> type) {
+        return jsonMapping.getWriter(type);
+    }
+
+    public ObjectWriter getWriter(Class<?> type, MediaType mediaType) {
+        return mappingFor(mediaType).getWriter(type);
+    }
+
+    public JsonFactory getJsonFactory() {
+        return jsonMapping.jsonMapper.getJsonFactory();
+    }
+
+    public JsonFactory getJsonFactory(MediaType mediaType) {
+        return mappingFor(mediaType).jsonMapper.getJsonFactory();
+    }
+
+    /**
+     * Check if contents of the given media type are mapped as plain JSON.
+     */
+    public boolean isPlainJson(MediaType mediaType) {
+        return mappingFor(mediaType).accepts(MediaType.APPLICATION_JSON_TYPE);
+    }
+
+    public <T> T read(InputStream input, Class<T> type) throws IOException {
+        return jsonMapping.getReader(type).<T>readValue(input);
+    }
+
+    public <T> T read(InputStream input, Class<T> type, MediaType mediaType) throws IOException {
+        return mappingFor(mediaType).getReader(type).<T>readValue(input);
+    }
+
+    public <T> T read(JsonParser parser, Class<T> type) throws IOException {
+        return jsonMapping.getReader(type).<T>readValue(parser);
+    }
+
+    public <T> T read(JsonParser parser, Class<T> type, MediaType mediaType) throws IOException {
+        return mappingFor(mediaType).getReader(type).<T>readValue(parser);
+    }
+
+    public void write(OutputStream output, Object value) throws IOException {
+        jsonMapping.write(output, value);
+    }
+
+    public void write(OutputStream output, Object value, MediaType mediaType) throws IOException {
+        mappingFor(mediaType).write(output, value);
+    }
+
+    private Mapping mappingFor(MediaType mediaType) {
+        if (mediaType != null && codecMapping != jsonMapping && codecMapping.accepts(mediaType)) {
+            return codecMapping;
+        } else {
+            return jsonMapping;
+        }
+    }
+
+    private static class Mapping {
+
+        private final MediaType mediaType;
+        private final ObjectMapper jsonMapper;
+        private final ObjectWriter untypedWriter;
+        private final Map<Class<?>, ObjectReader> readers;
+        private final Map<Class<?>, ObjectWriter> writers;
+
+        public Mapping(List<? extends JsonObjectDescriptor> descriptors, Codec codec, int maxCachedTypes) {
+            CustomSerializerFactory serializerFactory = new CustomSerializerFactory();
+            CustomDeserializerFactory deserializerFactory = new CustomDeserializerFactory();
+            serializerFactory.addSpecificMapping(LazyDocument.class, new LazyDocumentSerializer());
+            deserializerFactory.addSpecificMapping(LazyDocument.class, new LazyDocumentDeserializer());
+            for (JsonObjectDescriptor descriptor : descriptors) {
+                serializerFactory.addSpecificMapping(descriptor.getObjectClass(), descriptor.getJsonSerializer());
+                deserializerFactory.addSpecificMapping(descriptor.getObjectClass(), descriptor.getJsonDeserializer());
+            }
+            this.mediaType = codec.getMediaType();
+            this.jsonMapper = new ObjectMapper(codec.createJsonFactory());
+            this.jsonMapper.setSerializerFactory(serializerFactory);
+            this.jsonMapper.setDeserializerProvider(new StdDeserializerProvider(deserializerFactory));
+            this.jsonMapper.configure(JsonParser.Feature.AUTO_CLOSE_SOURCE, false);
+            this.jsonMapper.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+            this.untypedWriter = jsonMapper.writer();
+            this.readers = new TypeCache<ObjectReader>(maxCachedTypes);
+            this.writers = new TypeCache<ObjectWriter>(maxCachedTypes);
+        }
+
+        public boolean accepts(MediaType other) {
+            return mediaType.getType().equalsIgnoreCase(other.getType()) && mediaType.getSubtype().equalsIgnoreCase(other.getSubtype());
+        }
+
+        public void prewarm(List<Class<?>> types) {
+            for (Class<?> type : types) {
+                getReader(type);
+                getWriter(type);
+                if (!jsonMapper.canSerialize(type) || !jsonMapper.canDeserialize(TypeFactory.type(type))) {
+                    throw new IllegalArgumentException("Cannot map type: " + type.getName());
+                }
+            }
+        }
+
+        public ObjectReader getReader(Class<?> type) {
+            synchronized (readers) {
+                ObjectReader reader = readers.get(type);
+                if (reader == null) {
+                    reader = jsonMapper.reader(type);
+                    readers.put(type, reader);
+                }
+                return reader;
+            }
+        }
+
+        public ObjectWriter getWriter(Class<?> type) {
+            synchronized (writers) {
+                ObjectWriter writer = writers.get(type);
+                if (writer == null) {
+                    writer = jsonMapper.typedWriter(type);
+                    writers.put(type, writer);
+                }
+                return writer;
+            }
+        }
+
+        public void write(OutputStream output, Object value) throws IOException {
+            if (value != null) {
+                getWriter(value.getClass()).writeValue(output, value);
+            } else {
+                untypedWriter.writeValue(output, value);
+            }
+        }
+
+    }
+
+    private static class LazyDocumentSerializer extends JsonSerializer<LazyDocument> {
+
+        @Override
+        public void serialize(LazyDocument value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            value.copyTo(generator);
+        }
+    }
+
+    private static class LazyDocumentDeserializer extends JsonDeserializer<LazyDocument> {
+
+        @Override
+        public LazyDocument deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            // Only used with non JSON codecs, or projections: JSON readers wrap raw bytes straight away.
+            return LazyDocument.copyOf(parser);
+        }
+    }
+
+    private static class TypeCache<V> extends LinkedHashMap<Class<?>, V> {
+
+        private final int maxTypes;
+
+        public TypeCache(int maxTypes) {
+            super(16, 0.75f, true);
+            this.maxTypes = maxTypes;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Class<?>, V> eldest) {
+            return size() > maxTypes;
+        }
+    }
+}
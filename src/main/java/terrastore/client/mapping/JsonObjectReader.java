@@ -26,31 +26,23 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.MessageBodyReader;
 import javax.ws.rs.ext.Provider;
-import org.codehaus.jackson.map.ObjectMapper;
-import org.codehaus.jackson.map.deser.CustomDeserializerFactory;
-import org.codehaus.jackson.map.deser.StdDeserializerProvider;
-import org.codehaus.jackson.map.ser.CustomSerializerFactory;
 
 
 /**
  * @author Sergio Bossa
  */
 @Provider
-@Consumes("application/json")
+@Consumes({"application/json", "application/x-jackson-smile"})
 public class JsonObjectReader implements MessageBodyReader {
 
-    private final ObjectMapper jsonMapper;
+    private final JsonMappingEngine jsonEngine;
 
     public JsonObjectReader(List<? extends JsonObjectDescriptor> descriptors) {
-        CustomSerializerFactory serializerFactory = new CustomSerializerFactory();
-        CustomDeserializerFactory deserializerFactory = new CustomDeserializerFactory();
-        for (JsonObjectDescriptor descriptor : descriptors) {
-            serializerFactory.addSpecificMapping(descriptor.getObjectClass(), descriptor.getJsonSerializer());
-            deserializerFactory.addSpecificMapping(descriptor.getObjectClass(), descriptor.getJsonDeserializer());
-        }
-        this.jsonMapper = new ObjectMapper();
-        this.jsonMapper.setSerializerFactory(serializerFactory);
-        this.jsonMapper.setDeserializerProvider(new StdDeserializerProvider(deserializerFactory));
+        this(new JsonMappingEngine(descriptors));
+    }
+
+    public JsonObjectReader(JsonMappingEngine jsonEngine) {
+        this.jsonEngine = jsonEngine;
     }
 
     public boolean isReadable(Class type, Type genericType, Annotation[] annotations, MediaType mediaType) {
@@ -58,6 +50,10 @@ public class JsonObjectReader implements MessageBodyReader {
     }
 
     public Object readFrom(Class type, Type genericType, Annotation[] annotations, MediaType mediaType, MultivaluedMap httpHeaders, InputStream entityStream) throws IOException, WebApplicationException {
-       return jsonMapper.readValue(entityStream, type);
+        if (type == LazyDocument.class && jsonEngine.isPlainJson(mediaType)) {
+            return new LazyDocument(JsonScanner.readFully(entityStream, httpHeaders));
+        } else {
+            return jsonEngine.read(entityStream, type, mediaType);
+        }
     }
 }
@@ -26,31 +26,23 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.MessageBodyWriter;
 import javax.ws.rs.ext.Provider;
-import org.codehaus.jackson.map.ObjectMapper;
-import org.codehaus.jackson.map.deser.CustomDeserializerFactory;
-import org.codehaus.jackson.map.deser.StdDeserializerProvider;
-import org.codehaus.jackson.map.ser.CustomSerializerFactory;
 
 
 /**
  * @author Sergio Bossa
  */
 @Provider
-@Produces("application/json")
+@Produces({"application/json", "application/x-jackson-smile"})
 public class JsonObjectWriter implements MessageBodyWriter {
 
-    private final ObjectMapper jsonMapper;
+    private final JsonMappingEngine jsonEngine;
 
     public JsonObjectWriter(List<? extends JsonObjectDescriptor> descriptors) {
-        CustomSerializerFactory serializerFactory = new CustomSerializerFactory();
-        CustomDeserializerFactory deserializerFactory = new CustomDeserializerFactory();
-        for (JsonObjectDescriptor descriptor : descriptors) {
-            serializerFactory.addSpecificMapping(descriptor.getObjectClass(), descriptor.getJsonSerializer());
-            deserializerFactory.addSpecificMapping(descriptor.getObjectClass(), descriptor.getJsonDeserializer());
-        }
-        this.jsonMapper = new ObjectMapper();
-        this.jsonMapper.setSerializerFactory(serializerFactory);
-        this.jsonMapper.setDeserializerProvider(new StdDeserializerProvider(deserializerFactory));
+        this(new JsonMappingEngine(descriptors));
+    }
+
+    public JsonObjectWriter(JsonMappingEngine jsonEngine) {
+        this.jsonEngine = jsonEngine;
     }
 
     public boolean isWriteable(Class type, Type genericType, Annotation[] annotations, MediaType mediaType) {
@@ -58,7 +50,7 @@ public class JsonObjectWriter implements MessageBodyWriter {
     }
 
     public void writeTo(Object object, Class type, Type genericType, Annotation[] annotations, MediaType mediaType, MultivaluedMap httpHeaders, OutputStream entityStream) throws IOException, WebApplicationException {
-        jsonMapper.writeValue(entityStream, object);
+        jsonEngine.write(entityStream, object, mediaType);
     }
 
     public long getSize(Object object, Class type, Type genericType, Annotation[] annotations, MediaType mediaType) {
@@ -19,13 +19,13 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
+import java.util.Collections;
 import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.MessageBodyWriter;
 import javax.ws.rs.ext.Provider;
-import org.codehaus.jackson.map.ObjectMapper;
 
 import terrastore.client.Parameters;
 
@@ -33,13 +33,17 @@ import terrastore.client.Parameters;
  * @author Sergio Bossa
  */
 @Provider
-@Produces("application/json")
+@Produces({"application/json", "application/x-jackson-smile"})
 public class JsonParametersWriter implements MessageBodyWriter<Parameters> {
 
-    private final ObjectMapper jsonMapper;
+    private final JsonMappingEngine jsonEngine;
 
     public JsonParametersWriter() {
-        this.jsonMapper = new ObjectMapper();
+        this(new JsonMappingEngine(Collections.<JsonObjectDescriptor>emptyList()));
+    }
+
+    public JsonParametersWriter(JsonMappingEngine jsonEngine) {
+        this.jsonEngine = jsonEngine;
     }
 
     public boolean isWriteable(Class type, Type genericType, Annotation[] annotations, MediaType mediaType) {
@@ -47,7 +51,7 @@ public class JsonParametersWriter implements MessageBodyWriter<Parameters> {
     }
 
     public void writeTo(Parameters parameters, Class type, Type genericType, Annotation[] annotations, MediaType mediaType, MultivaluedMap httpHeaders, OutputStream entityStream) throws IOException, WebApplicationException {
-        jsonMapper.writeValue(entityStream, parameters);
+        jsonEngine.write(entityStream, parameters, mediaType);
     }
 
     public long getSize(Parameters parameters, Class type, Type genericType, Annotation[] annotations, MediaType mediaType) {
@@ -0,0 +1,140 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.mapping;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+
+/**
+ * Projection of JSON documents over a set of dotted field paths, such as "name" or "address.city".<br>
+ * Projecting a document copies only the selected fields, skipping all other subtrees at the parser level,
+ * so that they're never materialized: a path selects the whole subtree of its last field, and paths
+ * crossing arrays are applied to each array element.<br>
+ * Selected fields missing from a document are simply left out of the projected document.
+ *
+ * @author Sergio Bossa
+ */
+public class JsonProjection {
+
+    private final List<String> paths;
+    private final Node root;
+
+    public JsonProjection(String... paths) {
+        if (paths.length == 0) {
+            throw new IllegalArgumentException("At least one path must be projected.");
+        }
+        this.paths = Collections.unmodifiableList(Arrays.asList(paths.clone()));
+        this.root = new Node();
+        for (String path : paths) {
+            if (path == null || path.length() == 0) {
+                throw new IllegalArgumentException("Projected paths cannot be null or empty.");
+            }
+            root.add(path.split("\\."), 0);
+        }
+    }
+
+    public List<String> getPaths() {
+        return paths;
+    }
+
+    /**
+     * Copy the projection of the value the given parser currently points to into the given generator,
+     * leaving the parser on the last token of the value.
+     */
+    public void project(JsonParser parser, JsonGenerator generator) throws IOException {
+        project(root, parser, generator);
+    }
+
+    private void project(Node node, JsonParser parser, JsonGenerator generator) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (node.isLeaf()) {
+            generator.copyCurrentStructure(parser);
+        } else if (token == JsonToken.START_OBJECT) {
+            generator.writeStartObject();
+            while (parser.nextToken() != JsonToken.END_OBJECT) {
+                Node child = node.children.get(parser.getCurrentName());
+                JsonToken value = parser.nextToken();
+                if (child != null && (child.isLeaf() || value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY)) {
+                    generator.writeFieldName(parser.getCurrentName());
+                    project(child, parser, generator);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            generator.writeEndObject();
+        } else if (token == JsonToken.START_ARRAY) {
+            generator.writeStartArray();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.getCurrentToken() == JsonToken.START_OBJECT || parser.getCurrentToken() == JsonToken.START_ARRAY) {
+                    project(node, parser, generator);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            generator.writeEndArray();
+        } else {
+            generator.copyCurrentStructure(parser);
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof JsonProjection && ((JsonProjection) obj).paths.equals(paths);
+    }
+
+    @Override
+    public int hashCode() {
+        return paths.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return paths.toString();
+    }
+
+    private static class Node {
+
+        private final Map<String, Node> children = new HashMap<String, Node>();
+        private boolean leaf;
+
+        public void add(String[] fields, int index) {
+            if (leaf) {
+                return;
+            } else if (index == fields.length) {
+                leaf = true;
+                children.clear();
+            } else {
+                Node child = children.get(fields[index]);
+                if (child == null) {
+                    child = new Node();
+                    children.put(fields[index], child);
+                }
+                child.add(fields, index + 1);
+            }
+        }
+
+        public boolean isLeaf() {
+            return leaf;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.mapping;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonParser;
+
+/**
+ * Structural scanner of the fields of a JSON object encoded in UTF-8 bytes: it only locates field names and
+ * value boundaries, without decoding values nor validating them.
+ *
+ * @author Sergio Bossa
+ */
+class JsonScanner {
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+    //
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int BUFFER_SIZE = 4096;
+    //
+    private final byte[] bytes;
+    private final int end;
+    private int position;
+    private String name;
+    private int valueStart;
+    private int valueEnd;
+    private boolean first = true;
+
+    public JsonScanner(byte[] bytes, int offset, int length) throws IOException {
+        this.bytes = bytes;
+        this.end = offset + length;
+        this.position = skipWhitespace(offset);
+        expect('{');
+        this.position = skipWhitespace(position + 1);
+    }
+
+    /**
+     * Read all bytes from the given stream, pre-sizing the buffer from the given headers (if any) in order
+     * to avoid copies when the content length is known.
+     */
+    public static byte[] readFully(InputStream input, MultivaluedMap<String, String> headers) throws IOException {
+        int expectedLength = Math.max(input.available(), contentLength(headers));
+        byte[] bytes = new byte[expectedLength > 0 ? expectedLength : BUFFER_SIZE];
+        int length = 0;
+        while (true) {
+            if (length == bytes.length) {
+                int next = input.read();
+                if (next == -1) {
+                    return bytes;
+                }
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                bytes[length++] = (byte) next;
+            }
+            int read = input.read(bytes, length, bytes.length - length);
+            if (read == -1) {
+                return Arrays.copyOf(bytes, length);
+            }
+            length += read;
+        }
+    }
+
+    /**
+     * Get the content length declared by the given headers (if any), or -1 if unknown.
+     */
+    public static int contentLength(MultivaluedMap<String, String> headers) {
+        String contentLength = headers != null ? headers.getFirst(HttpHeaders.CONTENT_LENGTH) : null;
+        if (contentLength != null) {
+            try {
+                return Integer.parseInt(contentLength);
+            } catch (NumberFormatException ex) {
+                return -1;
+            }
+        } else {
+            return -1;
+        }
+    }
+
+    /**
+     * Move to the next field, returning false if there are no more fields.
+     */
+    public boolean nextField() throws IOException {
+        if (position < end && bytes[position] == '}') {
+            return false;
+        }
+        if (first) {
+            first = false;
+        } else {
+            expect(',');
+            position = skipWhitespace(position + 1);
+        }
+        expect('"');
+        int nameEnd = skipString(position);
+        name = decodeName(position, nameEnd);
+        position = skipWhitespace(nameEnd);
+        expect(':');
+        valueStart = skipWhitespace(position + 1);
+        valueEnd = skipValue(valueStart);
+        position = skipWhitespace(valueEnd);
+        if (position == end) {
+            throw malformed();
+        }
+        return true;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getValueStart() {
+        return valueStart;
+    }
+
+    public int getValueEnd() {
+        return valueEnd;
+    }
+
+    private String decodeName(int start, int stop) throws IOException {
+        for (int i = start + 1; i < stop - 1; i++) {
+            if (bytes[i] == '\\') {
+                JsonParser parser = JSON_FACTORY.createJsonParser(bytes, start, stop - start);
+                try {
+                    parser.nextToken();
+                    return parser.getText();
+                } finally {
+                    parser.close();
+                }
+            }
+        }
+        return new String(bytes, start + 1, stop - start - 2, UTF8);
+    }
+
+    private int skipValue(int start) throws IOException {
+        if (start == end) {
+            throw malformed();
+        }
+        byte current = bytes[start];
+        if (current == '"') {
+            return skipString(start);
+        } else if (current == '{' || current == '[') {
+            int depth = 0;
+            int i = start;
+            while (i < end) {
+                current = bytes[i];
+                if (current == '"') {
+                    i = skipString(i);
+                    continue;
+                } else if (current == '{' || current == '[') {
+                    depth++;
+                } else if (current == '}' || current == ']') {
+                    if (--depth == 0) {
+                        return i + 1;
+                    }
+                }
+                i++;
+            }
+            throw malformed();
+        } else {
+            int i = start;
+            while (i < end && bytes[i] != ',' && bytes[i] != '}' && bytes[i] != ']' && !isWhitespace(bytes[i])) {
+                i++;
+            }
+            return i;
+        }
+    }
+
+    private int skipString(int start) throws IOException {
+        byte[] source = bytes;
+        int stop = end;
+        int i = start + 1;
+        while (i < stop) {
+            byte current = source[i];
+            if (current == '"') {
+                return i + 1;
+            } else if (current == '\\') {
+                i += 2;
+            } else {
+                i++;
+            }
+        }
+        throw malformed();
+    }
+
+    private int skipWhitespace(int start) {
+        int i = start;
+        while (i < end && isWhitespace(bytes[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    private boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private void expect(char expected) throws IOException {
+        if (position == end || bytes[position] != expected) {
+            throw malformed();
+        }
+    }
+
+    private IOException malformed() {
+        return new IOException("Malformed JSON object at offset: " + position);
+    }
+}
@@ -15,47 +15,71 @@
  */
 package terrastore.client.mapping;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.MessageBodyReader;
 import javax.ws.rs.ext.Provider;
+import org.codehaus.jackson.JsonFactory;
 import org.codehaus.jackson.JsonParser;
 import org.codehaus.jackson.JsonToken;
-import org.codehaus.jackson.map.ObjectMapper;
-import org.codehaus.jackson.map.deser.CustomDeserializerFactory;
-import org.codehaus.jackson.map.deser.StdDeserializerProvider;
-import org.codehaus.jackson.map.ser.CustomSerializerFactory;
+import org.codehaus.jackson.util.TokenBuffer;
 
+import terrastore.client.CompactValues;
 import terrastore.client.Values;
 
 /**
  * @author Sergio Bossa
  */
 @Provider
-@Consumes("application/json")
+@Consumes({"application/json", "application/x-jackson-smile"})
 public class JsonValuesReader implements MessageBodyReader<Values> {
 
-    private final ObjectMapper jsonMapper;
+    private static final int MAX_PRESIZE = 1 << 16;
+    private static final int CHUNKS_PER_PROCESSOR = 4;
+    //
+    private final JsonMappingEngine jsonEngine;
+    private final ExecutorService executor;
+    private final int parallelThreshold;
 
     public JsonValuesReader(List<? extends JsonObjectDescriptor> descriptors) {
-        CustomSerializerFactory serializerFactory = new CustomSerializerFactory();
-        CustomDeserializerFactory deserializerFactory = new CustomDeserializerFactory();
-        for (JsonObjectDescriptor descriptor : descriptors) {
-            serializerFactory.addSpecificMapping(descriptor.getObjectClass(), descriptor.getJsonSerializer());
-            deserializerFactory.addSpecificMapping(descriptor.getObjectClass(), descriptor.getJsonDeserializer());
-        }
-        this.jsonMapper = new ObjectMapper();
-        this.jsonMapper.setSerializerFactory(serializerFactory);
-        this.jsonMapper.setDeserializerProvider(new StdDeserializerProvider(deserializerFactory));
+        this(new JsonMappingEngine(descriptors));
+    }
+
+    public JsonValuesReader(JsonMappingEngine jsonEngine) {
+        this(jsonEngine, null, 0);
+    }
+
+    /**
+     * Creates a reader binding values of plain JSON responses larger than the given threshold in parallel,
+     * through the given executor.<br>
+     * Such responses are fully buffered and scanned to locate values, then split into chunks of contiguous
+     * values, bound in parallel (one chunk by the calling thread itself), and merged back in response order.
+     *
+     * @param jsonEngine The mapping engine.
+     * @param executor The executor binding values in parallel, or null to always bind on the calling thread.
+     * @param parallelThreshold The min size in bytes of responses to bind in parallel.
+     */
+    public JsonValuesReader(JsonMappingEngine jsonEngine, ExecutorService executor, int parallelThreshold) {
+        this.jsonEngine = jsonEngine;
+        this.executor = executor;
+        this.parallelThreshold = parallelThreshold;
     }
 
     @Override
@@ -65,16 +89,217 @@ public class JsonValuesReader implements MessageBodyReader<Values> {
 
     @Override
     public Values readFrom(Class type, Type genericType, Annotation[] annotations, MediaType mediaType, MultivaluedMap httpHeaders, InputStream entityStream) throws IOException, WebApplicationException {
+        Class valueType = ValuesType.valueTypeOf(genericType);
+        JsonProjection projection = genericType instanceof ValuesType ? ((ValuesType) genericType).getProjection() : null;
+        boolean compact = genericType instanceof ValuesType && ((ValuesType) genericType).isCompact();
+        int expectedSize = genericType instanceof ValuesType ? ((ValuesType) genericType).getExpectedSize() : 0;
+        if (valueType == Void.class) {
+            return readKeys(mediaType, entityStream);
+        }
+        if (valueType == LazyDocument.class && projection == null && jsonEngine.isPlainJson(mediaType)) {
+            return readLazy(compact, expectedSize, httpHeaders, entityStream);
+        }
+        InputStream input = entityStream;
+        if (executor != null && jsonEngine.isPlainJson(mediaType)) {
+            int contentLength = JsonScanner.contentLength(httpHeaders);
+            if (contentLength == -1 || contentLength >= parallelThreshold) {
+                // Unknown content length (i.e. because of compression) requires buffering to check the actual size:
+                byte[] bytes = JsonScanner.readFully(entityStream, httpHeaders);
+                if (bytes.length >= parallelThreshold) {
+                    return readParallel(valueType, projection, compact, expectedSize, mediaType, bytes);
+                } else {
+                    input = new ByteArrayInputStream(bytes);
+                }
+            }
+        }
+        if (compact) {
+            return readCompact(valueType, projection, expectedSize, mediaType, input);
+        } else {
+            return readDefault(valueType, projection, mediaType, input);
+        }
+    }
+
+    private Values readDefault(Class valueType, JsonProjection projection, MediaType mediaType, InputStream entityStream) throws IOException {
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        JsonParser jsonParser = jsonEngine.getJsonFactory(mediaType).createJsonParser(entityStream);
+        try {
+            jsonParser.nextToken();
+            while (jsonParser.nextToken() != JsonToken.END_OBJECT) {
+                String name = jsonParser.getCurrentName();
+                jsonParser.nextToken();
+                Object value = readValue(jsonParser, valueType, projection, mediaType);
+                result.put(name, value);
+            }
+        } finally {
+            // Closing the parser gives its buffers back to the Jackson per-thread buffer recycler:
+            jsonParser.close();
+        }
+        return new Values(result);
+    }
+
+    private Values readKeys(MediaType mediaType, InputStream entityStream) throws IOException {
         Map<String, Object> result = new LinkedHashMap<String, Object>();
-        JsonParser jsonParser = jsonMapper.getJsonFactory().createJsonParser(entityStream);
-        jsonParser.nextToken();
-        while (jsonParser.nextToken() != JsonToken.END_OBJECT) {
-            String name = jsonParser.getCurrentName();
+        JsonParser jsonParser = jsonEngine.getJsonFactory(mediaType).createJsonParser(entityStream);
+        try {
             jsonParser.nextToken();
-            Object value = jsonParser.readValueAs((Class) genericType);
-            result.put(name, value);
+            while (jsonParser.nextToken() != JsonToken.END_OBJECT) {
+                String name = jsonParser.getCurrentName();
+                jsonParser.nextToken();
+                jsonParser.skipChildren();
+                result.put(name, null);
+            }
+        } finally {
+            jsonParser.close();
         }
         return new Values(result);
     }
 
+    private Values readCompact(Class valueType, JsonProjection projection, int expectedSize, MediaType mediaType, InputStream entityStream) throws IOException {
+        CompactValues.Builder<Object> result = new CompactValues.Builder<Object>(Math.min(expectedSize, MAX_PRESIZE));
+        JsonParser jsonParser = jsonEngine.getJsonFactory(mediaType).createJsonParser(entityStream);
+        try {
+            jsonParser.nextToken();
+            while (jsonParser.nextToken() != JsonToken.END_OBJECT) {
+                String name = jsonParser.getCurrentName();
+                jsonParser.nextToken();
+                Object value = readValue(jsonParser, valueType, projection, mediaType);
+                result.add(name, value);
+            }
+        } finally {
+            // Closing the parser gives its buffers back to the Jackson per-thread buffer recycler:
+            jsonParser.close();
+        }
+        return result.build();
+    }
+
+    private Values readLazy(boolean compact, int expectedSize, MultivaluedMap httpHeaders, InputStream entityStream) throws IOException {
+        // All lazy documents share the bytes of the whole response, and are only located, not parsed:
+        byte[] bytes = JsonScanner.readFully(entityStream, httpHeaders);
+        JsonScanner scanner = new JsonScanner(bytes, 0, bytes.length);
+        if (compact) {
+            CompactValues.Builder<Object> result = new CompactValues.Builder<Object>(Math.min(expectedSize, MAX_PRESIZE));
+            while (scanner.nextField()) {
+                result.add(scanner.getName(), lazyValue(bytes, scanner));
+            }
+            return result.build();
+        } else {
+            Map<String, Object> result = new LinkedHashMap<String, Object>();
+            while (scanner.nextField()) {
+                result.put(scanner.getName(), lazyValue(bytes, scanner));
+            }
+            return new Values(result);
+        }
+    }
+
+    private Values readParallel(final Class valueType, final JsonProjection projection, boolean compact, int expectedSize, final MediaType mediaType, final byte[] bytes) throws IOException {
+        JsonScanner scanner = new JsonScanner(bytes, 0, bytes.length);
+        String[] names = new String[Math.max(Math.min(expectedSize, MAX_PRESIZE), 16)];
+        int[] starts = new int[names.length];
+        int[] ends = new int[names.length];
+        int size = 0;
+        while (scanner.nextField()) {
+            if (size == names.length) {
+                names = Arrays.copyOf(names, size * 2);
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            names[size] = scanner.getName();
+            starts[size] = scanner.getValueStart();
+            ends[size] = scanner.getValueEnd();
+            size++;
+        }
+        final int[] valueStarts = starts;
+        final int[] valueEnds = ends;
+        final Object[] values = new Object[size];
+        // Chunks are made of contiguous values of about the same size in bytes:
+        int chunks = Math.min(size, Runtime.getRuntime().availableProcessors() * CHUNKS_PER_PROCESSOR);
+        List<Integer> bounds = new ArrayList<Integer>(chunks + 1);
+        bounds.add(0);
+        for (int i = 1; i < size && bounds.size() < chunks; i++) {
+            if (starts[i] >= (long) bytes.length * bounds.size() / chunks) {
+                bounds.add(i);
+            }
+        }
+        bounds.add(size);
+        List<Future<?>> futures = new ArrayList<Future<?>>(bounds.size() - 2);
+        try {
+            for (int i = 1; i < bounds.size() - 1; i++) {
+                final int from = bounds.get(i);
+                final int to = bounds.get(i + 1);
+                futures.add(executor.submit(new Callable<Object>() {
+
+                    @Override
+                    public Object call() throws Exception {
+                        readChunk(valueType, projection, mediaType, bytes, valueStarts, valueEnds, values, from, to);
+                        return null;
+                    }
+                }));
+            }
+            readChunk(valueType, projection, mediaType, bytes, starts, ends, values, bounds.get(0), bounds.get(1));
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            } else if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            } else {
+                throw new IOException(ex.getCause().getMessage(), ex.getCause());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading values.");
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+        if (compact) {
+            CompactValues.Builder<Object> result = new CompactValues.Builder<Object>(size);
+            for (int i = 0; i < size; i++) {
+                result.add(names[i], values[i]);
+            }
+            return result.build();
+        } else {
+            Map<String, Object> result = new LinkedHashMap<String, Object>(size * 4 / 3 + 1);
+            for (int i = 0; i < size; i++) {
+                result.put(names[i], values[i]);
+            }
+            return new Values(result);
+        }
+    }
+
+    private void readChunk(Class valueType, JsonProjection projection, MediaType mediaType, byte[] bytes, int[] starts, int[] ends, Object[] values, int from, int to) throws IOException {
+        JsonFactory jsonFactory = jsonEngine.getJsonFactory(mediaType);
+        for (int i = from; i < to; i++) {
+            JsonParser jsonParser = jsonFactory.createJsonParser(bytes, starts[i], ends[i] - starts[i]);
+            try {
+                jsonParser.nextToken();
+                values[i] = readValue(jsonParser, valueType, projection, mediaType);
+            } finally {
+                jsonParser.close();
+            }
+        }
+    }
+
+    private LazyDocument lazyValue(byte[] bytes, JsonScanner scanner) {
+        if (bytes[scanner.getValueStart()] != 'n') {
+            return new LazyDocument(bytes, scanner.getValueStart(), scanner.getValueEnd() - scanner.getValueStart());
+        } else {
+            return null;
+        }
+    }
+
+    private Object readValue(JsonParser jsonParser, Class valueType, JsonProjection projection, MediaType mediaType) throws IOException {
+        if (projection == null) {
+            return jsonEngine.read(jsonParser, valueType, mediaType);
+        } else {
+            // Only projected tokens are buffered, all other subtrees are skipped without being materialized:
+            TokenBuffer projected = new TokenBuffer(null);
+            projection.project(jsonParser, projected);
+            return jsonEngine.read(projected.asParser(), valueType, mediaType);
+        }
+    }
+
 }
@@ -26,10 +26,6 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.MessageBodyWriter;
 import javax.ws.rs.ext.Provider;
-import org.codehaus.jackson.map.ObjectMapper;
-import org.codehaus.jackson.map.deser.CustomDeserializerFactory;
-import org.codehaus.jackson.map.deser.StdDeserializerProvider;
-import org.codehaus.jackson.map.ser.CustomSerializerFactory;
 
 import terrastore.client.Values;
 
@@ -37,21 +33,17 @@ import terrastore.client.Values;
  * @author Sergio Bossa
  */
 @Provider
-@Produces("application/json")
+@Produces({"application/json", "application/x-jackson-smile"})
 public class JsonValuesWriter implements MessageBodyWriter<Values> {
 
-    private final ObjectMapper jsonMapper;
+    private final JsonMappingEngine jsonEngine;
 
     public JsonValuesWriter(List<? extends JsonObjectDescriptor> descriptors) {
-        CustomSerializerFactory serializerFactory = new CustomSerializerFactory();
-        CustomDeserializerFactory deserializerFactory = new CustomDeserializerFactory();
-        for (JsonObjectDescriptor descriptor : descriptors) {
-            serializerFactory.addSpecificMapping(descriptor.getObjectClass(), descriptor.getJsonSerializer());
-            deserializerFactory.addSpecificMapping(descriptor.getObjectClass(), descriptor.getJsonDeserializer());
-        }
-        this.jsonMapper = new ObjectMapper();
-        this.jsonMapper.setSerializerFactory(serializerFactory);
-        this.jsonMapper.setDeserializerProvider(new StdDeserializerProvider(deserializerFactory));
+        this(new JsonMappingEngine(descriptors));
+    }
+
+    public JsonValuesWriter(JsonMappingEngine jsonEngine) {
+        this.jsonEngine = jsonEngine;
     }
 
     @Override
@@ -66,7 +58,7 @@ public class JsonValuesWriter implements MessageBodyWriter<Values> {
 
     @Override
     public void writeTo(Values values, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException, WebApplicationException {
-        jsonMapper.writeValue(entityStream, values);
+        jsonEngine.write(entityStream, values, mediaType);
     }
 
 }
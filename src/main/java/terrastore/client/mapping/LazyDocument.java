@@ -0,0 +1,393 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.mapping;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.ObjectMapper;
+import terrastore.client.TerrastoreClientException;
+
+/**
+ * JSON document wrapping its raw UTF-8 bytes, and decoding only the values actually read, by dotted paths
+ * such as "name" or "address.city".<br>
+ * Field boundaries are located by a small structural index of each (nested) object actually traversed,
+ * built on first access and only scanning up to the requested fields: so reading one field out of a large
+ * document never materializes the others.<br>
+ * Lazy documents can be used as the Java type of values read by key, range, predicate and bulk get operations,
+ * as well as written back as they are; when read within {@link terrastore.client.Values}, they share the bytes
+ * of the whole response, which is retained as long as any of them is.<br>
+ * Typed getters throw {@link ClassCastException} if the value at the given path is of a different type,
+ * and return null if there's no value: path segments crossing non-object values are considered missing.
+ *
+ * @author Sergio Bossa
+ */
+public class LazyDocument {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper(JSON_FACTORY);
+    //
+    private final byte[] bytes;
+    private final int offset;
+    private final int length;
+    private volatile Index index;
+
+    public LazyDocument(byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+    public LazyDocument(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    static LazyDocument copyOf(JsonParser parser) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        JsonGenerator generator = JSON_FACTORY.createJsonGenerator(output, JsonEncoding.UTF8);
+        generator.copyCurrentStructure(parser);
+        generator.close();
+        return new LazyDocument(output.toByteArray());
+    }
+
+    /**
+     * Get the names of the fields of this document, in document order.
+     */
+    public List<String> getFieldNames() {
+        try {
+            Index current = index();
+            List<String> names = new ArrayList<String>(current.size());
+            for (int i = 0; i < current.size(); i++) {
+                names.add(current.name(i));
+            }
+            return Collections.unmodifiableList(names);
+        } catch (IOException ex) {
+            throw malformed(ex);
+        }
+    }
+
+    /**
+     * Check if there's a value, even if null, at the given path.
+     */
+    public boolean has(String path) {
+        return locate(path) != null;
+    }
+
+    /**
+     * Get the value at the given path, decoded as a generic Java object: either a Map, List, String,
+     * Number, Boolean, or null.
+     */
+    public Object get(String path) {
+        JsonParser parser = parserFor(path);
+        if (parser != null) {
+            try {
+                return JSON_MAPPER.readValue(parser, Object.class);
+            } catch (IOException ex) {
+                throw malformed(ex);
+            } finally {
+                close(parser);
+            }
+        } else {
+            return null;
+        }
+    }
+
+    public String getString(String path) {
+        JsonParser parser = parserFor(path);
+        if (parser != null) {
+            try {
+                if (parser.getCurrentToken() == JsonToken.VALUE_STRING) {
+                    return parser.getText();
+                } else if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+                    return null;
+                } else {
+                    throw new ClassCastException("Not a string value at path: " + path);
+                }
+            } catch (IOException ex) {
+                throw malformed(ex);
+            } finally {
+                close(parser);
+            }
+        } else {
+            return null;
+        }
+    }
+
+    public Long getLong(String path) {
+        JsonParser parser = parserFor(path);
+        if (parser != null) {
+            try {
+                if (parser.getCurrentToken() == JsonToken.VALUE_NUMBER_INT) {
+                    return parser.getLongValue();
+                } else if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+                    return null;
+                } else {
+                    throw new ClassCastException("Not an integer value at path: " + path);
+                }
+            } catch (IOException ex) {
+                throw malformed(ex);
+            } finally {
+                close(parser);
+            }
+        } else {
+            return null;
+        }
+    }
+
+    public Double getDouble(String path) {
+        JsonParser parser = parserFor(path);
+        if (parser != null) {
+            try {
+                if (parser.getCurrentToken() == JsonToken.VALUE_NUMBER_FLOAT || parser.getCurrentToken() == JsonToken.VALUE_NUMBER_INT) {
+                    return parser.getDoubleValue();
+                } else if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+                    return null;
+                } else {
+                    throw new ClassCastException("Not a number value at path: " + path);
+                }
+            } catch (IOException ex) {
+                throw malformed(ex);
+            } finally {
+                close(parser);
+            }
+        } else {
+            return null;
+        }
+    }
+
+    public Boolean getBoolean(String path) {
+        JsonParser parser = parserFor(path);
+        if (parser != null) {
+            try {
+                if (parser.getCurrentToken() == JsonToken.VALUE_TRUE || parser.getCurrentToken() == JsonToken.VALUE_FALSE) {
+                    return parser.getBooleanValue();
+                } else if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+                    return null;
+                } else {
+                    throw new ClassCastException("Not a boolean value at path: " + path);
+                }
+            } catch (IOException ex) {
+                throw malformed(ex);
+            } finally {
+                close(parser);
+            }
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Get the object at the given path as a lazy document itself, sharing the bytes of this one.
+     */
+    public LazyDocument getDocument(String path) {
+        Location location = locate(path);
+        if (location == null || bytes[location.start] == 'n') {
+            return null;
+        } else if (bytes[location.start] == '{') {
+            return location.index.document(location.field);
+        } else {
+            throw new ClassCastException("Not an object value at path: " + path);
+        }
+    }
+
+    /**
+     * Get a copy of the raw bytes of this document.
+     */
+    public byte[] toByteArray() {
+        byte[] copy = new byte[length];
+        System.arraycopy(bytes, offset, copy, 0, length);
+        return copy;
+    }
+
+    void copyTo(JsonGenerator generator) throws IOException {
+        JsonParser parser = JSON_FACTORY.createJsonParser(bytes, offset, length);
+        try {
+            parser.nextToken();
+            generator.copyCurrentStructure(parser);
+        } finally {
+            parser.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, offset, length, JsonScanner.UTF8);
+    }
+
+    private JsonParser parserFor(String path) {
+        Location location = locate(path);
+        if (location != null) {
+            try {
+                JsonParser parser = JSON_FACTORY.createJsonParser(bytes, location.start, location.end - location.start);
+                parser.nextToken();
+                return parser;
+            } catch (IOException ex) {
+                throw malformed(ex);
+            }
+        } else {
+            return null;
+        }
+    }
+
+    private Location locate(String path) {
+        try {
+            LazyDocument current = this;
+            int from = 0;
+            int dot = path.indexOf('.');
+            while (dot != -1) {
+                Index currentIndex = current.index();
+                int field = currentIndex.find(path.substring(from, dot));
+                if (field == -1 || bytes[currentIndex.start(field)] != '{') {
+                    return null;
+                }
+                current = currentIndex.document(field);
+                from = dot + 1;
+                dot = path.indexOf('.', from);
+            }
+            Index currentIndex = current.index();
+            int field = currentIndex.find(path.substring(from));
+            return field != -1 ? new Location(currentIndex, field) : null;
+        } catch (IOException ex) {
+            throw malformed(ex);
+        }
+    }
+
+    private Index index() throws IOException {
+        // Racing threads may build the index twice, which is harmless:
+        Index current = index;
+        if (current == null) {
+            current = new Index(bytes, offset, length);
+            index = current;
+        }
+        return current;
+    }
+
+    private void close(JsonParser parser) {
+        try {
+            parser.close();
+        } catch (IOException ex) {
+            throw malformed(ex);
+        }
+    }
+
+    private TerrastoreClientException malformed(IOException ex) {
+        return new TerrastoreClientException("Malformed JSON document: " + ex.getMessage(), ex);
+    }
+
+    private static class Index {
+
+        private final byte[] bytes;
+        private final JsonScanner scanner;
+        private String[] names = new String[8];
+        private int[] starts = new int[8];
+        private int[] ends = new int[8];
+        private LazyDocument[] documents = new LazyDocument[8];
+        private int size;
+        private boolean complete;
+
+        public Index(byte[] bytes, int offset, int length) throws IOException {
+            this.bytes = bytes;
+            this.scanner = new JsonScanner(bytes, offset, length);
+        }
+
+        /**
+         * Find the given field, scanning the document only up to it if not yet indexed.
+         */
+        public synchronized int find(String name) throws IOException {
+            for (int i = 0; i < size; i++) {
+                if (names[i].equals(name)) {
+                    return i;
+                }
+            }
+            while (!complete) {
+                if (scan() && names[size - 1].equals(name)) {
+                    return size - 1;
+                }
+            }
+            return -1;
+        }
+
+        public synchronized int size() throws IOException {
+            while (!complete) {
+                scan();
+            }
+            return size;
+        }
+
+        public synchronized String name(int field) {
+            return names[field];
+        }
+
+        public synchronized int start(int field) {
+            return starts[field];
+        }
+
+        public synchronized int end(int field) {
+            return ends[field];
+        }
+
+        public synchronized LazyDocument document(int field) {
+            LazyDocument document = documents[field];
+            if (document == null) {
+                document = new LazyDocument(bytes, starts[field], ends[field] - starts[field]);
+                documents[field] = document;
+            }
+            return document;
+        }
+
+        private boolean scan() throws IOException {
+            if (scanner.nextField()) {
+                if (size == names.length) {
+                    names = Arrays.copyOf(names, size * 2);
+                    starts = Arrays.copyOf(starts, size * 2);
+                    ends = Arrays.copyOf(ends, size * 2);
+                    documents = Arrays.copyOf(documents, size * 2);
+                }
+                names[size] = scanner.getName();
+                starts[size] = scanner.getValueStart();
+                ends[size] = scanner.getValueEnd();
+                size++;
+                return true;
+            } else {
+                complete = true;
+                return false;
+            }
+        }
+    }
+
+    private static class Location {
+
+        private final Index index;
+        private final int field;
+        private final int start;
+        private final int end;
+
+        public Location(Index index, int field) {
+            this.index = index;
+            this.field = field;
+            this.start = index.start(field);
+            this.end = index.end(field);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.mapping;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import terrastore.client.Values;
+
+/**
+ * Generic {@link Values} type, carrying the Java class of values together with
+ * hints about how {@link JsonValuesReader} should read them.<br>
+ * Values of {@link Void} type are skipped while reading, so that only keys are read (and mapped to null).
+ *
+ * @author Sergio Bossa
+ */
+public class ValuesType implements ParameterizedType {
+
+    private final Class<?> valueType;
+    private volatile int expectedSize;
+    private volatile boolean compact;
+    private volatile JsonProjection projection;
+
+    public ValuesType(Class<?> valueType) {
+        this.valueType = valueType;
+    }
+
+    protected ValuesType(ValuesType other) {
+        this.valueType = other.valueType;
+        this.expectedSize = other.expectedSize;
+        this.compact = other.compact;
+        this.projection = other.projection;
+    }
+
+    /**
+     * Get the Java class of values described by the given type, which may be either
+     * a {@link ValuesType} or a plain value class.
+     */
+    public static Class<?> valueTypeOf(Type type) {
+        if (type instanceof ValuesType) {
+            return ((ValuesType) type).valueType;
+        } else {
+            return (Class<?>) type;
+        }
+    }
+
+    /**
+     * Specifies the expected number of values, used to pre-size data structures: zero if unknown.
+     */
+    public ValuesType expectedSize(int expectedSize) {
+        ValuesType newInstance = new ValuesType(this);
+        newInstance.expectedSize = expectedSize;
+        return newInstance;
+    }
+
+    /**
+     * Specifies if values must be read into a {@link terrastore.client.CompactValues} instance.
+     */
+    public ValuesType compact(boolean compact) {
+        ValuesType newInstance = new ValuesType(this);
+        newInstance.compact = compact;
+        return newInstance;
+    }
+
+    /**
+     * Specifies the {@link JsonProjection} to read values through, or null to read whole values.
+     */
+    public ValuesType projection(JsonProjection projection) {
+        ValuesType newInstance = new ValuesType(this);
+        newInstance.projection = projection;
+        return newInstance;
+    }
+
+    public Class<?> getValueType() {
+        return valueType;
+    }
+
+    public int getExpectedSize() {
+        return expectedSize;
+    }
+
+    public boolean isCompact() {
+        return compact;
+    }
+
+    public JsonProjection getProjection() {
+        return projection;
+    }
+
+    @Override
+    public Type[] getActualTypeArguments() {
+        return new Type[]{valueType};
+    }
+
+    @Override
+    public Type getRawType() {
+        return Values.class;
+    }
+
+    @Override
+    public Type getOwnerType() {
+        return null;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof ParameterizedType) {
+            ParameterizedType other = (ParameterizedType) obj;
+            return other.getOwnerType() == null && Values.class.equals(other.getRawType()) && Arrays.equals(getActualTypeArguments(), other.getActualTypeArguments());
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return Values.class.hashCode() ^ Arrays.hashCode(getActualTypeArguments());
+    }
+}
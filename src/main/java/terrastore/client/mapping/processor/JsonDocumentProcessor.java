@@ -0,0 +1,754 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.mapping.processor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import terrastore.client.mapping.JsonDocument;
+import terrastore.client.mapping.JsonObjectDescriptor;
+
+/**
+ * Annotation processor generating a {@link JsonObjectDescriptor} for each {@link JsonDocument} class,
+ * with a serializer and a deserializer directly calling its getters and setters over the streaming Jackson API,
+ * so that neither reflection nor bean introspection happen when mapping it.<br>
+ * Strings, numbers, booleans and collections of them are written and read inline; any other property type,
+ * including nested documents, is delegated to the serializer or deserializer Jackson has configured for it,
+ * which is the generated one for nested {@link JsonDocument} classes too.<br>
+ * Generated descriptors are listed in META-INF/services/terrastore.client.mapping.JsonObjectDescriptor.<br>
+ * The processor is not registered as a service, so it only runs when explicitly enabled through
+ * <code>-processor terrastore.client.mapping.processor.JsonDocumentProcessor</code>.
+ *
+ * @author Sergio Bossa
+ */
+// Any annotation, or none, so that stale services are pruned even when no JsonDocument classes are left to compile:
+@SupportedAnnotationTypes("*")
+public class JsonDocumentProcessor extends AbstractProcessor {
+
+    private static final String SERVICES = "META-INF/services/" + JsonObjectDescriptor.class.getName();
+    private static final String SUPPORT = "terrastore.client.mapping.JsonDocumentSupport";
+    private static final String JSON_IGNORE = "org.codehaus.jackson.annotate.JsonIgnore";
+    private static final String JSON_PROPERTY = "org.codehaus.jackson.annotate.JsonProperty";
+    //
+    private final Set<String> descriptors = new TreeSet<String>();
+    private boolean annotated;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        for (Element element : round.getElementsAnnotatedWith(JsonDocument.class)) {
+            annotated = true;
+            if (isValid(element)) {
+                try {
+                    generate((TypeElement) element);
+                } catch (IOException ex) {
+                    error(element, "Cannot generate JSON descriptor: " + ex.getMessage());
+                }
+            }
+        }
+        if (round.processingOver()) {
+            try {
+                writeServices();
+            } catch (IOException ex) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Cannot write " + SERVICES + ": " + ex.getMessage());
+            }
+        }
+        return false;
+    }
+
+    private boolean isValid(Element element) {
+        if (element.getKind() != ElementKind.CLASS) {
+            error(element, "@JsonDocument can only annotate classes.");
+            return false;
+        }
+        TypeElement type = (TypeElement) element;
+        Set<Modifier> modifiers = type.getModifiers();
+        if (modifiers.contains(Modifier.ABSTRACT) || modifiers.contains(Modifier.PRIVATE) || !type.getTypeParameters().isEmpty()) {
+            error(element, "@JsonDocument classes must be non abstract, non private and non generic.");
+            return false;
+        }
+        if (type.getNestingKind() == NestingKind.MEMBER && !modifiers.contains(Modifier.STATIC)
+                || type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS) {
+            error(element, "@JsonDocument classes must be either top level or static.");
+            return false;
+        }
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        error(element, "@JsonDocument classes must have a non private no-args constructor.");
+        return false;
+    }
+
+    private void generate(TypeElement type) throws IOException {
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String typeName = type.getQualifiedName().toString();
+        String descriptorName = descriptorName(type);
+        String qualifiedDescriptorName = packageName.length() > 0 ? packageName + "." + descriptorName : descriptorName;
+        List<Property> properties = properties(type);
+
+        Writer writer = processingEnv.getFiler().createSourceFile(qualifiedDescriptorName, type).openWriter();
+        try {
+            new DescriptorWriter(new PrintWriter(writer), packageName, typeName, descriptorName, properties).write();
+        } finally {
+            writer.close();
+        }
+        descriptors.add(qualifiedDescriptorName);
+    }
+
+    private String descriptorName(TypeElement type) {
+        StringBuilder name = new StringBuilder(type.getSimpleName());
+        Element enclosing = type.getEnclosingElement();
+        while (enclosing.getKind().isClass() || enclosing.getKind().isInterface()) {
+            name.insert(0, enclosing.getSimpleName() + "_");
+            enclosing = enclosing.getEnclosingElement();
+        }
+        return name.append("JsonDescriptor").toString();
+    }
+
+    /**
+     * Collect properties from the topmost superclass down, resolving their types as members of the given type.
+     */
+    private List<Property> properties(TypeElement type) {
+        Types types = processingEnv.getTypeUtils();
+        DeclaredType member = (DeclaredType) type.asType();
+        LinkedList<TypeElement> hierarchy = new LinkedList<TypeElement>();
+        TypeElement current = type;
+        while (current != null && !current.getQualifiedName().contentEquals(Object.class.getName())) {
+            hierarchy.addFirst(current);
+            TypeMirror superclass = current.getSuperclass();
+            current = superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+        }
+        Map<String, Property> properties = new LinkedHashMap<String, Property>();
+        for (TypeElement declaring : hierarchy) {
+            for (VariableElement field : ElementFilter.fieldsIn(declaring.getEnclosedElements())) {
+                Set<Modifier> modifiers = field.getModifiers();
+                if (modifiers.contains(Modifier.PUBLIC) && !modifiers.contains(Modifier.STATIC) && !modifiers.contains(Modifier.TRANSIENT) && !isIgnored(field)) {
+                    Property property = property(properties, propertyName(field, field.getSimpleName().toString()));
+                    if (property.getter == null) {
+                        property.getter = field.getSimpleName().toString();
+                        property.getterType = types.asMemberOf(member, field);
+                    }
+                    if (property.setter == null && !modifiers.contains(Modifier.FINAL)) {
+                        property.setter = field.getSimpleName().toString();
+                        property.setterType = types.asMemberOf(member, field);
+                        property.field = true;
+                    }
+                }
+            }
+            for (ExecutableElement method : ElementFilter.methodsIn(declaring.getEnclosedElements())) {
+                Set<Modifier> modifiers = method.getModifiers();
+                if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.STATIC) || isIgnored(method)) {
+                    continue;
+                }
+                String name = method.getSimpleName().toString();
+                ExecutableType signature = (ExecutableType) types.asMemberOf(member, method);
+                TypeKind returnKind = signature.getReturnType().getKind();
+                if (method.getParameters().isEmpty() && returnKind != TypeKind.VOID) {
+                    String suffix = null;
+                    if (name.startsWith("get") && name.length() > 3) {
+                        suffix = name.substring(3);
+                    } else if (name.startsWith("is") && name.length() > 2 && returnKind == TypeKind.BOOLEAN) {
+                        suffix = name.substring(2);
+                    }
+                    if (suffix != null) {
+                        Property property = property(properties, propertyName(method, suffix));
+                        property.getter = name + "()";
+                        property.getterType = signature.getReturnType();
+                    }
+                } else if (method.getParameters().size() == 1 && name.startsWith("set") && name.length() > 3) {
+                    Property property = property(properties, propertyName(method, name.substring(3)));
+                    property.setter = name;
+                    property.setterType = signature.getParameterTypes().get(0);
+                    property.field = false;
+                }
+            }
+        }
+        return new ArrayList<Property>(properties.values());
+    }
+
+    private Property property(Map<String, Property> properties, String name) {
+        Property property = properties.get(name);
+        if (property == null) {
+            property = new Property(name);
+            properties.put(name, property);
+        }
+        return property;
+    }
+
+    private boolean isIgnored(Element element) {
+        return annotation(element, JSON_IGNORE) != null;
+    }
+
+    /**
+     * Get the explicitly configured property name, or mangle the accessor suffix the same way Jackson does,
+     * lower casing all leading upper case characters.
+     */
+    private String propertyName(Element element, String suffix) {
+        AnnotationMirror property = annotation(element, JSON_PROPERTY);
+        if (property != null) {
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : property.getElementValues().entrySet()) {
+                if (value.getKey().getSimpleName().contentEquals("value") && value.getValue().getValue().toString().length() > 0) {
+                    return value.getValue().getValue().toString();
+                }
+            }
+        }
+        StringBuilder name = new StringBuilder(suffix);
+        for (int i = 0; i < name.length() && Character.isUpperCase(name.charAt(i)); i++) {
+            name.setCharAt(i, Character.toLowerCase(name.charAt(i)));
+        }
+        return name.toString();
+    }
+
+    private AnnotationMirror annotation(Element element, String annotationName) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationName)) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Merge generated descriptors with the ones listed by previous, incremental, compilations, pruning the ones
+     * whose class or described type is gone, or no longer a {@link JsonDocument}.
+     */
+    private void writeServices() throws IOException {
+        Filer filer = processingEnv.getFiler();
+        boolean pruned = false;
+        try {
+            FileObject existing = filer.getResource(StandardLocation.CLASS_OUTPUT, "", SERVICES);
+            BufferedReader reader = new BufferedReader(existing.openReader(true));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String descriptor = line.trim();
+                    if (descriptor.length() > 0 && !descriptors.contains(descriptor)) {
+                        if (isStale(descriptor)) {
+                            pruned = true;
+                        } else {
+                            descriptors.add(descriptor);
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException ex) {
+            // No services yet.
+        }
+        if (!annotated && !pruned) {
+            return;
+        }
+        PrintWriter writer = new PrintWriter(filer.createResource(StandardLocation.CLASS_OUTPUT, "", SERVICES).openWriter());
+        try {
+            for (String descriptor : descriptors) {
+                writer.println(descriptor);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private boolean isStale(String descriptor) {
+        Elements elements = processingEnv.getElementUtils();
+        TypeElement descriptorType = elements.getTypeElement(descriptor);
+        if (descriptorType != null) {
+            for (TypeMirror implemented : descriptorType.getInterfaces()) {
+                DeclaredType declared = (DeclaredType) implemented;
+                if (((TypeElement) declared.asElement()).getQualifiedName().contentEquals(JsonObjectDescriptor.class.getName())
+                        && declared.getTypeArguments().size() == 1) {
+                    Element type = processingEnv.getTypeUtils().asElement(declared.getTypeArguments().get(0));
+                    return type == null || type.getAnnotation(JsonDocument.class) == null;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private static class Property {
+
+        private final String name;
+        private String getter;
+        private TypeMirror getterType;
+        private String setter;
+        private TypeMirror setterType;
+        private boolean field;
+
+        public Property(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Kinds of values written and read inline, with the fallback kind for all other types.
+     */
+    private static enum Kind {
+
+        STRING, BOOLEAN, CHAR, INT, LONG, FLOAT, DOUBLE, COLLECTION, OTHER;
+    }
+
+    /**
+     * Writer of descriptor sources: the generated serializer and deserializer resolve the ones of nested values
+     * once, the same way Jackson bean serializers and deserializers do, so new instances are returned at every call.
+     */
+    private class DescriptorWriter {
+
+        private final PrintWriter out;
+        private final String packageName;
+        private final String typeName;
+        private final String descriptorName;
+        private final List<Property> properties;
+        private final List<String> javaTypes = new ArrayList<String>();
+        private final List<String> serializedTypes = new ArrayList<String>();
+        private final List<String> serializerHelpers = new ArrayList<String>();
+        private final List<String> deserializerHelpers = new ArrayList<String>();
+
+        public DescriptorWriter(PrintWriter out, String packageName, String typeName, String descriptorName, List<Property> properties) {
+            this.out = out;
+            this.packageName = packageName;
+            this.typeName = typeName;
+            this.descriptorName = descriptorName;
+            this.properties = properties;
+        }
+
+        public void write() {
+            List<String> serializer = serializer();
+            List<String> deserializer = deserializer();
+            if (packageName.length() > 0) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+            out.println("/**");
+            out.println(" * JSON descriptor of {@link " + typeName + "}, generated by {@link " + JsonDocumentProcessor.class.getName() + "}: do not edit.");
+            out.println(" */");
+            out.println("public final class " + descriptorName + " implements terrastore.client.mapping.JsonObjectDescriptor<" + typeName + "> {");
+            out.println();
+            for (int i = 0; i < javaTypes.size(); i++) {
+                out.println("    private static final org.codehaus.jackson.type.JavaType TYPE_" + i + " = " + javaTypes.get(i) + ";");
+            }
+            if (!javaTypes.isEmpty()) {
+                out.println();
+            }
+            out.println("    public java.lang.Class<" + typeName + "> getObjectClass() {");
+            out.println("        return " + typeName + ".class;");
+            out.println("    }");
+            out.println();
+            out.println("    public org.codehaus.jackson.map.JsonSerializer<" + typeName + "> getJsonSerializer() {");
+            out.println("        return new Serializer();");
+            out.println("    }");
+            out.println();
+            out.println("    public org.codehaus.jackson.map.JsonDeserializer<" + typeName + "> getJsonDeserializer() {");
+            out.println("        return new Deserializer();");
+            out.println("    }");
+            out.println();
+            for (String line : serializer) {
+                out.println(line);
+            }
+            out.println();
+            for (String line : deserializer) {
+                out.println(line);
+            }
+            out.println("}");
+            out.flush();
+        }
+
+        /**
+         * Generate the serializer, writing field names out of pre-encoded strings as Jackson bean serializers do.
+         */
+        private List<String> serializer() {
+            List<String> fieldNames = new ArrayList<String>();
+            List<String> body = new ArrayList<String>();
+            body.add("        @Override");
+            body.add("        public void serialize(" + typeName + " value, org.codehaus.jackson.JsonGenerator generator, org.codehaus.jackson.map.SerializerProvider provider) throws java.io.IOException {");
+            body.add("            boolean nulls = provider.getConfig().getSerializationInclusion() == org.codehaus.jackson.map.annotate.JsonSerialize.Inclusion.ALWAYS;");
+            body.add("            generator.writeStartObject();");
+            for (int i = 0; i < properties.size(); i++) {
+                Property property = properties.get(i);
+                if (property.getter != null) {
+                    String local = "value" + i;
+                    String javaName = "NAME_" + fieldNames.size();
+                    fieldNames.add(quote(property.name));
+                    if (kind(property.getterType) == Kind.COLLECTION) {
+                        serializerHelpers.add(writeHelper(i, property.getterType));
+                    }
+                    body.add("            " + property.getterType + " " + local + " = value." + property.getter + ";");
+                    if (property.getterType.getKind().isPrimitive()) {
+                        body.add("            generator.writeFieldName(" + javaName + ");");
+                        body.add("            " + write(property.getterType, local, i));
+                    } else {
+                        body.add("            if (" + local + " != null) {");
+                        body.add("                generator.writeFieldName(" + javaName + ");");
+                        body.add("                " + write(property.getterType, local, i));
+                        body.add("            } else if (nulls) {");
+                        body.add("                generator.writeFieldName(" + javaName + ");");
+                        body.add("                generator.writeNull();");
+                        body.add("            }");
+                    }
+                }
+            }
+            body.add("            generator.writeEndObject();");
+            body.add("        }");
+
+            List<String> lines = new ArrayList<String>();
+            lines.add("    private static final class Serializer extends org.codehaus.jackson.map.JsonSerializer<" + typeName + "> implements org.codehaus.jackson.map.ResolvableSerializer {");
+            lines.add("");
+            for (int i = 0; i < fieldNames.size(); i++) {
+                lines.add("        private static final org.codehaus.jackson.io.SerializedString NAME_" + i + " = new org.codehaus.jackson.io.SerializedString(" + fieldNames.get(i) + ");");
+            }
+            if (!fieldNames.isEmpty()) {
+                lines.add("");
+            }
+            for (int i = 0; i < serializedTypes.size(); i++) {
+                lines.add("        private org.codehaus.jackson.map.JsonSerializer<Object> serializer" + i + ";");
+            }
+            if (!serializedTypes.isEmpty()) {
+                lines.add("");
+            }
+            lines.add("        public void resolve(org.codehaus.jackson.map.SerializerProvider provider) throws org.codehaus.jackson.map.JsonMappingException {");
+            for (int i = 0; i < serializedTypes.size(); i++) {
+                lines.add("            serializer" + i + " = provider.findTypedValueSerializer(" + serializedTypes.get(i) + ".class, true, null);");
+            }
+            lines.add("        }");
+            lines.add("");
+            lines.addAll(body);
+            for (String helper : serializerHelpers) {
+                lines.add("");
+                lines.add(helper);
+            }
+            lines.add("    }");
+            return lines;
+        }
+
+        private List<String> deserializer() {
+            List<String> body = new ArrayList<String>();
+            body.add("        @Override");
+            body.add("        @SuppressWarnings(\"unchecked\")");
+            body.add("        public " + typeName + " deserialize(org.codehaus.jackson.JsonParser parser, org.codehaus.jackson.map.DeserializationContext context) throws java.io.IOException {");
+            body.add("            " + typeName + " value = new " + typeName + "();");
+            body.add("            for (org.codehaus.jackson.JsonToken token = " + SUPPORT + ".startObject(parser, context, " + typeName + ".class); token == org.codehaus.jackson.JsonToken.FIELD_NAME; token = parser.nextToken()) {");
+            body.add("                java.lang.String field = parser.getCurrentName();");
+            body.add("                parser.nextToken();");
+            // Dispatch on the hash code of field names, which is cached by their interned strings:
+            Map<Integer, List<String>> cases = new TreeMap<Integer, List<String>>();
+            for (int i = 0; i < properties.size(); i++) {
+                Property property = properties.get(i);
+                List<String> branch = new ArrayList<String>();
+                if (property.setter != null) {
+                    if (kind(property.setterType) == Kind.COLLECTION) {
+                        deserializerHelpers.add(readHelper(i, property.setterType));
+                    }
+                    branch.add("                        if (" + quote(property.name) + ".equals(field)) {");
+                    String read = read(property.setterType, i);
+                    if (property.field) {
+                        branch.add("                            value." + property.setter + " = " + read + ";");
+                    } else {
+                        branch.add("                            value." + property.setter + "(" + read + ");");
+                    }
+                    branch.add("                            continue;");
+                    branch.add("                        }");
+                } else if (property.getter != null && kind(property.getterType) == Kind.COLLECTION) {
+                    // Read only collection, filled the same way Jackson does:
+                    deserializerHelpers.add(readHelper(i, property.getterType));
+                    branch.add("                        if (" + quote(property.name) + ".equals(field) && value." + property.getter + " != null) {");
+                    branch.add("                            " + property.getterType + " values = " + read(property.getterType, i) + ";");
+                    branch.add("                            if (values != null) {");
+                    branch.add("                                value." + property.getter + ".addAll(values);");
+                    branch.add("                            }");
+                    branch.add("                            continue;");
+                    branch.add("                        }");
+                }
+                if (!branch.isEmpty()) {
+                    Integer hash = property.name.hashCode();
+                    if (!cases.containsKey(hash)) {
+                        cases.put(hash, new ArrayList<String>());
+                    }
+                    cases.get(hash).addAll(branch);
+                }
+            }
+            if (!cases.isEmpty()) {
+                body.add("                switch (field.hashCode()) {");
+                for (Map.Entry<Integer, List<String>> entry : cases.entrySet()) {
+                    body.add("                    case " + entry.getKey() + ":");
+                    body.addAll(entry.getValue());
+                    body.add("                        break;");
+                }
+                body.add("                }");
+            }
+            body.add("                " + SUPPORT + ".unknownProperty(parser, context, this, value, field);");
+            body.add("            }");
+            body.add("            return value;");
+            body.add("        }");
+
+            List<String> lines = new ArrayList<String>();
+            lines.add("    private static final class Deserializer extends org.codehaus.jackson.map.JsonDeserializer<" + typeName + "> implements org.codehaus.jackson.map.ResolvableDeserializer {");
+            lines.add("");
+            for (int i = 0; i < javaTypes.size(); i++) {
+                lines.add("        private org.codehaus.jackson.map.JsonDeserializer<Object> deserializer" + i + ";");
+            }
+            if (!javaTypes.isEmpty()) {
+                lines.add("");
+            }
+            lines.add("        public void resolve(org.codehaus.jackson.map.DeserializationConfig config, org.codehaus.jackson.map.DeserializerProvider provider) throws org.codehaus.jackson.map.JsonMappingException {");
+            for (int i = 0; i < javaTypes.size(); i++) {
+                lines.add("            deserializer" + i + " = provider.findValueDeserializer(config, TYPE_" + i + ", null);");
+            }
+            lines.add("        }");
+            lines.add("");
+            lines.addAll(body);
+            for (String helper : deserializerHelpers) {
+                lines.add("");
+                lines.add(helper);
+            }
+            lines.add("    }");
+            return lines;
+        }
+
+        private String write(TypeMirror type, String value, int index) {
+            switch (kind(type)) {
+                case STRING:
+                    return "generator.writeString(" + value + ");";
+                case BOOLEAN:
+                    return "generator.writeBoolean(" + value + ");";
+                case CHAR:
+                    return "generator.writeString(java.lang.String.valueOf(" + value + "));";
+                case INT:
+                case LONG:
+                case FLOAT:
+                case DOUBLE:
+                    return "generator.writeNumber(" + value + ");";
+                case COLLECTION:
+                    return "write" + index + "(" + value + ", generator, provider);";
+                default:
+                    if (type.getKind() == TypeKind.DECLARED && ((DeclaredType) type).getTypeArguments().isEmpty()) {
+                        // Use the resolved serializer unless the runtime type differs from the declared one:
+                        String serializer = serializer(erasure(type));
+                        return "if (" + serializer + " != null && " + value + ".getClass() == " + erasure(type) + ".class) "
+                                + serializer + ".serialize(" + value + ", generator, provider); "
+                                + "else provider.defaultSerializeValue(" + value + ", generator);";
+                    } else {
+                        return "provider.defaultSerializeValue(" + value + ", generator);";
+                    }
+            }
+        }
+
+        private String read(TypeMirror type, int index) {
+            Kind kind = kind(type);
+            switch (kind) {
+                case STRING:
+                    return SUPPORT + ".readString(parser)";
+                case COLLECTION:
+                    return "read" + index + "(parser, context)";
+                case OTHER:
+                    String javaType = javaType(type);
+                    return "(" + boxed(type) + ") " + SUPPORT + ".readValue(parser, context, " + deserializer(javaType) + ", " + javaType + ")";
+                default:
+                    if (type.getKind().isPrimitive()) {
+                        String cast = type.getKind() == TypeKind.SHORT || type.getKind() == TypeKind.BYTE ? "(" + type + ") " : "";
+                        return cast + SUPPORT + ".read" + capitalize(kind.name().toLowerCase()) + "(parser)";
+                    } else {
+                        return SUPPORT + ".readNullable" + capitalize(kind.name().toLowerCase()) + "(parser)";
+                    }
+            }
+        }
+
+        private Kind kind(TypeMirror type) {
+            switch (type.getKind()) {
+                case BOOLEAN:
+                    return Kind.BOOLEAN;
+                case CHAR:
+                    return Kind.CHAR;
+                case BYTE:
+                case SHORT:
+                case INT:
+                    return Kind.INT;
+                case LONG:
+                    return Kind.LONG;
+                case FLOAT:
+                    return Kind.FLOAT;
+                case DOUBLE:
+                    return Kind.DOUBLE;
+                case DECLARED:
+                    String name = erasure(type);
+                    if (name.equals("java.lang.String")) {
+                        return Kind.STRING;
+                    } else if (name.equals("java.lang.Boolean")) {
+                        return Kind.BOOLEAN;
+                    } else if (name.equals("java.lang.Integer")) {
+                        return Kind.INT;
+                    } else if (name.equals("java.lang.Long")) {
+                        return Kind.LONG;
+                    } else if (name.equals("java.lang.Float")) {
+                        return Kind.FLOAT;
+                    } else if (name.equals("java.lang.Double")) {
+                        return Kind.DOUBLE;
+                    } else if (collectionImplementation(name) != null) {
+                        List<? extends TypeMirror> arguments = ((DeclaredType) type).getTypeArguments();
+                        if (arguments.size() == 1 && arguments.get(0).getKind() == TypeKind.DECLARED && kind(arguments.get(0)) != Kind.COLLECTION) {
+                            return Kind.COLLECTION;
+                        }
+                    }
+                    return Kind.OTHER;
+                default:
+                    return Kind.OTHER;
+            }
+        }
+
+        private String collectionImplementation(String name) {
+            if (name.equals("java.util.Collection") || name.equals("java.util.List") || name.equals("java.util.ArrayList")) {
+                return "java.util.ArrayList";
+            } else if (name.equals("java.util.Set") || name.equals("java.util.HashSet")) {
+                return "java.util.HashSet";
+            } else if (name.equals("java.util.LinkedList") || name.equals("java.util.LinkedHashSet")) {
+                return name;
+            } else {
+                return null;
+            }
+        }
+
+        private String writeHelper(int index, TypeMirror type) {
+            TypeMirror element = ((DeclaredType) type).getTypeArguments().get(0);
+            return "        private void write" + index + "(" + type + " values, org.codehaus.jackson.JsonGenerator generator, org.codehaus.jackson.map.SerializerProvider provider) throws java.io.IOException {\n"
+                    + "            generator.writeStartArray();\n"
+                    + "            for (" + element + " element : values) {\n"
+                    + "                if (element != null) {\n"
+                    + "                    " + write(element, "element", -1) + "\n"
+                    + "                } else {\n"
+                    + "                    generator.writeNull();\n"
+                    + "                }\n"
+                    + "            }\n"
+                    + "            generator.writeEndArray();\n"
+                    + "        }";
+        }
+
+        private String readHelper(int index, TypeMirror type) {
+            TypeMirror element = ((DeclaredType) type).getTypeArguments().get(0);
+            String implementation = collectionImplementation(erasure(type)) + "<" + element + ">";
+            StringBuilder helper = new StringBuilder();
+            helper.append("        @SuppressWarnings(\"unchecked\")\n");
+            helper.append("        private " + type + " read" + index + "(org.codehaus.jackson.JsonParser parser, org.codehaus.jackson.map.DeserializationContext context) throws java.io.IOException {\n");
+            helper.append("            if (parser.getCurrentToken() == org.codehaus.jackson.JsonToken.VALUE_NULL) {\n");
+            helper.append("                return null;\n");
+            helper.append("            }\n");
+            helper.append("            " + implementation + " values = new " + implementation + "();\n");
+            if (kind(element) == Kind.OTHER) {
+                String javaType = javaType(element);
+                String deserializer = deserializer(javaType);
+                helper.append("            org.codehaus.jackson.map.JsonDeserializer<Object> deserializer = " + deserializer + " != null ? " + deserializer + " : " + SUPPORT + ".deserializer(context, " + javaType + ");\n");
+            }
+            helper.append("            for (org.codehaus.jackson.JsonToken token = " + SUPPORT + ".startArray(parser, context, " + erasure(type) + ".class); token != org.codehaus.jackson.JsonToken.END_ARRAY; token = parser.nextToken()) {\n");
+            if (kind(element) == Kind.OTHER) {
+                helper.append("                values.add(token != org.codehaus.jackson.JsonToken.VALUE_NULL ? (" + element + ") deserializer.deserialize(parser, context) : null);\n");
+            } else {
+                helper.append("                values.add(" + read(element, -1) + ");\n");
+            }
+            helper.append("            }\n");
+            helper.append("            return values;\n");
+            helper.append("        }");
+            return helper.toString();
+        }
+
+        private String serializer(String className) {
+            int index = serializedTypes.indexOf(className);
+            if (index == -1) {
+                index = serializedTypes.size();
+                serializedTypes.add(className);
+            }
+            return "serializer" + index;
+        }
+
+        private String deserializer(String javaType) {
+            return "deserializer" + javaType.substring("TYPE_".length());
+        }
+
+        private String javaType(TypeMirror type) {
+            String javaType;
+            if (type.getKind() == TypeKind.DECLARED && ((DeclaredType) type).getTypeArguments().isEmpty()) {
+                javaType = "org.codehaus.jackson.map.type.TypeFactory.type(" + type + ".class)";
+            } else {
+                javaType = "org.codehaus.jackson.map.type.TypeFactory.type(new org.codehaus.jackson.type.TypeReference<" + boxed(type) + ">() {})";
+            }
+            int index = javaTypes.indexOf(javaType);
+            if (index == -1) {
+                index = javaTypes.size();
+                javaTypes.add(javaType);
+            }
+            return "TYPE_" + index;
+        }
+
+        private String boxed(TypeMirror type) {
+            if (type.getKind().isPrimitive()) {
+                return processingEnv.getTypeUtils().boxedClass((javax.lang.model.type.PrimitiveType) type).getQualifiedName().toString();
+            } else {
+                return type.toString();
+            }
+        }
+
+        private String erasure(TypeMirror type) {
+            return ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+        }
+
+        private String capitalize(String name) {
+            return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        }
+
+        private String quote(String name) {
+            return "\"" + name.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.metrics;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import terrastore.client.TerrastoreClientException;
+
+/**
+ * Running figures about requests made by connections: latencies and rates of operations by operation name and bucket,
+ * latencies of HTTP requests by host, request and response bytes, failures by exception type, time
+ * spent waiting for pooled connections, and number of requests currently in flight or waiting for a connection.<br>
+ * Operation latencies are measured around whole {@link terrastore.client.connection.Connection} calls, so they
+ * include (de)serialization and client-side caching; host latencies are measured from sending the request
+ * to releasing its connection. Operations not related to any bucket are recorded under the empty bucket name.<br>
+ * If constructed with {@link HotKeys}, keys accessed by key, update and merge operations are counted too.<br>
+ * Histograms are live, so figures keep changing while being read.
+ *
+ * @author Sergio Bossa
+ */
+public class ConnectionMetrics {
+
+    private final ConcurrentMap<String, ConcurrentMap<String, LatencyHistogram>> operations = new ConcurrentHashMap<String, ConcurrentMap<String, LatencyHistogram>>();
+    private final ConcurrentMap<String, LatencyHistogram> hosts = new ConcurrentHashMap<String, LatencyHistogram>();
+    private final ConcurrentMap<String, Rate> rates = new ConcurrentHashMap<String, Rate>();
+    private final Rate rate = new Rate();
+    private final ConcurrentMap<Class<?>, AtomicLong> errors = new ConcurrentHashMap<Class<?>, AtomicLong>();
+    private final LatencyHistogram poolWait = new LatencyHistogram();
+    private final AtomicLong requestBytes = new AtomicLong();
+    private final AtomicLong responseBytes = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final HotKeys hotKeys;
+
+    public ConnectionMetrics() {
+        this(null);
+    }
+
+    public ConnectionMetrics(HotKeys hotKeys) {
+        this.hotKeys = hotKeys;
+    }
+
+    /**
+     * Get the latencies of the given operation, for all buckets.
+     *
+     * @param operation The operation name, as defined by {@link MeteredConnection}.
+     */
+    public LatencyHistogram getLatency(String operation) {
+        LatencyHistogram merged = new LatencyHistogram();
+        Map<String, LatencyHistogram> byBucket = operations.get(operation);
+        if (byBucket != null) {
+            for (LatencyHistogram histogram : byBucket.values()) {
+                merged.add(histogram);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Get the latencies of the given operation on the given bucket, or null if never executed.
+     */
+    public LatencyHistogram getLatency(String operation, String bucket) {
+        Map<String, LatencyHistogram> byBucket = operations.get(operation);
+        return byBucket != null ? byBucket.get(bucket) : null;
+    }
+
+    /**
+     * Get the latencies of all executed operations, by operation name and bucket.
+     */
+    public Map<String, Map<String, LatencyHistogram>> getLatencies() {
+        Map<String, Map<String, LatencyHistogram>> latencies = new HashMap<String, Map<String, LatencyHistogram>>();
+        for (Map.Entry<String, ConcurrentMap<String, LatencyHistogram>> operation : operations.entrySet()) {
+            latencies.put(operation.getKey(), Collections.unmodifiableMap(new HashMap<String, LatencyHistogram>(operation.getValue())));
+        }
+        return Collections.unmodifiableMap(latencies);
+    }
+
+    /**
+     * Get the number of executed operations per second over the last minute, for all operations.
+     */
+    public double getRate() {
+        return rate.getRate();
+    }
+
+    /**
+     * Get the number of executions of the given operation per second over the last minute.
+     */
+    public double getRate(String operation) {
+        Rate operationRate = rates.get(operation);
+        return operationRate != null ? operationRate.getRate() : 0;
+    }
+
+    /**
+     * Get the latencies of HTTP requests, by host.
+     */
+    public Map<String, LatencyHistogram> getHostLatencies() {
+        return Collections.unmodifiableMap(new HashMap<String, LatencyHistogram>(hosts));
+    }
+
+    /**
+     * Get the number of failed operations, by exception type.
+     */
+    public Map<Class<?>, Long> getErrors() {
+        Map<Class<?>, Long> counts = new HashMap<Class<?>, Long>();
+        for (Map.Entry<Class<?>, AtomicLong> error : errors.entrySet()) {
+            counts.put(error.getKey(), error.getValue().get());
+        }
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * Get the number of operations failed with the given exception type, or any of its subtypes.
+     */
+    public long getErrors(Class<? extends TerrastoreClientException> type) {
+        long count = 0;
+        for (Map.Entry<Class<?>, AtomicLong> error : errors.entrySet()) {
+            if (type.isAssignableFrom(error.getKey())) {
+                count += error.getValue().get();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the times spent waiting for a pooled connection.
+     */
+    public LatencyHistogram getPoolWait() {
+        return poolWait;
+    }
+
+    /**
+     * Get the number of HTTP requests in progress, from writing the request up to releasing the response.
+     */
+    public int getInFlightRequests() {
+        return inFlight.get();
+    }
+
+    /**
+     * Get the number of HTTP requests currently waiting for a pooled connection.
+     */
+    public int getPendingRequests() {
+        return pending.get();
+    }
+
+    /**
+     * Get the number of request body bytes sent, as sent over the wire (that is, possibly compressed).
+     */
+    public long getRequestBytes() {
+        return requestBytes.get();
+    }
+
+    /**
+     * Get the number of response body bytes received, as received over the wire (that is, possibly compressed).
+     */
+    public long getResponseBytes() {
+        return responseBytes.get();
+    }
+
+    /**
+     * Get the hot keys detected by key, update and merge operations, or null if not detecting them.
+     */
+    public HotKeys getHotKeys() {
+        return hotKeys;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("ConnectionMetrics{");
+        for (String operation : operations.keySet()) {
+            result.append(operation).append('=').append(getLatency(operation)).append(", ");
+        }
+        for (Map.Entry<String, LatencyHistogram> host : hosts.entrySet()) {
+            result.append(host.getKey()).append('=').append(host.getValue()).append(", ");
+        }
+        return result.append("rate=").append(rate)
+                .append(", inFlight=").append(getInFlightRequests())
+                .append(", pending=").append(getPendingRequests())
+                .append(", errors=").append(getErrors())
+                .append(", poolWait=").append(poolWait.getP99(TimeUnit.MICROSECONDS)).append("us p99")
+                .append(", requestBytes=").append(getRequestBytes())
+                .append(", responseBytes=").append(getResponseBytes()).append("}").toString();
+    }
+
+    public void operationExecuted(String operation, String bucket, long nanos) {
+        ConcurrentMap<String, LatencyHistogram> byBucket = operations.get(operation);
+        if (byBucket == null) {
+            byBucket = new ConcurrentHashMap<String, LatencyHistogram>();
+            ConcurrentMap<String, LatencyHistogram> existing = operations.putIfAbsent(operation, byBucket);
+            if (existing != null) {
+                byBucket = existing;
+            }
+        }
+        String key = bucket != null ? bucket : "";
+        LatencyHistogram histogram = byBucket.get(key);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            LatencyHistogram existing = byBucket.putIfAbsent(key, histogram);
+            if (existing != null) {
+                histogram = existing;
+            }
+        }
+        histogram.record(nanos);
+        Rate operationRate = rates.get(operation);
+        if (operationRate == null) {
+            operationRate = new Rate();
+            Rate existing = rates.putIfAbsent(operation, operationRate);
+            if (existing != null) {
+                operationRate = existing;
+            }
+        }
+        operationRate.mark();
+        rate.mark();
+    }
+
+    public void keyAccessed(String bucket, String key) {
+        if (hotKeys != null) {
+            hotKeys.keyAccessed(bucket, key);
+        }
+    }
+
+    public void operationFailed(TerrastoreClientException failure) {
+        AtomicLong count = errors.get(failure.getClass());
+        if (count == null) {
+            count = new AtomicLong();
+            AtomicLong existing = errors.putIfAbsent(failure.getClass(), count);
+            if (existing != null) {
+                count = existing;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    public void requestStarted() {
+        inFlight.incrementAndGet();
+    }
+
+    public void requestFailed() {
+        inFlight.decrementAndGet();
+    }
+
+    public void requestExecuted(String host, long nanos, long sentBytes, long receivedBytes) {
+        inFlight.decrementAndGet();
+        LatencyHistogram histogram = hosts.get(host);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            LatencyHistogram existing = hosts.putIfAbsent(host, histogram);
+            if (existing != null) {
+                histogram = existing;
+            }
+        }
+        histogram.record(nanos);
+        requestBytes.addAndGet(sentBytes);
+        responseBytes.addAndGet(receivedBytes);
+    }
+
+    public void connectionRequested() {
+        pending.incrementAndGet();
+    }
+
+    public void connectionAcquired(long nanos) {
+        pending.decrementAndGet();
+        poolWait.record(nanos);
+    }
+
+    public void connectionRefused() {
+        pending.decrementAndGet();
+    }
+}
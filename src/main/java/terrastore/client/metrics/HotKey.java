@@ -0,0 +1,63 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.metrics;
+
+/**
+ * Key frequently accessed in a bucket, with its estimated number of (recent) accesses.
+ *
+ * @author Sergio Bossa
+ */
+public class HotKey {
+
+    private final String key;
+    private final long count;
+
+    public HotKey(String key, long count) {
+        this.key = key;
+        this.count = count;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Get the estimated number of accesses: it may overestimate, never underestimate, and halves periodically.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof HotKey) {
+            HotKey other = (HotKey) obj;
+            return key.equals(other.key) && count == other.count;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode() * 31 + (int) (count ^ (count >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return key + "=" + count;
+    }
+}
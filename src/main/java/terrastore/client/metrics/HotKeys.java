@@ -0,0 +1,229 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Detector of hot keys: the keys most frequently accessed by key operations, per bucket.<br>
+ * Accesses are counted into a fixed size count-min sketch per bucket, so memory doesn't grow with the number
+ * of distinct keys, and counts can only be overestimated, by hash collisions; alongside, each bucket keeps the
+ * given number of keys with the highest estimated counts, sorted so that the coldest one is known without scanning them,
+ * and updated only when a key estimate exceeds the lowest one among them, so most accesses just increment a few counters.<br>
+ * Counts age: once a bucket sketch has counted as many accesses as ten times its width, all of its counts are halved,
+ * so the top keys reflect recent traffic rather than the whole client lifetime.
+ *
+ * @author Sergio Bossa
+ */
+public class HotKeys {
+
+    public static final int DEFAULT_WIDTH = 1024;
+    private static final int DEPTH = 4;
+    private static final Comparator<HotKey> BY_COUNT = new Comparator<HotKey>() {
+
+        @Override
+        public int compare(HotKey first, HotKey second) {
+            return first.getCount() > second.getCount() ? -1 : (first.getCount() < second.getCount() ? 1 : first.getKey().compareTo(second.getKey()));
+        }
+    };
+    //
+    private final ConcurrentMap<String, Sketch> buckets = new ConcurrentHashMap<String, Sketch>();
+    private final int top;
+    private final int width;
+
+    /**
+     * Detect the given number of hot keys per bucket, with sketches of the default width.
+     */
+    public HotKeys(int top) {
+        this(top, DEFAULT_WIDTH);
+    }
+
+    /**
+     * Detect the given number of hot keys per bucket, with sketches of the given width, rounded up to a power of two:
+     * wider sketches take more memory, {@code 16 * width} bytes per bucket, and collide less.
+     */
+    public HotKeys(int top, int width) {
+        if (top <= 0) {
+            throw new IllegalArgumentException("The number of hot keys must be positive!");
+        }
+        if (width <= 0) {
+            throw new IllegalArgumentException("The sketch width must be positive!");
+        }
+        this.top = top;
+        this.width = Integer.highestOneBit(width) == width ? width : Integer.highestOneBit(width) << 1;
+    }
+
+    public void keyAccessed(String bucket, String key) {
+        Sketch sketch = buckets.get(bucket);
+        if (sketch == null) {
+            sketch = new Sketch(width, top);
+            Sketch existing = buckets.putIfAbsent(bucket, sketch);
+            if (existing != null) {
+                sketch = existing;
+            }
+        }
+        sketch.add(key);
+    }
+
+    /**
+     * Get the hot keys of the given bucket, from the hottest one, or an empty list if no key of the bucket has been accessed.
+     */
+    public List<HotKey> getHotKeys(String bucket) {
+        Sketch sketch = buckets.get(bucket);
+        return sketch != null ? sketch.getTop() : Collections.<HotKey>emptyList();
+    }
+
+    /**
+     * Get the hot keys of all buckets, by bucket.
+     */
+    public Map<String, List<HotKey>> getHotKeys() {
+        Map<String, List<HotKey>> hotKeys = new HashMap<String, List<HotKey>>();
+        for (Map.Entry<String, Sketch> bucket : buckets.entrySet()) {
+            hotKeys.put(bucket.getKey(), bucket.getValue().getTop());
+        }
+        return Collections.unmodifiableMap(hotKeys);
+    }
+
+    /**
+     * Get the estimated number of recent accesses to the given key.
+     */
+    public long getCount(String bucket, String key) {
+        Sketch sketch = buckets.get(bucket);
+        return sketch != null ? sketch.estimate(hash(key)) : 0;
+    }
+
+    public int getTop() {
+        return top;
+    }
+
+    @Override
+    public String toString() {
+        return "HotKeys" + getHotKeys();
+    }
+
+    private static int hash(String key) {
+        // Murmur3 finalizer, to spread poorly distributed string hashes:
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static class Sketch {
+
+        private final AtomicIntegerArray counters;
+        private final AtomicLong additions = new AtomicLong();
+        private final Map<String, HotKey> candidates = new HashMap<String, HotKey>();
+        private final TreeSet<HotKey> hottestFirst = new TreeSet<HotKey>(BY_COUNT);
+        private final int mask;
+        private final int top;
+        private final long resetAt;
+        private volatile long threshold;
+
+        public Sketch(int width, int top) {
+            this.counters = new AtomicIntegerArray(width * DEPTH);
+            this.mask = width - 1;
+            this.top = top;
+            this.resetAt = 10L * width;
+        }
+
+        public void add(String key) {
+            int hash = hash(key);
+            int step = (hash >>> 16) | 1;
+            int estimate = Integer.MAX_VALUE;
+            for (int row = 0; row < DEPTH; row++) {
+                int count = counters.incrementAndGet(row * (mask + 1) + ((hash + row * step) & mask));
+                estimate = Math.min(estimate, count);
+            }
+            // Checked against the lowest candidate count without locking, and strictly, so that flat traffic rarely locks:
+            if (estimate > threshold) {
+                offer(key, estimate);
+            }
+            if (additions.incrementAndGet() == resetAt) {
+                age();
+            }
+        }
+
+        public long estimate(int hash) {
+            int step = (hash >>> 16) | 1;
+            int estimate = Integer.MAX_VALUE;
+            for (int row = 0; row < DEPTH; row++) {
+                estimate = Math.min(estimate, counters.get(row * (mask + 1) + ((hash + row * step) & mask)));
+            }
+            return estimate;
+        }
+
+        public synchronized List<HotKey> getTop() {
+            return Collections.unmodifiableList(new ArrayList<HotKey>(hottestFirst));
+        }
+
+        private synchronized void offer(String key, long estimate) {
+            HotKey previous = candidates.get(key);
+            if (previous != null) {
+                if (previous.getCount() >= estimate) {
+                    return;
+                }
+                hottestFirst.remove(previous);
+            } else if (candidates.size() == top) {
+                HotKey coldest = hottestFirst.last();
+                if (coldest.getCount() >= estimate) {
+                    return;
+                }
+                hottestFirst.remove(coldest);
+                candidates.remove(coldest.getKey());
+            }
+            HotKey candidate = new HotKey(key, estimate);
+            candidates.put(key, candidate);
+            hottestFirst.add(candidate);
+            updateThreshold();
+        }
+
+        private synchronized void age() {
+            for (int i = 0; i < counters.length(); i++) {
+                int count = counters.get(i);
+                // Racing increments may get lost, which is fine for approximate counts:
+                counters.set(i, count >>> 1);
+            }
+            List<HotKey> aged = new ArrayList<HotKey>(hottestFirst);
+            candidates.clear();
+            hottestFirst.clear();
+            for (HotKey candidate : aged) {
+                HotKey halved = new HotKey(candidate.getKey(), candidate.getCount() >>> 1);
+                candidates.put(halved.getKey(), halved);
+                hottestFirst.add(halved);
+            }
+            updateThreshold();
+            additions.set(0);
+        }
+
+        private void updateThreshold() {
+            threshold = candidates.size() < top ? 0 : hottestFirst.last().getCount();
+        }
+    }
+}
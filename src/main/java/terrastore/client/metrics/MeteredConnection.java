@@ -0,0 +1,310 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.metrics;
+
+import java.util.Set;
+import terrastore.client.BackupOperation;
+import terrastore.client.BulkOperation;
+import terrastore.client.ClusterStats;
+import terrastore.client.ConditionalOperation;
+import terrastore.client.KeyOperation;
+import terrastore.client.PredicateOperation;
+import terrastore.client.RangeOperation;
+import terrastore.client.TerrastoreClientException;
+import terrastore.client.UpdateOperation;
+import terrastore.client.Values;
+import terrastore.client.ValuesOperation;
+import terrastore.client.connection.Connection;
+import terrastore.client.mapreduce.MapReduceOperation;
+import terrastore.client.merge.MergeOperation;
+
+/**
+ * {@link terrastore.client.connection.Connection} decorator recording latencies and failures of each operation
+ * into {@link ConnectionMetrics}.<br>
+ * Operations are named after the connection method executing them, with conditional key operations
+ * named "conditionalGetValue" and "conditionalPutValue"; keys of key, update and merge operations are
+ * recorded as accessed before executing them.
+ *
+ * @author Sergio Bossa
+ */
+public class MeteredConnection implements Connection {
+
+    private final Connection delegate;
+    private final ConnectionMetrics metrics;
+
+    public MeteredConnection(Connection delegate, ConnectionMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    public Connection getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public ClusterStats getClusterStats() throws TerrastoreClientException {
+        long start = System.nanoTime();
+        try {
+            return delegate.getClusterStats();
+        } catch (TerrastoreClientException ex) {
+            metrics.operationFailed(ex);
+            throw ex;
+        } finally {
+            metrics.operationExecuted("getClusterStats", null, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void clearBucket(String bucket) throws TerrastoreClientException {
+        long start = System.nanoTime();
+        try {
+            delegate.clearBucket(bucket);
+        } catch (TerrastoreClientException ex) {
+            metrics.operationFailed(ex);
+            throw ex;
+        } finally {
+            metrics.operationExecuted("clearBucket", bucket, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Set<String> getBuckets() throws TerrastoreClientException {
+        long start = System.nanoTime();
+        try {
+            return delegate.getBuckets();
+        } catch (TerrastoreClientException ex) {
+            metrics.operationFailed(ex);
+            throw ex;
+        } finally {
+            metrics.operationExecuted("getBuckets", null, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public <T> void putValue(KeyOperation.Context context, T value) throws TerrastoreClientException {
+        metrics.keyAccessed(context.getBucket(), context.getKey());
+        long start = System.nanoTime();
+        try {
+            delegate.putValue(context, value);
+        } catch (TerrastoreClientException ex) {
+            metrics.operationFailed(ex);
+            throw ex;
+        } finally {
+            metrics.operationExecuted("putValue", context.getBucket(), System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public <T> void putValue(ConditionalOperation.Context context, T value) throws TerrastoreClientException {
+        metrics.keyAccessed(context.getBucket(), context.getKey());
+        long start = System.nanoTime();
+        try {
+            delegate.putValue(context, value);
+        } catch (TerrastoreClientException ex) {
+            metrics.operationFailed(ex);
+            throw ex;
+        } finally {
+            metrics.operationExecuted("conditionalPutValue", context.getBucket(), System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void removeValue(KeyOperation.Context context) throws TerrastoreClientException {
+        metrics.keyAccessed(context.getBucket(), context.getKey());
+        long start = System.nanoTime();
+        try {
+            delegate.removeValue(context);
+        } catch (TerrastoreClientException ex) {
+            metrics.operationFailed(ex);
+            throw ex;
+        } finally {
+            metrics.operationExecuted("removeValue", context.getBucket(), System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public <T> T getValue(KeyOperation.Context context, Class<T> type) throws TerrastoreClientException {
+        metrics.keyAccessed(context.getBucket(), context.getKey());
+        long start = System.nanoTime();
+        try {
+            return delegate.getValue(context, type);
+        } catch (TerrastoreClientException ex) {
+            metrics.operationFailed(ex);
+            throw ex;
+        } finally {
+            metrics.operationExecuted("getValue", context.getBucket(), System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public <T> T getValue(ConditionalOperation.Context context, Class<T> type) throws TerrastoreClientException {
+        metrics.keyAccessed(context.getBucket(), context.getKey());
+        long start = System.nanoTime();
+        try {
+            return delegate.getValue(context, type);
+        } catch (TerrastoreClientException ex) {
+            metrics.operationFailed(ex);
+            throw ex;
+        } finally {
+            metrics.operationExecuted("conditionalGetValue", context.getBucket(), System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public <T> Values<T> getAllValues(ValuesOperation.Context context, Class<T> type) throws TerrastoreClientException {
+        long start = System.nanoTime();
+        try {
+            return delegate.getAllValues(context, type);
+        } catch (TerrastoreClientException ex) {
+            metrics.operationFailed(ex);
+            throw ex;
+        } finally {
+            metrics.operationExecuted("getAllValues", context.getBucket(), System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public <T> Values<T> queryByRange(RangeOperation.Context context, Class<T> type) throws TerrastoreClientException {
+        long start = System.nanoTime();
+        try {
+            return delegate.queryByRange(context, type);
+        } catch (TerrastoreClientException ex) {
+            metrics.operationFailed(ex);
+            throw ex;
+        } finally {
+            metrics.operationExecuted("queryByRange", context.getBucket(), System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Set<String> removeByRange(RangeOperation.Context context) throws TerrastoreClientException {
+        long start = System.nanoTime();
+        try {
+            return delegate.removeByRange(context);
+        } catch (TerrastoreClientException ex) {
+            metrics.operationFailed(ex);
+            throw ex;
+        } finally {
+            metrics.operationExecuted("removeByRange", context.getBucket(), System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public <T> Values<T> queryByPredicate(PredicateOperation.Context context, Class<T> type) throws TerrastoreClientException {
+        long start = System.nanoTime();
+        try {
+            return delegate.queryByPredicate(context, type);
+        } catch (TerrastoreClientException ex) {
+            metrics.operationFailed(ex);
+            throw ex;
+        } finally {
+            metrics.operationExecuted("queryByPredicate", context.getBucket(), System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public <T> T queryByMapReduce(MapReduceOperation.Context context, Class<T> returnType) throws TerrastoreClientException {
+        long start = System.nanoTime();
+        try {
+            return delegate.queryByMapReduce(context, returnType);
+        } catch (TerrastoreClientException ex) {
+            metrics.operationFailed(ex);
+            throw ex;
+        } finally {
+            metrics.operationExecuted("queryByMapReduce", context.getBucket(), System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void exportBackup(BackupOperation.Context context) throws TerrastoreClientException {
+        long start = System.nanoTime();
+        try {
+            delegate.exportBackup(context);
+        } catch (TerrastoreClientException ex) {
+            metrics.operationFailed(ex);
+            throw ex;
+        } finally {
+            metrics.operationExecuted("exportBackup", context.getBucket(), System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void importBackup(BackupOperation.Context context) throws TerrastoreClientException {
+        long start = System.nanoTime();
+        try {
+            delegate.importBackup(context);
+        } catch (TerrastoreClientException ex) {
+            metrics.operationFailed(ex);
+            throw ex;
+        } finally {
+            metrics.operationExecuted("importBackup", context.getBucket(), System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public <T> T executeUpdate(UpdateOperation.Context context, Class<T> type) throws TerrastoreClientException {
+        metrics.keyAccessed(context.getBucket(), context.getKey());
+        long start = System.nanoTime();
+        try {
+            return delegate.executeUpdate(context, type);
+        } catch (TerrastoreClientException ex) {
+            metrics.operationFailed(ex);
+            throw ex;
+        } finally {
+            metrics.operationExecuted("executeUpdate", context.getBucket(), System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public <T> T executeMerge(MergeOperation.Context context, Class<T> type) throws TerrastoreClientException {
+        metrics.keyAccessed(context.getBucket(), context.getKey());
+        long start = System.nanoTime();
+        try {
+            return delegate.executeMerge(context, type);
+        } catch (TerrastoreClientException ex) {
+            metrics.operationFailed(ex);
+            throw ex;
+        } finally {
+            metrics.operationExecuted("executeMerge", context.getBucket(), System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Set<String> bulkPut(BulkOperation.Context context) throws TerrastoreClientException {
+        long start = System.nanoTime();
+        try {
+            return delegate.bulkPut(context);
+        } catch (TerrastoreClientException ex) {
+            metrics.operationFailed(ex);
+            throw ex;
+        } finally {
+            metrics.operationExecuted("bulkPut", context.getBucket(), System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public <T> Values<T> bulkGet(BulkOperation.Context context, Class<T> type) throws TerrastoreClientException {
+        long start = System.nanoTime();
+        try {
+            return delegate.bulkGet(context, type);
+        } catch (TerrastoreClientException ex) {
+            metrics.operationFailed(ex);
+            throw ex;
+        } finally {
+            metrics.operationExecuted("bulkGet", context.getBucket(), System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Rate of events per second over the last minute, counted into a ring of one-second slots.<br>
+ * Slots are recycled lazily by whoever first marks an event in a new second, so marking is just a couple
+ * of atomic operations; events marked by racing threads exactly while a slot is being recycled may get lost,
+ * which makes the rate approximate.
+ *
+ * @author Sergio Bossa
+ */
+public class Rate {
+
+    private static final int SLOTS = 60;
+    //
+    private final AtomicLongArray counts = new AtomicLongArray(SLOTS);
+    private final AtomicLongArray seconds = new AtomicLongArray(SLOTS);
+
+    public Rate() {
+        for (int i = 0; i < SLOTS; i++) {
+            seconds.set(i, Long.MIN_VALUE);
+        }
+    }
+
+    public void mark() {
+        long second = currentSecond();
+        int slot = (int) ((second % SLOTS + SLOTS) % SLOTS);
+        long slotSecond = seconds.get(slot);
+        if (slotSecond != second && seconds.compareAndSet(slot, slotSecond, second)) {
+            counts.set(slot, 0);
+        }
+        counts.incrementAndGet(slot);
+    }
+
+    /**
+     * Get the average number of events per second over the last minute, excluding the current second.
+     */
+    public double getRate() {
+        long second = currentSecond();
+        long total = 0;
+        for (int i = 0; i < SLOTS; i++) {
+            long slotSecond = seconds.get(i);
+            if (slotSecond < second && slotSecond >= second - SLOTS) {
+                total += counts.get(i);
+            }
+        }
+        return (double) total / SLOTS;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.2f/s", getRate());
+    }
+
+    private long currentSecond() {
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+    }
+}
@@ -0,0 +1,270 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import terrastore.client.connection.Connection;
+import terrastore.client.connection.ConnectionFactory;
+import terrastore.client.connection.ConnectionInterceptor;
+import terrastore.client.connection.ErrorMessage;
+import terrastore.client.connection.HostManager;
+import terrastore.client.connection.InterceptedConnection;
+import terrastore.client.connection.Invocation;
+import terrastore.client.connection.memory.InMemoryConnectionFactory;
+import terrastore.client.mapping.JsonObjectDescriptor;
+import static org.junit.Assert.*;
+
+/**
+ * @author Sergio Bossa
+ */
+public class BulkLoadOperationTest {
+
+    @Test
+    public void testBatchesByCount() throws Exception {
+        BatchRecorder recorder = new BatchRecorder();
+        TerrastoreClient client = client(recorder);
+
+        BulkLoadReport report = client.bucket("customers").bulk().loader().batchSize(10).concurrency(1).load(documents(25, 1));
+
+        assertEquals(Arrays.asList(10, 10, 5), recorder.sizes());
+        assertEquals(3, report.getBatches());
+        assertEquals(25, report.getSubmitted());
+        assertEquals(25, report.getInserted());
+        assertEquals(25, client.bucket("customers").values().get(Map.class).size());
+    }
+
+    @Test
+    public void testBatchesByBytesNeverExceedLimitUnlessSingleDocument() throws Exception {
+        BatchRecorder recorder = new BatchRecorder();
+        Map<String, Object> documents = new LinkedHashMap<String, Object>();
+        documents.put("k0", Collections.singletonMap("size", 40));
+        documents.put("k1", Collections.singletonMap("size", 40));
+        documents.put("k2", Collections.singletonMap("size", 40));
+        documents.put("k3", Collections.singletonMap("size", 150));
+        documents.put("k4", Collections.singletonMap("size", 40));
+
+        BulkLoadReport report = client(recorder).bucket("customers").bulk().loader().concurrency(1).batchBytes(100, new BulkLoadOperation.Sizer() {
+
+            @Override
+            public long sizeOf(String key, Object value) {
+                return ((Map<String, Integer>) value).get("size");
+            }
+        }).load(documents);
+
+        assertEquals(Arrays.asList(2, 1, 1, 1), recorder.sizes());
+        assertEquals(5, report.getInserted());
+    }
+
+    @Test
+    public void testInFlightBatchesAreLimited() throws Exception {
+        final AtomicInteger completedKeys = new AtomicInteger();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        ConnectionInterceptor slowPuts = new ConnectionInterceptor() {
+
+            @Override
+            public Object intercept(Invocation invocation) {
+                int current = inFlight.incrementAndGet();
+                synchronized (maxInFlight) {
+                    maxInFlight.set(Math.max(maxInFlight.get(), current));
+                }
+                try {
+                    Thread.sleep(20);
+                    return invocation.proceed();
+                } catch (InterruptedException ex) {
+                    throw new TerrastoreClientException(ex.getMessage(), ex);
+                } finally {
+                    completedKeys.addAndGet(((BulkOperation.Context) invocation.getContext()).getValues().size());
+                    inFlight.decrementAndGet();
+                }
+            }
+        };
+        final Iterator<Map.Entry<String, Object>> documents = documents(100, 1).entrySet().iterator();
+        final AtomicInteger maxHeldKeys = new AtomicInteger();
+        Iterator<Map.Entry<String, Object>> counting = new Iterator<Map.Entry<String, Object>>() {
+
+            private int consumed;
+
+            @Override
+            public boolean hasNext() {
+                return documents.hasNext();
+            }
+
+            @Override
+            public Map.Entry<String, Object> next() {
+                maxHeldKeys.set(Math.max(maxHeldKeys.get(), ++consumed - completedKeys.get()));
+                return documents.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            BulkLoadReport report = client(slowPuts).bucket("customers").bulk().loader().batchSize(10).concurrency(2).executor(executor).load(counting);
+
+            assertEquals(10, report.getBatches());
+            assertEquals(2, maxInFlight.get());
+            assertTrue(maxHeldKeys.get() <= 20);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRejectedAndFailedKeysReachListenerAndReport() throws Exception {
+        ConnectionInterceptor faulty = new ConnectionInterceptor() {
+
+            @Override
+            public Object intercept(Invocation invocation) {
+                Map<String, Object> batch = ((BulkOperation.Context) invocation.getContext()).getValues();
+                if (batch.containsKey("k3")) {
+                    throw new TerrastoreRequestException(new ErrorMessage("Injected failure.", 500));
+                }
+                Set<String> inserted = new HashSet<String>((Set<String>) invocation.proceed());
+                inserted.remove("k5");
+                return inserted;
+            }
+        };
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        final Set<String> rejected = new HashSet<String>();
+        final Set<String> failed = new HashSet<String>();
+
+        BulkLoadReport report = client(faulty).bucket("customers").bulk().loader().batchSize(2).concurrency(1).listener(new BulkLoadListener() {
+
+            @Override
+            public void batchCompleted(int batch, Set<String> insertedKeys, Set<String> rejectedKeys, BulkLoadReport progress) {
+                events.add("completed-" + batch);
+                rejected.addAll(rejectedKeys);
+            }
+
+            @Override
+            public void batchFailed(int batch, Set<String> keys, TerrastoreClientException failure, BulkLoadReport progress) {
+                events.add("failed-" + batch);
+                failed.addAll(keys);
+            }
+        }).load(documents(8, 1));
+
+        assertEquals(Arrays.asList("completed-0", "failed-1", "completed-2", "completed-3"), events);
+        assertEquals(Collections.singleton("k5"), rejected);
+        assertEquals(new HashSet<String>(Arrays.asList("k2", "k3")), failed);
+        assertEquals(4, report.getBatches());
+        assertEquals(1, report.getFailedBatches());
+        assertEquals(8, report.getSubmitted());
+        assertEquals(5, report.getInserted());
+        assertEquals(Collections.singleton("k5"), report.getRejectedKeys());
+        assertEquals(failed, report.getFailedKeys());
+        assertEquals(1, report.getFailures().size());
+        assertEquals(500, ((TerrastoreRequestException) report.getFailures().get(0)).getStatus());
+    }
+
+    @Test
+    public void testInFlightBatchesAreCancelledWhenTheListenerFails() throws Exception {
+        final CountDownLatch started = new CountDownLatch(3);
+        final CountDownLatch cancelled = new CountDownLatch(3);
+        ConnectionInterceptor slowPuts = new ConnectionInterceptor() {
+
+            @Override
+            public Object intercept(Invocation invocation) {
+                if (!((BulkOperation.Context) invocation.getContext()).getValues().containsKey("k0")) {
+                    try {
+                        started.countDown();
+                        Thread.sleep(10000);
+                    } catch (InterruptedException ex) {
+                        cancelled.countDown();
+                        throw new TerrastoreClientException(ex.getMessage(), ex);
+                    }
+                }
+                return invocation.proceed();
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            client(slowPuts).bucket("customers").bulk().loader().batchSize(1).concurrency(4).executor(executor).listener(new BulkLoadListener() {
+
+                @Override
+                public void batchCompleted(int batch, Set<String> insertedKeys, Set<String> rejectedKeys, BulkLoadReport progress) {
+                    try {
+                        started.await(1, TimeUnit.SECONDS);
+                    } catch (InterruptedException ex) {
+                    }
+                    throw new IllegalStateException("Injected failure.");
+                }
+
+                @Override
+                public void batchFailed(int batch, Set<String> keys, TerrastoreClientException failure, BulkLoadReport progress) {
+                }
+            }).load(documents(4, 1));
+            fail("Should have failed!");
+        } catch (IllegalStateException ex) {
+            assertTrue(cancelled.await(1, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Map<String, Object> documents(int count, int size) {
+        Map<String, Object> documents = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < count; i++) {
+            documents.put("k" + i, Collections.singletonMap("size", size));
+        }
+        return documents;
+    }
+
+    private TerrastoreClient client(final ConnectionInterceptor interceptor) {
+        final InMemoryConnectionFactory memory = new InMemoryConnectionFactory();
+        return new TerrastoreClient("http://localhost:8080", new ConnectionFactory() {
+
+            @Override
+            public Connection makeConnection(HostManager hostManager, List<JsonObjectDescriptor<?>> descriptors) {
+                return new InterceptedConnection(memory.makeConnection(hostManager, descriptors), Collections.singletonList(interceptor));
+            }
+        });
+    }
+
+    private static class BatchRecorder implements ConnectionInterceptor {
+
+        private final List<Integer> sizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+        @Override
+        public Object intercept(Invocation invocation) {
+            if (invocation.getOperation().equals("bulkPut")) {
+                sizes.add(((BulkOperation.Context) invocation.getContext()).getValues().size());
+            }
+            return invocation.proceed();
+        }
+
+        public List<Integer> sizes() {
+            return sizes;
+        }
+    }
+}
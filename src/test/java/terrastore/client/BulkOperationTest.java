@@ -0,0 +1,165 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import terrastore.client.connection.Connection;
+import terrastore.client.connection.ConnectionFactory;
+import terrastore.client.connection.ConnectionInterceptor;
+import terrastore.client.connection.ErrorMessage;
+import terrastore.client.connection.HostManager;
+import terrastore.client.connection.InterceptedConnection;
+import terrastore.client.connection.Invocation;
+import terrastore.client.connection.memory.InMemoryConnectionFactory;
+import terrastore.client.mapping.JsonObjectDescriptor;
+import static org.junit.Assert.*;
+
+/**
+ * @author Sergio Bossa
+ */
+public class BulkOperationTest {
+
+    private final List<Integer> chunks = Collections.synchronizedList(new ArrayList<Integer>());
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private volatile String failingKey;
+    private Map<String, Object> documents;
+    private BulkOperation bulk;
+
+    @Before
+    public void setUp() {
+        ConnectionInterceptor chunkRecorder = new ConnectionInterceptor() {
+
+            @Override
+            public Object intercept(Invocation invocation) {
+                if (!invocation.getOperation().equals("bulkGet")) {
+                    return invocation.proceed();
+                }
+                Set<String> keys = ((BulkOperation.Context) invocation.getContext()).getKeys();
+                chunks.add(keys.size());
+                int current = inFlight.incrementAndGet();
+                synchronized (maxInFlight) {
+                    maxInFlight.set(Math.max(maxInFlight.get(), current));
+                }
+                try {
+                    Thread.sleep(10);
+                    if (keys.contains(failingKey)) {
+                        throw new TerrastoreRequestException(new ErrorMessage("Injected failure.", 500));
+                    }
+                    return invocation.proceed();
+                } catch (InterruptedException ex) {
+                    throw new TerrastoreClientException(ex.getMessage(), ex);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        };
+        bulk = client(chunkRecorder).bucket("customers").bulk();
+        documents = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < 25; i++) {
+            documents.put("k" + i, Collections.singletonMap("number", i));
+        }
+        bulk.put(new Values<Object>(documents));
+    }
+
+    @Test
+    public void testSmallKeySetsAreNotSplit() {
+        Values<Map> values = bulk.chunkSize(25).get(documents.keySet(), Map.class);
+
+        assertEquals(Arrays.asList(25), chunks);
+        assertEquals(documents, values);
+    }
+
+    @Test
+    public void testLargeKeySetsAreSplitAndMergedInChunkOrder() {
+        Values<Map> values = bulk.chunkSize(10).parallelism(2).get(documents.keySet(), Map.class);
+
+        assertEquals(Arrays.asList(5, 10, 10), sorted(chunks));
+        assertEquals(new ArrayList<String>(documents.keySet()), new ArrayList<String>(values.keySet()));
+        assertEquals(documents, values);
+        assertEquals(2, maxInFlight.get());
+    }
+
+    @Test
+    public void testListenerReceivesEachChunk() {
+        final List<Values<Map>> received = Collections.synchronizedList(new ArrayList<Values<Map>>());
+
+        bulk.chunkSize(10).get(documents.keySet(), Map.class, new BulkGetListener<Map>() {
+
+            @Override
+            public void chunkCompleted(Values<Map> values) {
+                received.add(values);
+            }
+        });
+
+        Map<String, Map> merged = new LinkedHashMap<String, Map>();
+        List<Integer> sizes = new ArrayList<Integer>();
+        for (Values<Map> values : received) {
+            sizes.add(values.size());
+            merged.putAll(values);
+        }
+        assertEquals(Arrays.asList(5, 10, 10), sorted(sizes));
+        assertEquals(documents, merged);
+    }
+
+    @Test
+    public void testChunkFailureIsPropagated() {
+        failingKey = "k13";
+        try {
+            bulk.chunkSize(10).get(documents.keySet(), Map.class);
+            fail("Should have thrown TerrastoreRequestException!");
+        } catch (TerrastoreRequestException ex) {
+            assertEquals(500, ex.getStatus());
+        }
+        try {
+            bulk.chunkSize(10).get(documents.keySet(), Map.class, new BulkGetListener<Map>() {
+
+                @Override
+                public void chunkCompleted(Values<Map> values) {
+                }
+            });
+            fail("Should have thrown TerrastoreRequestException!");
+        } catch (TerrastoreRequestException ex) {
+            assertEquals(500, ex.getStatus());
+        }
+    }
+
+    private List<Integer> sorted(List<Integer> sizes) {
+        List<Integer> sorted = new ArrayList<Integer>(sizes);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    private TerrastoreClient client(final ConnectionInterceptor interceptor) {
+        final InMemoryConnectionFactory memory = new InMemoryConnectionFactory();
+        return new TerrastoreClient("http://localhost:8080", new ConnectionFactory() {
+
+            @Override
+            public Connection makeConnection(HostManager hostManager, List<JsonObjectDescriptor<?>> descriptors) {
+                return new InterceptedConnection(memory.makeConnection(hostManager, descriptors), Collections.singletonList(interceptor));
+            }
+        });
+    }
+}
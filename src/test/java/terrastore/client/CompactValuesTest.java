@@ -0,0 +1,88 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Sergio Bossa
+ */
+public class CompactValuesTest {
+
+    @Test
+    public void testGetAndIterateInInsertionOrder() {
+        Map<String, Integer> expected = new LinkedHashMap<String, Integer>();
+        CompactValues.Builder<Integer> builder = new CompactValues.Builder<Integer>(10);
+        Random random = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            String key = "customer:" + random.nextInt(100000);
+            expected.put(key, i);
+            builder.add(key, i);
+        }
+        CompactValues<Integer> values = builder.build();
+
+        assertEquals(expected.size(), values.size());
+        for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), values.get(entry.getKey()));
+            assertTrue(values.containsKey(entry.getKey()));
+        }
+        List<String> expectedKeys = new ArrayList<String>(expected.keySet());
+        List<String> actualKeys = new ArrayList<String>(values.keySet());
+        assertEquals(expectedKeys, actualKeys);
+        assertEquals(expected, values);
+    }
+
+    @Test
+    public void testGetMissingKeys() {
+        CompactValues<String> values = new CompactValues.Builder<String>().add("b", "1").add("d", "2").add("f", "3").build();
+
+        assertNull(values.get("a"));
+        assertNull(values.get("c"));
+        assertNull(values.get("g"));
+        assertNull(values.get(""));
+        assertNull(values.get(1));
+        assertFalse(values.containsKey("e"));
+    }
+
+    @Test
+    public void testDuplicatedKeyKeepsFirstPositionAndLastValue() {
+        CompactValues<String> values = new CompactValues.Builder<String>().add("b", "1").add("a", "2").add("b", "3").build();
+
+        assertEquals(2, values.size());
+        Iterator<Map.Entry<String, String>> entries = values.entrySet().iterator();
+        Map.Entry<String, String> first = entries.next();
+        assertEquals("b", first.getKey());
+        assertEquals("3", first.getValue());
+        assertEquals("a", entries.next().getKey());
+        assertFalse(entries.hasNext());
+    }
+
+    @Test
+    public void testEmpty() {
+        CompactValues<String> values = new CompactValues.Builder<String>(0).build();
+
+        assertEquals(0, values.size());
+        assertNull(values.get("a"));
+        assertFalse(values.entrySet().iterator().hasNext());
+    }
+}
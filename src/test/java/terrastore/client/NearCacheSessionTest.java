@@ -0,0 +1,198 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client;
+
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import terrastore.client.connection.NoSuchKeyException;
+import terrastore.client.connection.UnsatisfiedConditionException;
+import terrastore.client.connection.resteasy.HTTPConnectionFactory;
+import terrastore.client.test.stub.StubTerrastoreServer;
+import static org.junit.Assert.*;
+
+/**
+ * @author Sergio Bossa
+ */
+public class NearCacheSessionTest {
+
+    private StubTerrastoreServer server;
+    private TerrastoreClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubTerrastoreServer().start();
+        client = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void testReadYourWrites() {
+        NearCacheSession<Account> session = client.bucket("accounts").session(Account.class, 10);
+        Account account = new Account("Sergio", 100);
+
+        session.put("sergio", account);
+        long sent = server.getSentBytes();
+
+        Account written = session.get("sergio");
+        assertSame(written, session.get("sergio"));
+        assertEquals(2, session.getHits());
+        assertEquals(0, session.getMisses());
+        assertEquals(0L, account.getVersion());
+        assertEquals(1L, written.getVersion());
+        assertEquals(1, client.bucket("accounts").key("sergio").get(Map.class).get("version"));
+        assertTrue(server.getSentBytes() - sent < 2 * 200);
+    }
+
+    @Test
+    public void testWritesBumpVersions() {
+        NearCacheSession<Account> session = client.bucket("accounts").session(Account.class, 10);
+
+        session.put("sergio", new Account("Sergio", 100));
+        session.put("sergio", new Account("Sergio", 200));
+
+        assertEquals(2L, session.get("sergio").getVersion());
+        assertEquals(200, session.get("sergio").getBalance());
+        assertEquals(2L, client.bucket("accounts").key("sergio").get(Account.class).getVersion());
+    }
+
+    @Test
+    public void testChangedDocumentsAreFetchedAgain() {
+        NearCacheSession<Account> session = client.bucket("accounts").session(Account.class, 10);
+        session.put("sergio", new Account("Sergio", 100));
+
+        Account changed = new Account("Sergio", 200);
+        changed.setVersion(5);
+        client.bucket("accounts").key("sergio").put(changed);
+
+        assertEquals(200, session.get("sergio").getBalance());
+        assertEquals(5L, session.get("sergio").getVersion());
+        assertEquals(1, session.getMisses());
+        assertEquals(1, session.getHits());
+    }
+
+    @Test
+    public void testDocumentsAreFetchedAndCachedOnMiss() {
+        client.bucket("accounts").key("sergio").put(new Account("Sergio", 100));
+        NearCacheSession<Account> session = client.bucket("accounts").session(Account.class, 10);
+
+        Account account = session.get("sergio");
+
+        assertSame(account, session.get("sergio"));
+        assertEquals(1, session.getMisses());
+        assertEquals(1, session.getHits());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedDocumentsAreEvicted() {
+        NearCacheSession<Account> session = client.bucket("accounts").session(Account.class, 2);
+
+        session.put("a", new Account("A", 1));
+        session.put("b", new Account("B", 2));
+        session.get("a");
+        session.put("c", new Account("C", 3));
+        session.get("a");
+
+        assertEquals(2, session.size());
+        assertEquals(2, session.getHits());
+        assertEquals(0, session.getMisses());
+        session.get("b");
+        assertEquals(1, session.getMisses());
+    }
+
+    @Test
+    public void testConcurrentWritesOfTheSameVersionAreRejected() {
+        NearCacheSession<Account> first = client.bucket("accounts").session(Account.class, 10);
+        NearCacheSession<Account> second = client.bucket("accounts").session(Account.class, 10);
+        first.put("sergio", new Account("Sergio", 100));
+        second.get("sergio");
+
+        first.put("sergio", new Account("Sergio", 200));
+        Account rejected = new Account("Sergio", 300);
+        rejected.setVersion(1);
+        try {
+            second.put("sergio", rejected);
+            fail("Should have failed!");
+        } catch (UnsatisfiedConditionException ex) {
+        }
+
+        assertEquals(1L, rejected.getVersion());
+        assertEquals(0, second.size());
+        assertEquals(200, second.get("sergio").getBalance());
+        assertEquals(2L, second.get("sergio").getVersion());
+    }
+
+    @Test(expected = NoSuchKeyException.class)
+    public void testRemovedDocumentsAreNotCached() {
+        NearCacheSession<Account> session = client.bucket("accounts").session(Account.class, 10);
+        session.put("sergio", new Account("Sergio", 100));
+
+        session.remove("sergio");
+
+        assertEquals(0, session.size());
+        session.get("sergio");
+    }
+
+    public static class Account implements Versioned {
+
+        private String owner;
+        private int balance;
+        private long version;
+
+        public Account() {
+        }
+
+        public Account(String owner, int balance) {
+            this.owner = owner;
+            this.balance = balance;
+        }
+
+        public String getOwner() {
+            return owner;
+        }
+
+        public void setOwner(String owner) {
+            this.owner = owner;
+        }
+
+        public int getBalance() {
+            return balance;
+        }
+
+        public void setBalance(int balance) {
+            this.balance = balance;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public void setVersion(long version) {
+            this.version = version;
+        }
+
+        public Account withVersion(long version) {
+            Account copy = new Account(owner, balance);
+            copy.setVersion(version);
+            return copy;
+        }
+    }
+}
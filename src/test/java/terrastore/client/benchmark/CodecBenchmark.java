@@ -0,0 +1,158 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.ws.rs.core.MediaType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import terrastore.client.BucketOperation;
+import terrastore.client.TerrastoreClient;
+import terrastore.client.Values;
+import terrastore.client.codec.Codec;
+import terrastore.client.codec.JsonCodec;
+import terrastore.client.codec.SmileCodec;
+import terrastore.client.connection.resteasy.HTTPConnectionFactory;
+import terrastore.client.mapping.JsonMappingEngine;
+import terrastore.client.mapping.JsonObjectDescriptor;
+import terrastore.client.mapping.JsonValuesReader;
+import terrastore.client.mapping.JsonValuesWriter;
+import terrastore.client.mapping.ValuesType;
+import terrastore.client.test.pojostest.Address;
+import terrastore.client.test.pojostest.Customer;
+import terrastore.client.test.pojostest.PhoneNumber;
+import terrastore.client.test.stub.StubTerrastoreServer;
+
+/**
+ * Compares plain JSON and Smile codecs, first encoding and decoding values in memory, then through bulk operations
+ * against a stub server.<br>
+ * Run with: mvn test -P benchmark
+ *
+ * @author Sergio Bossa
+ */
+public class CodecBenchmark {
+
+    private static final int DOCUMENTS = 1000;
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 500;
+    private static final int CLIENT_ITERATIONS = 100;
+    //
+    private StubTerrastoreServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubTerrastoreServer().start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void benchmarkMapping() throws Exception {
+        Values<Customer> values = new Values<Customer>(makeCustomers(DOCUMENTS));
+        runMapping("JSON", new JsonCodec(), values);
+        runMapping("Smile", new SmileCodec(), values);
+    }
+
+    @Test
+    public void benchmarkBulkOperations() throws Exception {
+        Map<String, Customer> customers = makeCustomers(DOCUMENTS);
+        runClient("JSON", new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory()), customers);
+        runClient("Smile", new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory().codec(new SmileCodec())), customers);
+    }
+
+    private void runMapping(String name, Codec codec, Values<Customer> values) throws Exception {
+        JsonMappingEngine engine = new JsonMappingEngine(Collections.<JsonObjectDescriptor>emptyList(), codec);
+        JsonValuesWriter writer = new JsonValuesWriter(engine);
+        JsonValuesReader reader = new JsonValuesReader(engine);
+        MediaType mediaType = codec.getMediaType();
+        ValuesType valuesType = new ValuesType(Customer.class);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (int i = 0; i < WARMUP; i++) {
+            output.reset();
+            writer.writeTo(values, Values.class, valuesType, null, mediaType, null, output);
+            reader.readFrom(Values.class, valuesType, null, mediaType, null, new ByteArrayInputStream(output.toByteArray()));
+        }
+        byte[] encoded = output.toByteArray();
+        long encoding = 0;
+        long decoding = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            output.reset();
+            long start = System.nanoTime();
+            writer.writeTo(values, Values.class, valuesType, null, mediaType, null, output);
+            encoding += System.nanoTime() - start;
+            start = System.nanoTime();
+            reader.readFrom(Values.class, valuesType, null, mediaType, null, new ByteArrayInputStream(encoded));
+            decoding += System.nanoTime() - start;
+        }
+        System.out.println(String.format("%-8s %d documents, size: %7d bytes, encode: %6d us, decode: %6d us",
+                name,
+                DOCUMENTS,
+                encoded.length,
+                encoding / ITERATIONS / 1000,
+                decoding / ITERATIONS / 1000));
+    }
+
+    private void runClient(String name, TerrastoreClient client, Map<String, Customer> customers) {
+        BucketOperation bucket = client.bucket("customers-" + name);
+        Values<Customer> values = new Values<Customer>(customers);
+        Set<String> keys = new HashSet<String>(customers.keySet());
+        for (int i = 0; i < WARMUP / 10; i++) {
+            bucket.bulk().put(values);
+            bucket.bulk().get(keys, Customer.class);
+        }
+        long sent = server.getReceivedBytes();
+        long received = server.getSentBytes();
+        long puts = 0;
+        long gets = 0;
+        for (int i = 0; i < CLIENT_ITERATIONS; i++) {
+            long start = System.nanoTime();
+            bucket.bulk().put(values);
+            puts += System.nanoTime() - start;
+            start = System.nanoTime();
+            bucket.bulk().get(keys, Customer.class);
+            gets += System.nanoTime() - start;
+        }
+        System.out.println(String.format("%-8s %d documents, bulk put: %6d us (%7d bytes), bulk get: %6d us (%7d bytes)",
+                name,
+                DOCUMENTS,
+                puts / CLIENT_ITERATIONS / 1000,
+                (server.getReceivedBytes() - sent) / CLIENT_ITERATIONS,
+                gets / CLIENT_ITERATIONS / 1000,
+                (server.getSentBytes() - received) / CLIENT_ITERATIONS));
+    }
+
+    private Map<String, Customer> makeCustomers(int count) {
+        Map<String, Customer> customers = new LinkedHashMap<String, Customer>();
+        for (int i = 0; i < count; i++) {
+            Customer customer = new Customer("Customer " + i);
+            customer.setAddress(new Address("Street " + i));
+            customer.addPhoneNumber(new PhoneNumber("555-" + i, "home"));
+            customer.addPhoneNumber(new PhoneNumber("556-" + i, "work"));
+            customers.put("customer-" + i, customer);
+        }
+        return customers;
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+import terrastore.client.mapping.JsonMappingEngine;
+import terrastore.client.mapping.JsonObjectDescriptor;
+import terrastore.client.test.documentstest.Address;
+import terrastore.client.test.documentstest.AddressJsonDescriptor;
+import terrastore.client.test.documentstest.Customer;
+import terrastore.client.test.documentstest.CustomerJsonDescriptor;
+import terrastore.client.test.documentstest.PhoneNumber;
+import terrastore.client.test.documentstest.PhoneNumberJsonDescriptor;
+
+/**
+ * Compares writing and reading customers through Jackson reflective bean mapping against the descriptors
+ * generated for {@link terrastore.client.mapping.JsonDocument} classes, reporting the best time and the allocations per operation.<br>
+ * Run with: mvn test -P benchmark
+ *
+ * @author Sergio Bossa
+ */
+public class GeneratedMappingBenchmark {
+
+    private static final int ROUNDS = 20;
+    private static final int ITERATIONS = 100000;
+
+    @Test
+    public void benchmarkGeneratedMapping() throws Exception {
+        Customer customer = new Customer("Sergio Bossa");
+        customer.setAddress(new Address("Via Roma 1"));
+        customer.addPhoneNumber(new PhoneNumber("555-1234", "home"));
+        customer.addPhoneNumber(new PhoneNumber("555-4321", "work"));
+        JsonMappingEngine reflective = new JsonMappingEngine(Collections.<JsonObjectDescriptor>emptyList());
+        JsonMappingEngine generated = new JsonMappingEngine(Arrays.<JsonObjectDescriptor>asList(new CustomerJsonDescriptor(), new AddressJsonDescriptor(), new PhoneNumberJsonDescriptor()));
+        // Alternate rounds so that both engines run under the same compilation and machine conditions:
+        Result reflectiveResult = new Result();
+        Result generatedResult = new Result();
+        for (int i = 0; i < ROUNDS; i++) {
+            run(reflective, customer, reflectiveResult);
+            run(generated, customer, generatedResult);
+        }
+        System.out.println("Reflective " + reflectiveResult);
+        System.out.println("Generated  " + generatedResult);
+    }
+
+    private void run(JsonMappingEngine engine, Customer customer, Result result) throws Exception {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        engine.write(output, customer);
+        byte[] encoded = output.toByteArray();
+
+        long allocated = threadBean.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            output.reset();
+            engine.write(output, customer);
+        }
+        result.write = Math.min(result.write, (System.nanoTime() - start) / ITERATIONS);
+        result.writeAllocated = (threadBean.getThreadAllocatedBytes(thread) - allocated) / ITERATIONS;
+
+        allocated = threadBean.getThreadAllocatedBytes(thread);
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            engine.read(new ByteArrayInputStream(encoded), Customer.class);
+        }
+        result.read = Math.min(result.read, (System.nanoTime() - start) / ITERATIONS);
+        result.readAllocated = (threadBean.getThreadAllocatedBytes(thread) - allocated) / ITERATIONS;
+    }
+
+    private static class Result {
+
+        private long write = Long.MAX_VALUE;
+        private long writeAllocated;
+        private long read = Long.MAX_VALUE;
+        private long readAllocated;
+
+        @Override
+        public String toString() {
+            return String.format("write: %5d ns, %5d bytes, read: %5d ns, %5d bytes", write, writeAllocated, read, readAllocated);
+        }
+    }
+}
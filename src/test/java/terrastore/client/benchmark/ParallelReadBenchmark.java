@@ -0,0 +1,90 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Test;
+import terrastore.client.Values;
+import terrastore.client.mapping.JsonMappingEngine;
+import terrastore.client.mapping.JsonObjectDescriptor;
+import terrastore.client.mapping.JsonValuesReader;
+import terrastore.client.mapping.JsonValuesWriter;
+import terrastore.client.mapping.ValuesType;
+import terrastore.client.test.pojostest.Address;
+import terrastore.client.test.pojostest.Customer;
+import terrastore.client.test.pojostest.PhoneNumber;
+
+/**
+ * Compares reading a large values response on the calling thread against reading it in parallel.<br>
+ * Run with: mvn test -P benchmark
+ *
+ * @author Sergio Bossa
+ */
+public class ParallelReadBenchmark {
+
+    private static final int DOCUMENTS = 200000;
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 10;
+
+    @Test
+    public void benchmarkParallelRead() throws Exception {
+        JsonMappingEngine engine = new JsonMappingEngine(Collections.<JsonObjectDescriptor>emptyList());
+        byte[] encoded = makeCustomers(engine);
+        int processors = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(processors);
+        try {
+            run("Single", new JsonValuesReader(engine), encoded);
+            run("Parallel", new JsonValuesReader(engine, executor, 0), encoded);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void run(String name, JsonValuesReader reader, byte[] encoded) throws Exception {
+        ValuesType valuesType = new ValuesType(Customer.class).compact(true).expectedSize(DOCUMENTS);
+        for (int i = 0; i < WARMUP; i++) {
+            reader.readFrom(Values.class, valuesType, null, null, null, new ByteArrayInputStream(encoded));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            reader.readFrom(Values.class, valuesType, null, null, null, new ByteArrayInputStream(encoded));
+        }
+        System.out.println(String.format("%-8s %d documents, %d processors, read: %6d ms",
+                name,
+                DOCUMENTS,
+                Runtime.getRuntime().availableProcessors(),
+                (System.nanoTime() - start) / ITERATIONS / 1000000));
+    }
+
+    private byte[] makeCustomers(JsonMappingEngine engine) throws Exception {
+        Map<String, Customer> customers = new LinkedHashMap<String, Customer>();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            Customer customer = new Customer("Customer " + i);
+            customer.setAddress(new Address("Street " + i));
+            customer.addPhoneNumber(new PhoneNumber("555-" + i, "home"));
+            customers.put("customer-" + i, customer);
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new JsonValuesWriter(engine).writeTo(new Values<Customer>(customers), Values.class, Values.class, null, null, null, output);
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Test;
+import terrastore.client.Values;
+import terrastore.client.mapping.JsonObjectDescriptor;
+import terrastore.client.mapping.JsonProjection;
+import terrastore.client.mapping.JsonValuesReader;
+import terrastore.client.mapping.JsonValuesWriter;
+import terrastore.client.mapping.LazyDocument;
+import terrastore.client.mapping.ValuesType;
+
+/**
+ * Compares reading whole documents of 40 fields (about 40KB each) against reading a projection of two fields,
+ * and against reading two fields out of lazy documents.<br>
+ * Run with: mvn test -P benchmark
+ *
+ * @author Sergio Bossa
+ */
+public class ProjectionBenchmark {
+
+    private static final int DOCUMENTS = 100;
+    private static final int FIELDS = 40;
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 200;
+
+    @Test
+    public void benchmarkProjection() throws Exception {
+        JsonValuesReader reader = new JsonValuesReader(Collections.<JsonObjectDescriptor>emptyList());
+        byte[] encoded = makeDocuments();
+        run("Whole", reader, new ValuesType(Map.class), encoded);
+        run("Project", reader, new ValuesType(Map.class).projection(new JsonProjection("field-0", "nested.field-1")), encoded);
+        run("Lazy", reader, new ValuesType(LazyDocument.class), encoded);
+    }
+
+    private void run(String name, JsonValuesReader reader, ValuesType valuesType, byte[] encoded) throws Exception {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < WARMUP; i++) {
+            read(reader, valuesType, encoded);
+        }
+        long thread = Thread.currentThread().getId();
+        long allocated = threadBean.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            read(reader, valuesType, encoded);
+        }
+        long elapsed = System.nanoTime() - start;
+        allocated = threadBean.getThreadAllocatedBytes(thread) - allocated;
+        System.out.println(String.format("%-8s %d documents of %d bytes, read: %6d us, allocated: %9d bytes",
+                name,
+                DOCUMENTS,
+                encoded.length / DOCUMENTS,
+                elapsed / ITERATIONS / 1000,
+                allocated / ITERATIONS));
+    }
+
+    private void read(JsonValuesReader reader, ValuesType valuesType, byte[] encoded) throws Exception {
+        Values<?> values = reader.readFrom(Values.class, valuesType, null, null, null, new ByteArrayInputStream(encoded));
+        if (valuesType.getValueType() == LazyDocument.class) {
+            for (Object value : values.values()) {
+                ((LazyDocument) value).getString("field-0");
+                ((LazyDocument) value).getString("nested.field-1");
+            }
+        }
+    }
+
+    private byte[] makeDocuments() throws Exception {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 1000) {
+            text.append("Lorem ipsum dolor sit amet. ");
+        }
+        Map<String, Object> documents = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            Map<String, Object> document = new LinkedHashMap<String, Object>();
+            Map<String, Object> nested = new LinkedHashMap<String, Object>();
+            for (int j = 0; j < FIELDS / 2; j++) {
+                document.put("field-" + j, j + ": " + text);
+                nested.put("field-" + j, j + ": " + text);
+            }
+            document.put("nested", nested);
+            documents.put("document-" + i, document);
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new JsonValuesWriter(Collections.<JsonObjectDescriptor>emptyList()).writeTo(new Values<Object>(documents), Values.class, Values.class, null, null, null, output);
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.jboss.resteasy.client.core.executors.ApacheHttpClientExecutor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import terrastore.client.KeyOperation;
+import terrastore.client.TerrastoreClient;
+import terrastore.client.connection.Connection;
+import terrastore.client.connection.ConnectionFactory;
+import terrastore.client.connection.HostManager;
+import terrastore.client.connection.TerrastoreConnectionException;
+import terrastore.client.connection.resteasy.ErrorMessageDescriptor;
+import terrastore.client.connection.resteasy.HTTPConnection;
+import terrastore.client.connection.resteasy.HTTPConnectionFactory;
+import terrastore.client.mapping.JsonObjectDescriptor;
+import terrastore.client.test.pojostest.Customer;
+import terrastore.client.test.pojostest.PhoneNumber;
+import terrastore.client.test.stub.StubTerrastoreServer;
+
+/**
+ * Compares latency of small puts when request bodies are buffered with the plain RESTEasy executor,
+ * buffered into pooled buffers with a known Content-Length, or always streamed with chunked transfer encoding.<br>
+ * Run with: mvn test -P benchmark
+ *
+ * @author Sergio Bossa
+ */
+public class SmallPutBenchmark {
+
+    private static final int WARMUP = 1000;
+    private static final int ITERATIONS = 5000;
+    //
+    private StubTerrastoreServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubTerrastoreServer().start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void benchmarkSmallPuts() {
+        run("RESTEasy buffered", new TerrastoreClient(server.getUrl(), new RESTEasyConnectionFactory()));
+        run("Pooled buffer, Content-Length", new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory()));
+        run("Streamed, chunked", new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory().streaming(0)));
+    }
+
+    private void run(String name, TerrastoreClient client) {
+        Customer customer = new Customer("Sergio");
+        customer.addPhoneNumber(new PhoneNumber("555-1234", "home"));
+        KeyOperation key = client.bucket("customers").key("customer");
+        for (int i = 0; i < WARMUP; i++) {
+            key.put(customer);
+        }
+        long[] latencies = new long[ITERATIONS];
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            long begin = System.nanoTime();
+            key.put(customer);
+            latencies[i] = System.nanoTime() - begin;
+        }
+        long elapsed = System.nanoTime() - start;
+        Arrays.sort(latencies);
+        System.out.println(String.format("%-32s mean: %6d us, p50: %6d us, p99: %6d us, throughput: %8.0f ops/s",
+                name,
+                elapsed / ITERATIONS / 1000,
+                latencies[ITERATIONS / 2] / 1000,
+                latencies[ITERATIONS * 99 / 100] / 1000,
+                ITERATIONS / (elapsed / 1000000000.0)));
+    }
+
+    private static class RESTEasyConnectionFactory implements ConnectionFactory {
+
+        @Override
+        public Connection makeConnection(HostManager hostManager, List<JsonObjectDescriptor<?>> descriptors) throws TerrastoreConnectionException {
+            List<JsonObjectDescriptor<?>> jsonDescriptors = new ArrayList<JsonObjectDescriptor<?>>(descriptors);
+            jsonDescriptors.add(new ErrorMessageDescriptor());
+            return new HTTPConnection(hostManager, jsonDescriptors, new ApacheHttpClientExecutor(new HttpClient(new MultiThreadedHttpConnectionManager())));
+        }
+    }
+}
@@ -16,6 +16,8 @@
 package terrastore.client.connection;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -50,4 +52,21 @@ public class OrderedHostManagerTest {
         unsuspected = hostManager.getHost();
         assertEquals(host2, unsuspected);
     }
+
+    @Test
+    public void testUnsuspectRestoresOriginalOrder() {
+        String host1 = "http://localhost:8080";
+        String host2 = "http://localhost:8081";
+        String host3 = "http://localhost:8082";
+        OrderedHostManager hostManager = new OrderedHostManager(Arrays.asList(new String[]{host1, host2, host3}));
+
+        hostManager.suspect(host1);
+        hostManager.suspect(host2);
+        assertEquals(Arrays.asList(host3, host1, host2), hostManager.getHosts());
+        assertEquals(new HashSet<String>(Arrays.asList(host1, host2)), hostManager.getSuspectedHosts());
+        hostManager.unsuspect(host1);
+        assertEquals(Arrays.asList(host1, host3, host2), hostManager.getHosts());
+        assertEquals(Collections.singleton(host2), hostManager.getSuspectedHosts());
+        assertEquals(host1, hostManager.getHost());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,85 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Sergio Bossa
+ */
+public class RoundRobinHostManagerTest {
+
+    @Test
+    public void testRotatesOverAllHosts() {
+        String host1 = "http://localhost:8080";
+        String host2 = "http://localhost:8081";
+        RoundRobinHostManager hostManager = new RoundRobinHostManager(Arrays.asList(new String[]{host1, host2}));
+
+        assertEquals(host1, hostManager.getHost());
+        assertEquals(host2, hostManager.getHost());
+        assertEquals(host1, hostManager.getHost());
+    }
+
+    @Test
+    public void testSkipsSuspectedHost() {
+        String host1 = "http://localhost:8080";
+        String host2 = "http://localhost:8081";
+        RoundRobinHostManager hostManager = new RoundRobinHostManager(Arrays.asList(new String[]{host1, host2}), 60000);
+
+        hostManager.suspect(host1);
+        assertEquals(host2, hostManager.getHost());
+        assertEquals(host2, hostManager.getHost());
+    }
+
+    @Test
+    public void testReturnsSuspectedHostAfterSuspicionTime() throws Exception {
+        String host1 = "http://localhost:8080";
+        String host2 = "http://localhost:8081";
+        RoundRobinHostManager hostManager = new RoundRobinHostManager(Arrays.asList(new String[]{host1, host2}), 0);
+
+        hostManager.suspect(host1);
+        assertEquals(host1, hostManager.getHost());
+        assertEquals(host2, hostManager.getHost());
+    }
+
+    @Test
+    public void testKeepsRotatingIfAllHostsAreSuspected() {
+        String host1 = "http://localhost:8080";
+        String host2 = "http://localhost:8081";
+        RoundRobinHostManager hostManager = new RoundRobinHostManager(Arrays.asList(new String[]{host1, host2}), 60000);
+
+        hostManager.suspect(host1);
+        hostManager.suspect(host2);
+        assertNotNull(hostManager.getHost());
+    }
+
+    @Test
+    public void testUnsuspectPutsHostBackInRotation() {
+        String host1 = "http://localhost:8080";
+        String host2 = "http://localhost:8081";
+        RoundRobinHostManager hostManager = new RoundRobinHostManager(Arrays.asList(new String[]{host1, host2}), 60000);
+
+        hostManager.suspect(host1);
+        assertEquals(Collections.singleton(host1), hostManager.getSuspectedHosts());
+        hostManager.unsuspect(host1);
+        assertTrue(hostManager.getSuspectedHosts().isEmpty());
+        assertEquals(host1, hostManager.getHost());
+        assertEquals(host2, hostManager.getHost());
+    }
+}
@@ -0,0 +1,197 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection.memory;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import terrastore.client.BucketOperation;
+import terrastore.client.TerrastoreClient;
+import terrastore.client.TerrastoreRequestException;
+import terrastore.client.Values;
+import terrastore.client.connection.MapReduceQueryException;
+import terrastore.client.connection.NoSuchKeyException;
+import terrastore.client.connection.UnsatisfiedConditionException;
+import terrastore.client.mapreduce.MapReduceQuery;
+import terrastore.client.merge.MergeDescriptor;
+import terrastore.client.test.pojostest.Customer;
+import static org.junit.Assert.*;
+
+/**
+ * @author Sergio Bossa
+ */
+public class InMemoryConnectionTest {
+
+    private InMemoryConnectionFactory factory;
+    private TerrastoreClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        factory = new InMemoryConnectionFactory().function("increment", new UpdateFunction() {
+
+            @Override
+            public Map<String, Object> apply(String key, Map<String, Object> value, Map<String, Object> parameters) {
+                value.put("age", ((Number) value.get("age")).intValue() + ((Number) parameters.get("by")).intValue());
+                return value;
+            }
+        });
+        client = new TerrastoreClient("http://localhost:8080", factory);
+    }
+
+    @Test
+    public void testKeyOperations() throws Exception {
+        client.bucket("customers").key("c1").put(new Customer("Sergio"));
+
+        assertEquals(new Customer("Sergio"), client.bucket("customers").key("c1").get(Customer.class));
+        assertEquals(new Customer("Sergio"), new TerrastoreClient("http://localhost:8081", factory).bucket("customers").key("c1").get(Customer.class));
+        assertEquals(Collections.singleton("customers"), client.buckets().list());
+        assertNull(client.bucket("customers").key("c2").getIfPresent(Customer.class));
+
+        client.bucket("customers").key("c1").remove();
+        try {
+            client.bucket("customers").key("c1").get(Customer.class);
+            fail("Should have thrown NoSuchKeyException!");
+        } catch (NoSuchKeyException ex) {
+            assertEquals(404, ex.getStatus());
+        }
+
+        client.bucket("customers").clear();
+        assertTrue(client.buckets().list().isEmpty());
+    }
+
+    @Test
+    public void testConditionalOperations() throws Exception {
+        BucketOperation bucket = client.bucket("customers");
+        bucket.key("c1").put(customer("Sergio", 33));
+
+        assertEquals(customer("Sergio", 33), bucket.key("c1").conditional("jxpath:/name[.='Sergio']").get(Map.class));
+        assertTrue(bucket.key("c1").conditional("jxpath:/age[. < 40]").tryPut(customer("Sergio", 34)));
+        assertFalse(bucket.key("c1").conditional("jxpath:/age[. = 33]").tryPut(customer("Sergio", 35)));
+        assertEquals(34, bucket.key("c1").get(Map.class).get("age"));
+        assertTrue(bucket.key("c2").conditional("jxpath:/name").tryPut(customer("Mats", 40)));
+        try {
+            bucket.key("c1").conditional("jxpath:/surname").get(Map.class);
+            fail("Should have thrown UnsatisfiedConditionException!");
+        } catch (UnsatisfiedConditionException ex) {
+            assertEquals(404, ex.getStatus());
+        }
+        try {
+            bucket.key("c1").conditional("js:value.age > 30").get(Map.class);
+            fail("Should have thrown TerrastoreRequestException!");
+        } catch (TerrastoreRequestException ex) {
+            assertEquals(400, ex.getStatus());
+        }
+    }
+
+    @Test
+    public void testRangeQueriesWithComparators() throws Exception {
+        BucketOperation bucket = client.bucket("numbers");
+        for (int i = 1; i <= 20; i++) {
+            bucket.key(String.valueOf(i)).put(customer("Customer " + i, i));
+        }
+
+        assertEquals(Arrays.asList("2", "20", "3"), keys(bucket.range().from("2").to("3").get(Map.class)));
+        assertEquals(Arrays.asList("3", "20", "2"), keys(bucket.range("lexical-desc").from("3").to("2").get(Map.class)));
+        assertEquals(Arrays.asList("2", "3", "4"), keys(bucket.range("numeric-asc").from("2").limit(3).get(Map.class)));
+        assertEquals(Arrays.asList("20", "19"), keys(bucket.range("numeric-desc").from("20").to("19").get(Map.class)));
+        assertEquals(Arrays.asList("12", "13"), keys(bucket.range("numeric-asc").from("10").to("15").predicate("jxpath:/age[. > 11]").limit(2).get(Map.class)));
+        assertTrue(bucket.range("numeric-asc").from("5").to("1").get(Map.class).isEmpty());
+
+        assertEquals(new HashSet<String>(Arrays.asList("1", "2", "3")), bucket.range("numeric-asc").from("1").to("3").remove());
+        assertEquals(17, bucket.values().get(Map.class).size());
+        try {
+            bucket.range("random").from("1").get(Map.class);
+            fail("Should have thrown TerrastoreRequestException!");
+        } catch (TerrastoreRequestException ex) {
+            assertEquals(400, ex.getStatus());
+        }
+    }
+
+    @Test
+    public void testValuesPredicateAndBulkOperations() throws Exception {
+        BucketOperation bucket = client.bucket("customers");
+        Map<String, Object> values = new LinkedHashMap<String, Object>();
+        values.put("c1", customer("Sergio", 33));
+        values.put("c2", customer("Mats", 40));
+        values.put("c3", customer("Sven", 35));
+
+        assertEquals(values.keySet(), bucket.bulk().put(new Values<Object>(values)));
+        assertEquals(2, bucket.values().limit(2).get(Map.class).size());
+        assertEquals(Arrays.asList("c2", "c3"), keys(bucket.predicate("jxpath:/age[. >= 35]").get(Map.class)));
+        assertEquals(Collections.singletonMap("name", "Mats"), bucket.predicate("jxpath:/name[. = 'Mats']").project("name").get(Map.class).get("c2"));
+        assertEquals(new HashSet<String>(Arrays.asList("c1", "c3")), bucket.bulk().get(new HashSet<String>(Arrays.asList("c1", "c3", "c4")), Map.class).keySet());
+    }
+
+    @Test
+    public void testUpdateMergeAndMapReduce() throws Exception {
+        BucketOperation bucket = client.bucket("customers");
+        bucket.key("c1").put(customer("Sergio", 33));
+
+        Map updated = bucket.key("c1").update("increment").parameters(Collections.<String, Object>singletonMap("by", 2)).executeAndGet(Map.class);
+        Map merged = bucket.key("c1").merge(new MergeDescriptor().add(Collections.<String, Object>singletonMap("city", "Rome")).remove(Collections.singleton("name"))).executeAndGet(Map.class);
+
+        assertEquals(35, updated.get("age"));
+        assertEquals(35, merged.get("age"));
+        assertEquals("Rome", merged.get("city"));
+        assertFalse(merged.containsKey("name"));
+        assertEquals(merged, bucket.key("c1").get(Map.class));
+        try {
+            bucket.key("c2").update("increment").parameters(Collections.<String, Object>singletonMap("by", 2)).executeAndGet(Map.class);
+            fail("Should have thrown NoSuchKeyException!");
+        } catch (NoSuchKeyException ex) {
+        }
+        try {
+            bucket.mapReduce(new MapReduceQuery().task(new MapReduceQuery.Task().mapper("size").timeout(1000L))).execute(Map.class);
+            fail("Should have thrown MapReduceQueryException!");
+        } catch (MapReduceQueryException ex) {
+            assertEquals(400, ex.getStatus());
+        }
+    }
+
+    @Test
+    public void testExportAndImportBackup() throws Exception {
+        File file = File.createTempFile("customers", ".bak");
+        try {
+            client.bucket("customers").key("c1").put(customer("Sergio", 33));
+            client.bucket("customers").backup().file(file.getAbsolutePath()).secretKey("SECRET-KEY").executeExport();
+            client.bucket("customers").clear();
+
+            client.bucket("customers").backup().file(file.getAbsolutePath()).secretKey("SECRET-KEY").executeImport();
+
+            assertEquals(customer("Sergio", 33), client.bucket("customers").key("c1").get(Map.class));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private Map<String, Object> customer(String name, int age) {
+        Map<String, Object> customer = new HashMap<String, Object>();
+        customer.put("name", name);
+        customer.put("age", age);
+        return customer;
+    }
+
+    private List<String> keys(Values<?> values) {
+        return Arrays.asList(values.keySet().toArray(new String[values.size()]));
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection.resteasy;
+
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import terrastore.client.TerrastoreClient;
+import terrastore.client.connection.NoSuchKeyException;
+import terrastore.client.connection.OrderedHostManager;
+import terrastore.client.connection.TerrastoreConnectionException;
+import terrastore.client.events.ClientEventListener;
+import terrastore.client.events.OperationEvent;
+import terrastore.client.test.pojostest.Customer;
+import terrastore.client.test.stub.StubTerrastoreServer;
+import static org.junit.Assert.*;
+
+/**
+ * @author Sergio Bossa
+ */
+public class ClientEventsTest {
+
+    private StubTerrastoreServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubTerrastoreServer().start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void testOperationAndCheckoutEvents() throws Exception {
+        RecordingListener listener = new RecordingListener(true);
+        server.setResponseDelay(20);
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory().events(listener));
+
+        client.bucket("customers").key("c1").put(new Customer("Sergio"));
+        client.bucket("customers").key("c1").get(Customer.class);
+        try {
+            client.bucket("customers").key("c2").get(Customer.class);
+            fail("Should have thrown NoSuchKeyException!");
+        } catch (NoSuchKeyException ex) {
+        }
+
+        assertEquals(3, listener.operations.size());
+        OperationEvent put = listener.operations.get(0);
+        assertEquals("putValue", put.getOperation());
+        assertEquals("customers", put.getBucket());
+        assertEquals(server.getUrl(), "http://" + put.getHost());
+        assertEquals(204, put.getStatus());
+        assertNull(put.getFailure());
+        assertTrue(put.getRequestBytes() > 0);
+        assertTrue(put.getDuration(TimeUnit.MILLISECONDS) >= 20);
+        OperationEvent get = listener.operations.get(1);
+        assertEquals("getValue", get.getOperation());
+        assertEquals(200, get.getStatus());
+        assertTrue(get.getResponseBytes() > 0);
+        OperationEvent missing = listener.operations.get(2);
+        assertEquals(404, missing.getStatus());
+        assertEquals(NoSuchKeyException.class.getName(), missing.getFailure());
+        assertEquals(3, listener.checkouts.size());
+        assertEquals(put.getHost(), listener.checkouts.get(0));
+    }
+
+    @Test
+    public void testHostSuspicionEvents() throws Exception {
+        ServerSocket socket = new ServerSocket(0);
+        String down = "http://localhost:" + socket.getLocalPort();
+        socket.close();
+        RecordingListener listener = new RecordingListener(true);
+        OrderedHostManager hostManager = new OrderedHostManager(Arrays.asList(down, server.getUrl()));
+        TerrastoreClient client = new TerrastoreClient(hostManager, new HTTPConnectionFactory().events(listener));
+
+        try {
+            client.bucket("customers").key("c1").put(new Customer("Sergio"));
+        } catch (TerrastoreConnectionException ex) {
+        }
+
+        assertEquals(Arrays.asList(down), listener.suspected);
+        assertEquals(TerrastoreConnectionException.class.getName(), listener.operations.get(0).getFailure());
+    }
+
+    @Test
+    public void testNoEventsWhenDisabled() throws Exception {
+        RecordingListener listener = new RecordingListener(false);
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory().events(listener));
+
+        client.bucket("customers").key("c1").put(new Customer("Sergio"));
+
+        assertEquals(1, server.getRequests());
+        assertTrue(listener.operations.isEmpty());
+        assertTrue(listener.checkouts.isEmpty());
+    }
+
+    private static class RecordingListener implements ClientEventListener {
+
+        private final boolean enabled;
+        private final List<OperationEvent> operations = new ArrayList<OperationEvent>();
+        private final List<String> checkouts = new ArrayList<String>();
+        private final List<String> suspected = new ArrayList<String>();
+
+        public RecordingListener(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        @Override
+        public void operationExecuted(OperationEvent event) {
+            operations.add(event);
+        }
+
+        @Override
+        public void connectionAcquired(String host, long waitNanos) {
+            checkouts.add(host);
+        }
+
+        @Override
+        public void hostSuspected(String host) {
+            suspected.add(host);
+        }
+
+        @Override
+        public void hostUnsuspected(String host) {
+        }
+    }
+}
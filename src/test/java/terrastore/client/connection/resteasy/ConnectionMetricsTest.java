@@ -0,0 +1,105 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection.resteasy;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import terrastore.client.TerrastoreClient;
+import terrastore.client.TerrastoreClientException;
+import terrastore.client.connection.NoSuchKeyException;
+import terrastore.client.metrics.ConnectionMetrics;
+import terrastore.client.metrics.HotKey;
+import terrastore.client.metrics.LatencyHistogram;
+import terrastore.client.test.pojostest.Customer;
+import terrastore.client.test.stub.StubTerrastoreServer;
+import static org.junit.Assert.*;
+
+/**
+ * @author Sergio Bossa
+ */
+public class ConnectionMetricsTest {
+
+    private StubTerrastoreServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubTerrastoreServer().start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void testOperationsAreMeasured() throws Exception {
+        HTTPConnectionFactory factory = new HTTPConnectionFactory().metrics();
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), factory);
+        server.setResponseDelay(10);
+
+        client.bucket("customers").key("c1").put(new Customer("Sergio"));
+        client.bucket("customers").key("c1").get(Customer.class);
+        try {
+            client.bucket("customers").key("c2").get(Customer.class);
+            fail("Should have failed!");
+        } catch (NoSuchKeyException ex) {
+        }
+
+        ConnectionMetrics metrics = factory.getMetrics();
+        assertEquals(1, metrics.getLatency("putValue", "customers").getCount());
+        assertEquals(2, metrics.getLatency("getValue").getCount());
+        assertTrue(metrics.getLatency("getValue").getMax(TimeUnit.MILLISECONDS) >= 10);
+        assertNull(metrics.getLatency("getValue", "orders"));
+        assertEquals(Long.valueOf(1), metrics.getErrors().get(NoSuchKeyException.class));
+        assertEquals(1, metrics.getErrors(TerrastoreClientException.class));
+        Map<String, LatencyHistogram> hosts = metrics.getHostLatencies();
+        assertEquals(1, hosts.size());
+        assertEquals(3, hosts.values().iterator().next().getCount());
+        assertEquals(3, metrics.getPoolWait().getCount());
+        assertTrue(metrics.getRequestBytes() > 0);
+        assertTrue(metrics.getResponseBytes() > 0);
+    }
+
+    @Test
+    public void testMetricsAreSharedByDerivedFactories() throws Exception {
+        HTTPConnectionFactory factory = new HTTPConnectionFactory().metrics();
+        HTTPConnectionFactory derived = factory.lightweightExceptions();
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), derived);
+
+        client.bucket("customers").key("c1").getIfPresent(Customer.class);
+
+        assertSame(factory.getMetrics(), derived.getMetrics());
+        assertEquals(1, factory.getMetrics().getLatency("getValue", "customers").getCount());
+        assertNull(new HTTPConnectionFactory().getMetrics());
+    }
+
+    @Test
+    public void testHotKeysAreDetected() throws Exception {
+        HTTPConnectionFactory factory = new HTTPConnectionFactory().hotKeys(1);
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), factory);
+
+        client.bucket("customers").key("c1").put(new Customer("Sergio"));
+        client.bucket("customers").key("c2").put(new Customer("Mats"));
+        client.bucket("customers").key("c2").get(Customer.class);
+
+        assertEquals(Arrays.asList(new HotKey("c2", 2)), factory.getMetrics().getHotKeys().getHotKeys("customers"));
+        assertNull(new HTTPConnectionFactory().metrics().getMetrics().getHotKeys());
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection.resteasy;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import terrastore.client.TerrastoreClient;
+import terrastore.client.Values;
+import terrastore.client.codec.SmileCodec;
+import terrastore.client.connection.NoSuchKeyException;
+import terrastore.client.test.pojostest.Address;
+import terrastore.client.test.pojostest.Customer;
+import terrastore.client.test.pojostest.PhoneNumber;
+import terrastore.client.test.stub.StubTerrastoreServer;
+import static org.junit.Assert.*;
+
+/**
+ * @author Sergio Bossa
+ */
+public class HTTPConnectionCodecTest {
+
+    private StubTerrastoreServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubTerrastoreServer().start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void testJsonIsTheDefaultCodec() {
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory());
+
+        client.bucket("customers").key("customer").put(makeCustomers(1).get("customer-0"));
+
+        assertEquals("application/json", server.getLastRequestHeaders().getFirst("Content-Type"));
+        assertEquals("application/json", server.getLastRequestHeaders().getFirst("Accept"));
+    }
+
+    @Test
+    public void testDocumentsAreEncodedWithSmile() {
+        TerrastoreClient smileClient = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory().codec(new SmileCodec()));
+        TerrastoreClient jsonClient = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory());
+        Customer customer = makeCustomers(1).get("customer-0");
+
+        smileClient.bucket("customers").key("customer").put(customer);
+
+        assertEquals("application/x-jackson-smile", server.getLastRequestHeaders().getFirst("Content-Type"));
+        assertEquals(customer, smileClient.bucket("customers").key("customer").get(Customer.class));
+        assertTrue(server.getLastRequestHeaders().getFirst("Accept").startsWith("application/x-jackson-smile"));
+        assertEquals(customer, jsonClient.bucket("customers").key("customer").get(Customer.class));
+    }
+
+    @Test
+    public void testBulkAndRangeWithSmile() {
+        TerrastoreClient smileClient = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory().codec(new SmileCodec()));
+        TerrastoreClient jsonClient = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory());
+        Map<String, Customer> customers = makeCustomers(200);
+
+        smileClient.bucket("customers").bulk().put(new Values<Customer>(customers));
+        long smileBytes = server.getReceivedBytes();
+        jsonClient.bucket("customers").bulk().put(new Values<Customer>(customers));
+        long jsonBytes = server.getReceivedBytes() - smileBytes;
+
+        assertTrue(smileBytes < jsonBytes);
+        assertEquals(customers, smileClient.bucket("customers").bulk().get(new HashSet<String>(customers.keySet()), Customer.class));
+        assertEquals(customers, smileClient.bucket("customers").range().from("customer-0").get(Customer.class));
+    }
+
+    @Test
+    public void testErrorsWithSmile() {
+        TerrastoreClient smileClient = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory().codec(new SmileCodec()));
+
+        try {
+            smileClient.bucket("customers").key("missing").get(Customer.class);
+            fail("Should have thrown an exception!");
+        } catch (NoSuchKeyException ex) {
+            assertEquals(404, ex.getStatus());
+            assertEquals("Key not found: missing", ex.getMessage());
+        }
+    }
+
+    private Map<String, Customer> makeCustomers(int count) {
+        Map<String, Customer> customers = new LinkedHashMap<String, Customer>();
+        for (int i = 0; i < count; i++) {
+            Customer customer = new Customer("Customer " + i);
+            customer.setAddress(new Address("Street " + i));
+            customer.addPhoneNumber(new PhoneNumber("555-" + i, "home"));
+            customers.put("customer-" + i, customer);
+        }
+        return customers;
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection.resteasy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import terrastore.client.TerrastoreClient;
+import terrastore.client.Values;
+import terrastore.client.test.pojostest.Address;
+import terrastore.client.test.pojostest.Customer;
+import terrastore.client.test.pojostest.PhoneNumber;
+import terrastore.client.test.stub.StubTerrastoreServer;
+import static org.junit.Assert.*;
+
+/**
+ * @author Sergio Bossa
+ */
+public class HTTPConnectionCompressionTest {
+
+    private StubTerrastoreServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubTerrastoreServer().start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void testLargeBodiesAreCompressed() {
+        HTTPConnectionFactory factory = new HTTPConnectionFactory().compression(1024);
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), factory);
+        Map<String, Customer> customers = makeCustomers(200);
+
+        client.bucket("customers").bulk().put(new Values<Customer>(customers));
+
+        assertEquals("gzip", server.getLastRequestHeaders().getFirst("Content-Encoding"));
+        CompressionStats stats = factory.getCompressionStats();
+        assertEquals(1, stats.getCompressedRequests());
+        assertEquals(server.getReceivedBytes(), stats.getCompressedRequestBytes());
+        assertTrue(stats.getRequestCompressionRatio() < 0.5);
+
+        Values<Customer> values = client.bucket("customers").values().get(Customer.class);
+
+        assertEquals(customers, values);
+        assertTrue(stats.getCompressedResponses() > 0);
+        assertTrue(stats.getResponseCompressionRatio() < 0.5);
+        assertTrue(stats.getResponseBytes() > stats.getCompressedResponseBytes());
+    }
+
+    @Test
+    public void testSmallBodiesAreNotCompressed() {
+        HTTPConnectionFactory factory = new HTTPConnectionFactory().compression(1024);
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), factory);
+        Customer customer = makeCustomers(1).get("customer-0");
+
+        client.bucket("customers").key("customer-0").put(customer);
+
+        assertNull(server.getLastRequestHeaders().getFirst("Content-Encoding"));
+        assertEquals("gzip", server.getLastRequestHeaders().getFirst("Accept-Encoding"));
+        assertEquals(0, factory.getCompressionStats().getCompressedRequests());
+        assertEquals(customer, client.bucket("customers").key("customer-0").get(Customer.class));
+    }
+
+    @Test
+    public void testNoCompressionByDefault() {
+        HTTPConnectionFactory factory = new HTTPConnectionFactory();
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), factory);
+        Map<String, Customer> customers = makeCustomers(200);
+
+        client.bucket("customers").bulk().put(new Values<Customer>(customers));
+
+        assertNull(server.getLastRequestHeaders().getFirst("Content-Encoding"));
+        assertEquals(customers, client.bucket("customers").values().get(Customer.class));
+        assertEquals(0, factory.getCompressionStats().getCompressedRequests());
+    }
+
+    private Map<String, Customer> makeCustomers(int count) {
+        Map<String, Customer> customers = new LinkedHashMap<String, Customer>();
+        for (int i = 0; i < count; i++) {
+            Customer customer = new Customer("Customer " + i);
+            customer.setAddress(new Address("Via Roma " + i + ", 00100 Rome, Italy"));
+            customer.addPhoneNumber(new PhoneNumber("555-" + i, "home"));
+            customers.put("customer-" + i, customer);
+        }
+        return customers;
+    }
+}
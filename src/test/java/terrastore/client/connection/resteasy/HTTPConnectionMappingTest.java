@@ -0,0 +1,184 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection.resteasy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.map.DeserializationContext;
+import org.codehaus.jackson.map.JsonDeserializer;
+import org.codehaus.jackson.map.JsonSerializer;
+import org.codehaus.jackson.map.SerializerProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import terrastore.client.TerrastoreClient;
+import terrastore.client.Values;
+import terrastore.client.mapping.JsonObjectDescriptor;
+import terrastore.client.mapping.LazyDocument;
+import terrastore.client.test.pojostest.Address;
+import terrastore.client.test.pojostest.Customer;
+import terrastore.client.test.pojostest.PhoneNumber;
+import terrastore.client.test.stub.StubTerrastoreServer;
+import static org.junit.Assert.*;
+
+/**
+ * @author Sergio Bossa
+ */
+public class HTTPConnectionMappingTest {
+
+    private StubTerrastoreServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubTerrastoreServer().start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void testClientsWithDifferentDescriptorsDoNotClash() {
+        TerrastoreClient custom = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory(), new ArrayList<JsonObjectDescriptor<?>>(Arrays.asList(new AddressDescriptor())));
+        TerrastoreClient standard = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory());
+
+        custom.bucket("addresses").key("custom").put(new Address("Via Roma"));
+        standard.bucket("addresses").key("standard").put(new Address("Via Roma"));
+
+        assertEquals("Via Roma", standard.bucket("addresses").key("custom").get(Map.class).get("where"));
+        assertEquals("Via Roma", standard.bucket("addresses").key("standard").get(Map.class).get("street"));
+        assertEquals(new Address("Via Roma"), custom.bucket("addresses").key("custom").get(Address.class));
+    }
+
+    @Test
+    public void testPrewarmedTypes() {
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory().prewarm(Customer.class, Address.class));
+
+        client.bucket("customers").key("customer").put(new Customer("Sergio"));
+
+        assertEquals(new Customer("Sergio"), client.bucket("customers").key("customer").get(Customer.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPrewarmFailsWithUnmappableTypes() {
+        new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory().prewarm(Runnable.class));
+    }
+
+    @Test
+    public void testProjectedRangeAndBulkGet() {
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory());
+        for (int i = 0; i < 3; i++) {
+            Customer customer = new Customer("customer-" + i);
+            customer.setAddress(new Address("street-" + i));
+            customer.addPhoneNumber(new PhoneNumber("555-000" + i, "home"));
+            client.bucket("customers").key("customer-" + i).put(customer);
+        }
+
+        Values<Map> range = client.bucket("customers").range().from("customer-0").project("address.street").get(Map.class);
+        Values<Customer> bulk = client.bucket("customers").bulk().project("name").get(new HashSet<String>(Arrays.asList("customer-1", "customer-2")), Customer.class);
+
+        assertEquals(3, range.size());
+        assertEquals(Collections.singletonMap("address", Collections.singletonMap("street", "street-0")), range.get("customer-0"));
+        assertEquals(2, bulk.size());
+        assertEquals(new Customer("customer-1"), bulk.get("customer-1"));
+    }
+
+    @Test
+    public void testLazyDocuments() {
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory());
+        for (int i = 0; i < 3; i++) {
+            Customer customer = new Customer("customer-" + i);
+            customer.setAddress(new Address("street-" + i));
+            client.bucket("customers").key("customer-" + i).put(customer);
+        }
+
+        LazyDocument document = client.bucket("customers").key("customer-0").get(LazyDocument.class);
+        client.bucket("copies").key("customer-0").put(document);
+        Values<LazyDocument> range = client.bucket("customers").range().from("customer-0").get(LazyDocument.class);
+        Values<LazyDocument> bulk = client.bucket("customers").bulk().get(new HashSet<String>(Arrays.asList("customer-1", "customer-2")), LazyDocument.class);
+
+        assertEquals("street-0", document.getString("address.street"));
+        assertEquals(client.bucket("customers").key("customer-0").get(Customer.class), client.bucket("copies").key("customer-0").get(Customer.class));
+        assertEquals(3, range.size());
+        assertEquals("street-1", range.get("customer-1").getString("address.street"));
+        assertEquals("customer-2", bulk.get("customer-2").getString("name"));
+    }
+
+    @Test
+    public void testParallelReads() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            TerrastoreClient client = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory().parallelReads(executor, 0));
+            for (int i = 0; i < 100; i++) {
+                client.bucket("customers").key(String.format("customer-%03d", i)).put(new Customer("customer-" + i));
+            }
+
+            Values<Customer> range = client.bucket("customers").range().from("customer-000").get(Customer.class);
+
+            assertEquals(100, range.size());
+            int i = 0;
+            for (Map.Entry<String, Customer> entry : range.entrySet()) {
+                assertEquals(String.format("customer-%03d", i), entry.getKey());
+                assertEquals(new Customer("customer-" + i), entry.getValue());
+                i++;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static class AddressDescriptor implements JsonObjectDescriptor<Address> {
+
+        public Class<Address> getObjectClass() {
+            return Address.class;
+        }
+
+        public JsonSerializer<Address> getJsonSerializer() {
+            return new JsonSerializer<Address>() {
+
+                @Override
+                public void serialize(Address value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+                    generator.writeStartObject();
+                    generator.writeStringField("where", value.getStreet());
+                    generator.writeEndObject();
+                }
+            };
+        }
+
+        public JsonDeserializer<Address> getJsonDeserializer() {
+            return new JsonDeserializer<Address>() {
+
+                @Override
+                public Address deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+                    parser.nextToken();
+                    parser.nextToken();
+                    Address address = new Address(parser.getText());
+                    parser.nextToken();
+                    return address;
+                }
+            };
+        }
+    }
+}
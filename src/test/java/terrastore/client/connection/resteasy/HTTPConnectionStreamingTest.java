@@ -0,0 +1,100 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection.resteasy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import terrastore.client.TerrastoreClient;
+import terrastore.client.Values;
+import terrastore.client.test.pojostest.Customer;
+import terrastore.client.test.pojostest.PhoneNumber;
+import terrastore.client.test.stub.StubTerrastoreServer;
+import static org.junit.Assert.*;
+
+/**
+ * @author Sergio Bossa
+ */
+public class HTTPConnectionStreamingTest {
+
+    private StubTerrastoreServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubTerrastoreServer().start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void testBodiesAreSentWithContentLengthByDefault() {
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory());
+        Map<String, Customer> customers = makeCustomers(200);
+
+        client.bucket("customers").bulk().put(new Values<Customer>(customers));
+
+        assertEquals(Long.toString(server.getReceivedBytes()), server.getLastRequestHeaders().getFirst("Content-Length"));
+        assertNull(server.getLastRequestHeaders().getFirst("Transfer-Encoding"));
+        assertEquals(customers, client.bucket("customers").values().get(Customer.class));
+    }
+
+    @Test
+    public void testBodiesAboveThresholdAreStreamed() {
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory().streaming(1024));
+        Map<String, Customer> customers = makeCustomers(200);
+
+        client.bucket("customers").key("small").put(new Customer("small"));
+
+        assertNotNull(server.getLastRequestHeaders().getFirst("Content-Length"));
+        assertNull(server.getLastRequestHeaders().getFirst("Transfer-Encoding"));
+
+        client.bucket("customers").bulk().put(new Values<Customer>(customers));
+
+        assertNull(server.getLastRequestHeaders().getFirst("Content-Length"));
+        assertEquals("chunked", server.getLastRequestHeaders().getFirst("Transfer-Encoding"));
+        assertEquals(201, client.bucket("customers").values().get(Customer.class).size());
+    }
+
+    @Test
+    public void testStreamedBodiesAreCompressed() {
+        HTTPConnectionFactory factory = new HTTPConnectionFactory().streaming(1024).compression(512);
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), factory);
+        Map<String, Customer> customers = makeCustomers(200);
+
+        client.bucket("customers").bulk().put(new Values<Customer>(customers));
+
+        assertEquals("chunked", server.getLastRequestHeaders().getFirst("Transfer-Encoding"));
+        assertEquals("gzip", server.getLastRequestHeaders().getFirst("Content-Encoding"));
+        assertEquals(1, factory.getCompressionStats().getCompressedRequests());
+        assertEquals(server.getReceivedBytes(), factory.getCompressionStats().getCompressedRequestBytes());
+        assertEquals(customers, client.bucket("customers").values().get(Customer.class));
+    }
+
+    private Map<String, Customer> makeCustomers(int count) {
+        Map<String, Customer> customers = new LinkedHashMap<String, Customer>();
+        for (int i = 0; i < count; i++) {
+            Customer customer = new Customer("Customer " + i);
+            customer.addPhoneNumber(new PhoneNumber("555-" + i, "home"));
+            customers.put("customer-" + i, customer);
+        }
+        return customers;
+    }
+}
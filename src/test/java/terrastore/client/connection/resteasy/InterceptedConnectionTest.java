@@ -0,0 +1,147 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection.resteasy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import terrastore.client.KeyOperation;
+import terrastore.client.TerrastoreClient;
+import terrastore.client.connection.ConnectionInterceptor;
+import terrastore.client.connection.ErrorMessage;
+import terrastore.client.connection.Invocation;
+import terrastore.client.connection.NoSuchKeyException;
+import terrastore.client.test.pojostest.Customer;
+import terrastore.client.test.stub.StubTerrastoreServer;
+import static org.junit.Assert.*;
+
+/**
+ * @author Sergio Bossa
+ */
+public class InterceptedConnectionTest {
+
+    private StubTerrastoreServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubTerrastoreServer().start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void testInterceptorsAreChainedInOrderAndSeeTheOutcome() throws Exception {
+        List<String> events = new ArrayList<String>();
+        List<Invocation> invocations = new ArrayList<Invocation>();
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory().interceptors(
+                new RecordingInterceptor("first", events, invocations),
+                new RecordingInterceptor("second", events, new ArrayList<Invocation>())));
+
+        client.bucket("customers").key("c1").put(new Customer("Sergio"));
+        Customer customer = client.bucket("customers").key("c1").get(Customer.class);
+
+        assertEquals(new Customer("Sergio"), customer);
+        assertEquals(Arrays.asList(
+                "first before putValue", "second before putValue", "second after putValue", "first after putValue",
+                "first before getValue", "second before getValue", "second after getValue", "first after getValue"), events);
+        Invocation put = invocations.get(0);
+        assertEquals("customers", put.getBucket());
+        assertEquals("c1", ((KeyOperation.Context) put.getContext()).getKey());
+        assertEquals(new Customer("Sergio"), put.getValue());
+        assertEquals(server.getUrl(), "http://" + put.getHost());
+        assertTrue(put.getRequestBytes() > 0);
+        Invocation get = invocations.get(1);
+        assertEquals(Customer.class, get.getType());
+        assertTrue(get.getResponseBytes() > 0);
+    }
+
+    @Test
+    public void testInterceptorCanShortCircuit() throws Exception {
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory().interceptors(new ConnectionInterceptor() {
+
+            @Override
+            public Object intercept(Invocation invocation) {
+                return invocation.getOperation().equals("getValue") ? new Customer("Cached") : invocation.proceed();
+            }
+        }));
+
+        assertEquals(new Customer("Cached"), client.bucket("customers").key("c1").get(Customer.class));
+        assertEquals(0, server.getRequests());
+    }
+
+    @Test
+    public void testInterceptorCanAddHeadersAndRetry() throws Exception {
+        final List<String> failures = new ArrayList<String>();
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory().interceptors(new ConnectionInterceptor() {
+
+            @Override
+            public Object intercept(Invocation invocation) {
+                invocation.setHeader("X-Trace-Id", "42");
+                try {
+                    return invocation.proceed();
+                } catch (NoSuchKeyException ex) {
+                    failures.add(invocation.getOperation());
+                    return invocation.proceed();
+                }
+            }
+        }, new ConnectionInterceptor() {
+
+            private int calls;
+
+            @Override
+            public Object intercept(Invocation invocation) {
+                if (calls++ == 0) {
+                    throw new NoSuchKeyException(new ErrorMessage("Not yet!", 404));
+                }
+                return invocation.proceed();
+            }
+        }));
+
+        client.bucket("customers").key("c1").put(new Customer("Sergio"));
+
+        assertEquals(Arrays.asList("putValue"), failures);
+        assertEquals(1, server.getRequests());
+        assertEquals("42", server.getLastRequestHeaders().getFirst("X-Trace-Id"));
+    }
+
+    private static class RecordingInterceptor implements ConnectionInterceptor {
+
+        private final String name;
+        private final List<String> events;
+        private final List<Invocation> invocations;
+
+        public RecordingInterceptor(String name, List<String> events, List<Invocation> invocations) {
+            this.name = name;
+            this.events = events;
+            this.invocations = invocations;
+        }
+
+        @Override
+        public Object intercept(Invocation invocation) {
+            events.add(name + " before " + invocation.getOperation());
+            Object result = invocation.proceed();
+            events.add(name + " after " + invocation.getOperation());
+            invocations.add(invocation);
+            return result;
+        }
+    }
+}
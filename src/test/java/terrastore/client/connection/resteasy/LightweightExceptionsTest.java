@@ -0,0 +1,118 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection.resteasy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import terrastore.client.TerrastoreClient;
+import terrastore.client.connection.NoSuchKeyException;
+import terrastore.client.connection.UnsatisfiedConditionException;
+import terrastore.client.test.pojostest.Customer;
+import terrastore.client.test.stub.StubTerrastoreServer;
+import static org.junit.Assert.*;
+
+/**
+ * @author Sergio Bossa
+ */
+public class LightweightExceptionsTest {
+
+    private StubTerrastoreServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubTerrastoreServer().start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void testMissingKeysAreSignalledByStacklessExceptions() throws Exception {
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory().lightweightExceptions());
+
+        NoSuchKeyException first = getMissing(client, "c1");
+        NoSuchKeyException second = getMissing(client, "c2");
+
+        assertNotSame(first, second);
+        assertEquals(0, first.getStackTrace().length);
+        assertEquals(0, second.getStackTrace().length);
+        assertEquals(404, first.getStatus());
+    }
+
+    @Test
+    public void testMissingKeysAreSignalledByRegularExceptionsByDefault() throws Exception {
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory());
+
+        NoSuchKeyException first = getMissing(client, "c1");
+        NoSuchKeyException second = getMissing(client, "c2");
+
+        assertNotSame(first, second);
+        assertTrue(first.getStackTrace().length > 0);
+    }
+
+    @Test
+    public void testUnsatisfiedConditionsAreSignalledByStacklessExceptions() throws Exception {
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory().lightweightExceptions());
+        client.bucket("customers").key("c1").put(new Customer("Sergio"));
+
+        try {
+            client.bucket("customers").key("c1").conditional("jxpath:/name[. = 'Mats']").get(Customer.class);
+            fail("Should have failed!");
+        } catch (UnsatisfiedConditionException ex) {
+            assertEquals(0, ex.getStackTrace().length);
+            assertEquals(404, ex.getStatus());
+        }
+        try {
+            client.bucket("customers").key("c1").conditional("jxpath:/name[. = 'Mats']").put(new Customer("Mats"));
+            fail("Should have failed!");
+        } catch (UnsatisfiedConditionException ex) {
+            assertEquals(0, ex.getStackTrace().length);
+            assertEquals(409, ex.getStatus());
+        }
+    }
+
+    @Test
+    public void testGetIfPresent() throws Exception {
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory().lightweightExceptions());
+        client.bucket("customers").key("c1").put(new Customer("Sergio"));
+
+        assertEquals(new Customer("Sergio"), client.bucket("customers").key("c1").getIfPresent(Customer.class));
+        assertNull(client.bucket("customers").key("c2").getIfPresent(Customer.class));
+    }
+
+    @Test
+    public void testTryPut() throws Exception {
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory());
+        client.bucket("customers").key("c1").put(new Customer("Sergio"));
+
+        assertFalse(client.bucket("customers").key("c1").conditional("jxpath:/name[. = 'Mats']").tryPut(new Customer("Mats")));
+        assertTrue(client.bucket("customers").key("c1").conditional("jxpath:/name[. = 'Sergio']").tryPut(new Customer("Mats")));
+        assertEquals(new Customer("Mats"), client.bucket("customers").key("c1").get(Customer.class));
+    }
+
+    private NoSuchKeyException getMissing(TerrastoreClient client, String key) {
+        try {
+            client.bucket("customers").key(key).get(Customer.class);
+            fail("Should have failed: " + key);
+            return null;
+        } catch (NoSuchKeyException ex) {
+            return ex;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection.resteasy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import terrastore.client.TerrastoreClient;
+import terrastore.client.TerrastoreClientException;
+import terrastore.client.Values;
+import terrastore.client.connection.NoSuchKeyException;
+import terrastore.client.test.pojostest.Customer;
+import terrastore.client.test.stub.StubTerrastoreServer;
+import static org.junit.Assert.*;
+
+/**
+ * @author Sergio Bossa
+ */
+public class MissingKeysTest {
+
+    private StubTerrastoreServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubTerrastoreServer().start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void testMissingKeysAreCachedUntilWritten() throws Exception {
+        HTTPConnectionFactory factory = new HTTPConnectionFactory().negativeCaching(60000, 100);
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), factory);
+
+        assertMissing(client, "c1");
+        long requests = server.getRequests();
+        assertMissing(client, "c1");
+
+        assertEquals(requests, server.getRequests());
+        assertEquals(1, factory.getMissingKeys().getNegativeHits());
+
+        client.bucket("customers").key("c1").put(new Customer("Sergio"));
+
+        assertEquals(new Customer("Sergio"), client.bucket("customers").key("c1").get(Customer.class));
+    }
+
+    @Test
+    public void testMissingKeysAreForgottenOnFailedWrites() throws Exception {
+        HTTPConnectionFactory factory = new HTTPConnectionFactory().negativeCaching(60000, 100);
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), factory);
+
+        assertMissing(client, "c1");
+        try {
+            client.bucket("customers").key("c1").conditional("jxpath:/name").put(new Customer("Sergio"));
+            fail("Should have failed!");
+        } catch (TerrastoreClientException ex) {
+        }
+        long requests = server.getRequests();
+        assertMissing(client, "c1");
+
+        assertEquals(requests + 1, server.getRequests());
+        assertEquals(0, factory.getMissingKeys().getNegativeHits());
+    }
+
+    @Test
+    public void testMissingKeysAreNotSharedAcrossClusters() throws Exception {
+        StubTerrastoreServer otherServer = new StubTerrastoreServer().start();
+        try {
+            HTTPConnectionFactory factory = new HTTPConnectionFactory().negativeCaching(60000, 100);
+            TerrastoreClient client = new TerrastoreClient(server.getUrl(), factory);
+            TerrastoreClient other = new TerrastoreClient(otherServer.getUrl(), factory);
+            new TerrastoreClient(otherServer.getUrl(), new HTTPConnectionFactory()).bucket("customers").key("c1").put(new Customer("Sergio"));
+
+            assertMissing(client, "c1");
+
+            assertEquals(new Customer("Sergio"), other.bucket("customers").key("c1").get(Customer.class));
+            assertEquals(0, factory.getMissingKeys().getNegativeHits());
+        } finally {
+            otherServer.stop();
+        }
+    }
+
+    @Test
+    public void testMissingKeysExpire() throws Exception {
+        HTTPConnectionFactory factory = new HTTPConnectionFactory().negativeCaching(50, 100);
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), factory);
+        TerrastoreClient other = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory());
+
+        assertMissing(client, "c1");
+        other.bucket("customers").key("c1").put(new Customer("Sergio"));
+        assertMissing(client, "c1");
+        Thread.sleep(100);
+
+        assertEquals(new Customer("Sergio"), client.bucket("customers").key("c1").get(Customer.class));
+    }
+
+    @Test
+    public void testBloomFiltersRejectMissingKeys() throws Exception {
+        TerrastoreClient other = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory());
+        Map<String, Customer> customers = new LinkedHashMap<String, Customer>();
+        for (int i = 0; i < 1000; i++) {
+            customers.put("customer-" + i, new Customer("Customer " + i));
+        }
+        other.bucket("customers").bulk().put(new Values<Customer>(customers));
+        HTTPConnectionFactory factory = new HTTPConnectionFactory().bloomFilters(1000, 0.01, 60000, "customers");
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), factory);
+
+        assertEquals(new Customer("Customer 42"), client.bucket("customers").key("customer-42").get(Customer.class));
+        awaitSeedings(factory, 1);
+        long requests = server.getRequests();
+        for (int i = 0; i < 1000; i++) {
+            assertMissing(client, "missing-" + i);
+        }
+
+        MissingKeys missingKeys = factory.getMissingKeys();
+        assertEquals(1000, missingKeys.getBloomRejections() + missingKeys.getBloomFalsePositives());
+        assertEquals(requests + missingKeys.getBloomFalsePositives(), server.getRequests());
+        assertTrue(missingKeys.getFalsePositiveRate() < 0.05);
+
+        client.bucket("customers").key("missing-0").put(new Customer("Sergio"));
+
+        assertEquals(new Customer("Sergio"), client.bucket("customers").key("missing-0").get(Customer.class));
+    }
+
+    @Test
+    public void testBloomFiltersAreSeededAgainWhenInvalidated() throws Exception {
+        HTTPConnectionFactory factory = new HTTPConnectionFactory().bloomFilters(100, 0.01, 60000, "customers");
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), factory);
+        TerrastoreClient other = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory());
+
+        assertMissing(client, "c1");
+        awaitSeedings(factory, 1);
+        other.bucket("customers").key("c1").put(new Customer("Sergio"));
+        assertMissing(client, "c1");
+
+        factory.getMissingKeys().invalidate("customers");
+
+        assertEquals(new Customer("Sergio"), client.bucket("customers").key("c1").get(Customer.class));
+    }
+
+    @Test
+    public void testBloomFiltersAreSeededAgainAfterTheirMaxAge() throws Exception {
+        HTTPConnectionFactory factory = new HTTPConnectionFactory().bloomFilters(100, 0.01, 200, "customers");
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), factory);
+        TerrastoreClient other = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory());
+
+        assertMissing(client, "c1");
+        awaitSeedings(factory, 1);
+        other.bucket("customers").key("c1").put(new Customer("Sergio"));
+        assertMissing(client, "c1");
+
+        Thread.sleep(300);
+
+        assertEquals(new Customer("Sergio"), client.bucket("customers").key("c1").get(Customer.class));
+        awaitSeedings(factory, 2);
+        assertEquals(new Customer("Sergio"), client.bucket("customers").key("c1").get(Customer.class));
+    }
+
+    @Test
+    public void testReadsGoToTheServerWhileSeeding() throws Exception {
+        HTTPConnectionFactory factory = new HTTPConnectionFactory().bloomFilters(100, 0.01, 60000, "customers");
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), factory);
+        TerrastoreClient other = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory());
+        other.bucket("customers").key("c1").put(new Customer("Sergio"));
+
+        assertMissing(client, "c2");
+
+        assertEquals(0, factory.getMissingKeys().getBloomRejections());
+        assertEquals(new Customer("Sergio"), client.bucket("customers").key("c1").get(Customer.class));
+        awaitSeedings(factory, 1);
+        assertMissing(client, "c2");
+        assertEquals(1, factory.getMissingKeys().getBloomRejections());
+    }
+
+    @Test
+    public void testOtherBucketsAreNotFiltered() throws Exception {
+        HTTPConnectionFactory factory = new HTTPConnectionFactory().bloomFilters(100, 0.01, 60000, "customers");
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), factory);
+        TerrastoreClient other = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory());
+
+        other.bucket("orders").key("o1").put(new Customer("Sergio"));
+
+        assertEquals(new Customer("Sergio"), client.bucket("orders").key("o1").get(Customer.class));
+        assertEquals(0, factory.getMissingKeys().getBloomRejections());
+    }
+
+    private void awaitSeedings(HTTPConnectionFactory factory, long seedings) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (factory.getMissingKeys().getBloomSeedings() < seedings && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(seedings, factory.getMissingKeys().getBloomSeedings());
+    }
+
+    private void assertMissing(TerrastoreClient client, String key) {
+        try {
+            client.bucket("customers").key(key).get(Customer.class);
+            fail("Should have failed: " + key);
+        } catch (NoSuchKeyException ex) {
+        }
+    }
+}
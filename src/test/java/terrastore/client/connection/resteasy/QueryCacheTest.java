@@ -0,0 +1,261 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection.resteasy;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import terrastore.client.TerrastoreClient;
+import terrastore.client.TerrastoreClientException;
+import terrastore.client.Values;
+import terrastore.client.test.pojostest.Customer;
+import terrastore.client.test.stub.StubTerrastoreServer;
+import static org.junit.Assert.*;
+
+/**
+ * @author Sergio Bossa
+ */
+public class QueryCacheTest {
+
+    private StubTerrastoreServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubTerrastoreServer().start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void testRangeResultsAreCachedForTheirTimeToLive() throws Exception {
+        HTTPConnectionFactory factory = new HTTPConnectionFactory().queryCache(10);
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), factory);
+        client.bucket("customers").key("c1").put(new Customer("Sergio"));
+
+        Values<Customer> first = client.bucket("customers").range().from("c").timeToLive(60000).get(Customer.class);
+        client.bucket("customers").key("c2").put(new Customer("Mats"));
+        long requests = server.getRequests();
+        Values<Customer> second = client.bucket("customers").range().from("c").timeToLive(60000).get(Customer.class);
+
+        assertEquals(requests, server.getRequests());
+        assertNotSame(first, second);
+        assertEquals(first, second);
+        assertEquals(1, second.size());
+        assertEquals(1, factory.getQueryCache().getHits());
+        assertEquals(1, factory.getQueryCache().getMisses());
+
+        Values<Customer> other = client.bucket("customers").range().from("c").limit(10).timeToLive(60000).get(Customer.class);
+
+        assertEquals(requests + 1, server.getRequests());
+        assertEquals(2, other.size());
+    }
+
+    @Test
+    public void testCachedResultsAreDecodedForEachCaller() throws Exception {
+        HTTPConnectionFactory factory = new HTTPConnectionFactory().queryCache(10);
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), factory);
+        client.bucket("customers").key("c1").put(new Customer("Sergio"));
+
+        Values<Customer> first = client.bucket("customers").range().from("c").timeToLive(60000).get(Customer.class);
+        first.remove("c1");
+        long requests = server.getRequests();
+        Values<Customer> second = client.bucket("customers").range().from("c").timeToLive(60000).get(Customer.class);
+        Values<Map> untyped = client.bucket("customers").range().from("c").timeToLive(60000).get(Map.class);
+
+        assertEquals(requests, server.getRequests());
+        assertEquals(new Customer("Sergio"), second.get("c1"));
+        assertEquals("Sergio", untyped.get("c1").get("name"));
+        assertEquals(2, factory.getQueryCache().getHits());
+    }
+
+    @Test
+    public void testExpiredResultsAreQueriedAgain() throws Exception {
+        HTTPConnectionFactory factory = new HTTPConnectionFactory().queryCache(10);
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), factory);
+        client.bucket("customers").key("c1").put(new Customer("Sergio"));
+
+        client.bucket("customers").range().from("c").timeToLive(50).get(Customer.class);
+        client.bucket("customers").key("c2").put(new Customer("Mats"));
+        Thread.sleep(100);
+        Values<Customer> values = client.bucket("customers").range().from("c").timeToLive(50).get(Customer.class);
+
+        assertEquals(2, values.size());
+        assertEquals(0, factory.getQueryCache().getHits());
+        assertEquals(2, factory.getQueryCache().getMisses());
+    }
+
+    @Test
+    public void testResultsAreCheckedAgainstTheTimeToLiveOfEachQuery() throws Exception {
+        HTTPConnectionFactory factory = new HTTPConnectionFactory().queryCache(10);
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), factory);
+        client.bucket("customers").key("c1").put(new Customer("Sergio"));
+
+        client.bucket("customers").range().from("c").timeToLive(60000).get(Customer.class);
+        client.bucket("customers").key("c2").put(new Customer("Mats"));
+        Thread.sleep(100);
+        Values<Customer> values = client.bucket("customers").range().from("c").timeToLive(50).get(Customer.class);
+
+        assertEquals(2, values.size());
+        assertEquals(0, factory.getQueryCache().getHits());
+        assertEquals(2, factory.getQueryCache().getMisses());
+    }
+
+    @Test
+    public void testResultsAreNotSharedAcrossClusters() throws Exception {
+        StubTerrastoreServer otherServer = new StubTerrastoreServer().start();
+        try {
+            HTTPConnectionFactory factory = new HTTPConnectionFactory().queryCache(10);
+            TerrastoreClient client = new TerrastoreClient(server.getUrl(), factory);
+            TerrastoreClient other = new TerrastoreClient(otherServer.getUrl(), factory);
+            client.bucket("customers").key("c1").put(new Customer("Sergio"));
+            other.bucket("customers").key("c2").put(new Customer("Mats"));
+
+            Values<Customer> values = client.bucket("customers").range().from("c").timeToLive(60000).get(Customer.class);
+            Values<Customer> otherValues = other.bucket("customers").range().from("c").timeToLive(60000).get(Customer.class);
+            Values<Customer> sameCluster = new TerrastoreClient(server.getUrl(), factory).bucket("customers").range().from("c").timeToLive(60000).get(Customer.class);
+
+            assertEquals(new Customer("Sergio"), values.get("c1"));
+            assertEquals(new Customer("Mats"), otherValues.get("c2"));
+            assertEquals(values, sameCluster);
+            assertEquals(1, factory.getQueryCache().getHits());
+            assertEquals(2, factory.getQueryCache().getMisses());
+        } finally {
+            otherServer.stop();
+        }
+    }
+
+    @Test
+    public void testQueriesWithoutTimeToLiveAreNotCached() throws Exception {
+        HTTPConnectionFactory factory = new HTTPConnectionFactory().queryCache(10);
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), factory);
+        client.bucket("customers").key("c1").put(new Customer("Sergio"));
+
+        client.bucket("customers").range().from("c").get(Customer.class);
+        long requests = server.getRequests();
+        client.bucket("customers").range().from("c").get(Customer.class);
+
+        assertEquals(requests + 1, server.getRequests());
+        assertEquals(0, factory.getQueryCache().size());
+    }
+
+    @Test
+    public void testConcurrentQueriesAreCoalesced() throws Exception {
+        final QueryCache cache = new QueryCache(10);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        final Callable<String> query = new Callable<String>() {
+
+            @Override
+            public String call() throws Exception {
+                calls.incrementAndGet();
+                started.countDown();
+                release.await();
+                return "result";
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(new Callable<String>() {
+
+                @Override
+                public String call() throws Exception {
+                    return cache.get(new QueryCache.Key("q"), 60000, query);
+                }
+            });
+            started.await(5, TimeUnit.SECONDS);
+            Future<String> second = executor.submit(new Callable<String>() {
+
+                @Override
+                public String call() throws Exception {
+                    return cache.get(new QueryCache.Key("q"), 60000, query);
+                }
+            });
+            while (cache.getCoalesced() == 0) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            assertEquals("result", first.get(5, TimeUnit.SECONDS));
+            assertEquals("result", second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, calls.get());
+            assertEquals(1, cache.getMisses());
+            assertEquals(1, cache.getCoalesced());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailuresAreNotCached() throws Exception {
+        QueryCache cache = new QueryCache(10);
+        try {
+            cache.get(new QueryCache.Key("q"), 60000, new Callable<String>() {
+
+                @Override
+                public String call() throws Exception {
+                    throw new TerrastoreClientException("Failed!");
+                }
+            });
+            fail("Should have failed!");
+        } catch (TerrastoreClientException ex) {
+            assertEquals("Failed!", ex.getMessage());
+        }
+
+        assertEquals(0, cache.size());
+        assertEquals("result", cache.get(new QueryCache.Key("q"), 60000, new Callable<String>() {
+
+            @Override
+            public String call() throws Exception {
+                return "result";
+            }
+        }));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedResultsAreEvicted() throws Exception {
+        QueryCache cache = new QueryCache(2);
+        Callable<String> query = new Callable<String>() {
+
+            @Override
+            public String call() throws Exception {
+                return "result";
+            }
+        };
+
+        cache.get(new QueryCache.Key("q1"), 60000, query);
+        cache.get(new QueryCache.Key("q2"), 60000, query);
+        cache.get(new QueryCache.Key("q1"), 60000, query);
+        cache.get(new QueryCache.Key("q3"), 60000, query);
+        cache.get(new QueryCache.Key("q1"), 60000, query);
+        cache.get(new QueryCache.Key("q2"), 60000, query);
+
+        assertEquals(2, cache.getHits());
+        assertEquals(4, cache.getMisses());
+        assertEquals(2, cache.size());
+    }
+}
@@ -0,0 +1,191 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection.resteasy;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import terrastore.client.TerrastoreClient;
+import terrastore.client.Values;
+import terrastore.client.connection.NoSuchKeyException;
+import terrastore.client.connection.UnsatisfiedConditionException;
+import terrastore.client.mapping.LazyDocument;
+import terrastore.client.test.pojostest.Customer;
+import terrastore.client.test.stub.StubTerrastoreServer;
+import static org.junit.Assert.*;
+
+/**
+ * @author Sergio Bossa
+ */
+public class ReadCoalescerTest {
+
+    private static final int READERS = 8;
+    //
+    private StubTerrastoreServer server;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubTerrastoreServer().start();
+        executor = Executors.newFixedThreadPool(READERS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        server.stop();
+    }
+
+    @Test
+    public void testConcurrentGetsOfTheSameKeyAreCoalesced() throws Exception {
+        HTTPConnectionFactory factory = new HTTPConnectionFactory().coalesceReads();
+        final TerrastoreClient client = new TerrastoreClient(server.getUrl(), factory);
+        client.bucket("customers").key("c1").put(new Customer("Sergio"));
+        server.setResponseDelay(500);
+        long requests = server.getRequests();
+
+        List<Customer> customers = readConcurrently(new Callable<Customer>() {
+
+            @Override
+            public Customer call() throws Exception {
+                return client.bucket("customers").key("c1").get(Customer.class);
+            }
+        });
+
+        ReadCoalescer coalescer = factory.getReadCoalescer();
+        assertEquals(READERS, coalescer.getReads() + coalescer.getCoalesced());
+        assertTrue(coalescer.getCoalesced() > 0);
+        assertEquals(requests + coalescer.getReads(), server.getRequests());
+        for (int i = 0; i < READERS; i++) {
+            assertEquals(new Customer("Sergio"), customers.get(i));
+            for (int j = 0; j < i; j++) {
+                assertNotSame(customers.get(j), customers.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testReadsOfDifferentClustersAreNotCoalesced() throws Exception {
+        StubTerrastoreServer otherServer = new StubTerrastoreServer().start();
+        try {
+            HTTPConnectionFactory factory = new HTTPConnectionFactory().coalesceReads();
+            final TerrastoreClient[] clients = {new TerrastoreClient(server.getUrl(), factory), new TerrastoreClient(otherServer.getUrl(), factory)};
+            clients[0].bucket("customers").key("c1").put(new Customer("Sergio"));
+            clients[1].bucket("customers").key("c1").put(new Customer("Mats"));
+            server.setResponseDelay(500);
+            otherServer.setResponseDelay(500);
+            final AtomicInteger readers = new AtomicInteger();
+
+            List<String> names = readConcurrently(new Callable<String>() {
+
+                @Override
+                public String call() throws Exception {
+                    int reader = readers.getAndIncrement() % 2;
+                    return reader + ":" + clients[reader].bucket("customers").key("c1").get(Customer.class).getName();
+                }
+            });
+
+            for (String name : names) {
+                assertTrue(name, name.equals("0:Sergio") || name.equals("1:Mats"));
+            }
+            assertTrue(factory.getReadCoalescer().getReads() >= 2);
+        } finally {
+            otherServer.stop();
+        }
+    }
+
+    @Test
+    public void testCoalescedReadsShareFailures() throws Exception {
+        HTTPConnectionFactory factory = new HTTPConnectionFactory().coalesceReads();
+        final TerrastoreClient client = new TerrastoreClient(server.getUrl(), factory);
+        server.setResponseDelay(500);
+
+        List<Exception> failures = readConcurrently(new Callable<Exception>() {
+
+            @Override
+            public Exception call() throws Exception {
+                try {
+                    client.bucket("customers").key("missing").get(Customer.class);
+                    return null;
+                } catch (NoSuchKeyException ex) {
+                    return ex;
+                }
+            }
+        });
+
+        for (Exception failure : failures) {
+            assertNotNull(failure);
+        }
+        assertTrue(factory.getReadCoalescer().getCoalesced() > 0);
+    }
+
+    @Test
+    public void testAllReadsWorkWithCoalescing() throws Exception {
+        HTTPConnectionFactory factory = new HTTPConnectionFactory().coalesceReads();
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), factory);
+        Map<String, Customer> customers = new LinkedHashMap<String, Customer>();
+        customers.put("c1", new Customer("Sergio"));
+        customers.put("c2", new Customer("Mats"));
+        client.bucket("customers").bulk().put(new Values<Customer>(customers));
+
+        assertEquals(new Customer("Sergio"), client.bucket("customers").key("c1").get(Customer.class));
+        assertEquals("Sergio", client.bucket("customers").key("c1").get(LazyDocument.class).getString("name"));
+        assertEquals(new Customer("Mats"), client.bucket("customers").key("c2").conditional("jxpath:/name[. = 'Mats']").get(Customer.class));
+        assertEquals(customers, client.bucket("customers").range().from("c").get(Customer.class));
+        assertEquals(customers, client.bucket("customers").bulk().get(new HashSet<String>(customers.keySet()), Customer.class));
+        assertEquals(1, client.bucket("customers").range().from("c").project("name").limit(1).get(Map.class).size());
+        try {
+            client.bucket("customers").key("c2").conditional("jxpath:/name[. = 'Sergio']").get(Customer.class);
+            fail("Should have failed!");
+        } catch (UnsatisfiedConditionException ex) {
+        }
+        assertEquals(7, factory.getReadCoalescer().getReads());
+        assertEquals(0, factory.getReadCoalescer().getCoalesced());
+    }
+
+    private <T> List<T> readConcurrently(final Callable<T> read) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<T>> futures = new ArrayList<Future<T>>();
+        for (int i = 0; i < READERS; i++) {
+            futures.add(executor.submit(new Callable<T>() {
+
+                @Override
+                public T call() throws Exception {
+                    start.await();
+                    return read.call();
+                }
+            }));
+        }
+        start.countDown();
+        List<T> results = new ArrayList<T>();
+        for (Future<T> future : futures) {
+            results.add(future.get(10, TimeUnit.SECONDS));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.connection.resteasy;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import terrastore.client.TerrastoreClient;
+import terrastore.client.connection.ConnectionInterceptor;
+import terrastore.client.connection.Invocation;
+import terrastore.client.test.pojostest.Customer;
+import terrastore.client.test.stub.StubTerrastoreServer;
+import static org.junit.Assert.*;
+
+/**
+ * @author Sergio Bossa
+ */
+public class SlowRequestLogTest {
+
+    private StubTerrastoreServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubTerrastoreServer().start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void testKeepsMostRecentRequestsInOrder() {
+        SlowRequestLog log = new SlowRequestLog(0, TimeUnit.MILLISECONDS, 3);
+        for (int i = 0; i < 10; i++) {
+            log.record(request("/customers/c" + i));
+        }
+
+        List<SlowRequest> requests = log.dump();
+
+        assertEquals(4, log.getCapacity());
+        assertEquals(10, log.getRecorded());
+        assertEquals(4, requests.size());
+        assertEquals("/customers/c6", requests.get(0).getUri());
+        assertEquals("/customers/c9", requests.get(3).getUri());
+        log.clear();
+        assertTrue(log.dump().isEmpty());
+    }
+
+    @Test
+    public void testConcurrentRecording() throws Exception {
+        final SlowRequestLog log = new SlowRequestLog(0, TimeUnit.MILLISECONDS, 64);
+        final CountDownLatch done = new CountDownLatch(4);
+        for (int t = 0; t < 4; t++) {
+            new Thread() {
+
+                @Override
+                public void run() {
+                    for (int i = 0; i < 1000; i++) {
+                        log.record(request("/customers/c" + i));
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        done.await();
+
+        assertEquals(4000, log.getRecorded());
+        assertEquals(64, log.dump().size());
+    }
+
+    @Test
+    public void testRecordsSlowRequestsWithTimingBreakdown() throws Exception {
+        HTTPConnectionFactory factory = new HTTPConnectionFactory().slowRequests(10, TimeUnit.MILLISECONDS, 16);
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), factory);
+        // The first request may be slow anyway, because of warming up:
+        client.bucket("customers").key("c0").put(new Customer("Fast"));
+        factory.getSlowRequestLog().clear();
+        server.setResponseDelay(20);
+
+        client.bucket("customers").key("c1").put(new Customer("Sergio"));
+        client.bucket("customers").key("c1").get(Customer.class);
+
+        List<SlowRequest> requests = factory.getSlowRequestLog().dump();
+        assertEquals(2, requests.size());
+        SlowRequest put = requests.get(0);
+        assertEquals("putValue", put.getOperation());
+        assertEquals("PUT", put.getMethod());
+        assertTrue(put.getUri().endsWith("/customers/c1"));
+        assertEquals(server.getUrl(), "http://" + put.getHost());
+        assertEquals(204, put.getStatus());
+        assertTrue(put.getFirstByte(TimeUnit.MILLISECONDS) >= 20);
+        assertTrue(put.getRequestBytes() > 0);
+        assertTrue(put.getRequestSample().contains("Sergio"));
+        SlowRequest get = requests.get(1);
+        assertEquals("getValue", get.getOperation());
+        assertEquals(200, get.getStatus());
+        assertTrue(get.getResponseBytes() > 0);
+        assertNull(get.getRequestSample());
+        assertTrue(get.getTotal(TimeUnit.NANOSECONDS) >= get.getFirstByte(TimeUnit.NANOSECONDS) + get.getTransfer(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void testTakesOperationsFromInterceptedInvocations() throws Exception {
+        HTTPConnectionFactory factory = new HTTPConnectionFactory().slowRequests(0, TimeUnit.MILLISECONDS, 16).interceptors(new ConnectionInterceptor() {
+
+            @Override
+            public Object intercept(Invocation invocation) {
+                return invocation.proceed();
+            }
+        });
+        TerrastoreClient client = new TerrastoreClient(server.getUrl(), factory);
+
+        client.bucket("customers").key("c1").put(new Customer("Sergio"));
+
+        List<SlowRequest> requests = factory.getSlowRequestLog().dump();
+        assertEquals(1, requests.size());
+        assertEquals("putValue", requests.get(0).getOperation());
+    }
+
+    @Test
+    public void testOperationsOfRequests() {
+        assertEquals("getBuckets", HTTPClientExecutor.operationOf("GET", "http://localhost:8080/"));
+        assertEquals("getClusterStats", HTTPClientExecutor.operationOf("GET", "http://localhost:8080/_stats/cluster"));
+        assertEquals("clearBucket", HTTPClientExecutor.operationOf("DELETE", "http://localhost:8080/customers"));
+        assertEquals("getAllValues", HTTPClientExecutor.operationOf("GET", "http://localhost:8080/customers?limit=0"));
+        assertEquals("getValue", HTTPClientExecutor.operationOf("GET", "http://localhost:8080/customers/range"));
+        assertEquals("conditionalPutValue", HTTPClientExecutor.operationOf("PUT", "http://localhost:8080/customers/c1?predicate=jxpath:/name"));
+        assertEquals("removeValue", HTTPClientExecutor.operationOf("DELETE", "http://localhost:8080/customers/c1"));
+        assertEquals("queryByRange", HTTPClientExecutor.operationOf("GET", "http://localhost:8080/customers/range?startKey=c0&limit=0"));
+        assertEquals("removeByRange", HTTPClientExecutor.operationOf("DELETE", "http://localhost:8080/customers/range?startKey=c0&limit=0"));
+        assertEquals("queryByPredicate", HTTPClientExecutor.operationOf("GET", "http://localhost:8080/customers/predicate?predicate=jxpath:/name"));
+        assertEquals("bulkPut", HTTPClientExecutor.operationOf("POST", "http://localhost:8080/customers/bulk/put"));
+        assertEquals("executeMerge", HTTPClientExecutor.operationOf("POST", "http://localhost:8080/customers/c1/merge"));
+        assertNull(HTTPClientExecutor.operationOf("PUT", "http://localhost:8080/customers"));
+    }
+
+    @Test
+    public void testRecordsFailedRequests() throws Exception {
+        HTTPConnectionFactory factory = new HTTPConnectionFactory().slowRequests(0, TimeUnit.MILLISECONDS, 16);
+        TerrastoreClient client = new TerrastoreClient("http://localhost:1", factory);
+
+        try {
+            client.bucket("customers").key("c1").get(Customer.class);
+            fail("Should have failed!");
+        } catch (Exception ex) {
+        }
+
+        List<SlowRequest> requests = factory.getSlowRequestLog().dump();
+        assertEquals(1, requests.size());
+        assertEquals("getValue", requests.get(0).getOperation());
+        assertEquals(0, requests.get(0).getStatus());
+        assertNotNull(requests.get(0).getFailure());
+    }
+
+    private SlowRequest request(String uri) {
+        return new SlowRequest(System.currentTimeMillis(), null, "GET", uri, "localhost:8080", 200, null, 0, 0, 0, 0, 0, 0, 0, 0, null);
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.events;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+/**
+ * @author Sergio Bossa
+ */
+public class JfrEventListenerTest {
+
+    @Test
+    public void testEventsAreCommittedOnlyWhileRecording() throws Exception {
+        assumeTrue(JfrEventListener.isAvailable());
+        JfrEventListener listener = new JfrEventListener();
+        assertFalse(listener.isEnabled());
+
+        // The jdk.jfr API is accessed reflectively, as in the listener, to compile on older JDKs:
+        Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+        Object recording = recordingClass.newInstance();
+        recordingClass.getMethod("enable", String.class).invoke(recording, JfrEventListener.OPERATION_EVENT);
+        recordingClass.getMethod("start").invoke(recording);
+        File dump = File.createTempFile("terrastore", ".jfr");
+        try {
+            assertTrue(listener.isEnabled());
+            listener.operationExecuted(new OperationEvent("getValue", "customers", "localhost:8080", 200, null, 1000, 10, 100, 1, 2, 3));
+            listener.hostSuspected("localhost:8080");
+            recordingClass.getMethod("stop").invoke(recording);
+            recordingClass.getMethod("dump", Class.forName("java.nio.file.Path")).invoke(recording, File.class.getMethod("toPath").invoke(dump));
+
+            Class<?> recordedEventClass = Class.forName("jdk.jfr.consumer.RecordedEvent");
+            Method getString = recordedEventClass.getMethod("getString", String.class);
+            Method getLong = recordedEventClass.getMethod("getLong", String.class);
+            List<?> events = (List<?>) Class.forName("jdk.jfr.consumer.RecordingFile").getMethod("readAllEvents", Class.forName("java.nio.file.Path")).invoke(null, File.class.getMethod("toPath").invoke(dump));
+            int operations = 0;
+            int suspicions = 0;
+            for (Object event : events) {
+                Object type = recordedEventClass.getMethod("getEventType").invoke(event);
+                String name = (String) type.getClass().getMethod("getName").invoke(type);
+                if (JfrEventListener.SUSPICION_EVENT.equals(name)) {
+                    suspicions++;
+                    assertEquals("localhost:8080", getString.invoke(event, "host"));
+                } else if (JfrEventListener.OPERATION_EVENT.equals(name)) {
+                    operations++;
+                    assertEquals("getValue", getString.invoke(event, "operation"));
+                    assertEquals("customers", getString.invoke(event, "bucket"));
+                    assertEquals(100L, getLong.invoke(event, "responseBytes"));
+                }
+            }
+            assertEquals(1, operations);
+            assertEquals(1, suspicions);
+        } finally {
+            recordingClass.getMethod("close").invoke(recording);
+            dump.delete();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.management;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import terrastore.client.TerrastoreClient;
+import terrastore.client.connection.RoundRobinHostManager;
+import terrastore.client.connection.SingleHostManager;
+import terrastore.client.connection.resteasy.HTTPConnectionFactory;
+import terrastore.client.test.pojostest.Customer;
+import terrastore.client.test.stub.StubTerrastoreServer;
+import static org.junit.Assert.*;
+
+/**
+ * @author Sergio Bossa
+ */
+public class ClientMBeansTest {
+
+    private StubTerrastoreServer server;
+    private MBeanServer mbeanServer;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubTerrastoreServer().start();
+        mbeanServer = ManagementFactory.getPlatformMBeanServer();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ClientMBeans.unregister("test");
+        server.stop();
+    }
+
+    @Test
+    public void testOperationsAndPool() throws Exception {
+        HTTPConnectionFactory factory = new HTTPConnectionFactory().metrics();
+        SingleHostManager hostManager = new SingleHostManager(server.getUrl());
+        TerrastoreClient client = new TerrastoreClient(hostManager, factory);
+        factory.registerMBeans("test", hostManager);
+        client.bucket("customers").key("c1").put(new Customer("Sergio"));
+        client.bucket("customers").key("c1").get(Customer.class);
+        client.bucket("customers").key("c1").get(Customer.class);
+
+        OperationsMXBean operations = JMX.newMXBeanProxy(mbeanServer, ClientMBeans.objectName("test", ClientMBeans.OPERATIONS), OperationsMXBean.class);
+        ConnectionPoolMXBean pool = JMX.newMXBeanProxy(mbeanServer, ClientMBeans.objectName("test", ClientMBeans.CONNECTION_POOL), ConnectionPoolMXBean.class);
+
+        assertEquals(Long.valueOf(2), operations.getOperationCounts().get("getValue"));
+        assertTrue(operations.getP99Latencies().get("putValue") > 0);
+        assertEquals(0, operations.getInFlightRequests());
+        assertEquals(0, pool.getLeasedConnections());
+        assertEquals(1, pool.getIdleConnections());
+        assertEquals(0, pool.getPendingRequests());
+        pool.resize(4, 2);
+        assertEquals(4, pool.getMaxTotalConnections());
+        assertEquals(2, pool.getMaxConnectionsPerHost());
+        assertTrue(mbeanServer.isRegistered(ClientMBeans.objectName("test", ClientMBeans.HOSTS)));
+    }
+
+    @Test
+    public void testUnsuspectHost() throws Exception {
+        String other = "http://localhost:1";
+        RoundRobinHostManager hostManager = new RoundRobinHostManager(Arrays.asList(server.getUrl(), other), 60000);
+        HTTPConnectionFactory factory = new HTTPConnectionFactory().metrics();
+        new TerrastoreClient(hostManager, factory);
+        factory.registerMBeans("test", hostManager);
+        HostsMXBean hosts = JMX.newMXBeanProxy(mbeanServer, ClientMBeans.objectName("test", ClientMBeans.HOSTS), HostsMXBean.class);
+
+        hostManager.suspect(other);
+        assertEquals(Arrays.asList(server.getUrl(), other), hosts.getHosts());
+        assertEquals(Collections.singleton(other), hosts.getSuspectedHosts());
+        hosts.unsuspect(other);
+        assertTrue(hosts.getSuspectedHosts().isEmpty());
+    }
+
+    @Test
+    public void testMBeansAreOnlyRegisteredExplicitly() throws Exception {
+        HTTPConnectionFactory factory = new HTTPConnectionFactory().metrics();
+        new TerrastoreClient(server.getUrl(), factory);
+
+        assertTrue(mbeanServer.queryNames(ClientMBeans.objectName("test", "*"), null).isEmpty());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMBeansRequireMetrics() throws Exception {
+        new HTTPConnectionFactory().registerMBeans("test", new SingleHostManager(server.getUrl()));
+    }
+
+    @Test
+    public void testUnregister() throws Exception {
+        HTTPConnectionFactory factory = new HTTPConnectionFactory().metrics();
+        factory.registerMBeans("test", new SingleHostManager(server.getUrl()));
+        assertEquals(3, mbeanServer.queryNames(ClientMBeans.objectName("test", "*"), null).size());
+
+        ClientMBeans.unregister("test");
+
+        assertTrue(mbeanServer.queryNames(ClientMBeans.objectName("test", "*"), null).isEmpty());
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.mapping;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.ws.rs.core.MediaType;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.map.DeserializationContext;
+import org.codehaus.jackson.map.JsonDeserializer;
+import org.codehaus.jackson.map.JsonSerializer;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.ObjectReader;
+import org.codehaus.jackson.map.SerializerProvider;
+import org.codehaus.jackson.smile.SmileFactory;
+import org.junit.Test;
+import terrastore.client.Values;
+import terrastore.client.codec.JsonCodec;
+import terrastore.client.codec.SmileCodec;
+import terrastore.client.test.pojostest.Address;
+import terrastore.client.test.pojostest.Customer;
+import static org.junit.Assert.*;
+
+/**
+ * @author Sergio Bossa
+ */
+public class JsonMappingEngineTest {
+
+    @Test
+    public void testReadersAndWritersAreCachedPerClass() {
+        JsonMappingEngine engine = new JsonMappingEngine(Collections.<JsonObjectDescriptor>emptyList());
+
+        assertSame(engine.getReader(Customer.class), engine.getReader(Customer.class));
+        assertSame(engine.getWriter(Customer.class), engine.getWriter(Customer.class));
+        assertNotSame(engine.getReader(Customer.class), engine.getReader(Address.class));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedClassesAreEvicted() {
+        JsonMappingEngine engine = new JsonMappingEngine(Collections.<JsonObjectDescriptor>emptyList(), new JsonCodec(), 1);
+        ObjectReader reader = engine.getReader(Customer.class);
+
+        assertSame(reader, engine.getReader(Customer.class));
+        engine.getReader(Address.class);
+        assertNotSame(reader, engine.getReader(Customer.class));
+    }
+
+    @Test
+    public void testEvictedClassesDoNotPinTheirClassLoaders() throws Exception {
+        JsonMappingEngine engine = new JsonMappingEngine(Collections.<JsonObjectDescriptor>emptyList(), new JsonCodec(), 1);
+        URL classes = Customer.class.getProtectionDomain().getCodeSource().getLocation();
+        ClassLoader classLoader = new URLClassLoader(new URL[]{classes}, Object.class.getClassLoader());
+        Class<?> type = classLoader.loadClass(Customer.class.getName());
+        WeakReference<ClassLoader> reference = new WeakReference<ClassLoader>(classLoader);
+
+        assertNotSame(Customer.class, type);
+        engine.getReader(type);
+        engine.getWriter(type);
+        engine.getReader(Customer.class);
+        engine.getWriter(Customer.class);
+
+        classLoader = null;
+        type = null;
+        for (int i = 0; i < 50 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(reference.get());
+        assertNotNull(engine.getReader(Customer.class));
+    }
+
+    @Test
+    public void testPrewarmCachesReadersAndWriters() {
+        JsonMappingEngine engine = new JsonMappingEngine(Collections.<JsonObjectDescriptor>emptyList());
+
+        engine.prewarm(Arrays.<Class<?>>asList(Customer.class));
+
+        assertSame(engine.getReader(Customer.class), engine.getReader(Customer.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPrewarmFailsWithUnmappableTypes() {
+        JsonMappingEngine engine = new JsonMappingEngine(Collections.<JsonObjectDescriptor>emptyList());
+
+        engine.prewarm(Arrays.<Class<?>>asList(Runnable.class));
+    }
+
+    @Test
+    public void testDescriptorsAreSharedByAllReadersAndWriters() throws Exception {
+        JsonMappingEngine engine = new JsonMappingEngine(Arrays.asList(new AddressDescriptor()));
+        Map<String, Address> addresses = new LinkedHashMap<String, Address>();
+        addresses.put("home", new Address("Via Roma"));
+
+        ByteArrayOutputStream object = new ByteArrayOutputStream();
+        new JsonObjectWriter(engine).writeTo(new Address("Via Roma"), Address.class, Address.class, null, null, null, object);
+        ByteArrayOutputStream values = new ByteArrayOutputStream();
+        new JsonValuesWriter(engine).writeTo(new Values<Address>(addresses), Values.class, Values.class, null, null, null, values);
+
+        assertEquals("{\"where\":\"Via Roma\"}", object.toString("UTF-8"));
+        assertEquals("{\"home\":{\"where\":\"Via Roma\"}}", values.toString("UTF-8"));
+        assertEquals(new Address("Via Roma"), new JsonObjectReader(engine).readFrom(Address.class, Address.class, null, null, null, new ByteArrayInputStream(object.toByteArray())));
+        assertEquals(addresses, new JsonValuesReader(engine).readFrom(Values.class, new ValuesType(Address.class), null, null, null, new ByteArrayInputStream(values.toByteArray())));
+    }
+
+    @Test
+    public void testEntityStreamsAreNotClosed() throws Exception {
+        JsonMappingEngine engine = new JsonMappingEngine(Collections.<JsonObjectDescriptor>emptyList());
+        CloseAwareOutputStream output = new CloseAwareOutputStream();
+
+        engine.write(output, new Address("Via Roma"));
+
+        assertFalse(output.closed);
+        assertTrue(output.size() > 0);
+    }
+
+    @Test
+    public void testDescriptorsWorkWithSmileCodec() throws Exception {
+        JsonMappingEngine engine = new JsonMappingEngine(Arrays.asList(new AddressDescriptor()), new SmileCodec());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        engine.write(output, new Address("Via Roma"), SmileCodec.SMILE_MEDIA_TYPE);
+
+        assertEquals(new Address("Via Roma"), engine.read(new ByteArrayInputStream(output.toByteArray()), Address.class, SmileCodec.SMILE_MEDIA_TYPE));
+        assertEquals("Via Roma", new ObjectMapper(new SmileFactory()).readTree(new ByteArrayInputStream(output.toByteArray())).get("where").getTextValue());
+    }
+
+    @Test
+    public void testSmileCodecFallsBackToJsonForOtherMediaTypes() throws Exception {
+        JsonMappingEngine engine = new JsonMappingEngine(Collections.<JsonObjectDescriptor>emptyList(), new SmileCodec());
+        byte[] json = "{\"street\":\"Via Roma\"}".getBytes("UTF-8");
+
+        assertEquals(new Address("Via Roma"), engine.read(new ByteArrayInputStream(json), Address.class, MediaType.APPLICATION_JSON_TYPE));
+        assertEquals(new Address("Via Roma"), engine.read(new ByteArrayInputStream(json), Address.class, null));
+    }
+
+    private static class AddressDescriptor implements JsonObjectDescriptor<Address> {
+
+        public Class<Address> getObjectClass() {
+            return Address.class;
+        }
+
+        public JsonSerializer<Address> getJsonSerializer() {
+            return new JsonSerializer<Address>() {
+
+                @Override
+                public void serialize(Address value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+                    generator.writeStartObject();
+                    generator.writeStringField("where", value.getStreet());
+                    generator.writeEndObject();
+                }
+            };
+        }
+
+        public JsonDeserializer<Address> getJsonDeserializer() {
+            return new JsonDeserializer<Address>() {
+
+                @Override
+                public Address deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+                    parser.nextToken();
+                    parser.nextToken();
+                    Address address = new Address(parser.getText());
+                    parser.nextToken();
+                    return address;
+                }
+            };
+        }
+    }
+
+    private static class CloseAwareOutputStream extends ByteArrayOutputStream {
+
+        private boolean closed;
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.mapping;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.Map;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
+import org.junit.Test;
+import terrastore.client.Values;
+import terrastore.client.test.pojostest.Address;
+import terrastore.client.test.pojostest.Customer;
+import static org.junit.Assert.*;
+
+/**
+ * @author Sergio Bossa
+ */
+public class JsonProjectionTest {
+
+    private static final String CUSTOMER = "{\"name\":\"Sergio\",\"address\":{\"street\":\"Via Roma\",\"city\":\"Rome\"},"
+            + "\"phoneNumbers\":[{\"number\":\"555-1234\",\"type\":\"home\"},{\"number\":\"555-4321\",\"type\":\"work\"}],"
+            + "\"notes\":[\"first\",{\"text\":\"second\"}]}";
+
+    @Test
+    public void testProjectTopLevelFields() throws Exception {
+        assertEquals("{\"name\":\"Sergio\",\"notes\":[\"first\",{\"text\":\"second\"}]}", project(CUSTOMER, "name", "notes"));
+    }
+
+    @Test
+    public void testProjectNestedFields() throws Exception {
+        assertEquals("{\"address\":{\"city\":\"Rome\"}}", project(CUSTOMER, "address.city"));
+    }
+
+    @Test
+    public void testProjectFieldsOfArrayElements() throws Exception {
+        assertEquals("{\"phoneNumbers\":[{\"type\":\"home\"},{\"type\":\"work\"}]}", project(CUSTOMER, "phoneNumbers.type"));
+    }
+
+    @Test
+    public void testParentPathSelectsWholeSubtree() throws Exception {
+        assertEquals("{\"address\":{\"street\":\"Via Roma\",\"city\":\"Rome\"}}", project(CUSTOMER, "address.city", "address"));
+    }
+
+    @Test
+    public void testMissingFieldsAreLeftOut() throws Exception {
+        assertEquals("{\"name\":\"Sergio\",\"address\":{}}", project(CUSTOMER, "name", "missing", "name.first", "address.zip"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyPathsAreRejected() {
+        new JsonProjection("name", "");
+    }
+
+    @Test
+    public void testProjectedValuesAreReadIntoMapsOrClasses() throws Exception {
+        JsonValuesReader reader = new JsonValuesReader(Collections.<JsonObjectDescriptor>emptyList());
+        byte[] json = ("{\"c1\":" + CUSTOMER + ",\"c2\":{\"name\":\"Mats\"}}").getBytes("UTF-8");
+
+        Values<Customer> customers = reader.readFrom(Values.class, new ValuesType(Customer.class).projection(new JsonProjection("name", "address.street")), null, null, null, new ByteArrayInputStream(json));
+        Values<Map> maps = reader.readFrom(Values.class, new ValuesType(Map.class).compact(true).projection(new JsonProjection("address.street")), null, null, null, new ByteArrayInputStream(json));
+
+        Customer expected = new Customer("Sergio");
+        expected.setAddress(new Address("Via Roma"));
+        assertEquals(expected, customers.get("c1"));
+        assertEquals(new Customer("Mats"), customers.get("c2"));
+        assertEquals(Collections.singletonMap("address", Collections.singletonMap("street", "Via Roma")), maps.get("c1"));
+        assertTrue(maps.get("c2").isEmpty());
+    }
+
+    private String project(String json, String... paths) throws Exception {
+        JsonFactory factory = new JsonFactory();
+        JsonParser parser = factory.createJsonParser(json);
+        StringWriter output = new StringWriter();
+        JsonGenerator generator = factory.createJsonGenerator(output);
+        parser.nextToken();
+        new JsonProjection(paths).project(parser, generator);
+        generator.close();
+        assertNull(parser.nextToken());
+        return output.toString();
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.mapping;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import terrastore.client.CompactValues;
+import terrastore.client.Values;
+import terrastore.client.codec.SmileCodec;
+import terrastore.client.test.pojostest.Address;
+import terrastore.client.test.pojostest.Customer;
+import terrastore.client.test.pojostest.PhoneNumber;
+import static org.junit.Assert.*;
+
+/**
+ * @author Sergio Bossa
+ */
+public class JsonValuesReaderTest {
+
+    private CountingExecutor executor;
+
+    @Before
+    public void setUp() {
+        executor = new CountingExecutor(3);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testParallelReadingPreservesOrder() throws Exception {
+        JsonMappingEngine engine = new JsonMappingEngine(Collections.<JsonObjectDescriptor>emptyList());
+        Map<String, Customer> customers = makeCustomers(1000);
+        byte[] json = write(engine, customers);
+
+        Values<Customer> values = new JsonValuesReader(engine, executor, 0).readFrom(Values.class, new ValuesType(Customer.class), null, null, null, new ByteArrayInputStream(json));
+        Values<Customer> compact = new JsonValuesReader(engine, executor, 0).readFrom(Values.class, new ValuesType(Customer.class).compact(true), null, null, null, new ByteArrayInputStream(json));
+
+        assertTrue(executor.submitted.get() > 0);
+        assertEquals(new ArrayList<String>(customers.keySet()), new ArrayList<String>(values.keySet()));
+        assertEquals(customers, values);
+        assertTrue(compact instanceof CompactValues);
+        assertEquals(new ArrayList<String>(customers.keySet()), new ArrayList<String>(compact.keySet()));
+        assertEquals(customers, new LinkedHashMap<String, Customer>(compact));
+    }
+
+    @Test
+    public void testParallelReadingWithProjection() throws Exception {
+        JsonMappingEngine engine = new JsonMappingEngine(Collections.<JsonObjectDescriptor>emptyList());
+        byte[] json = write(engine, makeCustomers(100));
+
+        Values<Map> values = new JsonValuesReader(engine, executor, 0).readFrom(Values.class, new ValuesType(Map.class).projection(new JsonProjection("address.street")), null, null, null, new ByteArrayInputStream(json));
+
+        assertEquals(100, values.size());
+        assertEquals(Collections.singletonMap("address", Collections.singletonMap("street", "Street 42")), values.get("customer-42"));
+    }
+
+    @Test
+    public void testSmallResponsesAreReadByCallingThread() throws Exception {
+        JsonMappingEngine engine = new JsonMappingEngine(Collections.<JsonObjectDescriptor>emptyList());
+        Map<String, Customer> customers = makeCustomers(10);
+        byte[] json = write(engine, customers);
+
+        Values<Customer> values = new JsonValuesReader(engine, executor, json.length + 1).readFrom(Values.class, new ValuesType(Customer.class), null, null, null, new ByteArrayInputStream(json));
+
+        assertEquals(0, executor.submitted.get());
+        assertEquals(customers, values);
+    }
+
+    @Test
+    public void testNonJsonResponsesAreReadByCallingThread() throws Exception {
+        JsonMappingEngine engine = new JsonMappingEngine(Collections.<JsonObjectDescriptor>emptyList(), new SmileCodec());
+        Map<String, Customer> customers = makeCustomers(100);
+        ByteArrayOutputStream smile = new ByteArrayOutputStream();
+        new JsonValuesWriter(engine).writeTo(new Values<Customer>(customers), Values.class, Values.class, null, SmileCodec.SMILE_MEDIA_TYPE, null, smile);
+
+        Values<Customer> values = new JsonValuesReader(engine, executor, 0).readFrom(Values.class, new ValuesType(Customer.class), null, SmileCodec.SMILE_MEDIA_TYPE, null, new ByteArrayInputStream(smile.toByteArray()));
+
+        assertEquals(0, executor.submitted.get());
+        assertEquals(customers, values);
+    }
+
+    @Test
+    public void testReadingKeysOnly() throws Exception {
+        JsonMappingEngine engine = new JsonMappingEngine(Collections.<JsonObjectDescriptor>emptyList());
+        Map<String, Customer> customers = makeCustomers(100);
+        byte[] json = write(engine, customers);
+
+        Values<Void> keys = new JsonValuesReader(engine, executor, 0).readFrom(Values.class, new ValuesType(Void.class), null, null, null, new ByteArrayInputStream(json));
+
+        assertEquals(0, executor.submitted.get());
+        assertEquals(new ArrayList<String>(customers.keySet()), new ArrayList<String>(keys.keySet()));
+        assertNull(keys.get("customer-42"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testParallelReadingFailure() throws Exception {
+        JsonMappingEngine engine = new JsonMappingEngine(Collections.<JsonObjectDescriptor>emptyList());
+        Map<String, Object> values = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < 100; i++) {
+            values.put("customer-" + i, i == 99 ? Collections.singletonMap("name", Collections.singletonMap("first", "Sergio")) : new Customer("Customer " + i));
+        }
+        byte[] json = write(engine, values);
+
+        new JsonValuesReader(engine, executor, 0).readFrom(Values.class, new ValuesType(Customer.class), null, null, null, new ByteArrayInputStream(json));
+    }
+
+    private byte[] write(JsonMappingEngine engine, Map<String, ?> values) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new JsonValuesWriter(engine).writeTo(new Values<Object>((Map<String, Object>) values), Values.class, Values.class, null, null, null, output);
+        return output.toByteArray();
+    }
+
+    private Map<String, Customer> makeCustomers(int count) {
+        Map<String, Customer> customers = new LinkedHashMap<String, Customer>();
+        for (int i = count - 1; i >= 0; i--) {
+            Customer customer = new Customer("Customer " + i);
+            customer.setAddress(new Address("Street " + i));
+            customer.addPhoneNumber(new PhoneNumber("555-" + i, "home"));
+            customers.put("customer-" + i, customer);
+        }
+        return customers;
+    }
+
+    private static class CountingExecutor extends ThreadPoolExecutor {
+
+        private final AtomicInteger submitted = new AtomicInteger();
+
+        public CountingExecutor(int threads) {
+            super(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+        }
+
+        @Override
+        public <T> Future<T> submit(Callable<T> task) {
+            submitted.incrementAndGet();
+            return super.submit(task);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.mapping;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import org.junit.Test;
+import terrastore.client.CompactValues;
+import terrastore.client.TerrastoreClientException;
+import terrastore.client.Values;
+import terrastore.client.codec.SmileCodec;
+import terrastore.client.test.pojostest.Address;
+import terrastore.client.test.pojostest.Customer;
+import static org.junit.Assert.*;
+
+/**
+ * @author Sergio Bossa
+ */
+public class LazyDocumentTest {
+
+    private static final String CUSTOMER = "{ \"name\" : \"Sergio\", \"age\":33, \"height\":1.8, \"active\":true, \"nickname\":null,"
+            + "\"address\":{\"street\":\"Via Roma\",\"city\":{\"name\":\"Rome \\\"Caput Mundi\\\"\",\"zip\":\"00100\"}},"
+            + "\"phones\":[\"555-1234\",{\"type\":\"work\"}], \"we\\u0069rd\":\"}\" }";
+
+    @Test
+    public void testReadValuesByPath() throws Exception {
+        LazyDocument document = new LazyDocument(CUSTOMER.getBytes("UTF-8"));
+
+        assertEquals(Arrays.asList("name", "age", "height", "active", "nickname", "address", "phones", "weird"), document.getFieldNames());
+        assertEquals("Sergio", document.getString("name"));
+        assertEquals(Long.valueOf(33), document.getLong("age"));
+        assertEquals(1.8, document.getDouble("height"), 0);
+        assertEquals(Boolean.TRUE, document.getBoolean("active"));
+        assertEquals("Rome \"Caput Mundi\"", document.getString("address.city.name"));
+        assertEquals("}", document.getString("weird"));
+        assertEquals(Arrays.asList("555-1234", Collections.singletonMap("type", "work")), document.get("phones"));
+        assertEquals("00100", document.getDocument("address").getDocument("city").getString("zip"));
+    }
+
+    @Test
+    public void testMissingAndNullValues() throws Exception {
+        LazyDocument document = new LazyDocument(CUSTOMER.getBytes("UTF-8"));
+
+        assertTrue(document.has("nickname"));
+        assertNull(document.getString("nickname"));
+        assertFalse(document.has("surname"));
+        assertNull(document.getString("surname"));
+        assertNull(document.getString("name.first"));
+        assertNull(document.getDocument("address.country"));
+        assertNull(document.get("address.city.street"));
+    }
+
+    @Test(expected = ClassCastException.class)
+    public void testReadValueOfDifferentType() throws Exception {
+        new LazyDocument(CUSTOMER.getBytes("UTF-8")).getLong("name");
+    }
+
+    @Test(expected = TerrastoreClientException.class)
+    public void testReadMalformedDocument() throws Exception {
+        new LazyDocument("{\"name\":\"Sergio\"".getBytes("UTF-8")).getString("name");
+    }
+
+    @Test
+    public void testReadAsObjectAndValues() throws Exception {
+        JsonMappingEngine engine = new JsonMappingEngine(Collections.<JsonObjectDescriptor>emptyList());
+        byte[] values = ("{\"c1\":" + CUSTOMER + ",\"c2\" : {\"name\":\"Mats\"}}").getBytes("UTF-8");
+
+        LazyDocument document = (LazyDocument) new JsonObjectReader(engine).readFrom(LazyDocument.class, LazyDocument.class, null, null, null, new ByteArrayInputStream(CUSTOMER.getBytes("UTF-8")));
+        Values<LazyDocument> documents = new JsonValuesReader(engine).readFrom(Values.class, new ValuesType(LazyDocument.class), null, null, null, new ByteArrayInputStream(values));
+        Values<LazyDocument> compact = new JsonValuesReader(engine).readFrom(Values.class, new ValuesType(LazyDocument.class).compact(true).expectedSize(2), null, null, null, new ByteArrayInputStream(values));
+        Values<LazyDocument> projected = new JsonValuesReader(engine).readFrom(Values.class, new ValuesType(LazyDocument.class).projection(new JsonProjection("address.city")), null, null, null, new ByteArrayInputStream(values));
+
+        assertEquals("Via Roma", document.getString("address.street"));
+        assertEquals(Arrays.asList("c1", "c2"), Arrays.asList(documents.keySet().toArray()));
+        assertEquals("Sergio", documents.get("c1").getString("name"));
+        assertEquals("Mats", documents.get("c2").getString("name"));
+        assertTrue(compact instanceof CompactValues);
+        assertEquals("Mats", compact.get("c2").getString("name"));
+        assertEquals(Arrays.asList("address"), projected.get("c1").getFieldNames());
+        assertEquals("00100", projected.get("c1").getString("address.city.zip"));
+    }
+
+    @Test
+    public void testWriteAndReadWithSmileCodec() throws Exception {
+        JsonMappingEngine engine = new JsonMappingEngine(Collections.<JsonObjectDescriptor>emptyList(), new SmileCodec());
+        Customer customer = new Customer("Sergio");
+        customer.setAddress(new Address("Via Roma"));
+        ByteArrayOutputStream smile = new ByteArrayOutputStream();
+        engine.write(smile, customer, SmileCodec.SMILE_MEDIA_TYPE);
+
+        LazyDocument document = engine.read(new ByteArrayInputStream(smile.toByteArray()), LazyDocument.class, SmileCodec.SMILE_MEDIA_TYPE);
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        engine.write(json, document);
+
+        assertEquals("Via Roma", document.getString("address.street"));
+        assertEquals(customer, engine.read(new ByteArrayInputStream(json.toByteArray()), Customer.class));
+    }
+
+    @Test
+    public void testReadAsMapAndLazyDocumentAgree() throws Exception {
+        JsonMappingEngine engine = new JsonMappingEngine(Collections.<JsonObjectDescriptor>emptyList());
+
+        Map map = engine.read(new ByteArrayInputStream(CUSTOMER.getBytes("UTF-8")), Map.class);
+        LazyDocument document = new LazyDocument(CUSTOMER.getBytes("UTF-8"));
+
+        for (String field : document.getFieldNames()) {
+            assertEquals(map.get(field), document.get(field));
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.mapping;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import terrastore.client.Values;
+import terrastore.client.test.pojostest.Address;
+import terrastore.client.test.pojostest.Customer;
+import terrastore.client.test.pojostest.PhoneNumber;
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+/**
+ * Verifies steady state allocations of the mapping layer, by reading the thread allocated bytes counter:
+ * budgets are a few times the size of the objects being read or written, so any per-call buffer allocation
+ * would make them fail.
+ *
+ * @author Sergio Bossa
+ */
+public class MappingAllocationTest {
+
+    private static final int WARMUP = 20000;
+    private static final int ITERATIONS = 10000;
+    //
+    private com.sun.management.ThreadMXBean threadBean;
+    private List<JsonObjectDescriptor<?>> descriptors = Collections.emptyList();
+
+    @Before
+    public void setUp() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void testObjectWriting() throws Exception {
+        final JsonObjectWriter writer = new JsonObjectWriter(descriptors);
+        final Customer customer = new Customer("Sergio");
+        customer.setAddress(new Address("Via Roma"));
+        customer.addPhoneNumber(new PhoneNumber("555-1234", "home"));
+        final OutputStream sink = new NullOutputStream();
+
+        long allocated = allocationPerOperation(new Operation() {
+
+            @Override
+            public void execute() throws Exception {
+                writer.writeTo(customer, Customer.class, Customer.class, null, null, null, sink);
+            }
+        });
+
+        assertTrue("Allocated bytes per write: " + allocated, allocated < 2048);
+    }
+
+    @Test
+    public void testObjectReading() throws Exception {
+        final JsonObjectReader reader = new JsonObjectReader(descriptors);
+        final byte[] json = "{\"name\":\"Sergio\",\"address\":{\"street\":\"Via Roma\"},\"phoneNumbers\":[{\"number\":\"555-1234\",\"type\":\"home\"}]}".getBytes("UTF-8");
+
+        long allocated = allocationPerOperation(new Operation() {
+
+            @Override
+            public void execute() throws Exception {
+                reader.readFrom(Customer.class, Customer.class, null, null, null, new ByteArrayInputStream(json));
+            }
+        });
+
+        assertTrue("Allocated bytes per read: " + allocated, allocated < 4096);
+    }
+
+    @Test
+    public void testValuesReading() throws Exception {
+        final JsonValuesReader reader = new JsonValuesReader(descriptors);
+        final byte[] json = "{\"k1\":{\"number\":\"1\",\"type\":\"home\"},\"k2\":{\"number\":\"2\",\"type\":\"home\"},\"k3\":{\"number\":\"3\",\"type\":\"home\"}}".getBytes("UTF-8");
+
+        long allocated = allocationPerOperation(new Operation() {
+
+            @Override
+            public void execute() throws Exception {
+                reader.readFrom(Values.class, PhoneNumber.class, null, null, null, new ByteArrayInputStream(json));
+            }
+        });
+
+        assertTrue("Allocated bytes per read: " + allocated, allocated < 4096);
+    }
+
+    private long allocationPerOperation(Operation operation) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            operation.execute();
+        }
+        long thread = Thread.currentThread().getId();
+        long start = threadBean.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < ITERATIONS; i++) {
+            operation.execute();
+        }
+        return (threadBean.getThreadAllocatedBytes(thread) - start) / ITERATIONS;
+    }
+
+    private static interface Operation {
+
+        public void execute() throws Exception;
+    }
+
+    private static class NullOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
@@ -0,0 +1,374 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.mapping.processor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import javax.tools.ToolProvider;
+import org.apache.commons.io.FileUtils;
+import org.codehaus.jackson.annotate.JsonIgnore;
+import org.codehaus.jackson.annotate.JsonProperty;
+import org.codehaus.jackson.map.JsonMappingException;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Test;
+import terrastore.client.TerrastoreClient;
+import terrastore.client.connection.Connection;
+import terrastore.client.connection.ConnectionFactory;
+import terrastore.client.connection.HostManager;
+import terrastore.client.mapping.JsonDocument;
+import terrastore.client.mapping.JsonMappingEngine;
+import terrastore.client.mapping.JsonObjectDescriptor;
+import terrastore.client.test.documentstest.Customer;
+import terrastore.client.test.documentstest.CustomerJsonDescriptor;
+import terrastore.client.test.documentstest.PhoneNumber;
+import terrastore.client.test.documentstest.PhoneNumberJsonDescriptor;
+import static org.junit.Assert.*;
+
+/**
+ * @author Sergio Bossa
+ */
+public class JsonDocumentProcessorTest {
+
+    private final JsonMappingEngine reflective = new JsonMappingEngine(Collections.<JsonObjectDescriptor>emptyList());
+    private final JsonMappingEngine generated = new JsonMappingEngine(Arrays.<JsonObjectDescriptor>asList(new JsonDocumentProcessorTest_ItemJsonDescriptor(), new PhoneNumberJsonDescriptor()));
+
+    @Test
+    public void testGeneratedDescriptorsAreListedAsServices() {
+        List<Class<?>> descriptors = new ArrayList<Class<?>>();
+        for (JsonObjectDescriptor descriptor : ServiceLoader.load(JsonObjectDescriptor.class)) {
+            descriptors.add(descriptor.getClass());
+        }
+
+        assertTrue(descriptors.contains(CustomerJsonDescriptor.class));
+        assertTrue(descriptors.contains(JsonDocumentProcessorTest_ItemJsonDescriptor.class));
+        assertEquals(Customer.class, new CustomerJsonDescriptor().getObjectClass());
+    }
+
+    @Test
+    public void testTerrastoreClientPrependsGeneratedDescriptors() throws Exception {
+        final List<JsonObjectDescriptor<?>> descriptors = new ArrayList<JsonObjectDescriptor<?>>();
+        JsonObjectDescriptor<Customer> explicit = new CustomerJsonDescriptor();
+
+        new TerrastoreClient("http://localhost:8080", new ConnectionFactory() {
+
+            public Connection makeConnection(HostManager hostManager, List<JsonObjectDescriptor<?>> configured) {
+                descriptors.addAll(configured);
+                return null;
+            }
+        }, new ArrayList<JsonObjectDescriptor<?>>(Arrays.asList(explicit)));
+
+        assertTrue(descriptors.size() > 1);
+        assertSame(explicit, descriptors.get(descriptors.size() - 1));
+    }
+
+    @Test
+    public void testGeneratedDescriptorsAreLookedUpPerClassLoader() throws Exception {
+        final List<JsonObjectDescriptor<?>> descriptors = new ArrayList<JsonObjectDescriptor<?>>();
+        ConnectionFactory factory = new ConnectionFactory() {
+
+            public Connection makeConnection(HostManager hostManager, List<JsonObjectDescriptor<?>> configured) {
+                descriptors.addAll(configured);
+                return null;
+            }
+        };
+        Thread current = Thread.currentThread();
+        ClassLoader contextClassLoader = current.getContextClassLoader();
+
+        new TerrastoreClient("http://localhost:8080", factory);
+        assertFalse(descriptors.isEmpty());
+
+        descriptors.clear();
+        current.setContextClassLoader(new URLClassLoader(new URL[0], null));
+        try {
+            new TerrastoreClient("http://localhost:8080", factory);
+        } finally {
+            current.setContextClassLoader(contextClassLoader);
+        }
+        assertTrue(descriptors.isEmpty());
+    }
+
+    @Test
+    public void testStaleServicesArePrunedByIncrementalCompilations() throws Exception {
+        File output = new File(FileUtils.getTempDirectory(), "terrastore-processor-" + System.nanoTime());
+        File services = new File(output, "META-INF/services/" + JsonObjectDescriptor.class.getName());
+        File source = new File(output, "stale/Stale.java");
+        try {
+            FileUtils.writeStringToFile(services, "gone.GoneJsonDescriptor\n");
+            FileUtils.writeStringToFile(source, "package stale; @terrastore.client.mapping.JsonDocument public class Stale { public String name; }");
+            compile(output, source);
+
+            assertEquals(Arrays.asList("stale.StaleJsonDescriptor"), FileUtils.readLines(services));
+
+            FileUtils.writeStringToFile(source, "package stale; public class Stale { public String name; }");
+            compile(output, source);
+
+            assertEquals(Collections.emptyList(), FileUtils.readLines(services));
+        } finally {
+            FileUtils.deleteDirectory(output);
+        }
+    }
+
+    @Test
+    public void testGeneratedMappingWritesSameJsonAsReflectiveMapping() throws Exception {
+        Item item = makeItem();
+
+        assertEquals(tree(write(reflective, item)), tree(write(generated, item)));
+        assertEquals(tree(write(reflective, new Item())), tree(write(generated, new Item())));
+    }
+
+    @Test
+    public void testGeneratedMappingReadsWhatReflectiveMappingWrites() throws Exception {
+        byte[] json = write(reflective, makeItem());
+
+        Item item = generated.read(new ByteArrayInputStream(json), Item.class);
+
+        assertEquals(tree(json), tree(write(reflective, item)));
+        assertEquals("secret", makeItem().getSecret());
+        assertNull(item.getSecret());
+        assertEquals(Arrays.asList("created", "shipped"), item.getHistory());
+    }
+
+    @Test
+    public void testGeneratedMappingReadsNullsAndCoercedScalars() throws Exception {
+        byte[] json = "{\"name\":null,\"quantity\":\"3\",\"rank\":null,\"price\":2,\"tags\":[\"a\",null],\"phone\":null,\"grade\":\"B\"}".getBytes("UTF-8");
+
+        Item item = generated.read(new ByteArrayInputStream(json), Item.class);
+
+        assertNull(item.getName());
+        assertEquals(3, item.getQuantity());
+        assertNull(item.getRank());
+        assertEquals(2.0, item.getPrice(), 0);
+        assertEquals(Arrays.asList("a", null), item.getTags());
+        assertNull(item.getPhone());
+        assertEquals('B', item.getGrade());
+    }
+
+    @Test(expected = JsonMappingException.class)
+    public void testGeneratedMappingFailsOnUnknownProperties() throws Exception {
+        generated.read(new ByteArrayInputStream("{\"name\":\"Sergio\",\"unknown\":1}".getBytes("UTF-8")), Item.class);
+    }
+
+    private Item makeItem() {
+        Item item = new Item();
+        item.note = "Fragile";
+        item.setName("Book");
+        item.setQuantity(3);
+        item.setRank(1);
+        item.setId(Long.MAX_VALUE);
+        item.setPrice(9.99);
+        item.setActive(true);
+        item.setGrade('A');
+        item.setSize((short) 42);
+        item.setTags(Arrays.asList("paper", null, "novel"));
+        item.setCodes(new LinkedHashSet<Integer>(Arrays.asList(7, 11)));
+        item.setCounters(Collections.singletonMap("views", 100L));
+        item.setPhone(new PhoneNumber("555-1234", "work"));
+        item.setPhones(Arrays.asList(new PhoneNumber("555-4321", "home"), null));
+        item.setSecret("secret");
+        item.setLabel("Best seller");
+        item.getHistory().add("created");
+        item.getHistory().add("shipped");
+        return item;
+    }
+
+    private void compile(File output, File source) {
+        String classpath = output.getPath() + File.pathSeparator + System.getProperty("java.class.path");
+        int result = ToolProvider.getSystemJavaCompiler().run(null, null, null,
+                "-processor", JsonDocumentProcessor.class.getName(), "-d", output.getPath(), "-s", output.getPath(), "-cp", classpath, source.getPath());
+        assertEquals(0, result);
+    }
+
+    private byte[] write(JsonMappingEngine engine, Object value) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        engine.write(output, value);
+        return output.toByteArray();
+    }
+
+    private Map tree(byte[] json) throws Exception {
+        return new ObjectMapper().readValue(new ByteArrayInputStream(json), LinkedHashMap.class);
+    }
+
+    @JsonDocument
+    public static class Item {
+
+        public String note;
+        private String name;
+        private int quantity;
+        private Integer rank;
+        private long id;
+        private double price;
+        private Double discount;
+        private boolean active;
+        private char grade;
+        private short size;
+        private List<String> tags;
+        private Set<Integer> codes;
+        private Map<String, Long> counters;
+        private PhoneNumber phone;
+        private List<PhoneNumber> phones;
+        private String secret;
+        private String label;
+        private final List<String> history = new ArrayList<String>();
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(int quantity) {
+            this.quantity = quantity;
+        }
+
+        public Integer getRank() {
+            return rank;
+        }
+
+        public void setRank(Integer rank) {
+            this.rank = rank;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public void setId(long id) {
+            this.id = id;
+        }
+
+        public double getPrice() {
+            return price;
+        }
+
+        public void setPrice(double price) {
+            this.price = price;
+        }
+
+        public Double getDiscount() {
+            return discount;
+        }
+
+        public void setDiscount(Double discount) {
+            this.discount = discount;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public void setActive(boolean active) {
+            this.active = active;
+        }
+
+        public char getGrade() {
+            return grade;
+        }
+
+        public void setGrade(char grade) {
+            this.grade = grade;
+        }
+
+        public short getSize() {
+            return size;
+        }
+
+        public void setSize(short size) {
+            this.size = size;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(List<String> tags) {
+            this.tags = tags;
+        }
+
+        public Set<Integer> getCodes() {
+            return codes;
+        }
+
+        public void setCodes(Set<Integer> codes) {
+            this.codes = codes;
+        }
+
+        public Map<String, Long> getCounters() {
+            return counters;
+        }
+
+        public void setCounters(Map<String, Long> counters) {
+            this.counters = counters;
+        }
+
+        public PhoneNumber getPhone() {
+            return phone;
+        }
+
+        public void setPhone(PhoneNumber phone) {
+            this.phone = phone;
+        }
+
+        public List<PhoneNumber> getPhones() {
+            return phones;
+        }
+
+        public void setPhones(List<PhoneNumber> phones) {
+            this.phones = phones;
+        }
+
+        @JsonIgnore
+        public String getSecret() {
+            return secret;
+        }
+
+        @JsonIgnore
+        public void setSecret(String secret) {
+            this.secret = secret;
+        }
+
+        @JsonProperty("title")
+        public String getLabel() {
+            return label;
+        }
+
+        @JsonProperty("title")
+        public void setLabel(String label) {
+            this.label = label;
+        }
+
+        public List<String> getHistory() {
+            return history;
+        }
+    }
+}
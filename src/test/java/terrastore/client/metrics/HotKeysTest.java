@@ -0,0 +1,103 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.metrics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Sergio Bossa
+ */
+public class HotKeysTest {
+
+    @Test
+    public void testHottestKeysAreDetectedPerBucket() {
+        HotKeys hotKeys = new HotKeys(3);
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            hotKeys.keyAccessed("customers", "c" + random.nextInt(1000));
+            if (i % 10 == 0) {
+                hotKeys.keyAccessed("customers", "hot-1");
+            }
+            if (i % 20 == 0) {
+                hotKeys.keyAccessed("customers", "hot-2");
+            }
+            if (i % 40 == 0) {
+                hotKeys.keyAccessed("customers", "hot-3");
+            }
+        }
+        hotKeys.keyAccessed("orders", "o1");
+
+        List<HotKey> top = hotKeys.getHotKeys("customers");
+        assertEquals(3, top.size());
+        assertEquals("hot-1", top.get(0).getKey());
+        assertEquals("hot-2", top.get(1).getKey());
+        assertEquals("hot-3", top.get(2).getKey());
+        assertTrue(top.get(0).getCount() >= 500);
+        assertEquals(Arrays.asList(new HotKey("o1", 1)), hotKeys.getHotKeys("orders"));
+        assertTrue(hotKeys.getHotKeys("products").isEmpty());
+        assertEquals(2, hotKeys.getHotKeys().size());
+    }
+
+    @Test
+    public void testOnlyHotterKeysReplaceTheColdestOne() {
+        HotKeys hotKeys = new HotKeys(2);
+        for (String key : Arrays.asList("a", "a", "a", "b", "b", "c", "c")) {
+            hotKeys.keyAccessed("customers", key);
+        }
+
+        assertEquals(Arrays.asList(new HotKey("a", 3), new HotKey("b", 2)), hotKeys.getHotKeys("customers"));
+
+        hotKeys.keyAccessed("customers", "c");
+
+        assertEquals(Arrays.asList(new HotKey("a", 3), new HotKey("c", 3)), hotKeys.getHotKeys("customers"));
+    }
+
+    @Test
+    public void testCountsNeverUnderestimate() {
+        HotKeys hotKeys = new HotKeys(1, 16);
+        for (int i = 0; i < 100; i++) {
+            hotKeys.keyAccessed("customers", "c" + i);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(hotKeys.getCount("customers", "c" + i) >= 1);
+        }
+        assertEquals(0, hotKeys.getCount("orders", "c1"));
+    }
+
+    @Test
+    public void testCountsAgeWhenSketchIsFull() {
+        HotKeys hotKeys = new HotKeys(1, 16);
+        for (int i = 0; i < 159; i++) {
+            hotKeys.keyAccessed("customers", "old");
+        }
+        assertEquals(159, hotKeys.getCount("customers", "old"));
+
+        hotKeys.keyAccessed("customers", "old");
+
+        assertEquals(80, hotKeys.getCount("customers", "old"));
+        assertEquals(Arrays.asList(new HotKey("old", 80)), hotKeys.getHotKeys("customers"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTopMustBePositive() {
+        new HotKeys(0);
+    }
+}
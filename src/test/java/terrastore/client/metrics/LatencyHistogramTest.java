@@ -0,0 +1,86 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.metrics;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Sergio Bossa
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testPercentilesAreWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 100000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+
+        assertEquals(100000, histogram.getCount());
+        assertEquals(50000, histogram.getP50(TimeUnit.MICROSECONDS), 50000 * 0.04);
+        assertEquals(99000, histogram.getP99(TimeUnit.MICROSECONDS), 99000 * 0.04);
+        assertEquals(99900, histogram.getP999(TimeUnit.MICROSECONDS), 99900 * 0.04);
+        assertEquals(100000, histogram.getMax(TimeUnit.MICROSECONDS), 0);
+        assertEquals(50000, histogram.getMean(TimeUnit.MICROSECONDS), 1);
+    }
+
+    @Test
+    public void testPercentilesNeverExceedMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000001);
+
+        assertEquals(1000001, histogram.getPercentile(100, TimeUnit.NANOSECONDS), 0);
+        assertEquals(1000001, histogram.getMax(TimeUnit.NANOSECONDS), 0);
+    }
+
+    @Test
+    public void testSmallAndHugeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(0);
+        histogram.record(7);
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(3, histogram.getCount());
+        assertEquals(7, histogram.getP50(TimeUnit.NANOSECONDS), 0);
+        assertEquals(LatencyHistogram.MAX_VALUE, histogram.getMax(TimeUnit.NANOSECONDS), 0);
+    }
+
+    @Test
+    public void testAdd() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        first.record(100);
+        second.record(200);
+        second.record(300);
+
+        first.add(second);
+
+        assertEquals(3, first.getCount());
+        assertEquals(300, first.getMax(TimeUnit.NANOSECONDS), 0);
+        assertEquals(200, first.getMean(TimeUnit.NANOSECONDS), 0);
+    }
+
+    @Test
+    public void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getP99(TimeUnit.NANOSECONDS), 0);
+        assertEquals(0, histogram.getMean(TimeUnit.NANOSECONDS), 0);
+    }
+}
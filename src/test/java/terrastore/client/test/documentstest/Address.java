@@ -0,0 +1,63 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.test.documentstest;
+
+import terrastore.client.mapping.JsonDocument;
+
+/**
+ * A {@link terrastore.client.mapping.JsonDocument} address, mapped through its generated descriptor:
+ * see {@link terrastore.client.test.pojostest.Address} for its reflectively mapped counterpart.
+ *
+ * @author Sergio Bossa
+ */
+@JsonDocument
+public class Address {
+    private String street;
+
+    protected Address() {
+        // Empty
+    }
+
+    public Address(String street) {
+        this.street = street;
+    }
+
+    public String getStreet() {
+        return street;
+    }
+
+    public void setStreet(String street) {
+        this.street = street;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        Address address = (Address) o;
+
+        if (street != null ? !street.equals(address.street) : address.street != null) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return street != null ? street.hashCode() : 0;
+    }
+}
+
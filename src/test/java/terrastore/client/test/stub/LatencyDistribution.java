@@ -0,0 +1,103 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.test.stub;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distribution of per-request latencies injected by the {@link NioStubTerrastoreServer}.<br>
+ * Tail-heavy distributions can be obtained by mixing a fast and a slow distribution through
+ * {@link #withTail(LatencyDistribution, double)}.
+ *
+ * @author Sergio Bossa
+ */
+public abstract class LatencyDistribution {
+
+    public static final LatencyDistribution NONE = fixed(0, TimeUnit.NANOSECONDS);
+
+    /**
+     * Always the given latency.
+     */
+    public static LatencyDistribution fixed(long latency, TimeUnit unit) {
+        final long nanos = unit.toNanos(latency);
+        return new LatencyDistribution() {
+
+            @Override
+            public long nextNanos(Random random) {
+                return nanos;
+            }
+        };
+    }
+
+    /**
+     * Latencies uniformly distributed between min (inclusive) and max (exclusive).
+     */
+    public static LatencyDistribution uniform(long min, long max, TimeUnit unit) {
+        if (min < 0 || max <= min) {
+            throw new IllegalArgumentException("Max latency must be greater than min latency, and both positive.");
+        }
+        final long minNanos = unit.toNanos(min);
+        final long rangeNanos = unit.toNanos(max) - minNanos;
+        return new LatencyDistribution() {
+
+            @Override
+            public long nextNanos(Random random) {
+                return minNanos + (long) (random.nextDouble() * rangeNanos);
+            }
+        };
+    }
+
+    /**
+     * Latencies exponentially distributed around the given mean, as for requests queued by a busy server.
+     */
+    public static LatencyDistribution exponential(long mean, TimeUnit unit) {
+        if (mean <= 0) {
+            throw new IllegalArgumentException("Mean latency must be positive.");
+        }
+        final long meanNanos = unit.toNanos(mean);
+        return new LatencyDistribution() {
+
+            @Override
+            public long nextNanos(Random random) {
+                return (long) (-Math.log(1 - random.nextDouble()) * meanNanos);
+            }
+        };
+    }
+
+    /**
+     * Get the next latency, in nanoseconds.
+     */
+    public abstract long nextNanos(Random random);
+
+    /**
+     * Mix this distribution with the given tail one, picked with the given probability: for example,
+     * a fast fixed latency with a slow one picked for 1% of requests.
+     */
+    public LatencyDistribution withTail(final LatencyDistribution tail, final double probability) {
+        if (probability < 0 || probability > 1) {
+            throw new IllegalArgumentException("Tail probability must be between 0 and 1.");
+        }
+        final LatencyDistribution head = this;
+        return new LatencyDistribution() {
+
+            @Override
+            public long nextNanos(Random random) {
+                return random.nextDouble() < probability ? tail.nextNanos(random) : head.nextNanos(random);
+            }
+        };
+    }
+}
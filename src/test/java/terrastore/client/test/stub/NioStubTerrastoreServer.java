@@ -0,0 +1,740 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.test.stub;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.io.JsonStringEncoder;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ObjectNode;
+
+/**
+ * Lightweight Terrastore server stub running on a single NIO selector thread, for benchmarking failover, pooling
+ * and other transport behaviors on a single machine, under injected faults:
+ * <ul>
+ * <li>Per-request latencies, drawn from a {@link LatencyDistribution}.</li>
+ * <li>Error responses, at a given rate and with a given status.</li>
+ * <li>Connection resets, at a given rate: connections are reset as soon as the request has been read.</li>
+ * <li>Slow bodies, streamed in chunks of a given size, with a given delay between chunks.</li>
+ * </ul>
+ * Faults can be changed while running, and apply to requests received afterwards.<br>
+ * It speaks plain JSON over HTTP/1.1, with keep-alive and chunked or gzip encoded request bodies, for key, bucket,
+ * range (lexical only) and bulk operations; all other operations, as well as conditional ones, are answered with
+ * a 400 error.<br>
+ * Values are stored as raw bytes and never decoded, so serving a request costs as little as possible: differently
+ * from {@link StubTerrastoreServer}, this is not meant to check the protocol, but to run many servers with
+ * many connections each.
+ *
+ * @author Sergio Bossa
+ */
+public class NioStubTerrastoreServer {
+
+    private static final Charset ASCII = Charset.forName("ISO-8859-1");
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] HEADERS_END = {'\r', '\n', '\r', '\n'};
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(ASCII);
+    //
+    private final ConcurrentMap<String, ConcurrentSkipListMap<String, byte[]>> buckets = new ConcurrentHashMap<String, ConcurrentSkipListMap<String, byte[]>>();
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong resets = new AtomicLong();
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    private final Random random = new Random();
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final ScheduledExecutorService scheduler;
+    private final Thread selectorThread;
+    private volatile boolean running;
+    private volatile LatencyDistribution latency = LatencyDistribution.NONE;
+    private volatile double errorRate;
+    private volatile int errorStatus;
+    private volatile double resetRate;
+    private volatile int slowBodyChunk;
+    private volatile long slowBodyDelay;
+
+    public NioStubTerrastoreServer() throws IOException {
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        this.server.configureBlocking(false);
+        this.server.socket().bind(new InetSocketAddress("localhost", 0));
+        this.server.register(selector, SelectionKey.OP_ACCEPT);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+        this.selectorThread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "NioStubTerrastoreServer-" + server.socket().getLocalPort());
+        this.selectorThread.setDaemon(true);
+    }
+
+    public NioStubTerrastoreServer start() {
+        running = true;
+        selectorThread.start();
+        return this;
+    }
+
+    public void stop() throws InterruptedException {
+        running = false;
+        selector.wakeup();
+        selectorThread.join();
+        scheduler.shutdownNow();
+    }
+
+    public String getUrl() {
+        return "http://localhost:" + server.socket().getLocalPort();
+    }
+
+    /**
+     * Get the number of accepted connections.
+     */
+    public long getConnections() {
+        return connections.get();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Get the number of injected error responses.
+     */
+    public long getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * Get the number of injected connection resets.
+     */
+    public long getResets() {
+        return resets.get();
+    }
+
+    /**
+     * Delay responses by latencies drawn from the given distribution.
+     */
+    public void setLatency(LatencyDistribution latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * Answer the given fraction of requests, between 0 and 1, with an error of the given status, without executing them.
+     */
+    public void setErrorRate(double errorRate, int errorStatus) {
+        if (errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("Error rate must be between 0 and 1.");
+        }
+        this.errorStatus = errorStatus;
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Reset the connection of the given fraction of requests, between 0 and 1, without executing them.
+     */
+    public void setResetRate(double resetRate) {
+        if (resetRate < 0 || resetRate > 1) {
+            throw new IllegalArgumentException("Reset rate must be between 0 and 1.");
+        }
+        this.resetRate = resetRate;
+    }
+
+    /**
+     * Stream response bodies in chunks of the given size, waiting the given delay between chunks:
+     * a size of 0 disables slow bodies.
+     */
+    public void setSlowBody(int chunkSize, long chunkDelay, TimeUnit unit) {
+        if (chunkSize < 0 || chunkDelay < 0) {
+            throw new IllegalArgumentException("Chunk size and delay must be positive.");
+        }
+        this.slowBodyDelay = unit.toNanos(chunkDelay);
+        this.slowBodyChunk = chunkSize;
+    }
+
+    private void loop() {
+        try {
+            while (running) {
+                selector.select();
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+                Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                while (selected.hasNext()) {
+                    SelectionKey key = selected.next();
+                    selected.remove();
+                    if (key.isValid() && key.isAcceptable()) {
+                        accept();
+                    } else if (key.isValid()) {
+                        ClientChannel client = (ClientChannel) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                client.read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                client.flush();
+                            }
+                        } catch (IOException ex) {
+                            client.close();
+                        }
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            // Nothing to do but stopping.
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key);
+            }
+            try {
+                selector.close();
+            } catch (IOException ex) {
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel != null) {
+            connections.incrementAndGet();
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            key.attach(new ClientChannel(channel, key));
+        }
+    }
+
+    /**
+     * Run the given task on the selector thread, after the given delay.
+     */
+    private void schedule(final Runnable task, long delayNanos) {
+        scheduler.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                tasks.add(task);
+                selector.wakeup();
+            }
+        }, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Response dispatch(Request request) throws IOException {
+        List<String> path = request.getPath();
+        Map<String, String> query = request.getQuery();
+        String method = request.getMethod();
+        String predicate = query.get("predicate");
+        if (predicate != null && predicate.length() > 0) {
+            return error(400, "Unsupported predicate: " + predicate);
+        } else if (path.isEmpty() && method.equals("GET")) {
+            return new Response(200, MAPPER.writeValueAsBytes(buckets.keySet()));
+        } else if (path.size() == 1 && method.equals("GET")) {
+            return new Response(200, toObject(bucket(path.get(0)), limit(query)));
+        } else if (path.size() == 1 && method.equals("DELETE")) {
+            buckets.remove(path.get(0));
+            return new Response(204, null);
+        } else if (path.size() == 2 && path.get(1).equals("range") && (method.equals("GET") || method.equals("DELETE"))) {
+            String comparator = query.get("comparator");
+            if (comparator != null && !comparator.equals("lexical-asc")) {
+                return error(400, "Unsupported comparator: " + comparator);
+            }
+            ConcurrentSkipListMap<String, byte[]> bucket = bucket(path.get(0));
+            SortedMap<String, byte[]> range = query.containsKey("endKey")
+                    ? bucket.subMap(query.get("startKey"), true, query.get("endKey"), true)
+                    : bucket.tailMap(query.get("startKey"), true);
+            if (method.equals("GET")) {
+                return new Response(200, toObject(range, limit(query)));
+            } else {
+                List<String> removed = new ArrayList<String>();
+                for (String key : range.keySet()) {
+                    if (removed.size() == limit(query)) {
+                        break;
+                    }
+                    bucket.remove(key);
+                    removed.add(key);
+                }
+                return new Response(200, MAPPER.writeValueAsBytes(removed));
+            }
+        } else if (path.size() == 3 && path.get(1).equals("bulk") && path.get(2).equals("get") && method.equals("POST")) {
+            ConcurrentSkipListMap<String, byte[]> bucket = bucket(path.get(0));
+            Map<String, byte[]> values = new LinkedHashMap<String, byte[]>();
+            for (JsonNode key : MAPPER.readTree(new ByteArrayInputStream(request.getBody()))) {
+                byte[] value = bucket.get(key.getTextValue());
+                if (value != null) {
+                    values.put(key.getTextValue(), value);
+                }
+            }
+            return new Response(200, toObject(values, Integer.MAX_VALUE));
+        } else if (path.size() == 3 && path.get(1).equals("bulk") && path.get(2).equals("put") && method.equals("POST")) {
+            ConcurrentSkipListMap<String, byte[]> bucket = bucketForWrite(path.get(0));
+            List<String> inserted = new ArrayList<String>();
+            JsonNode values = MAPPER.readTree(new ByteArrayInputStream(request.getBody()));
+            Iterator<String> keys = values.getFieldNames();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                bucket.put(key, MAPPER.writeValueAsBytes(values.get(key)));
+                inserted.add(key);
+            }
+            return new Response(200, MAPPER.writeValueAsBytes(inserted));
+        } else if (path.size() == 2 && method.equals("PUT")) {
+            bucketForWrite(path.get(0)).put(path.get(1), request.getBody());
+            return new Response(204, null);
+        } else if (path.size() == 2 && method.equals("GET")) {
+            byte[] value = bucket(path.get(0)).get(path.get(1));
+            return value != null ? new Response(200, value) : error(404, "Key not found: " + path.get(1));
+        } else if (path.size() == 2 && method.equals("DELETE")) {
+            bucket(path.get(0)).remove(path.get(1));
+            return new Response(204, null);
+        } else {
+            return error(400, "Unsupported request: " + method + " " + path);
+        }
+    }
+
+    private ConcurrentSkipListMap<String, byte[]> bucket(String name) {
+        ConcurrentSkipListMap<String, byte[]> bucket = buckets.get(name);
+        return bucket != null ? bucket : new ConcurrentSkipListMap<String, byte[]>();
+    }
+
+    private ConcurrentSkipListMap<String, byte[]> bucketForWrite(String name) {
+        ConcurrentSkipListMap<String, byte[]> bucket = new ConcurrentSkipListMap<String, byte[]>();
+        ConcurrentSkipListMap<String, byte[]> existent = buckets.putIfAbsent(name, bucket);
+        return existent != null ? existent : bucket;
+    }
+
+    private int limit(Map<String, String> query) {
+        String limit = query.get("limit");
+        return limit != null && Integer.parseInt(limit) > 0 ? Integer.parseInt(limit) : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Write the given raw values as a JSON object, without decoding them.
+     */
+    private byte[] toObject(Map<String, byte[]> values, int limit) {
+        JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write('{');
+        int count = 0;
+        for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+            if (count == limit) {
+                break;
+            } else if (count++ > 0) {
+                output.write(',');
+            }
+            byte[] key = encoder.quoteAsUTF8(entry.getKey());
+            output.write('"');
+            output.write(key, 0, key.length);
+            output.write('"');
+            output.write(':');
+            output.write(entry.getValue(), 0, entry.getValue().length);
+        }
+        output.write('}');
+        return output.toByteArray();
+    }
+
+    private Response error(int status, String message) throws IOException {
+        ObjectNode error = MAPPER.createObjectNode();
+        error.put("message", message);
+        error.put("code", status);
+        return new Response(status, MAPPER.writeValueAsBytes(error));
+    }
+
+    private void closeQuietly(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ex) {
+        }
+    }
+
+    private static int indexOf(byte[] source, int from, int to, byte[] target) {
+        for (int i = from; i <= to - target.length; i++) {
+            int j = 0;
+            while (j < target.length && source[i + j] == target[j]) {
+                j++;
+            }
+            if (j == target.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String reason(int status) {
+        switch (status) {
+            case 200:
+                return "OK";
+            case 204:
+                return "No Content";
+            case 400:
+                return "Bad Request";
+            case 404:
+                return "Not Found";
+            case 409:
+                return "Conflict";
+            case 500:
+                return "Internal Server Error";
+            case 503:
+                return "Service Unavailable";
+            default:
+                return "Status " + status;
+        }
+    }
+
+    /**
+     * A client connection, only ever accessed by the selector thread: requests are served one at a time,
+     * buffering pipelined ones until the current response has been completely written.
+     */
+    private class ClientChannel {
+
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final LinkedList<ByteBuffer> output = new LinkedList<ByteBuffer>();
+        private byte[] input = new byte[8192];
+        private int inputSize;
+        private boolean continued;
+        private boolean serving;
+        private boolean responded;
+        private boolean closing;
+
+        public ClientChannel(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        public void read() throws IOException {
+            if (inputSize == input.length) {
+                input = Arrays.copyOf(input, input.length * 2);
+            }
+            int read = channel.read(ByteBuffer.wrap(input, inputSize, input.length - inputSize));
+            if (read == -1) {
+                close();
+            } else {
+                inputSize += read;
+                serveNext();
+            }
+        }
+
+        public void flush() throws IOException {
+            while (!output.isEmpty()) {
+                ByteBuffer buffer = output.getFirst();
+                channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                output.removeFirst();
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            if (serving && responded) {
+                serving = false;
+                if (closing) {
+                    close();
+                } else {
+                    serveNext();
+                }
+            }
+        }
+
+        public void close() {
+            closeQuietly(key);
+        }
+
+        private void serveNext() throws IOException {
+            if (!serving) {
+                Request request = parse();
+                if (request != null) {
+                    serving = true;
+                    responded = false;
+                    serve(request);
+                }
+            }
+        }
+
+        private void serve(Request request) throws IOException {
+            requests.incrementAndGet();
+            if (random.nextDouble() < resetRate) {
+                resets.incrementAndGet();
+                channel.socket().setSoLinger(true, 0);
+                close();
+                return;
+            }
+            Response response;
+            if (random.nextDouble() < errorRate) {
+                errors.incrementAndGet();
+                response = error(errorStatus, "Injected error.");
+            } else {
+                try {
+                    response = dispatch(request);
+                } catch (Exception ex) {
+                    response = error(500, String.valueOf(ex.getMessage()));
+                }
+            }
+            long delay = latency.nextNanos(random);
+            if (delay > 0) {
+                final Response delayed = response;
+                schedule(new Task() {
+
+                    @Override
+                    protected void execute() throws IOException {
+                        respond(delayed);
+                    }
+                }, delay);
+            } else {
+                respond(response);
+            }
+        }
+
+        private void respond(Response response) throws IOException {
+            byte[] body = response.getBody() != null ? response.getBody() : new byte[0];
+            StringBuilder head = new StringBuilder();
+            head.append("HTTP/1.1 ").append(response.getStatus()).append(' ').append(reason(response.getStatus())).append("\r\n");
+            if (body.length > 0) {
+                head.append("Content-Type: application/json\r\n");
+            }
+            head.append("Content-Length: ").append(body.length).append("\r\n");
+            if (closing) {
+                head.append("Connection: close\r\n");
+            }
+            head.append("\r\n");
+            output.add(ByteBuffer.wrap(head.toString().getBytes(ASCII)));
+            int chunk = slowBodyChunk;
+            if (chunk > 0 && body.length > chunk) {
+                stream(body, 0, chunk, slowBodyDelay);
+            } else {
+                output.add(ByteBuffer.wrap(body));
+                responded = true;
+                flush();
+            }
+        }
+
+        private void stream(final byte[] body, int offset, final int chunk, final long delay) throws IOException {
+            final int end = Math.min(offset + chunk, body.length);
+            output.add(ByteBuffer.wrap(body, offset, end - offset));
+            if (end == body.length) {
+                responded = true;
+            } else {
+                schedule(new Task() {
+
+                    @Override
+                    protected void execute() throws IOException {
+                        stream(body, end, chunk, delay);
+                    }
+                }, delay);
+            }
+            flush();
+        }
+
+        /**
+         * Parse the next buffered request, if completely received.
+         */
+        private Request parse() throws IOException {
+            int headersEnd = indexOf(input, 0, inputSize, HEADERS_END);
+            if (headersEnd == -1) {
+                return null;
+            }
+            String[] lines = new String(input, 0, headersEnd, ASCII).split("\r\n");
+            String[] requestLine = lines[0].split(" ");
+            Map<String, String> headers = new HashMap<String, String>();
+            for (int i = 1; i < lines.length; i++) {
+                int separator = lines[i].indexOf(':');
+                if (separator > 0) {
+                    headers.put(lines[i].substring(0, separator).trim().toLowerCase(), lines[i].substring(separator + 1).trim());
+                }
+            }
+            int position = headersEnd + HEADERS_END.length;
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            if ("chunked".equalsIgnoreCase(headers.get("transfer-encoding"))) {
+                int size;
+                do {
+                    int lineEnd = indexOf(input, position, inputSize, CRLF);
+                    if (lineEnd == -1) {
+                        return incomplete(headers);
+                    }
+                    size = Integer.parseInt(new String(input, position, lineEnd - position, ASCII).split(";")[0].trim(), 16);
+                    position = lineEnd + CRLF.length;
+                    if (size > 0) {
+                        if (position + size + CRLF.length > inputSize) {
+                            return incomplete(headers);
+                        }
+                        body.write(input, position, size);
+                        position += size + CRLF.length;
+                    }
+                } while (size > 0);
+                // Skip trailers, up to the empty line:
+                boolean empty;
+                do {
+                    int lineEnd = indexOf(input, position, inputSize, CRLF);
+                    if (lineEnd == -1) {
+                        return incomplete(headers);
+                    }
+                    empty = lineEnd == position;
+                    position = lineEnd + CRLF.length;
+                } while (!empty);
+            } else if (headers.containsKey("content-length")) {
+                int length = Integer.parseInt(headers.get("content-length"));
+                if (position + length > inputSize) {
+                    return incomplete(headers);
+                }
+                body.write(input, position, length);
+                position += length;
+            }
+            System.arraycopy(input, position, input, 0, inputSize - position);
+            inputSize -= position;
+            continued = false;
+            closing = "close".equalsIgnoreCase(headers.get("connection")) || requestLine[2].equals("HTTP/1.0");
+            byte[] decoded = body.toByteArray();
+            if ("gzip".equalsIgnoreCase(headers.get("content-encoding"))) {
+                decoded = gunzip(decoded);
+            }
+            return new Request(requestLine[0], URI.create(requestLine[1]), decoded);
+        }
+
+        private Request incomplete(Map<String, String> headers) throws IOException {
+            if (!continued && "100-continue".equalsIgnoreCase(headers.get("expect"))) {
+                continued = true;
+                output.add(ByteBuffer.wrap(CONTINUE));
+                flush();
+            }
+            return null;
+        }
+
+        private byte[] gunzip(byte[] compressed) throws IOException {
+            InputStream input = new GZIPInputStream(new ByteArrayInputStream(compressed));
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        }
+
+        /**
+         * Task closing the connection on failures.
+         */
+        private abstract class Task implements Runnable {
+
+            @Override
+            public final void run() {
+                if (key.isValid()) {
+                    try {
+                        execute();
+                    } catch (IOException ex) {
+                        close();
+                    }
+                }
+            }
+
+            protected abstract void execute() throws IOException;
+        }
+    }
+
+    private static class Request {
+
+        private final String method;
+        private final URI uri;
+        private final byte[] body;
+
+        public Request(String method, URI uri, byte[] body) {
+            this.method = method;
+            this.uri = uri;
+            this.body = body;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public List<String> getPath() throws IOException {
+            List<String> segments = new ArrayList<String>();
+            for (String segment : uri.getRawPath().split("/")) {
+                if (segment.length() > 0) {
+                    segments.add(URLDecoder.decode(segment, "UTF-8"));
+                }
+            }
+            return segments;
+        }
+
+        public Map<String, String> getQuery() throws IOException {
+            Map<String, String> parameters = new HashMap<String, String>();
+            if (uri.getRawQuery() != null) {
+                for (String parameter : uri.getRawQuery().split("&")) {
+                    int separator = parameter.indexOf('=');
+                    if (separator > 0) {
+                        parameters.put(URLDecoder.decode(parameter.substring(0, separator), "UTF-8"), URLDecoder.decode(parameter.substring(separator + 1), "UTF-8"));
+                    }
+                }
+            }
+            return parameters;
+        }
+    }
+
+    private static class Response {
+
+        private final int status;
+        private final byte[] body;
+
+        public Response(int status, byte[] body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.test.stub;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import terrastore.client.BucketOperation;
+import terrastore.client.TerrastoreClient;
+import terrastore.client.TerrastoreClientException;
+import terrastore.client.Values;
+import terrastore.client.connection.ClusterUnavailableException;
+import terrastore.client.connection.NoSuchKeyException;
+import terrastore.client.connection.resteasy.HTTPConnectionFactory;
+import terrastore.client.test.pojostest.Customer;
+import static org.junit.Assert.*;
+
+/**
+ * @author Sergio Bossa
+ */
+public class NioStubTerrastoreServerTest {
+
+    private NioStubTerrastoreServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new NioStubTerrastoreServer().start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void testOperationsOverKeepAliveConnections() throws Exception {
+        BucketOperation bucket = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory()).bucket("customers");
+        Map<String, Customer> customers = new LinkedHashMap<String, Customer>();
+        for (int i = 0; i < 10; i++) {
+            customers.put("c" + i, new Customer("Customer " + i));
+        }
+
+        bucket.bulk().put(new Values<Customer>(customers));
+        bucket.key("c10").put(new Customer("Customer 10"));
+        bucket.key("c10").remove();
+
+        assertEquals(customers, bucket.values().get(Customer.class));
+        assertEquals(new Customer("Customer 1"), bucket.key("c1").get(Customer.class));
+        assertEquals(Arrays.asList("c1", "c2", "c3"), Arrays.asList(bucket.range().from("c1").to("c3").get(Customer.class).keySet().toArray()));
+        assertEquals(Collections.singleton("c9"), bucket.bulk().get(new HashSet<String>(Arrays.asList("c9", "c10")), Customer.class).keySet());
+        try {
+            bucket.key("c10").get(Customer.class);
+            fail("Should have thrown NoSuchKeyException!");
+        } catch (NoSuchKeyException ex) {
+        }
+        assertEquals(1, server.getConnections());
+    }
+
+    @Test
+    public void testChunkedRequestBodies() throws Exception {
+        BucketOperation bucket = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory().streaming(0)).bucket("customers");
+
+        bucket.key("c1").put(new Customer("Sergio"));
+
+        assertEquals(new Customer("Sergio"), bucket.key("c1").get(Customer.class));
+    }
+
+    @Test
+    public void testInjectedErrorsAndResets() throws Exception {
+        BucketOperation bucket = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory()).bucket("customers");
+        bucket.key("c1").put(new Customer("Sergio"));
+
+        server.setErrorRate(1, 503);
+        try {
+            bucket.key("c1").get(Customer.class);
+            fail("Should have thrown ClusterUnavailableException!");
+        } catch (ClusterUnavailableException ex) {
+        }
+        server.setErrorRate(0, 503);
+        server.setResetRate(1);
+        try {
+            bucket.key("c1").get(Customer.class);
+            fail("Should have thrown TerrastoreClientException!");
+        } catch (TerrastoreClientException ex) {
+        }
+        server.setResetRate(0);
+
+        assertEquals(new Customer("Sergio"), bucket.key("c1").get(Customer.class));
+        assertEquals(1, server.getErrors());
+        assertTrue(server.getResets() >= 1);
+    }
+
+    @Test
+    public void testInjectedLatencyAndSlowBodies() throws Exception {
+        BucketOperation bucket = new TerrastoreClient(server.getUrl(), new HTTPConnectionFactory()).bucket("customers");
+        bucket.key("c1").put(new Customer("Sergio"));
+
+        server.setLatency(LatencyDistribution.fixed(100, TimeUnit.MILLISECONDS));
+        long start = System.nanoTime();
+        bucket.key("c1").get(Customer.class);
+        long latency = System.nanoTime() - start;
+        server.setLatency(LatencyDistribution.NONE);
+        server.setSlowBody(4, 20, TimeUnit.MILLISECONDS);
+        start = System.nanoTime();
+        Customer customer = bucket.key("c1").get(Customer.class);
+        long slowBody = System.nanoTime() - start;
+
+        assertEquals(new Customer("Sergio"), customer);
+        assertTrue(latency >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(slowBody >= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+}
@@ -0,0 +1,358 @@
+/**
+ * Copyright 2009 - 2011 Sergio Bossa (sergio.bossa@gmail.com)
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package terrastore.client.test.stub;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.ObjectNode;
+import terrastore.client.codec.SmileCodec;
+
+/**
+ * Minimal in-memory Terrastore server speaking the Terrastore HTTP protocol, for testing the client
+ * without a real cluster.<br>
+ * It supports key, bucket, range (lexical only) and bulk operations, conditional key operations with simple jxpath
+ * predicates, and gzip encoded request and response bodies:
+ * responses are gzip encoded whenever the request accepts it.<br>
+ * Bodies can be either plain JSON or Smile: requests are decoded depending on their content type, and responses
+ * are Smile encoded whenever the request accepts it.
+ *
+ * @author Sergio Bossa
+ */
+public class StubTerrastoreServer {
+
+    private static final String SMILE_CONTENT_TYPE = "application/x-jackson-smile";
+    private static final Pattern CONDITION = Pattern.compile("jxpath:(/[^\\[]+)(?:\\[\\s*\\.\\s*(=|!=)\\s*(.+?)\\s*\\])?");
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectMapper SMILE_MAPPER = new ObjectMapper(new SmileCodec().createJsonFactory());
+    //
+    private final ConcurrentMap<String, ConcurrentSkipListMap<String, JsonNode>> buckets = new ConcurrentHashMap<String, ConcurrentSkipListMap<String, JsonNode>>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong receivedBytes = new AtomicLong();
+    private final AtomicLong sentBytes = new AtomicLong();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private volatile Headers lastRequestHeaders;
+    private volatile long responseDelay;
+
+    public StubTerrastoreServer() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.executor = Executors.newCachedThreadPool();
+        this.server.setExecutor(executor);
+        this.server.createContext("/", new Handler());
+    }
+
+    public StubTerrastoreServer start() {
+        server.start();
+        return this;
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Get the number of request body bytes received, as sent over the wire (that is, possibly compressed).
+     */
+    public long getReceivedBytes() {
+        return receivedBytes.get();
+    }
+
+    /**
+     * Get the number of response body bytes sent, as sent over the wire (that is, possibly compressed).
+     */
+    public long getSentBytes() {
+        return sentBytes.get();
+    }
+
+    public Headers getLastRequestHeaders() {
+        return lastRequestHeaders;
+    }
+
+    /**
+     * Delay all responses by the given number of milliseconds, as if computed by a slow server.
+     */
+    public void setResponseDelay(long responseDelay) {
+        this.responseDelay = responseDelay;
+    }
+
+    private class Handler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                requests.incrementAndGet();
+                lastRequestHeaders = exchange.getRequestHeaders();
+                byte[] body = readBody(exchange);
+                List<String> path = parsePath(exchange.getRequestURI());
+                Map<String, String> query = parseQuery(exchange.getRequestURI());
+                if (responseDelay > 0) {
+                    Thread.sleep(responseDelay);
+                }
+                dispatch(exchange, exchange.getRequestMethod(), path, query, body);
+            } catch (Exception ex) {
+                sendError(exchange, 500, ex.getMessage());
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private void dispatch(HttpExchange exchange, String method, List<String> path, Map<String, String> query, byte[] body) throws IOException {
+            if (path.isEmpty() && method.equals("GET")) {
+                ArrayNode names = MAPPER.createArrayNode();
+                for (String bucket : buckets.keySet()) {
+                    names.add(bucket);
+                }
+                send(exchange, 200, names);
+            } else if (path.size() == 1 && method.equals("GET")) {
+                send(exchange, 200, toObject(bucket(path.get(0)), limit(query)));
+            } else if (path.size() == 1 && method.equals("DELETE")) {
+                buckets.remove(path.get(0));
+                send(exchange, 204, null);
+            } else if (path.size() == 2 && path.get(1).equals("range") && method.equals("GET")) {
+                ConcurrentSkipListMap<String, JsonNode> bucket = bucket(path.get(0));
+                SortedMap<String, JsonNode> range = query.containsKey("endKey")
+                        ? bucket.subMap(query.get("startKey"), true, query.get("endKey"), true)
+                        : bucket.tailMap(query.get("startKey"), true);
+                send(exchange, 200, toObject(range, limit(query)));
+            } else if (path.size() == 3 && path.get(1).equals("bulk") && path.get(2).equals("get") && method.equals("POST")) {
+                ConcurrentSkipListMap<String, JsonNode> bucket = bucket(path.get(0));
+                ObjectNode values = MAPPER.createObjectNode();
+                for (JsonNode key : readTree(exchange, body)) {
+                    JsonNode value = bucket.get(key.getTextValue());
+                    if (value != null) {
+                        values.put(key.getTextValue(), value);
+                    }
+                }
+                send(exchange, 200, values);
+            } else if (path.size() == 3 && path.get(1).equals("bulk") && path.get(2).equals("put") && method.equals("POST")) {
+                ConcurrentSkipListMap<String, JsonNode> bucket = bucketForWrite(path.get(0));
+                ArrayNode inserted = MAPPER.createArrayNode();
+                JsonNode values = readTree(exchange, body);
+                Iterator<String> keys = values.getFieldNames();
+                while (keys.hasNext()) {
+                    String key = keys.next();
+                    bucket.put(key, values.get(key));
+                    inserted.add(key);
+                }
+                send(exchange, 200, inserted);
+            } else if (path.size() == 2 && method.equals("PUT")) {
+                ConcurrentSkipListMap<String, JsonNode> bucket = bucketForWrite(path.get(0));
+                String predicate = query.get("predicate");
+                if (predicate == null || satisfies(bucket.get(path.get(1)), predicate)) {
+                    bucket.put(path.get(1), readTree(exchange, body));
+                    send(exchange, 204, null);
+                } else {
+                    sendError(exchange, 409, "Unsatisfied condition: " + predicate);
+                }
+            } else if (path.size() == 2 && method.equals("GET")) {
+                JsonNode value = bucket(path.get(0)).get(path.get(1));
+                String predicate = query.get("predicate");
+                if (value == null) {
+                    sendError(exchange, 404, "Key not found: " + path.get(1));
+                } else if (predicate == null || satisfies(value, predicate)) {
+                    send(exchange, 200, value);
+                } else {
+                    sendError(exchange, 404, "Unsatisfied condition: " + predicate);
+                }
+            } else if (path.size() == 2 && method.equals("DELETE")) {
+                bucket(path.get(0)).remove(path.get(1));
+                send(exchange, 204, null);
+            } else {
+                sendError(exchange, 400, "Unsupported request: " + method + " " + path);
+            }
+        }
+
+        /**
+         * Evaluate a jxpath condition of the form /path, or /path[. = literal] and /path[. != literal],
+         * where literals are either quoted strings or numbers.
+         */
+        private boolean satisfies(JsonNode value, String predicate) {
+            Matcher matcher = CONDITION.matcher(predicate);
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("Unsupported condition: " + predicate);
+            }
+            JsonNode node = value;
+            for (String segment : matcher.group(1).substring(1).split("/")) {
+                node = node != null ? node.get(segment) : null;
+            }
+            if (node == null) {
+                return false;
+            } else if (matcher.group(2) == null) {
+                return true;
+            } else {
+                String literal = matcher.group(3);
+                boolean equal;
+                if (literal.startsWith("'") || literal.startsWith("\"")) {
+                    equal = node.getValueAsText().equals(literal.substring(1, literal.length() - 1));
+                } else {
+                    equal = node.isNumber() && node.getDoubleValue() == Double.parseDouble(literal);
+                }
+                return matcher.group(2).equals("=") ? equal : !equal;
+            }
+        }
+
+        private ConcurrentSkipListMap<String, JsonNode> bucket(String name) {
+            ConcurrentSkipListMap<String, JsonNode> bucket = buckets.get(name);
+            return bucket != null ? bucket : new ConcurrentSkipListMap<String, JsonNode>();
+        }
+
+        private ConcurrentSkipListMap<String, JsonNode> bucketForWrite(String name) {
+            ConcurrentSkipListMap<String, JsonNode> bucket = new ConcurrentSkipListMap<String, JsonNode>();
+            ConcurrentSkipListMap<String, JsonNode> existent = buckets.putIfAbsent(name, bucket);
+            return existent != null ? existent : bucket;
+        }
+
+        private int limit(Map<String, String> query) {
+            String limit = query.get("limit");
+            return limit != null && Integer.parseInt(limit) > 0 ? Integer.parseInt(limit) : Integer.MAX_VALUE;
+        }
+
+        private ObjectNode toObject(Map<String, JsonNode> values, int limit) {
+            ObjectNode result = MAPPER.createObjectNode();
+            int count = 0;
+            for (Map.Entry<String, JsonNode> entry : values.entrySet()) {
+                if (count++ == limit) {
+                    break;
+                }
+                result.put(entry.getKey(), entry.getValue());
+            }
+            return result;
+        }
+
+        private JsonNode readTree(HttpExchange exchange, byte[] body) throws IOException {
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            if (contentType != null && contentType.startsWith(SMILE_CONTENT_TYPE)) {
+                return SMILE_MAPPER.readTree(new ByteArrayInputStream(body));
+            } else {
+                return MAPPER.readTree(new String(body, "UTF-8"));
+            }
+        }
+
+        private byte[] readBody(HttpExchange exchange) throws IOException {
+            ByteArrayOutputStream raw = new ByteArrayOutputStream();
+            copy(exchange.getRequestBody(), raw);
+            receivedBytes.addAndGet(raw.size());
+            if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+                ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+                copy(new GZIPInputStream(new ByteArrayInputStream(raw.toByteArray())), decoded);
+                return decoded.toByteArray();
+            } else {
+                return raw.toByteArray();
+            }
+        }
+
+        private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+            ObjectNode error = MAPPER.createObjectNode();
+            error.put("message", message);
+            error.put("code", status);
+            send(exchange, status, error);
+        }
+
+        private void send(HttpExchange exchange, int status, JsonNode entity) throws IOException {
+            if (entity == null) {
+                exchange.sendResponseHeaders(status, -1);
+            } else {
+                String accept = exchange.getRequestHeaders().getFirst("Accept");
+                boolean smile = accept != null && accept.contains(SMILE_CONTENT_TYPE);
+                byte[] body = smile ? SMILE_MAPPER.writeValueAsBytes(entity) : MAPPER.writeValueAsBytes(entity);
+                String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                    GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+                    gzip.write(body);
+                    gzip.close();
+                    body = compressed.toByteArray();
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                }
+                exchange.getResponseHeaders().set("Content-Type", smile ? SMILE_CONTENT_TYPE : "application/json");
+                exchange.sendResponseHeaders(status, body.length);
+                OutputStream output = exchange.getResponseBody();
+                output.write(body);
+                output.close();
+                sentBytes.addAndGet(body.length);
+            }
+        }
+
+        private List<String> parsePath(URI uri) throws IOException {
+            List<String> segments = new ArrayList<String>();
+            for (String segment : uri.getRawPath().split("/")) {
+                if (segment.length() > 0) {
+                    segments.add(URLDecoder.decode(segment, "UTF-8"));
+                }
+            }
+            return segments;
+        }
+
+        private Map<String, String> parseQuery(URI uri) throws IOException {
+            Map<String, String> parameters = new HashMap<String, String>();
+            if (uri.getRawQuery() != null) {
+                for (String parameter : uri.getRawQuery().split("&")) {
+                    int separator = parameter.indexOf('=');
+                    if (separator > 0) {
+                        parameters.put(URLDecoder.decode(parameter.substring(0, separator), "UTF-8"), URLDecoder.decode(parameter.substring(separator + 1), "UTF-8"));
+                    }
+                }
+            }
+            return parameters;
+        }
+
+        private void copy(InputStream input, OutputStream output) throws IOException {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+        }
+    }
+}